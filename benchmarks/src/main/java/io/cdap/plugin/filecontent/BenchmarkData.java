@@ -0,0 +1,127 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import io.cdap.cdap.etl.mock.action.MockActionContext;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Generates the local files that the benchmarks check. Files are made of random lines of a fixed length, with one
+ * marker line per contents pattern placed at the start of the file, at its end, or nowhere.
+ */
+final class BenchmarkData {
+  static final long MB = 1024 * 1024;
+
+  // number of distinct random lines that the files are made of
+  private static final int LINE_POOL_SIZE = 1024;
+
+  private BenchmarkData() {
+  }
+
+  /**
+   * Returns the contents patterns, separated by {@code ~}, that match the marker lines of a file.
+   */
+  static String patterns(int count) {
+    return IntStream.range(0, count).mapToObj(i -> ".*MARKER_" + i + ".*").collect(Collectors.joining("~"));
+  }
+
+  /**
+   * Writes a file of about the given size.
+   *
+   * @param matchPosition where the marker lines go: "early", "late" or "absent"
+   * @return the size of the file in bytes
+   */
+  static long writeFile(File file, long size, int lineLength, int patternCount, String matchPosition,
+                        Random random) throws IOException {
+    byte[][] pool = new byte[LINE_POOL_SIZE][];
+    String[] lines = MultiPatternMatcherBenchmark.generateLines(random, LINE_POOL_SIZE, lineLength);
+    for (int i = 0; i < LINE_POOL_SIZE; i++) {
+      pool[i] = (lines[i] + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+    long numLines = Math.max(patternCount, size / (lineLength + 1));
+    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1024 * 1024)) {
+      for (long i = 0; i < numLines; i++) {
+        long markerIndex = "early".equals(matchPosition) ? i : i - (numLines - patternCount);
+        if (!"absent".equals(matchPosition) && markerIndex >= 0 && markerIndex < patternCount) {
+          out.write(markerLine((int) markerIndex, lineLength));
+        } else {
+          out.write(pool[random.nextInt(LINE_POOL_SIZE)]);
+        }
+      }
+    }
+    return file.length();
+  }
+
+  /**
+   * Writes a directory of files that all pass the checks.
+   *
+   * @return the total size of the files in bytes
+   */
+  static long writeDirectory(File directory, int fileCount, long fileSize, int lineLength, int patternCount,
+                             String matchPosition, Random random) throws IOException {
+    long total = 0;
+    for (int i = 0; i < fileCount; i++) {
+      total += writeFile(new File(directory, String.format("part-%05d.txt", i)), fileSize, lineLength,
+                         patternCount, matchPosition, random);
+    }
+    return total;
+  }
+
+  static File createDirectory() throws IOException {
+    return Files.createTempDirectory("file-contents-benchmark").toFile();
+  }
+
+  static void delete(File directory) throws IOException {
+    try (Stream<Path> paths = Files.walk(directory.toPath())) {
+      for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  /**
+   * Runs the action, treating missing contents as an expected outcome.
+   */
+  static void run(FileContentsAction action) throws Exception {
+    try {
+      action.run(new MockActionContext());
+    } catch (FileContentsAction.MissingContentsException e) {
+      // the benchmarks with absent patterns scan the whole file and then fail
+    }
+  }
+
+  private static byte[] markerLine(int index, int lineLength) {
+    StringBuilder line = new StringBuilder("MARKER_").append(index).append(' ');
+    while (line.length() < lineLength) {
+      line.append('x');
+    }
+    return line.append('\n').toString().getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Runs the action on a single generated file in a given charset, in which a share of the lines are not ASCII, and
+ * the patterns are never found, so that the whole file is decoded. With literal patterns, the lines of UTF-8 files
+ * are matched as their bytes in the bytes scan mode, without being decoded. Regex patterns that are not literals
+ * show the cost of decoding the same lines, and the reader scan mode the cost of decoding every line.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DecodingBenchmark {
+  // words inserted into the lines that are not ASCII
+  private static final String[] WORDS = { "café", "crème brûlée", "Ærø", "naïve", "señor" };
+
+  @Param({"64"})
+  private int fileSizeMb;
+
+  @Param({"UTF-8", "ISO-8859-1", "UTF-16LE"})
+  private String charset;
+
+  @Param({"0", "25", "100"})
+  private int nonAsciiPercent;
+
+  @Param({"literal", "regex"})
+  private String patternKind;
+
+  @Param({"reader", "bytes"})
+  private String scanMode;
+
+  private File directory;
+  private long fileSize;
+  private FileContentsAction action;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    directory = BenchmarkData.createDirectory();
+    File file = new File(directory, "data.txt");
+    fileSize = writeFile(file, fileSizeMb * BenchmarkData.MB, Charset.forName(charset), new Random(0));
+    // an empty group keeps a pattern from being taken for a literal, without changing what it matches
+    String suffix = "literal".equals(patternKind) ? "" : "(?:)";
+    String patterns = IntStream.range(0, 3).mapToObj(i -> ".*MARKER_" + i + suffix + ".*")
+      .collect(Collectors.joining("~"));
+    action = new FileContentsAction(FileContentsConfig.builder()
+                                      .setSourceFilePath(file.getAbsolutePath())
+                                      .setFileContentsRegex(patterns)
+                                      .setFailOnEmptyFile(true)
+                                      .setScanMode(scanMode)
+                                      .setCharset(charset)
+                                      .build());
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    BenchmarkData.delete(directory);
+  }
+
+  @Benchmark
+  public void check(ScanThroughput throughput) throws Exception {
+    BenchmarkData.run(action);
+    throughput.add(fileSize, 1);
+  }
+
+  private long writeFile(File file, long size, Charset fileCharset, Random random) throws IOException {
+    String[] pool = MultiPatternMatcherBenchmark.generateLines(random, 1024, 80);
+    long chars = 0;
+    try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), fileCharset),
+                                         1024 * 1024)) {
+      while (chars < size) {
+        String line = pool[random.nextInt(pool.length)];
+        if (random.nextInt(100) < nonAsciiPercent) {
+          String word = WORDS[random.nextInt(WORDS.length)];
+          line = word + line.substring(word.length());
+        }
+        out.write(line);
+        out.write('\n');
+        chars += line.length() + 1;
+      }
+    }
+    return file.length();
+  }
+}
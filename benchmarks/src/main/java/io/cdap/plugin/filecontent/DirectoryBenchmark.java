@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the action on a generated directory of files that all pass the checks, which exercises the listing and the
+ * loop over the files as well as the scan of each file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DirectoryBenchmark {
+
+  @Param({"100", "1000"})
+  private int fileCount;
+
+  @Param({"4", "256"})
+  private int fileSizeKb;
+
+  @Param({"3"})
+  private int patternCount;
+
+  @Param({"early", "late"})
+  private String matchPosition;
+
+  @Param({"1", "8"})
+  private int concurrency;
+
+  @Param({"false", "true"})
+  private boolean streamListing;
+
+  private File directory;
+  private long totalSize;
+  private FileContentsAction action;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    directory = BenchmarkData.createDirectory();
+    totalSize = BenchmarkData.writeDirectory(directory, fileCount, fileSizeKb * 1024L, 100, patternCount,
+                                             matchPosition, new Random(0));
+    action = new FileContentsAction(FileContentsConfig.builder()
+                                      .setSourceFilePath(directory.getAbsolutePath())
+                                      .setFileRegex(".*\\.txt")
+                                      .setFileContentsRegex(BenchmarkData.patterns(patternCount))
+                                      .setFailOnEmptyFile(true)
+                                      .setConcurrency(concurrency)
+                                      .setStreamListing(streamListing)
+                                      .build());
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    BenchmarkData.delete(directory);
+  }
+
+  @Benchmark
+  public void check(ScanThroughput throughput) throws Exception {
+    BenchmarkData.run(action);
+    throughput.add(totalSize, fileCount);
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the {@link MultiPatternMatcher} against matching every line with every pattern, as the action did
+ * before. None of the patterns match, so both sides do the full amount of work for every line.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MultiPatternMatcherBenchmark {
+  private static final int NUM_LINES = 10000;
+
+  @Param({"1", "10", "40"})
+  private int patternCount;
+
+  /**
+   * "literal" patterns look like {@code .*MARKER_7.*}, "regex" patterns like {@code .*MARKER_7[0-9]+.*}.
+   */
+  @Param({"literal", "regex"})
+  private String patternKind;
+
+  @Param({"100"})
+  private int lineLength;
+
+  private List<Pattern> patterns;
+  private MultiPatternMatcher matcher;
+  private String[] lines;
+
+  @Setup
+  public void setup() {
+    patterns = new ArrayList<>();
+    for (int i = 0; i < patternCount; i++) {
+      String regex = "literal".equals(patternKind) ? ".*MARKER_" + i + ".*" : ".*MARKER_" + i + "[0-9]+.*";
+      patterns.add(Pattern.compile(regex));
+    }
+    matcher = new MultiPatternMatcher(patterns);
+    lines = generateLines(new Random(0), NUM_LINES, lineLength);
+  }
+
+  @Benchmark
+  public void perPatternLoop(Blackhole blackhole) {
+    for (String line : lines) {
+      for (Pattern pattern : patterns) {
+        blackhole.consume(pattern.matcher(line).matches());
+      }
+    }
+  }
+
+  @Benchmark
+  public void combined(Blackhole blackhole) {
+    MultiPatternMatcher.State state = matcher.newState();
+    for (String line : lines) {
+      blackhole.consume(state.match(line));
+    }
+  }
+
+  static String[] generateLines(Random random, int numLines, int lineLength) {
+    String alphabet = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789|,; ";
+    String[] lines = new String[numLines];
+    StringBuilder builder = new StringBuilder(lineLength);
+    for (int i = 0; i < numLines; i++) {
+      builder.setLength(0);
+      for (int j = 0; j < lineLength; j++) {
+        builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+      lines[i] = builder.toString();
+    }
+    return lines;
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts the data checked by a benchmark. JMH reports each field as a rate in the output time unit of the
+ * benchmark, so with seconds these are MB/s and files/s. The size counted is the size of the files checked, not
+ * the number of bytes read, so a check that stops early counts the whole file.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class ScanThroughput {
+  public double megabytes;
+  public double files;
+
+  @Setup(Level.Iteration)
+  public void reset() {
+    megabytes = 0;
+    files = 0;
+  }
+
+  void add(long bytes, int fileCount) {
+    megabytes += (double) bytes / BenchmarkData.MB;
+    files += fileCount;
+  }
+}
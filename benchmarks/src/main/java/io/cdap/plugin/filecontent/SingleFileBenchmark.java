@@ -0,0 +1,93 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the action on a single generated file, which checks the file for all of the contents patterns the way
+ * {@code hasContentsSingleFile} used to. With "absent" patterns, the whole file is scanned before the check fails.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SingleFileBenchmark {
+
+  @Param({"1", "64"})
+  private int fileSizeMb;
+
+  @Param({"80", "1000"})
+  private int lineLength;
+
+  @Param({"1", "5"})
+  private int patternCount;
+
+  @Param({"early", "late", "absent"})
+  private String matchPosition;
+
+  @Param({"reader", "bytes"})
+  private String scanMode;
+
+  private File directory;
+  private long fileSize;
+  private FileContentsAction action;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    directory = BenchmarkData.createDirectory();
+    File file = new File(directory, "data.txt");
+    fileSize = BenchmarkData.writeFile(file, fileSizeMb * BenchmarkData.MB, lineLength, patternCount,
+                                       matchPosition, new Random(0));
+    action = new FileContentsAction(FileContentsConfig.builder()
+                                      .setSourceFilePath(file.getAbsolutePath())
+                                      .setFileContentsRegex(BenchmarkData.patterns(patternCount))
+                                      .setFailOnEmptyFile(true)
+                                      .setScanMode(scanMode)
+                                      .build());
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    BenchmarkData.delete(directory);
+  }
+
+  @Benchmark
+  public void check(ScanThroughput throughput) throws Exception {
+    BenchmarkData.run(action);
+    throughput.add(fileSize, 1);
+  }
+}
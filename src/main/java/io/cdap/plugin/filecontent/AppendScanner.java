@@ -0,0 +1,213 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import javax.annotation.Nullable;
+
+/**
+ * Scans a file that is only appended to, resuming from the {@link ScanProgress} of the previous scan. The bytes just
+ * before the previous offset are compared against their checksum first, and the whole file is scanned again if
+ * they changed, since the file was then rewritten rather than appended to.
+ *
+ * Only complete lines are recorded in the new progress. Lines end at a {@code \n} or a {@code \r}, except for a
+ * {@code \r} that ends the file, which may be followed by a {@code \n} that has not been written yet. A last line
+ * without a line end may still be growing, so it is checked for this scan, but scanned again from its start the next
+ * time. A file whose byte order mark is of a charset that does not encode ASCII as single bytes is always scanned
+ * whole.
+ *
+ * Since every open of a file can be a round trip to an object store, the byte order mark, the checksums and the last
+ * line end are all read through one stream, and the last line, if it has no line end, is scanned from the bytes that
+ * were read to find it. Only the complete lines are scanned through a stream of their own.
+ */
+final class AppendScanner {
+  // the number of bytes before the offset that are compared to tell an append from a rewrite
+  static final int CHECKSUM_BYTES = 4096;
+  private static final int SEARCH_BUFFER_SIZE = 64 * 1024;
+
+  private final MultiPatternMatcher matcher;
+  private final FileContentsConfig.ScanMode scanMode;
+  private final LineLimit lineLimit;
+  private final TextEncoding encoding;
+
+  /**
+   * Creates a scanner that decodes files with the given encoding, which must encode ASCII as single bytes for the
+   * line ends to be found in the bytes.
+   */
+  AppendScanner(MultiPatternMatcher matcher, FileContentsConfig.ScanMode scanMode, LineLimit lineLimit,
+                TextEncoding encoding) {
+    this.matcher = matcher;
+    this.scanMode = scanMode;
+    this.lineLimit = lineLimit;
+    this.encoding = encoding;
+  }
+
+  /**
+   * Scans the file from the previous progress, if it still applies, or from the start. The result holds the new
+   * progress.
+   */
+  ScanResult scan(FileSystem fileSystem, FileStatus file, @Nullable ScanProgress previous) throws IOException {
+    long length = file.getLen();
+    long start = 0;
+    boolean[] found = new boolean[matcher.size()];
+    TextEncoding.Bom bom;
+    Tail tail;
+    try (FSDataInputStream in = fileSystem.open(file.getPath())) {
+      bom = encoding.isDetectBom() ? LineReaders.readBom(in) : null;
+      if (!TextEncoding.isAsciiCompatible(encoding.getCharset(bom))) {
+        // the line ends of a file whose byte order mark overrides the charset cannot be found in the bytes, so it is
+        // scanned whole, without progress to resume from
+        ScanResult whole = scanRange(fileSystem, file, 0, length, new boolean[matcher.size()]);
+        return new ScanResult(whole.getFound(), whole.getBytesRead(), whole.getLinesScanned(), length,
+                              whole.isEarlyExit());
+      }
+      if (previous != null && previous.getOffset() <= length
+        && checksum(in, previous.getOffset()) == previous.getChecksum()) {
+        start = previous.getOffset();
+        found = previous.getFound().clone();
+      }
+      tail = Tail.read(in, start, length);
+    }
+    long end = tail.lineEnd;
+    long bytesRead = 0;
+    long lines = 0;
+    boolean earlyExit = start > 0;
+    if (end > start && !allFound(found)) {
+      ScanResult complete = scanRange(fileSystem, file, start, end, found);
+      found = complete.getFound();
+      bytesRead += complete.getBytesRead();
+      lines += complete.getLinesScanned();
+      earlyExit |= complete.isEarlyExit();
+    }
+    ScanProgress progress = new ScanProgress(end, found, tail.checksum);
+    if (end < length && allFound(found)) {
+      earlyExit = true;
+    } else if (end < length) {
+      ScanResult partial = tail.contains(end, length) ?
+        new ContentsScanner(matcher).scan(
+          LineReaders.open(tail.stream(end, length), scanMode, lineLimit,
+                           end == 0 ? encoding : encoding.withoutBom(bom)),
+          length - end, Long.MAX_VALUE, found) :
+        scanRange(fileSystem, file, end, length, found);
+      found = partial.getFound();
+      bytesRead += partial.getBytesRead();
+      lines += partial.getLinesScanned();
+    }
+    return new ScanResult(found, bytesRead, lines, length, earlyExit, progress);
+  }
+
+  private ScanResult scanRange(FileSystem fileSystem, FileStatus file, long start, long end,
+                               boolean[] found) throws IOException {
+    return new ContentsScanner(matcher).scan(
+      LineReaders.open(fileSystem, file, null, scanMode, lineLimit, start, end - start, encoding), end - start,
+      Long.MAX_VALUE,
+      found);
+  }
+
+  /**
+   * Returns the checksum of the bytes just before the given offset.
+   */
+  private static long checksum(FSDataInputStream in, long offset) throws IOException {
+    int size = (int) Math.min(offset, CHECKSUM_BYTES);
+    byte[] bytes = new byte[size];
+    if (size > 0) {
+      in.readFully(offset - size, bytes);
+    }
+    return checksum(bytes, 0, size);
+  }
+
+  private static long checksum(byte[] bytes, int offset, int length) {
+    CRC32 crc = new CRC32();
+    crc.update(bytes, offset, length);
+    return crc.getValue();
+  }
+
+  private static boolean allFound(boolean[] found) {
+    for (boolean f : found) {
+      if (!f) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * The end of the last complete line of a file, the checksum of the bytes before it, and the last bytes that were
+   * read to find it.
+   */
+  private static final class Tail {
+    private final long lineEnd;
+    private final long checksum;
+    private final byte[] buffer;
+    // the offset in the file of the first byte of the buffer
+    private final long position;
+    private final int size;
+
+    private Tail(long lineEnd, long checksum, byte[] buffer, long position, int size) {
+      this.lineEnd = lineEnd;
+      this.checksum = checksum;
+      this.buffer = buffer;
+      this.position = position;
+      this.size = size;
+    }
+
+    /**
+     * Searches the file backwards from the end for the last line end after the start, and reads the checksum of the
+     * bytes before it, from the search buffer where it holds them.
+     */
+    static Tail read(FSDataInputStream in, long start, long end) throws IOException {
+      byte[] buffer = new byte[(int) Math.min(SEARCH_BUFFER_SIZE, Math.max(0, end - start))];
+      long position = end;
+      int size = 0;
+      // a line end is always past the start, so the start means that none was found yet
+      long lineEnd = start;
+      while (position > start && lineEnd == start) {
+        size = (int) Math.min(buffer.length, position - start);
+        position -= size;
+        in.readFully(position, buffer, 0, size);
+        for (int i = size - 1; i >= 0 && lineEnd == start; i--) {
+          if (buffer[i] == '\n' || (buffer[i] == '\r' && position + i < end - 1)) {
+            lineEnd = position + i + 1;
+          }
+        }
+      }
+      long checksumStart = Math.max(0, lineEnd - CHECKSUM_BYTES);
+      long checksum = checksumStart >= position && lineEnd <= position + size ?
+        checksum(buffer, (int) (checksumStart - position), (int) (lineEnd - checksumStart)) :
+        AppendScanner.checksum(in, lineEnd);
+      return new Tail(lineEnd, checksum, buffer, position, size);
+    }
+
+    /**
+     * Returns true if the buffer holds the bytes between the given offsets.
+     */
+    boolean contains(long from, long to) {
+      return from >= position && to <= position + size;
+    }
+
+    InputStream stream(long from, long to) {
+      return new ByteArrayInputStream(buffer, (int) (from - position), (int) (to - from));
+    }
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A pool of byte buffers of one size, shared by the threads of a run, so that large read buffers are reused from
+ * file to file rather than allocated for each. Buffers that are released while the pool is full are dropped.
+ */
+final class BufferPool {
+  private final int bufferSize;
+  private final BlockingQueue<ByteBuffer> pooled;
+
+  BufferPool(int bufferSize, int maxPooled) {
+    this.bufferSize = bufferSize;
+    this.pooled = new ArrayBlockingQueue<>(maxPooled);
+  }
+
+  int getBufferSize() {
+    return bufferSize;
+  }
+
+  /**
+   * Returns a cleared buffer from the pool, or a new one if the pool is empty.
+   */
+  ByteBuffer acquire() {
+    ByteBuffer buffer = pooled.poll();
+    if (buffer == null) {
+      return ByteBuffer.allocate(bufferSize);
+    }
+    buffer.clear();
+    return buffer;
+  }
+
+  void release(ByteBuffer buffer) {
+    pooled.offer(buffer);
+  }
+
+  /**
+   * Returns the number of buffers that are waiting in the pool to be reused.
+   */
+  int getPooled() {
+    return pooled.size();
+  }
+}
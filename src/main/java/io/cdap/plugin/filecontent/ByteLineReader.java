@@ -0,0 +1,371 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link LineReader} that finds line boundaries directly in a reused byte buffer, for charsets that encode ASCII
+ * as single bytes. Lines that are pure ASCII are returned as a view over the buffer without being decoded, and
+ * other lines are decoded into a reused {@link CharBuffer}, so reading a line does not allocate in the common case.
+ * In ISO-8859-1, where every byte is the character with the same value, and for UTF-8 if the lines are matched as
+ * their bytes, no line is ever decoded.
+ *
+ * Lines longer than the {@link LineLimit} are failed, truncated or returned as overlapping windows without being
+ * buffered whole, so the buffer never grows beyond the maximum line length. A line is only cut at the start of a
+ * UTF-8 character.
+ */
+final class ByteLineReader implements LineReader {
+  private final ReadableByteChannel channel;
+  private final long limit;
+  private final LineLimit lineLimit;
+  private final ByteSequence byteLine = new ByteSequence();
+  private final CharsetDecoder decoder;
+  // whether every line is returned as a view over its bytes
+  private final boolean undecoded;
+  private final boolean utf8Bytes;
+  private CharBuffer decodedLine = CharBuffer.allocate(256);
+
+  private byte[] buffer;
+  // views over 'buffer', replaced when it grows
+  private ByteBuffer readBuffer;
+  private ByteBuffer lineBuffer;
+  // unread bytes are buffer[start, end)
+  private int start;
+  private int end;
+  private long bytesRead;
+  // whether the previous line ended with \r, in which case a following \n is part of its terminator
+  private boolean skipLineFeed;
+  // whether the rest of the current line is to be skipped, because it was truncated
+  private boolean discarding;
+  // whether the last line returned was a window of a line that continues after it
+  private boolean inLongLine;
+  // the number of bytes to skip at the start of the input, such as a byte order mark
+  private int skip;
+
+  ByteLineReader(ReadableByteChannel channel, int bufferSize) {
+    this(channel, bufferSize, Long.MAX_VALUE);
+  }
+
+  /**
+   * Creates a reader that reads at most {@code limit} bytes from the channel.
+   */
+  ByteLineReader(ReadableByteChannel channel, int bufferSize, long limit) {
+    this(channel, bufferSize, limit, LineLimit.NONE);
+  }
+
+  /**
+   * Creates a reader that reads at most {@code limit} bytes from the channel and applies the given line limit.
+   */
+  ByteLineReader(ReadableByteChannel channel, int bufferSize, long limit, LineLimit lineLimit) {
+    this(channel, bufferSize, limit, lineLimit, StandardCharsets.UTF_8, 0, false);
+  }
+
+  /**
+   * Creates a reader that decodes the lines that are not ASCII with the given charset, which must encode ASCII as
+   * single bytes.
+   *
+   * @param skip the number of bytes to skip at the start of the channel, such as a byte order mark
+   * @param utf8Bytes whether lines in UTF-8 are returned as their bytes, one character per byte, without decoding
+   */
+  ByteLineReader(ReadableByteChannel channel, int bufferSize, long limit, LineLimit lineLimit, Charset charset,
+                 int skip, boolean utf8Bytes) {
+    this.channel = channel;
+    this.limit = limit;
+    this.lineLimit = lineLimit;
+    this.decoder = charset.newDecoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    this.utf8Bytes = utf8Bytes && charset.equals(StandardCharsets.UTF_8);
+    this.undecoded = this.utf8Bytes || TextEncoding.isSingleByte(charset);
+    this.skip = skip;
+    setBuffer(new byte[bufferSize]);
+  }
+
+  @Nullable
+  @Override
+  public CharSequence readLine() throws IOException {
+    if (skipLineFeed || discarding || skip > 0) {
+      getPosition();
+    }
+    inLongLine = false;
+    int i = start;
+    // the bitwise or of all bytes in the line, negative if any of them is not ASCII
+    int bits = 0;
+    while (true) {
+      // stop one byte past the maximum length, at which point the line is known to be too long
+      int stop = end - start > lineLimit.maxLength ? start + lineLimit.maxLength + 1 : end;
+      while (i < stop) {
+        byte b = buffer[i];
+        if (b == '\n' || b == '\r') {
+          CharSequence line = line(start, i, bits);
+          start = i + 1;
+          skipLineFeed = b == '\r';
+          return line;
+        }
+        bits |= b;
+        i++;
+      }
+      if (i - start > lineLimit.maxLength) {
+        return longLine();
+      }
+      int scanned = i - start;
+      if (!fill()) {
+        if (start == end) {
+          return null;
+        }
+        CharSequence line = line(start, end, bits);
+        start = end;
+        return line;
+      }
+      i = start + scanned;
+    }
+  }
+
+  @Override
+  public void skipLine() throws IOException {
+    discarding = true;
+    inLongLine = false;
+    getPosition();
+  }
+
+  /**
+   * Returns true if the last line returned was a window of a longer line, and the next line read continues it.
+   */
+  boolean isInLongLine() {
+    return inLongLine;
+  }
+
+  @Override
+  public long getBytesRead() {
+    return bytesRead;
+  }
+
+  /**
+   * Returns the offset from the start of the channel at which the next line starts. This may have to read ahead to
+   * find out if the last line ended with {@code \r\n}, or to skip the rest of a truncated line, so the line
+   * returned last is no longer valid afterwards.
+   */
+  long getPosition() throws IOException {
+    skipStart();
+    consumeLineFeed();
+    if (discarding) {
+      discardRestOfLine();
+      consumeLineFeed();
+    }
+    return bytesRead - (end - start);
+  }
+
+  @Override
+  public boolean isUtf8Bytes() {
+    return utf8Bytes;
+  }
+
+  private void skipStart() throws IOException {
+    while (skip > 0 && (start < end || fill())) {
+      int skipped = Math.min(skip, end - start);
+      start += skipped;
+      skip -= skipped;
+    }
+    skip = 0;
+  }
+
+  private void consumeLineFeed() throws IOException {
+    if (skipLineFeed) {
+      skipLineFeed = false;
+      if ((start < end || fill()) && buffer[start] == '\n') {
+        start++;
+      }
+    }
+  }
+
+  private void discardRestOfLine() throws IOException {
+    discarding = false;
+    while (true) {
+      for (int i = start; i < end; i++) {
+        byte b = buffer[i];
+        if (b == '\n' || b == '\r') {
+          start = i + 1;
+          skipLineFeed = b == '\r';
+          return;
+        }
+      }
+      start = end;
+      if (!fill()) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Handles a line that has more than the maximum number of bytes, all of which are in the buffer from
+   * {@code start}.
+   */
+  private CharSequence longLine() throws IOException {
+    int maxEnd = start + lineLimit.maxLength;
+    CharSequence line;
+    switch (lineLimit.policy) {
+      case TRUNCATE:
+        int cut = charStart(maxEnd);
+        line = line(start, cut, bits(start, cut));
+        start = cut;
+        discarding = true;
+        return line;
+      case WINDOW:
+        int windowEnd = charStart(maxEnd);
+        line = line(start, windowEnd, bits(start, windowEnd));
+        int next = charStart(start + lineLimit.getWindowStep());
+        start = next > start ? next : start + lineLimit.getWindowStep();
+        inLongLine = true;
+        return line;
+      default:
+        throw lineLimit.tooLong("bytes");
+    }
+  }
+
+  /**
+   * Returns the given position in the current line, moved back to the start of the UTF-8 character it is in,
+   * unless that is the start of the line.
+   */
+  private int charStart(int position) {
+    int i = position;
+    while (i > start && (buffer[i] & 0xc0) == 0x80) {
+      i--;
+    }
+    return i == start ? position : i;
+  }
+
+  private int bits(int from, int to) {
+    int bits = 0;
+    for (int i = from; i < to; i++) {
+      bits |= buffer[i];
+    }
+    return bits;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Moves the unread bytes to the front of the buffer, growing it if it is full, and reads more input after them.
+   *
+   * @return false if the end of the input was reached
+   */
+  private boolean fill() throws IOException {
+    int unread = end - start;
+    if (start > 0) {
+      System.arraycopy(buffer, start, buffer, 0, unread);
+    } else if (unread == buffer.length) {
+      byte[] grown = new byte[buffer.length * 2];
+      System.arraycopy(buffer, 0, grown, 0, unread);
+      setBuffer(grown);
+    }
+    start = 0;
+    end = unread;
+    long allowed = limit - bytesRead;
+    if (allowed <= 0) {
+      return false;
+    }
+    readBuffer.clear();
+    readBuffer.limit((int) Math.min(buffer.length, end + allowed));
+    readBuffer.position(end);
+    int n;
+    do {
+      n = channel.read(readBuffer);
+    } while (n == 0);
+    if (n < 0) {
+      return false;
+    }
+    bytesRead += n;
+    end += n;
+    return true;
+  }
+
+  private void setBuffer(byte[] buffer) {
+    this.buffer = buffer;
+    this.readBuffer = ByteBuffer.wrap(buffer);
+    this.lineBuffer = ByteBuffer.wrap(buffer);
+  }
+
+  private CharSequence line(int from, int to, int bits) {
+    if (bits >= 0 || undecoded) {
+      byteLine.set(buffer, from, to - from);
+      return byteLine;
+    }
+    int length = to - from;
+    if (decodedLine.capacity() < length) {
+      decodedLine = CharBuffer.allocate(Math.max(length, decodedLine.capacity() * 2));
+    }
+    lineBuffer.clear();
+    lineBuffer.limit(to).position(from);
+    decodedLine.clear();
+    decoder.reset();
+    decoder.decode(lineBuffer, decodedLine, true);
+    decoder.flush(decodedLine);
+    decodedLine.flip();
+    return decodedLine;
+  }
+
+  /**
+   * A {@link CharSequence} over a range of bytes, with one character per byte as ISO-8859-1 decodes them, which for
+   * ASCII bytes is also how every charset that this reader supports decodes them.
+   */
+  static final class ByteSequence implements CharSequence {
+    private byte[] bytes;
+    private int offset;
+    private int length;
+
+    void set(byte[] bytes, int offset, int length) {
+      this.bytes = bytes;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    @Override
+    public int length() {
+      return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+      if (index < 0 || index >= length) {
+        throw new IndexOutOfBoundsException(String.valueOf(index));
+      }
+      return (char) (bytes[offset + index] & 0xff);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return toString().substring(start, end);
+    }
+
+    @Override
+    public String toString() {
+      return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+    }
+  }
+}
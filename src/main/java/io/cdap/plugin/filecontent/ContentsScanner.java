@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import javax.annotation.Nullable;
+
+/**
+ * Scans a stream line by line for a set of patterns. A pattern is no longer evaluated once it has matched
+ * a line, and the scan stops as soon as every pattern has matched, unless it is set to read to the end.
+ */
+final class ContentsScanner {
+  // how often, in lines, to check whether the scan has been cancelled
+  private static final long INTERRUPT_CHECK_MASK = 0x3ff;
+
+  private final MultiPatternMatcher matcher;
+  private final boolean readToEnd;
+
+  ContentsScanner(MultiPatternMatcher matcher) {
+    this(matcher, false);
+  }
+
+  /**
+   * @param readToEnd whether to read every line, even once all the patterns have matched
+   */
+  ContentsScanner(MultiPatternMatcher matcher, boolean readToEnd) {
+    this.matcher = matcher;
+    this.readToEnd = readToEnd;
+  }
+
+  /**
+   * Scans the given stream for the patterns, reading it with a {@link TextLineReader}. The stream is always closed
+   * before this method returns, which may be before its end has been reached.
+   *
+   * @param in the stream to scan
+   * @param length the length of the stream in bytes, or -1 if it is not known
+   */
+  ScanResult scan(InputStream in, long length) throws IOException {
+    return scan(new TextLineReader(in), length);
+  }
+
+  /**
+   * Scans the lines from the given reader for the patterns. The reader is always closed before this method
+   * returns, which may be before its end has been reached.
+   *
+   * @param reader the reader to scan
+   * @param length the length of the input in bytes, or -1 if it is not known
+   */
+  ScanResult scan(LineReader reader, long length) throws IOException {
+    return scan(reader, length, Long.MAX_VALUE);
+  }
+
+  /**
+   * Scans at most {@code maxLines} lines from the given reader for the patterns. The reader is always closed before
+   * this method returns.
+   *
+   * @param reader the reader to scan
+   * @param length the length of the input in bytes, or -1 if it is not known
+   * @param maxLines the maximum number of lines to scan
+   */
+  ScanResult scan(LineReader reader, long length, long maxLines) throws IOException {
+    return scan(reader, length, maxLines, null);
+  }
+
+  /**
+   * Scans at most {@code maxLines} lines from the given reader for the patterns, continuing a scan in which some of
+   * the patterns have already been found. The reader is always closed before this method returns.
+   *
+   * @param reader the reader to scan
+   * @param length the length of the input in bytes, or -1 if it is not known
+   * @param maxLines the maximum number of lines to scan
+   * @param found the patterns that have already been found, indexed like the patterns, or null if none has
+   */
+  ScanResult scan(LineReader reader, long length, long maxLines, @Nullable boolean[] found) throws IOException {
+    MultiPatternMatcher.State state = matcher.newState(reader);
+    for (int i = 0; found != null && i < found.length; i++) {
+      if (found[i]) {
+        state.markFound(i);
+      }
+    }
+    long lines = 0;
+    boolean eof = false;
+
+    try (LineReader lineReader = reader) {
+      while ((readToEnd || !state.allFound()) && lines < maxLines) {
+        CharSequence line = lineReader.readLine();
+        if (line == null) {
+          eof = true;
+          break;
+        }
+        lines++;
+        if ((lines & INTERRUPT_CHECK_MASK) == 0 && Thread.currentThread().isInterrupted()) {
+          throw new InterruptedIOException("Interrupted while scanning");
+        }
+        if (!state.allFound()) {
+          state.match(line);
+        }
+      }
+    }
+    return new ScanResult(state.getFound(), reader.getBytesRead(), lines, length, !eof);
+  }
+}
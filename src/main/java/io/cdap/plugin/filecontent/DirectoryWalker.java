@@ -0,0 +1,168 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.fs.RemoteIterator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
+
+/**
+ * Walks a directory tree down to a maximum depth, listing subdirectories concurrently. The files found are handed
+ * out through a bounded queue as soon as they are listed, so that they can be checked while the rest of the tree
+ * is still being listed. Listing pauses while the queue is full, which bounds memory use for very large trees.
+ */
+final class DirectoryWalker implements RemoteIterator<FileStatus>, Closeable {
+  // number of listed files that may wait to be checked
+  static final int QUEUE_SIZE = 1024;
+  // marks the end of the walk in the queue
+  private static final FileStatus END = new FileStatus();
+
+  private final FileSystem fileSystem;
+  private final PathFilter filter;
+  private final int maxDepth;
+  private final boolean streamListing;
+  private final ExecutorService executor;
+  // bounds the number of concurrent listings, since the executor may start a virtual thread per directory
+  private final Semaphore listings;
+  private final BlockingQueue<FileStatus> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+  // directories that are being listed or waiting to be listed
+  private final AtomicInteger pending = new AtomicInteger();
+  private final AtomicReference<IOException> failure = new AtomicReference<>();
+  @Nullable
+  private FileStatus next;
+  private boolean done;
+
+  /**
+   * Creates a walker.
+   *
+   * @param filter the filter that files have to be accepted by, at every level. Directories are not filtered.
+   * @param maxDepth the number of levels of subdirectories to descend into, where 0 only lists the root
+   * @param streamListing whether each directory is listed incrementally instead of with a single call
+   * @param threads the number of directories to list concurrently
+   */
+  DirectoryWalker(FileSystem fileSystem, PathFilter filter, int maxDepth, boolean streamListing, int threads) {
+    this.fileSystem = fileSystem;
+    this.filter = filter;
+    this.maxDepth = maxDepth;
+    this.streamListing = streamListing;
+    this.executor = ParallelFileChecker.newExecutor(threads);
+    this.listings = new Semaphore(threads);
+  }
+
+  /**
+   * Starts walking the tree under the given directory, returning the files found.
+   */
+  RemoteIterator<FileStatus> walk(Path root) {
+    pending.incrementAndGet();
+    executor.execute(() -> list(root, 0));
+    return this;
+  }
+
+  private void list(Path directory, int depth) {
+    try {
+      listings.acquire();
+    } catch (InterruptedException e) {
+      // the walk was closed
+      Thread.currentThread().interrupt();
+      return;
+    }
+    try {
+      RemoteIterator<? extends FileStatus> entries = streamListing ?
+        fileSystem.listLocatedStatus(directory) : FileListing.iterate(fileSystem.listStatus(directory));
+      while (entries.hasNext() && failure.get() == null) {
+        FileStatus entry = entries.next();
+        if (entry.isDirectory()) {
+          if (depth < maxDepth) {
+            pending.incrementAndGet();
+            executor.execute(() -> list(entry.getPath(), depth + 1));
+          }
+        } else if (filter.accept(entry.getPath())) {
+          queue.put(entry);
+        }
+      }
+    } catch (InterruptedException e) {
+      // the walk was closed
+      Thread.currentThread().interrupt();
+      return;
+    } catch (IOException e) {
+      failure.compareAndSet(null, e);
+    } catch (RuntimeException e) {
+      failure.compareAndSet(null, new IOException(String.format("Failed listing directory %s", directory), e));
+    } finally {
+      listings.release();
+    }
+    if (pending.decrementAndGet() == 0 || failure.get() != null) {
+      try {
+        queue.put(END);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @Override
+  public boolean hasNext() throws IOException {
+    if (next == null && !done) {
+      try {
+        next = queue.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while listing files");
+      }
+      if (next == END) {
+        next = null;
+        done = true;
+      }
+    }
+    if (done && failure.get() != null) {
+      throw failure.get();
+    }
+    return next != null;
+  }
+
+  @Override
+  public FileStatus next() throws IOException {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    FileStatus status = next;
+    next = null;
+    return status;
+  }
+
+  /**
+   * Stops listing directories.
+   */
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+/**
+ * Checks files the same way as the action, but as units of work that can be spread across machines. The files are
+ * listed and planned on one machine, the driver, into a {@link Unit} per file, or per range of a file that is split.
+ * The units are checked in partitions elsewhere, and the results of the ranges of each split file are merged back on
+ * the driver, which then has the outcome of every file. Unlike the action, every file is checked, and all the files
+ * that fail the checks are reported together.
+ *
+ * Nothing here depends on how the units are distributed, which is up to the caller.
+ */
+final class DistributedCheck {
+  private static final Logger LOG = LoggerFactory.getLogger(DistributedCheck.class);
+
+  private final FileContentsConfig config;
+  private final FileScanner scanner;
+  private final List<Unit> units = new ArrayList<>();
+  // the files that failed by their size alone, when they are not in the sample
+  private final Map<String, ResultCache.Outcome> failedBySize = new HashMap<>();
+
+  /**
+   * @param scanner the scanner on the driver, which decides how each file is checked
+   */
+  DistributedCheck(FileContentsConfig config, FileScanner scanner) {
+    this.config = config;
+    this.scanner = scanner;
+  }
+
+  /**
+   * Plans the units that check the listed files. If files are sampled, only the files in the sample are planned, and
+   * the others are checked by their size on the spot.
+   *
+   * @return the number of files planned
+   */
+  int plan(RemoteIterator<FileStatus> listed) throws IOException {
+    FileSampler sampler = FileSampler.of(config);
+    RemoteIterator<FileStatus> files = sampler.isSamplingFiles() ? sampler.sample(listed, this::checkSize) : listed;
+    int planned = 0;
+    while (files.hasNext()) {
+      FileStatus file = files.next();
+      if (scanner.isScanned(file) && scanner.isSplit(file)) {
+        List<SplitScanner.Range> ranges = scanner.newSplitScanner(file).split(scanner.getFileSystem(), file);
+        if (sampler.isSamplingRanges()) {
+          ranges = sampler.sampleRanges(file.getPath(), ranges);
+        }
+        for (SplitScanner.Range range : ranges) {
+          units.add(new Unit(file, range.start, range.end));
+        }
+      } else {
+        units.add(new Unit(file, 0, -1));
+      }
+      planned++;
+    }
+    return planned;
+  }
+
+  List<Unit> getUnits() {
+    return units;
+  }
+
+  /**
+   * Checks a partition of the units, with a scanner of its own that is closed once they are all checked.
+   *
+   * @param configuration the configuration of the driver, which the files are read with
+   */
+  static List<UnitResult> checkPartition(FileContentsConfig config, Configuration configuration,
+                                         Iterator<Unit> partition) throws IOException {
+    List<UnitResult> results = Collections.synchronizedList(new ArrayList<>());
+    if (!partition.hasNext()) {
+      return results;
+    }
+    List<Pattern> patterns = config.getContentsPatterns();
+    ScanMetrics metrics = new ScanMetrics(patterns);
+    Path source = new Path(config.getSourceFilePath());
+    try (FileScanner scanner = new FileScanner(config, source.getFileSystem(configuration),
+                                               MultiPatternMatcher.of(config, patterns, metrics),
+                                               new CompressionCodecFactory(configuration), metrics, null)) {
+      new ParallelFileChecker(config.getConcurrency()).checkAll(partition, unit -> {
+        FileStatus file = unit.getStatus();
+        if (unit.isRange()) {
+          SplitScanner.Range range = new SplitScanner.Range(unit.start, unit.end);
+          results.add(new UnitResult(unit, null, scanner.scanRanges(file, Collections.singletonList(range))));
+        } else {
+          ScanResult result = scanner.isScanned(file) ? scanner.scan(file) : null;
+          results.add(new UnitResult(unit, scanner.check(file, result), null));
+        }
+      });
+    }
+    LOG.info("Checked {} units. {}", results.size(), metrics.getSummary());
+    return results;
+  }
+
+  /**
+   * Merges the results of all the units, combining the ranges of each split file.
+   *
+   * @return the message for each file that failed the checks, by path
+   */
+  SortedMap<String, String> merge(Iterable<UnitResult> results) throws IOException {
+    Map<String, ResultCache.Outcome> outcomes = new HashMap<>(failedBySize);
+    Map<String, UnitResult> ranges = new HashMap<>();
+    for (UnitResult result : results) {
+      if (result.outcome != null) {
+        outcomes.put(result.unit.path, result.outcome);
+      } else {
+        ranges.merge(result.unit.path, result, UnitResult::combine);
+      }
+    }
+    for (UnitResult combined : ranges.values()) {
+      FileStatus file = combined.unit.getStatus();
+      // ranges that were sampled out or cancelled are not scanned, like the ranges of a file checked in one place
+      ScanResult result = new ScanResult(combined.found, combined.bytesRead, combined.linesScanned,
+                                         scanner.getCodec(file) == null ? file.getLen() : -1, true, null, null,
+                                         combined.startScanned);
+      outcomes.put(combined.unit.path, scanner.check(file, result));
+    }
+    SortedMap<String, String> failures = new TreeMap<>();
+    for (Map.Entry<String, ResultCache.Outcome> entry : outcomes.entrySet()) {
+      switch (entry.getValue()) {
+        case EMPTY:
+          failures.put(entry.getKey(), String.format("Empty file %s", entry.getKey()));
+          break;
+        case MISSING_CONTENTS:
+          failures.put(entry.getKey(), String.format("The pattern %s was not found in file %s",
+                                                     config.getFileContentsRegex(), entry.getKey()));
+          break;
+        default:
+      }
+    }
+    return failures;
+  }
+
+  /**
+   * Checks a file that is not in the sample by its size.
+   */
+  private void checkSize(FileStatus file) {
+    if (config.getFailOnEmptyFile() && file.getLen() == 0) {
+      failedBySize.put(file.getPath().toString(), ResultCache.Outcome.EMPTY);
+    }
+  }
+
+  /**
+   * A file to check, or a range of it if it is split.
+   */
+  static final class Unit implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String path;
+    private final long length;
+    private final long modificationTime;
+    private final long start;
+    // the end of the range, or -1 for a whole file
+    private final long end;
+
+    Unit(FileStatus file, long start, long end) {
+      this.path = file.getPath().toString();
+      this.length = file.getLen();
+      this.modificationTime = file.getModificationTime();
+      this.start = start;
+      this.end = end;
+    }
+
+    boolean isRange() {
+      return end >= 0;
+    }
+
+    /**
+     * Returns the status of the file as it was listed, which is all that checking it needs.
+     */
+    FileStatus getStatus() {
+      return new FileStatus(length, false, 0, 0, modificationTime, new Path(path));
+    }
+  }
+
+  /**
+   * The result of checking a unit: the outcome for a whole file, or the patterns found in a range.
+   */
+  static final class UnitResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final Unit unit;
+    @Nullable
+    private final ResultCache.Outcome outcome;
+    private final boolean[] found;
+    private final long bytesRead;
+    private final long linesScanned;
+    private final boolean startScanned;
+
+    UnitResult(Unit unit, @Nullable ResultCache.Outcome outcome, @Nullable ScanResult result) {
+      this.unit = unit;
+      this.outcome = outcome;
+      this.found = result == null ? new boolean[0] : result.getFound();
+      this.bytesRead = result == null ? 0 : result.getBytesRead();
+      this.linesScanned = result == null ? 0 : result.getLinesScanned();
+      this.startScanned = result != null && result.isStartScanned();
+    }
+
+    private UnitResult(Unit unit, boolean[] found, long bytesRead, long linesScanned, boolean startScanned) {
+      this.unit = unit;
+      this.outcome = null;
+      this.found = found;
+      this.bytesRead = bytesRead;
+      this.linesScanned = linesScanned;
+      this.startScanned = startScanned;
+    }
+
+    private static UnitResult combine(UnitResult a, UnitResult b) {
+      boolean[] found = new boolean[a.found.length];
+      for (int i = 0; i < found.length; i++) {
+        found[i] = a.found[i] || b.found[i];
+      }
+      return new UnitResult(a.unit, found, a.bytesRead + b.bytesRead, a.linesScanned + b.linesScanned,
+                            a.startScanned || b.startScanned);
+    }
+  }
+}
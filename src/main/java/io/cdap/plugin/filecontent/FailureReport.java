@@ -0,0 +1,169 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import io.cdap.cdap.etl.api.action.SettableArguments;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+
+/**
+ * The files that failed the checks in a run, gathered from all the threads that check files, so that a run reports
+ * every failure at once rather than only the first one. A file fails either because it is empty or because some of
+ * the patterns were not found in it.
+ *
+ * The failure that uses up the failure budget throws a {@link BudgetReachedException}, which cancels the checks that
+ * are still running like any failed check does, and so does every failure after it, which is not recorded. Once the
+ * checks have stopped, the report is sealed, after which failures are ignored, so that a check that was cancelled
+ * but is still finishing cannot change the report while it is published.
+ *
+ * The report is published as arguments for the stages that run after the action. Each empty file gets the argument
+ * {@code <prefix><path>.empty} set to true, and each file with missing patterns gets {@code <prefix><path>.missing}
+ * set to those patterns, separated by {@code ~} as they are configured. The number of files that failed is
+ * {@code <prefix>failures}, whether the budget cut the checks short is {@code <prefix>budgetReached}, and the message
+ * of the whole report is {@code <prefix>report}.
+ */
+final class FailureReport {
+  // sorted by path, so that the report lists the files in the same order on every run
+  private final SortedMap<String, List<String>> failures = new TreeMap<>();
+  @Nullable
+  private final Integer budget;
+  private boolean budgetReached;
+  private boolean sealed;
+
+  /**
+   * @param budget the number of failed files after which the remaining checks are cancelled, or null to check all
+   */
+  FailureReport(@Nullable Integer budget) {
+    this.budget = budget;
+  }
+
+  /**
+   * Records an empty file.
+   *
+   * @throws BudgetReachedException if the file uses up the failure budget, or it was used up before
+   */
+  void addEmpty(String path) {
+    add(path, new ArrayList<>());
+  }
+
+  /**
+   * Records a file that some of the patterns were not found in.
+   *
+   * @param missing the missing patterns, as they are configured
+   * @throws BudgetReachedException if the file uses up the failure budget, or it was used up before
+   */
+  void addMissing(String path, List<String> missing) {
+    add(path, missing);
+  }
+
+  /**
+   * Stops recording failures, once the checks have stopped, so that the report no longer changes.
+   */
+  synchronized void seal() {
+    sealed = true;
+  }
+
+  synchronized boolean isEmpty() {
+    return failures.isEmpty();
+  }
+
+  synchronized boolean isBudgetReached() {
+    return budgetReached;
+  }
+
+  /**
+   * Returns the message for each file that failed, ordered by path.
+   */
+  synchronized List<String> getMessages() {
+    List<String> messages = new ArrayList<>();
+    for (Map.Entry<String, List<String>> entry : failures.entrySet()) {
+      messages.add(getMessage(entry.getKey(), entry.getValue()));
+    }
+    return messages;
+  }
+
+  /**
+   * Returns the message of the whole report.
+   */
+  synchronized String getMessage() {
+    StringBuilder message = new StringBuilder(String.format("%d files failed the checks", failures.size()));
+    if (budgetReached) {
+      message.append(String.format(", after which the remaining checks were cancelled as the failure budget is %d",
+                                   budget));
+    }
+    message.append(':');
+    for (String line : getMessages()) {
+      message.append('\n').append(line);
+    }
+    return message.toString();
+  }
+
+  /**
+   * Sets the arguments of the report, all of them from the same failures.
+   */
+  synchronized void publish(SettableArguments arguments, String prefix) {
+    for (Map.Entry<String, List<String>> entry : failures.entrySet()) {
+      String name = prefix + entry.getKey();
+      if (entry.getValue().isEmpty()) {
+        arguments.set(name + ".empty", "true");
+      } else {
+        arguments.set(name + ".missing", String.join("~", entry.getValue()));
+      }
+    }
+    arguments.set(prefix + "failures", String.valueOf(failures.size()));
+    arguments.set(prefix + "budgetReached", String.valueOf(budgetReached));
+    arguments.set(prefix + "report", getMessage());
+  }
+
+  private synchronized void add(String path, List<String> missing) {
+    if (sealed) {
+      return;
+    }
+    if (budgetReached) {
+      throw new BudgetReachedException();
+    }
+    failures.put(path, missing);
+    if (budget != null && failures.size() >= budget) {
+      budgetReached = true;
+      throw new BudgetReachedException();
+    }
+  }
+
+  private static String getMessage(String path, List<String> missing) {
+    if (missing.isEmpty()) {
+      return String.format("Empty file %s", path);
+    }
+    if (missing.size() == 1) {
+      return String.format("The pattern %s was not found in file %s", missing.get(0), path);
+    }
+    return String.format("The patterns %s were not found in file %s", String.join("~", missing), path);
+  }
+
+  /**
+   * Thrown when the failure budget has been used up, to stop checking files.
+   */
+  static final class BudgetReachedException extends RuntimeException {
+    BudgetReachedException() {
+      super("The failure budget has been reached");
+    }
+  }
+}
@@ -22,23 +22,24 @@ import io.cdap.cdap.api.annotation.Name;
 import io.cdap.cdap.api.annotation.Plugin;
 import io.cdap.cdap.etl.api.FailureCollector;
 import io.cdap.cdap.etl.api.PipelineConfigurer;
+import io.cdap.cdap.etl.api.StageMetrics;
 import io.cdap.cdap.etl.api.action.Action;
 import io.cdap.cdap.etl.api.action.ActionContext;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
-import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import javax.annotation.Nullable;
 
 /**
  * File Contents Action Plugin - Checks files for a specified regular expression
@@ -66,94 +67,187 @@ public class FileContentsAction extends Action {
 
   @Override
   public void run(ActionContext context) throws Exception {
+    // one configuration for validation and the run, so that both share the cached file system instance
+    Configuration configuration = new Configuration();
     FailureCollector failureCollector = context.getFailureCollector();
-    config.validate(failureCollector);
+    config.validate(failureCollector, configuration);
     failureCollector.getOrThrowException();
 
     Path source = new Path(config.getSourceFilePath());
-    List<Pattern> fileContentsRegexes = new ArrayList();
-    if (!Strings.isNullOrEmpty(config.getFileContentsRegex())) {
-      String[] splits = config.getFileContentsRegex().split("~");
-      for (String fileContentsRegexString : splits) {
-        fileContentsRegexes.add(Pattern.compile(fileContentsRegexString));
-      }
-    }
+    List<Pattern> patterns = config.getContentsPatterns();
+    ScanMetrics metrics = new ScanMetrics(patterns);
+    MultiPatternMatcher fileContentsRegexes = MultiPatternMatcher.of(config, patterns, metrics);
 
-    FileSystem fileSystem = source.getFileSystem(new Configuration());
+    FileSystem fileSystem = source.getFileSystem(configuration);
+    // a single status lookup tells whether the source is a file, a directory or possibly a glob
+    FileStatus sourceStatus = SourceListing.getStatus(fileSystem, source);
 
-    // Convert a single file
-    if (fileSystem.exists(source) && fileSystem.getFileStatus(source).isFile()) {
-      if (config.getFailOnEmptyFile() && fileSystem.getFileStatus(source).getLen() == 0) {
-        throw new EmptyFileException(String.format("Empty file %s",
-                                                 source.toString()));
+    RunStatistics statistics = config.isPublishStatistics() ? new RunStatistics() : null;
+    FileScanner scanner = new FileScanner(config, fileSystem, fileContentsRegexes,
+                                          new CompressionCodecFactory(configuration), metrics, statistics);
+    ResultCache cache = null;
+    if (!Strings.isNullOrEmpty(config.getCachePath())) {
+      Path cachePath = new Path(config.getCachePath());
+      cache = ResultCache.open(cachePath.getFileSystem(configuration), cachePath, config.getCheckSettings(),
+                               config.getCacheMaxEntries());
+    }
+    FailureReport report = config.isReportFailures() ? new FailureReport(config.getFailureBudget()) : null;
+    try {
+      try {
+        checkSource(source, sourceStatus, fileSystem, scanner, cache, report, metrics);
+      } catch (FailureReport.BudgetReachedException e) {
+        // the checks still running have been cancelled, and the report holds the files that failed so far
       }
-      if (fileContentsRegexes.size() > 0 &&
-          !hasContentsSingleFile(source, fileSystem, fileContentsRegexes)) {
-        throw new MissingContentsException(String.format("The pattern %s was not found in file %s",
-                                                 config.getFileContentsRegex(),
-                                                 source.toString()));
+      if (report != null) {
+        // the checks have stopped, but a cancelled one may still be finishing
+        report.seal();
+        String prefix = context.getStageName() + ".";
+        report.publish(context.getArguments(), prefix);
+        if (!report.isEmpty()) {
+          throw new FailedChecksException(report.getMessage(), report.getMessages());
+        }
       }
-    } else {
-      // Convert all the files in a directory
-      PathFilter filter = new PathFilter() {
-        private final Pattern pattern =
-          Pattern.compile(config.getFileRegex() == null ? ".*" : config.getFileRegex());
-
-        @Override
-        public boolean accept(Path path) {
-          return pattern.matcher(path.getName()).matches();
+      if (statistics != null) {
+        // only published once every file has passed, so that later stages never see a partial set
+        statistics.publish(context.getArguments(), context.getStageName() + ".");
+      }
+    } finally {
+      scanner.close();
+      if (cache != null) {
+        try {
+          // save the results of the files checked so far even if a check failed
+          cache.save();
+        } catch (IOException e) {
+          LOG.warn("Failed to save the result cache {}", config.getCachePath(), e);
         }
-      };
-      FileStatus[] listFiles = fileSystem.globStatus(source, filter);
-      if (listFiles == null || listFiles.length == 0 || (listFiles.length == 1 && listFiles[0].isDirectory())) {
-        // try again without globbing action
-        listFiles = fileSystem.listStatus(source, filter);
       }
+      StageMetrics stageMetrics = context.getMetrics();
+      // not every context provides metrics, for example when the action is run outside of a pipeline
+      if (stageMetrics != null) {
+        metrics.publish(stageMetrics);
+      }
+      LOG.info("Checked {}. {}", source, metrics.getSummary());
+    }
+  }
 
-      if (listFiles.length == 0) {
+  /**
+   * Checks the source file, or the files in the source directory or glob.
+   */
+  private void checkSource(Path source, @Nullable FileStatus sourceStatus, FileSystem fileSystem,
+                           FileScanner scanner, @Nullable ResultCache cache, @Nullable FailureReport report,
+                           ScanMetrics metrics) throws IOException {
+    // Convert a single file
+    if (sourceStatus != null && sourceStatus.isFile()) {
+      checkFile(sourceStatus, source.toString(), scanner, cache, report);
+    } else {
+      // Convert all the files in a directory
+      int checked = new SourceListing(config, fileSystem, metrics)
+        .list(source, sourceStatus, files -> checkFiles(files, scanner, cache, report));
+      if (checked == 0) {
         LOG.warn("Not converting any files from source {} matching regular expression",
                  source.toString(), config.getFileRegex());
       }
-      for (FileStatus file : listFiles) {
-        if (!file.isDirectory()) { // ignore directories
-          source = file.getPath();
-          if (config.getFailOnEmptyFile() && fileSystem.getFileStatus(source).getLen() == 0) {
-            throw new EmptyFileException(String.format("Empty file %s",
-                                                     source.toString()));
-          }
-          if (fileContentsRegexes.size() > 0 &&
-              !hasContentsSingleFile(source, fileSystem, fileContentsRegexes)) {
-            throw new MissingContentsException(String.format("The pattern %s was not found in file %s",
-                                                     config.getFileContentsRegex(),
-                                                     source.toString()));
-          }
-        }
+    }
+  }
+
+  /**
+   * Checks the listed files, in parallel if configured to. If files are sampled, only the files in the sample are
+   * checked in full, and the others only by their size.
+   *
+   * @return the number of files checked in full
+   */
+  private int checkFiles(RemoteIterator<FileStatus> listed, FileScanner scanner, @Nullable ResultCache cache,
+                         @Nullable FailureReport report) throws IOException {
+    FileSampler sampler = FileSampler.of(config);
+    RemoteIterator<FileStatus> files = sampler.isSamplingFiles() ?
+      sampler.sample(listed, file -> checkSize(file, report)) : listed;
+    if (config.getConcurrency() > 1) {
+      return new ParallelFileChecker(config.getConcurrency())
+        .checkAll(files, file -> checkFile(file, file.getPath().toString(), scanner, cache, report));
+    }
+    int checked = 0;
+    while (files.hasNext()) {
+      FileStatus file = files.next();
+      checkFile(file, file.getPath().toString(), scanner, cache, report);
+      checked++;
+    }
+    return checked;
+  }
+
+  /**
+   * Checks a file that is not in the sample, which only fails if it is empty, as far as its size tells.
+   */
+  private void checkSize(FileStatus file, @Nullable FailureReport report) {
+    if (config.getFailOnEmptyFile() && file.getLen() == 0) {
+      if (report != null) {
+        report.addEmpty(file.getPath().toString());
+        return;
       }
+      throw new EmptyFileException(String.format("Empty file %s", file.getPath()));
     }
   }
 
-  private boolean hasContentsSingleFile(Path source, FileSystem fileSystem,
-                                        List<Pattern> fileContentsPattern) throws IOException {
-    boolean[] found = new boolean[fileContentsPattern.size()];
-    try (BufferedReader br = new BufferedReader(new InputStreamReader(fileSystem.open(source)))) {
-      String line;
-      while ((line = br.readLine()) != null) {
-        for (int i = 0; i < fileContentsPattern.size(); i++) {
-          Matcher matcher = fileContentsPattern.get(i).matcher(line);
-          if (matcher.matches()) {
-            found[i] = true;
-          }
-        }
+  /**
+   * Checks a single file, throwing an {@link EmptyFileException} or a {@link MissingContentsException} if it fails
+   * the checks, or adding it to the report if failures are reported. If the file has not changed since it was last
+   * checked, the cached outcome is used instead.
+   *
+   * @param name the name of the file in error messages
+   */
+  private void checkFile(FileStatus file, String name, FileScanner scanner, @Nullable ResultCache cache,
+                         @Nullable FailureReport report) throws IOException {
+    ResultCache.Outcome outcome = cache == null ? null : cache.get(file);
+    // the cache does not keep which patterns were missing, which the report needs, so such files are scanned again
+    if (report != null && outcome == ResultCache.Outcome.MISSING_CONTENTS) {
+      outcome = null;
+    }
+    ScanResult result = null;
+    if (outcome == null) {
+      if (scanner.isScanned(file)) {
+        result = cache != null && scanner.isIncremental(file) ?
+          scanner.scanAppended(file, cache.getProgress(file)) : scanner.scan(file);
+      }
+      outcome = scanner.check(file, result);
+      if (cache != null) {
+        cache.put(file, outcome, result == null ? null : result.getProgress());
+      }
+    }
+    if (report != null) {
+      if (outcome == ResultCache.Outcome.EMPTY) {
+        report.addEmpty(name);
+      } else if (outcome == ResultCache.Outcome.MISSING_CONTENTS) {
+        report.addMissing(name, getMissing(result));
       }
-    } catch (IOException e) {
-      throw new IOException(String.format("Failed treading file %s", source.toString()), e);
+      return;
+    }
+    switch (outcome) {
+      case EMPTY:
+        throw new EmptyFileException(String.format("Empty file %s",
+                                                   name));
+      case MISSING_CONTENTS:
+        throw new MissingContentsException(String.format("The pattern %s was not found in file %s",
+                                                         config.getFileContentsRegex(),
+                                                         name));
+      default:
     }
+  }
+
+  /**
+   * Returns the patterns that the scan did not find, as they are configured.
+   */
+  private List<String> getMissing(@Nullable ScanResult result) {
+    List<String> expressions = config.getContentsExpressions();
+    if (result == null) {
+      return expressions;
+    }
+    boolean[] found = result.getFound();
+    List<String> missing = new ArrayList<>();
     for (int i = 0; i < found.length; i++) {
       if (!found[i]) {
-        return false;
+        missing.add(expressions.get(i));
       }
     }
-    return true;
+    return missing;
   }
 
   /**
@@ -174,4 +268,23 @@ public class FileContentsAction extends Action {
     }
   }
 
+  /**
+   * An exception for the files that failed the checks, all of which are reported at once
+   */
+  public class FailedChecksException extends RuntimeException {
+    private final List<String> failedFiles;
+
+    public FailedChecksException(String message, List<String> failedFiles) {
+      super(message);
+      this.failedFiles = Collections.unmodifiableList(new ArrayList<>(failedFiles));
+    }
+
+    /**
+     * Returns the message for each file that failed, ordered by path.
+     */
+    public List<String> getFailedFiles() {
+      return failedFiles;
+    }
+  }
+
 }
@@ -26,6 +26,12 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 import javax.annotation.Nullable;
@@ -38,6 +44,39 @@ public class FileContentsConfig extends PluginConfig {
   public static final String FILE_REGEX = "fileRegex";
   public static final String FILE_CONTENTS_REGEX = "fileContentsRegex";
   public static final String FAIL_ON_EMPTY_FILE = "failOnEmptyFile";
+  public static final String CONCURRENCY = "concurrency";
+  public static final String SCAN_MODE = "scanMode";
+  public static final String CONTENTS_REGION = "contentsRegion";
+  public static final String REGION_LINES = "regionLines";
+  public static final String REGION_BYTES = "regionBytes";
+  public static final String PATTERN_REGIONS = "patternRegions";
+  public static final String SPLIT_SIZE = "splitSize";
+  public static final String STREAM_LISTING = "streamListing";
+  public static final String RECURSIVE = "recursive";
+  public static final String MAX_DEPTH = "maxDepth";
+  public static final String CACHE_PATH = "cachePath";
+  public static final String CACHE_MAX_ENTRIES = "cacheMaxEntries";
+  public static final String MAX_LINE_LENGTH = "maxLineLength";
+  public static final String LONG_LINE_POLICY = "longLinePolicy";
+  public static final String MULTILINE_LINES = "multilineLines";
+  public static final String MULTILINE_BYTES = "multilineBytes";
+  public static final String PATTERN_SYNTAX = "patternSyntax";
+  public static final String INCREMENTAL = "incremental";
+  public static final String READ_AHEAD_SIZE = "readAheadSize";
+  public static final String READ_AHEAD_DEPTH = "readAheadDepth";
+  public static final String PUBLISH_STATISTICS = "publishStatistics";
+  public static final String DIGEST_ALGORITHM = "digestAlgorithm";
+  public static final String SAMPLE_COUNT = "sampleCount";
+  public static final String SAMPLE_PERCENT = "samplePercent";
+  public static final String SAMPLE_RANGE_PERCENT = "sampleRangePercent";
+  public static final String SAMPLE_SEED = "sampleSeed";
+  public static final String CHARSET = "charset";
+  public static final String DETECT_BOM = "detectBom";
+  public static final String REPORT_FAILURES = "reportFailures";
+  public static final String FAILURE_BUDGET = "failureBudget";
+
+  private static final int DEFAULT_CACHE_MAX_ENTRIES = 100000;
+  private static final int DEFAULT_READ_AHEAD_DEPTH = 2;
 
   @Name(SOURCE_FILE_PATH)
   @Macro
@@ -61,6 +100,236 @@ public class FileContentsConfig extends PluginConfig {
   @Description("Set to true if this plugin should fail if the file is empty.")
   private Boolean failOnEmptyFile;
 
+  @Name(CONCURRENCY)
+  @Macro
+  @Nullable
+  @Description("The maximum number of files to check in parallel when the source path is a directory or glob. " +
+    "Defaults to 1, which checks files one at a time.")
+  private Integer concurrency;
+
+  @Name(SCAN_MODE)
+  @Macro
+  @Nullable
+  @Description("How lines are read from the files. 'reader' decodes every line into a new string. 'bytes' finds " +
+    "lines directly in a reused byte buffer and only decodes lines that are not ASCII. " +
+    "Defaults to 'reader'.")
+  private String scanMode;
+
+  @Name(CONTENTS_REGION)
+  @Macro
+  @Nullable
+  @Description("The part of each file that the contents regular expressions must be found in. 'file' checks the " +
+    "whole file, 'header' the first lines or bytes and 'footer' the last lines or bytes. Defaults to 'file'.")
+  private String contentsRegion;
+
+  @Name(REGION_LINES)
+  @Macro
+  @Nullable
+  @Description("The number of lines at the start or end of the file to check when the region is 'header' or " +
+    "'footer'.")
+  private Integer regionLines;
+
+  @Name(REGION_BYTES)
+  @Macro
+  @Nullable
+  @Description("The number of bytes at the start or end of the file to check when the region is 'header' or " +
+    "'footer'. If the number of lines is also set, only the lines within these bytes are checked.")
+  private Long regionBytes;
+
+  @Name(PATTERN_REGIONS)
+  @Macro
+  @Nullable
+  @Description("The region of each contents regular expression, in the same order and also separated by ~. Each " +
+    "region is 'file', or 'header' or 'footer' followed by a colon and a number of lines, and optionally by " +
+    "another colon and a number of bytes, such as 'header:1', 'footer::4096' or 'footer:2:4096'. A header or " +
+    "footer without a size uses the region lines and bytes, and an empty region uses the contents region. If not " +
+    "set, every expression uses the contents region.")
+  private String patternRegions;
+
+  @Name(SPLIT_SIZE)
+  @Macro
+  @Nullable
+  @Description("If set, files larger than this many bytes are split into ranges of at most this size, along " +
+    "their block boundaries, and the ranges are scanned in parallel with the configured concurrency. " +
+    "Only applies when the whole file is checked.")
+  private Long splitSize;
+
+  @Name(STREAM_LISTING)
+  @Macro
+  @Nullable
+  @Description("If true, the files in a directory are listed incrementally and checked while the listing is " +
+    "still in progress, instead of listing the whole directory before the first check. Defaults to false.")
+  private Boolean streamListing;
+
+  @Name(RECURSIVE)
+  @Macro
+  @Nullable
+  @Description("If true and the source path is a directory, the files in its subdirectories are checked as well. " +
+    "The file regular expression is applied to the files at every level. Defaults to false.")
+  private Boolean recursive;
+
+  @Name(MAX_DEPTH)
+  @Macro
+  @Nullable
+  @Description("The maximum number of levels of subdirectories to descend into when checking recursively. " +
+    "Defaults to no limit.")
+  private Integer maxDepth;
+
+  @Name(CACHE_PATH)
+  @Macro
+  @Nullable
+  @Description("The path of a file that remembers which files passed or failed the checks, so that files that " +
+    "have not changed since the last run are not read again. If not set, every file is read on every run.")
+  private String cachePath;
+
+  @Name(CACHE_MAX_ENTRIES)
+  @Macro
+  @Nullable
+  @Description("The maximum number of files to remember in the result cache. The files that were checked least " +
+    "recently are evicted first. Defaults to 100000.")
+  private Integer cacheMaxEntries;
+
+  @Name(MAX_LINE_LENGTH)
+  @Macro
+  @Nullable
+  @Description("The maximum length of a line, in characters, or in bytes in the bytes scan mode. Longer lines are " +
+    "handled according to the long line policy, so that a file without line breaks cannot exhaust the memory. " +
+    "If not set, lines of any length are read.")
+  private Integer maxLineLength;
+
+  @Name(LONG_LINE_POLICY)
+  @Macro
+  @Nullable
+  @Description("What to do with a line that is longer than the maximum line length. 'fail' fails the check, " +
+    "'truncate' checks only the start of the line and 'window' checks the line in windows of the maximum " +
+    "length that overlap by half of it, each as if it were a line. Defaults to 'fail'.")
+  private String longLinePolicy;
+
+  @Name(MULTILINE_LINES)
+  @Macro
+  @Nullable
+  @Description("If set, the contents regular expressions are also matched against runs of up to this many " +
+    "consecutive lines, joined by '\\n', so that a pattern can span lines. A pattern is found if it matches from " +
+    "the start of a line to the end of a line within a run. Files are then never split.")
+  private Integer multilineLines;
+
+  @Name(MULTILINE_BYTES)
+  @Macro
+  @Nullable
+  @Description("If set, the contents regular expressions are also matched against runs of consecutive lines that " +
+    "take up to this many bytes, joined by '\\n'. Can be combined with the number of multiline lines.")
+  private Integer multilineBytes;
+
+  @Name(PATTERN_SYNTAX)
+  @Macro
+  @Nullable
+  @Description("How the contents regular expressions are interpreted. 'regex' treats each one as a regular " +
+    "expression that must match a whole line. 'fixed' treats each one as a plain string that must appear somewhere " +
+    "in a line, which is matched without the regular expression engine. Defaults to 'regex'.")
+  private String patternSyntax;
+
+  @Name(INCREMENTAL)
+  @Macro
+  @Nullable
+  @Description("If true, the result cache also stores how far each file was scanned, and a file that has only grown " +
+    "since it was last checked is scanned from there, with the patterns that were already found. A file that has " +
+    "shrunk, or has changed before that point, is scanned again in full. Requires a cache path. Only applies to " +
+    "uncompressed files, checked in full, outside of multiline mode. Defaults to false.")
+  private Boolean incremental;
+
+  @Name(READ_AHEAD_SIZE)
+  @Macro
+  @Nullable
+  @Description("If set, files are read ahead of the matching by a separate task, in chunks of this many bytes, " +
+    "so that reading the next chunk overlaps with matching the current one. Chunks are reused from a pool. Useful " +
+    "on file systems where each read waits for a round trip, such as object stores.")
+  private Integer readAheadSize;
+
+  @Name(READ_AHEAD_DEPTH)
+  @Macro
+  @Nullable
+  @Description("The number of chunks that may be read ahead of the matching for each file, when a read ahead size " +
+    "is set. Defaults to 2.")
+  private Integer readAheadDepth;
+
+  @Name(PUBLISH_STATISTICS)
+  @Macro
+  @Nullable
+  @Description("If true, each file is read to its end, even once every pattern has been found, to count its lines " +
+    "and bytes and compute its digest in the same pass as the check. The results are published as pipeline " +
+    "arguments for later stages. Requires the whole file region, and cannot be combined with a cache path or with " +
+    "sampling, as every file has to be read. Files are then never split. Defaults to false.")
+  private Boolean publishStatistics;
+
+  @Name(DIGEST_ALGORITHM)
+  @Macro
+  @Nullable
+  @Description("The digest of the bytes of each file, as stored, to publish with its statistics: 'none', 'crc32c', " +
+    "'md5' or 'sha256'. Defaults to 'none'.")
+  private String digestAlgorithm;
+
+  @Name(SAMPLE_COUNT)
+  @Macro
+  @Nullable
+  @Description("If set, only the contents of this many of the listed files are checked, chosen by a hash of their " +
+    "paths and the sample seed, so that the same files are chosen on every run. Every listed file still fails if " +
+    "it is empty, as far as its size tells. Cannot be combined with a sample percent, nor with publishing " +
+    "statistics.")
+  private Integer sampleCount;
+
+  @Name(SAMPLE_PERCENT)
+  @Macro
+  @Nullable
+  @Description("If set, only the contents of about this percentage of the listed files are checked, each chosen by a " +
+    "hash of its path and the sample seed, as it is listed. Every listed file still fails if it is empty, as far as " +
+    "its size tells. Cannot be combined with publishing statistics.")
+  private Double samplePercent;
+
+  @Name(SAMPLE_RANGE_PERCENT)
+  @Macro
+  @Nullable
+  @Description("If set, only about this percentage of the ranges of a split file are scanned, chosen by a hash of " +
+    "the path and offset of each range and the sample seed, and at least one range of each file. Patterns then " +
+    "have to be found within the ranges scanned. Requires a split size.")
+  private Double sampleRangePercent;
+
+  @Name(SAMPLE_SEED)
+  @Macro
+  @Nullable
+  @Description("The seed that files and ranges are sampled with. Runs with the same seed choose the same files and " +
+    "ranges. Defaults to 0.")
+  private Long sampleSeed;
+
+  @Name(CHARSET)
+  @Macro
+  @Nullable
+  @Description("The charset that files are decoded with, such as 'UTF-8', 'ISO-8859-1', 'UTF-16', 'UTF-16LE' or " +
+    "'UTF-16BE'. Files are split, and statistics published, only in charsets that encode ASCII as single bytes. " +
+    "Defaults to 'UTF-8'.")
+  private String charset;
+
+  @Name(DETECT_BOM)
+  @Macro
+  @Nullable
+  @Description("If true, a byte order mark at the start of a file overrides the charset, with the UTF-8 or " +
+    "UTF-16 charset it stands for, and is not part of the first line. Defaults to true.")
+  private Boolean detectBom;
+
+  @Name(REPORT_FAILURES)
+  @Macro
+  @Nullable
+  @Description("Whether to check every file and fail with a report of all the files that failed the checks, " +
+    "which patterns were missing from each and which files were empty, instead of failing on the first file. The " +
+    "report is also published as arguments. Defaults to false.")
+  private Boolean reportFailures;
+
+  @Name(FAILURE_BUDGET)
+  @Macro
+  @Nullable
+  @Description("In report mode, the number of failed files after which the remaining checks are cancelled and " +
+    "the run fails with the failures found so far. If not set, every file is checked.")
+  private Integer failureBudget;
+
   public FileContentsConfig(String sourceFilePath, String fileRegex, String fileContentsRegex,
                             Boolean failOnEmptyFile) {
     this.sourceFilePath = sourceFilePath;
@@ -74,6 +343,36 @@ public class FileContentsConfig extends PluginConfig {
     fileRegex = builder.fileRegex;
     fileContentsRegex = builder.fileContentsRegex;
     failOnEmptyFile = builder.failOnEmptyFile;
+    concurrency = builder.concurrency;
+    scanMode = builder.scanMode;
+    contentsRegion = builder.contentsRegion;
+    regionLines = builder.regionLines;
+    regionBytes = builder.regionBytes;
+    splitSize = builder.splitSize;
+    streamListing = builder.streamListing;
+    recursive = builder.recursive;
+    maxDepth = builder.maxDepth;
+    cachePath = builder.cachePath;
+    cacheMaxEntries = builder.cacheMaxEntries;
+    maxLineLength = builder.maxLineLength;
+    longLinePolicy = builder.longLinePolicy;
+    multilineLines = builder.multilineLines;
+    multilineBytes = builder.multilineBytes;
+    patternSyntax = builder.patternSyntax;
+    incremental = builder.incremental;
+    readAheadSize = builder.readAheadSize;
+    readAheadDepth = builder.readAheadDepth;
+    publishStatistics = builder.publishStatistics;
+    digestAlgorithm = builder.digestAlgorithm;
+    sampleCount = builder.sampleCount;
+    samplePercent = builder.samplePercent;
+    sampleRangePercent = builder.sampleRangePercent;
+    sampleSeed = builder.sampleSeed;
+    charset = builder.charset;
+    detectBom = builder.detectBom;
+    reportFailures = builder.reportFailures;
+    failureBudget = builder.failureBudget;
+    patternRegions = builder.patternRegions;
   }
 
   public static Builder builder() {
@@ -85,7 +384,37 @@ public class FileContentsConfig extends PluginConfig {
       .setSourceFilePath(copy.sourceFilePath)
       .setFileRegex(copy.fileRegex)
       .setFileContentsRegex(copy.fileContentsRegex)
-      .setFailOnEmptyFile(copy.failOnEmptyFile);
+      .setFailOnEmptyFile(copy.failOnEmptyFile)
+      .setConcurrency(copy.concurrency)
+      .setScanMode(copy.scanMode)
+      .setContentsRegion(copy.contentsRegion)
+      .setRegionLines(copy.regionLines)
+      .setRegionBytes(copy.regionBytes)
+      .setSplitSize(copy.splitSize)
+      .setStreamListing(copy.streamListing)
+      .setRecursive(copy.recursive)
+      .setMaxDepth(copy.maxDepth)
+      .setCachePath(copy.cachePath)
+      .setCacheMaxEntries(copy.cacheMaxEntries)
+      .setMaxLineLength(copy.maxLineLength)
+      .setLongLinePolicy(copy.longLinePolicy)
+      .setMultilineLines(copy.multilineLines)
+      .setMultilineBytes(copy.multilineBytes)
+      .setPatternSyntax(copy.patternSyntax)
+      .setIncremental(copy.incremental)
+      .setReadAheadSize(copy.readAheadSize)
+      .setReadAheadDepth(copy.readAheadDepth)
+      .setPublishStatistics(copy.publishStatistics)
+      .setDigestAlgorithm(copy.digestAlgorithm)
+      .setSampleCount(copy.sampleCount)
+      .setSamplePercent(copy.samplePercent)
+      .setSampleRangePercent(copy.sampleRangePercent)
+      .setSampleSeed(copy.sampleSeed)
+      .setCharset(copy.charset)
+      .setDetectBom(copy.detectBom)
+      .setReportFailures(copy.reportFailures)
+      .setFailureBudget(copy.failureBudget)
+      .setPatternRegions(copy.patternRegions);
   }
 
   public String getSourceFilePath() {
@@ -106,10 +435,245 @@ public class FileContentsConfig extends PluginConfig {
     return failOnEmptyFile;
   }
 
+  public int getConcurrency() {
+    return concurrency == null ? 1 : concurrency;
+  }
+
+  public ScanMode getScanMode() {
+    return Strings.isNullOrEmpty(scanMode) ? ScanMode.READER : ScanMode.valueOf(scanMode.toUpperCase());
+  }
+
+  public ContentsRegion getContentsRegion() {
+    return Strings.isNullOrEmpty(contentsRegion) ?
+      ContentsRegion.FILE : ContentsRegion.valueOf(contentsRegion.toUpperCase());
+  }
+
+  @Nullable
+  public Integer getRegionLines() {
+    return regionLines;
+  }
+
+  @Nullable
+  public Long getRegionBytes() {
+    return regionBytes;
+  }
+
+  @Nullable
+  public Long getSplitSize() {
+    return splitSize;
+  }
+
+  public boolean getStreamListing() {
+    return streamListing != null && streamListing;
+  }
+
+  public boolean getRecursive() {
+    return recursive != null && recursive;
+  }
+
+  @Nullable
+  public Integer getMaxDepth() {
+    return maxDepth;
+  }
+
+  @Nullable
+  public String getCachePath() {
+    return cachePath;
+  }
+
+  public int getCacheMaxEntries() {
+    return cacheMaxEntries == null ? DEFAULT_CACHE_MAX_ENTRIES : cacheMaxEntries;
+  }
+
+  @Nullable
+  public Integer getMaxLineLength() {
+    return maxLineLength;
+  }
+
+  public LongLinePolicy getLongLinePolicy() {
+    return Strings.isNullOrEmpty(longLinePolicy) ?
+      LongLinePolicy.FAIL : LongLinePolicy.valueOf(longLinePolicy.toUpperCase());
+  }
+
+  @Nullable
+  public Integer getMultilineLines() {
+    return multilineLines;
+  }
+
+  @Nullable
+  public Integer getMultilineBytes() {
+    return multilineBytes;
+  }
+
+  /**
+   * Returns true if patterns are matched against runs of lines rather than single lines.
+   */
+  public boolean isMultiline() {
+    return multilineLines != null || multilineBytes != null;
+  }
+
+  public PatternSyntax getPatternSyntax() {
+    return Strings.isNullOrEmpty(patternSyntax) ?
+      PatternSyntax.REGEX : PatternSyntax.valueOf(patternSyntax.toUpperCase());
+  }
+
+  /**
+   * Returns the contents patterns to look for, compiling fixed strings into patterns that contain them.
+   */
+  List<Pattern> getContentsPatterns() {
+    List<Pattern> patterns = new ArrayList<>();
+    for (String contents : getContentsExpressions()) {
+      patterns.add(getPatternSyntax() == PatternSyntax.FIXED ?
+                     Pattern.compile(".*" + Pattern.quote(contents) + ".*", Pattern.DOTALL) :
+                     Pattern.compile(contents));
+    }
+    return patterns;
+  }
+
+  /**
+   * Returns the contents patterns as they were configured, indexed like {@link #getContentsPatterns()}.
+   */
+  List<String> getContentsExpressions() {
+    return Strings.isNullOrEmpty(fileContentsRegex) ?
+      Collections.emptyList() : Arrays.asList(fileContentsRegex.split("~"));
+  }
+
+  private boolean isRegexSyntax() {
+    try {
+      return getPatternSyntax() == PatternSyntax.REGEX;
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  public boolean isIncremental() {
+    return incremental != null && incremental;
+  }
+
+  @Nullable
+  public Integer getReadAheadSize() {
+    return readAheadSize;
+  }
+
+  public int getReadAheadDepth() {
+    return readAheadDepth == null ? DEFAULT_READ_AHEAD_DEPTH : readAheadDepth;
+  }
+
+  public boolean isPublishStatistics() {
+    return publishStatistics != null && publishStatistics;
+  }
+
+  public DigestAlgorithm getDigestAlgorithm() {
+    return Strings.isNullOrEmpty(digestAlgorithm) ?
+      DigestAlgorithm.NONE : DigestAlgorithm.valueOf(digestAlgorithm.toUpperCase());
+  }
+
+  @Nullable
+  public Integer getSampleCount() {
+    return sampleCount;
+  }
+
+  @Nullable
+  public Double getSamplePercent() {
+    return samplePercent;
+  }
+
+  @Nullable
+  public Double getSampleRangePercent() {
+    return sampleRangePercent;
+  }
+
+  public long getSampleSeed() {
+    return sampleSeed == null ? 0 : sampleSeed;
+  }
+
+  public Charset getCharset() {
+    return Strings.isNullOrEmpty(charset) ? StandardCharsets.UTF_8 : Charset.forName(charset);
+  }
+
+  public boolean isDetectBom() {
+    return detectBom == null || detectBom;
+  }
+
+  public boolean isReportFailures() {
+    return reportFailures != null && reportFailures;
+  }
+
+  @Nullable
+  public Integer getFailureBudget() {
+    return failureBudget;
+  }
+
+  @Nullable
+  public String getPatternRegions() {
+    return patternRegions;
+  }
+
+  /**
+   * Returns the region of each contents pattern, indexed like {@link #getContentsPatterns()}.
+   *
+   * @throws IllegalArgumentException if a region is not valid or the number of regions does not match the patterns
+   */
+  List<PatternRegion> getRegions() {
+    ContentsRegion region = getContentsRegion();
+    PatternRegion defaultRegion = region == ContentsRegion.FILE ?
+      PatternRegion.FILE : new PatternRegion(region, regionLines, regionBytes);
+    List<String> expressions = getContentsExpressions();
+    if (Strings.isNullOrEmpty(patternRegions)) {
+      return Collections.nCopies(expressions.size(), defaultRegion);
+    }
+    String[] texts = patternRegions.split("~", -1);
+    if (texts.length != expressions.size()) {
+      throw new IllegalArgumentException(
+        String.format("There are %d pattern regions for %d contents regular expressions.", texts.length,
+                      expressions.size()));
+    }
+    List<PatternRegion> regions = new ArrayList<>();
+    for (String text : texts) {
+      regions.add(PatternRegion.parseOrDefault(text, defaultRegion));
+    }
+    return regions;
+  }
+
+  /**
+   * Returns true if every contents pattern is checked against the whole file.
+   */
+  boolean isWholeFile() {
+    List<PatternRegion> regions = getRegions();
+    if (regions.isEmpty()) {
+      return getContentsRegion() == ContentsRegion.FILE;
+    }
+    for (PatternRegion region : regions) {
+      if (!region.isWholeFile()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the settings that the outcome of checking a file depends on, which results are cached with.
+   */
+  String getCheckSettings() {
+    return String.join("\n", String.valueOf(fileContentsRegex), String.valueOf(getFailOnEmptyFile()),
+                       getScanMode().name(), getContentsRegion().name(), String.valueOf(regionLines),
+                       String.valueOf(regionBytes), String.valueOf(patternRegions), String.valueOf(maxLineLength),
+                       getLongLinePolicy().name(), String.valueOf(multilineLines), String.valueOf(multilineBytes),
+                       getPatternSyntax().name(), getCharset().name(), String.valueOf(isDetectBom()),
+                       String.valueOf(sampleRangePercent), String.valueOf(getSampleSeed()), String.valueOf(splitSize));
+  }
+
   /**
    * Validates the config parameters required for unloading the data.
    */
   public void validate(FailureCollector failureCollector) {
+    validate(failureCollector, new Configuration());
+  }
+
+  /**
+   * Validates the config, resolving the file system of the source with the given configuration.
+   */
+  void validate(FailureCollector failureCollector, Configuration configuration) {
     try {
       if (!containsMacro(FILE_REGEX) && !Strings.isNullOrEmpty(fileRegex)) {
         Pattern.compile(fileRegex);
@@ -123,8 +687,8 @@ public class FileContentsConfig extends PluginConfig {
     }
     String currentFileRegex = null;
     try {
-      if (!containsMacro(FILE_CONTENTS_REGEX) && !containsMacro(FAIL_ON_EMPTY_FILE)
-        && !failOnEmptyFile && !Strings.isNullOrEmpty(fileContentsRegex)) {
+      if (!containsMacro(FILE_CONTENTS_REGEX) && !containsMacro(FAIL_ON_EMPTY_FILE) && !containsMacro(PATTERN_SYNTAX)
+        && !failOnEmptyFile && !Strings.isNullOrEmpty(fileContentsRegex) && isRegexSyntax()) {
         String[] regexes = fileContentsRegex.split("~");
         for (String regex : regexes) {
           currentFileRegex = regex;
@@ -139,10 +703,93 @@ public class FileContentsConfig extends PluginConfig {
         null)
         .withConfigProperty(FILE_CONTENTS_REGEX);
     }
+    if (!containsMacro(CONCURRENCY) && concurrency != null && concurrency < 1) {
+      failureCollector.addFailure(
+        String.format("Concurrency must be at least 1, but was %d.", concurrency), null)
+        .withConfigProperty(CONCURRENCY);
+    }
+    if (!containsMacro(SCAN_MODE)) {
+      try {
+        getScanMode();
+      } catch (IllegalArgumentException e) {
+        failureCollector.addFailure(
+          String.format("Invalid scan mode '%s'.", scanMode), "Use 'reader' or 'bytes'.")
+          .withConfigProperty(SCAN_MODE);
+      }
+    }
+    validateRegion(failureCollector);
+    if (!containsMacro(SPLIT_SIZE) && splitSize != null && splitSize < 1) {
+      failureCollector.addFailure(
+        String.format("The split size must be at least 1 byte, but was %d.", splitSize), null)
+        .withConfigProperty(SPLIT_SIZE);
+    }
+    if (!containsMacro(MAX_DEPTH) && maxDepth != null && maxDepth < 1) {
+      failureCollector.addFailure(
+        String.format("The maximum depth must be at least 1, but was %d.", maxDepth), null)
+        .withConfigProperty(MAX_DEPTH);
+    }
+    if (!containsMacro(MAX_LINE_LENGTH) && maxLineLength != null && maxLineLength < 1) {
+      failureCollector.addFailure(
+        String.format("The maximum line length must be at least 1, but was %d.", maxLineLength), null)
+        .withConfigProperty(MAX_LINE_LENGTH);
+    }
+    if (!containsMacro(LONG_LINE_POLICY)) {
+      try {
+        getLongLinePolicy();
+      } catch (IllegalArgumentException e) {
+        failureCollector.addFailure(
+          String.format("Invalid long line policy '%s'.", longLinePolicy), "Use 'fail', 'truncate' or 'window'.")
+          .withConfigProperty(LONG_LINE_POLICY);
+      }
+    }
+    if (!containsMacro(PATTERN_SYNTAX)) {
+      try {
+        getPatternSyntax();
+      } catch (IllegalArgumentException e) {
+        failureCollector.addFailure(
+          String.format("Invalid pattern syntax '%s'.", patternSyntax), "Use 'regex' or 'fixed'.")
+          .withConfigProperty(PATTERN_SYNTAX);
+      }
+    }
+    if (!containsMacro(INCREMENTAL) && !containsMacro(CACHE_PATH) && isIncremental()
+      && Strings.isNullOrEmpty(cachePath)) {
+      failureCollector.addFailure("Incremental checks need a cache path to store the progress in.",
+                                  "Set a cache path or turn off incremental checks.")
+        .withConfigProperty(INCREMENTAL).withConfigProperty(CACHE_PATH);
+    }
+    if (!containsMacro(READ_AHEAD_SIZE) && readAheadSize != null && readAheadSize < 1) {
+      failureCollector.addFailure(
+        String.format("The read ahead size must be at least 1 byte, but was %d.", readAheadSize), null)
+        .withConfigProperty(READ_AHEAD_SIZE);
+    }
+    if (!containsMacro(READ_AHEAD_DEPTH) && readAheadDepth != null && readAheadDepth < 1) {
+      failureCollector.addFailure(
+        String.format("The read ahead depth must be at least 1, but was %d.", readAheadDepth), null)
+        .withConfigProperty(READ_AHEAD_DEPTH);
+    }
+    validateStatistics(failureCollector);
+    validateSampling(failureCollector);
+    validateCharset(failureCollector);
+    validateReport(failureCollector);
+    if (!containsMacro(MULTILINE_LINES) && multilineLines != null && multilineLines < 1) {
+      failureCollector.addFailure(
+        String.format("The number of multiline lines must be at least 1, but was %d.", multilineLines), null)
+        .withConfigProperty(MULTILINE_LINES);
+    }
+    if (!containsMacro(MULTILINE_BYTES) && multilineBytes != null && multilineBytes < 1) {
+      failureCollector.addFailure(
+        String.format("The number of multiline bytes must be at least 1, but was %d.", multilineBytes), null)
+        .withConfigProperty(MULTILINE_BYTES);
+    }
+    if (!containsMacro(CACHE_MAX_ENTRIES) && cacheMaxEntries != null && cacheMaxEntries < 1) {
+      failureCollector.addFailure(
+        String.format("The result cache must hold at least 1 entry, but was set to %d.", cacheMaxEntries), null)
+        .withConfigProperty(CACHE_MAX_ENTRIES);
+    }
     try {
       if (!containsMacro(SOURCE_FILE_PATH)) {
         Path source = new Path(sourceFilePath);
-        source.getFileSystem(new Configuration());
+        source.getFileSystem(configuration);
       }
     } catch (IOException e) {
       failureCollector.addFailure(
@@ -153,6 +800,242 @@ public class FileContentsConfig extends PluginConfig {
     }
   }
 
+  private void validateStatistics(FailureCollector failureCollector) {
+    if (!containsMacro(DIGEST_ALGORITHM)) {
+      try {
+        getDigestAlgorithm();
+      } catch (IllegalArgumentException e) {
+        failureCollector.addFailure(
+          String.format("Invalid digest algorithm '%s'.", digestAlgorithm), "Use 'none', 'crc32c', 'md5' or 'sha256'.")
+          .withConfigProperty(DIGEST_ALGORITHM);
+      }
+    }
+    if (containsMacro(PUBLISH_STATISTICS) || !isPublishStatistics()) {
+      return;
+    }
+    if (!containsMacro(CACHE_PATH) && !Strings.isNullOrEmpty(cachePath)) {
+      failureCollector.addFailure("Statistics need every file to be read, so they cannot be published with a cache.",
+                                  "Remove the cache path or turn off publishing statistics.")
+        .withConfigProperty(PUBLISH_STATISTICS).withConfigProperty(CACHE_PATH);
+    }
+    if (!containsMacro(CONTENTS_REGION) && !containsMacro(PATTERN_REGIONS) && isPartialRegion()) {
+      failureCollector.addFailure("Statistics cover whole files, so they can only be published for the file region.",
+                                  "Check the file region or turn off publishing statistics.")
+        .withConfigProperty(PUBLISH_STATISTICS).withConfigProperty(CONTENTS_REGION);
+    }
+  }
+
+  /**
+   * Validates the config for checking files across the executors of a Spark program, which keeps nothing between
+   * runs and has no arguments to publish to.
+   */
+  void validateDistributed(FailureCollector failureCollector) {
+    if (!containsMacro(CACHE_PATH) && !Strings.isNullOrEmpty(cachePath)) {
+      failureCollector.addFailure("The result cache is not supported when checking files with Spark.",
+                                  "Remove the cache path.")
+        .withConfigProperty(CACHE_PATH);
+    }
+    if (!containsMacro(PUBLISH_STATISTICS) && isPublishStatistics()) {
+      failureCollector.addFailure("Statistics cannot be published when checking files with Spark.",
+                                  "Turn off publishing statistics.")
+        .withConfigProperty(PUBLISH_STATISTICS);
+    }
+    if (!containsMacro(FAILURE_BUDGET) && failureBudget != null) {
+      failureCollector.addFailure("A failure budget is not supported when checking files with Spark, which always " +
+                                    "reports every file that failed.", "Remove the failure budget.")
+        .withConfigProperty(FAILURE_BUDGET);
+    }
+  }
+
+  private void validateReport(FailureCollector failureCollector) {
+    if (containsMacro(FAILURE_BUDGET) || failureBudget == null) {
+      return;
+    }
+    if (failureBudget < 1) {
+      failureCollector.addFailure(
+        String.format("The failure budget must be at least 1, but was %d.", failureBudget), null)
+        .withConfigProperty(FAILURE_BUDGET);
+    }
+    if (!containsMacro(REPORT_FAILURES) && !isReportFailures()) {
+      failureCollector.addFailure("A failure budget only applies when reporting failures.",
+                                  "Turn on reporting failures or remove the failure budget.")
+        .withConfigProperty(FAILURE_BUDGET).withConfigProperty(REPORT_FAILURES);
+    }
+  }
+
+  private void validateSampling(FailureCollector failureCollector) {
+    if (!containsMacro(SAMPLE_COUNT) && sampleCount != null && sampleCount < 1) {
+      failureCollector.addFailure(
+        String.format("The sample count must be at least 1, but was %d.", sampleCount), null)
+        .withConfigProperty(SAMPLE_COUNT);
+    }
+    if (!containsMacro(SAMPLE_PERCENT) && samplePercent != null && !(samplePercent > 0 && samplePercent <= 100)) {
+      failureCollector.addFailure(
+        String.format("The sample percent must be more than 0 and at most 100, but was %s.", samplePercent), null)
+        .withConfigProperty(SAMPLE_PERCENT);
+    }
+    if (!containsMacro(SAMPLE_COUNT) && !containsMacro(SAMPLE_PERCENT) && sampleCount != null
+      && samplePercent != null) {
+      failureCollector.addFailure("Files can be sampled by count or by percent, but not both.",
+                                  "Remove the sample count or the sample percent.")
+        .withConfigProperty(SAMPLE_COUNT).withConfigProperty(SAMPLE_PERCENT);
+    }
+    if (!containsMacro(PUBLISH_STATISTICS) && isPublishStatistics()) {
+      if (!containsMacro(SAMPLE_COUNT) && sampleCount != null) {
+        failureCollector.addFailure("Statistics need every file to be read in full, so files cannot be sampled.",
+                                    "Remove the sample count or turn off publishing statistics.")
+          .withConfigProperty(SAMPLE_COUNT).withConfigProperty(PUBLISH_STATISTICS);
+      }
+      if (!containsMacro(SAMPLE_PERCENT) && samplePercent != null) {
+        failureCollector.addFailure("Statistics need every file to be read in full, so files cannot be sampled.",
+                                    "Remove the sample percent or turn off publishing statistics.")
+          .withConfigProperty(SAMPLE_PERCENT).withConfigProperty(PUBLISH_STATISTICS);
+      }
+    }
+    if (containsMacro(SAMPLE_RANGE_PERCENT) || sampleRangePercent == null) {
+      return;
+    }
+    if (!(sampleRangePercent > 0 && sampleRangePercent <= 100)) {
+      failureCollector.addFailure(
+        String.format("The sample range percent must be more than 0 and at most 100, but was %s.",
+                      sampleRangePercent), null)
+        .withConfigProperty(SAMPLE_RANGE_PERCENT);
+    }
+    if (!containsMacro(SPLIT_SIZE) && splitSize == null) {
+      failureCollector.addFailure("Ranges can only be sampled from files that are split.", "Set a split size.")
+        .withConfigProperty(SAMPLE_RANGE_PERCENT).withConfigProperty(SPLIT_SIZE);
+    }
+    if (!containsMacro(PUBLISH_STATISTICS) && isPublishStatistics()) {
+      failureCollector.addFailure("Statistics need every file to be read in full, so ranges cannot be sampled.",
+                                  "Remove the sample range percent or turn off publishing statistics.")
+        .withConfigProperty(SAMPLE_RANGE_PERCENT).withConfigProperty(PUBLISH_STATISTICS);
+    }
+  }
+
+  private void validateCharset(FailureCollector failureCollector) {
+    if (containsMacro(CHARSET)) {
+      return;
+    }
+    Charset fileCharset;
+    try {
+      fileCharset = getCharset();
+    } catch (IllegalArgumentException e) {
+      failureCollector.addFailure(String.format("Unsupported charset '%s'.", charset),
+                                  "Use a charset such as 'UTF-8', 'ISO-8859-1' or 'UTF-16'.")
+        .withConfigProperty(CHARSET);
+      return;
+    }
+    if (TextEncoding.isAsciiCompatible(fileCharset)) {
+      return;
+    }
+    if (!containsMacro(SPLIT_SIZE) && splitSize != null) {
+      failureCollector.addFailure(
+        String.format("Files in charset '%s' cannot be split, as their lines cannot be found in the bytes.", charset),
+        "Remove the split size or use a charset that encodes ASCII as single bytes.")
+        .withConfigProperty(CHARSET).withConfigProperty(SPLIT_SIZE);
+    }
+    if (!containsMacro(PUBLISH_STATISTICS) && isPublishStatistics()) {
+      failureCollector.addFailure(
+        String.format("Lines in charset '%s' cannot be counted in the bytes for the statistics.", charset),
+        "Turn off publishing statistics or use a charset that encodes ASCII as single bytes.")
+        .withConfigProperty(CHARSET).withConfigProperty(PUBLISH_STATISTICS);
+    }
+    if (!containsMacro(INCREMENTAL) && isIncremental()) {
+      failureCollector.addFailure(
+        String.format("Files in charset '%s' cannot be scanned incrementally, as their lines cannot be found in the "
+                        + "bytes.", charset),
+        "Turn off incremental scans or use a charset that encodes ASCII as single bytes.")
+        .withConfigProperty(CHARSET).withConfigProperty(INCREMENTAL);
+    }
+  }
+
+  private boolean isPartialRegion() {
+    try {
+      return !isWholeFile();
+    } catch (IllegalArgumentException e) {
+      // an invalid region is reported on its own
+      return false;
+    }
+  }
+
+  private void validateRegion(FailureCollector failureCollector) {
+    if (containsMacro(CONTENTS_REGION)) {
+      return;
+    }
+    ContentsRegion region;
+    try {
+      region = getContentsRegion();
+    } catch (IllegalArgumentException e) {
+      failureCollector.addFailure(
+        String.format("Invalid contents region '%s'.", contentsRegion), "Use 'file', 'header' or 'footer'.")
+        .withConfigProperty(CONTENTS_REGION);
+      return;
+    }
+    if (!containsMacro(REGION_LINES) && regionLines != null && regionLines < 1) {
+      failureCollector.addFailure(
+        String.format("The number of region lines must be at least 1, but was %d.", regionLines), null)
+        .withConfigProperty(REGION_LINES);
+    }
+    if (!containsMacro(REGION_BYTES) && regionBytes != null && regionBytes < 1) {
+      failureCollector.addFailure(
+        String.format("The number of region bytes must be at least 1, but was %d.", regionBytes), null)
+        .withConfigProperty(REGION_BYTES);
+    }
+    if (region != ContentsRegion.FILE && !containsMacro(REGION_LINES) && !containsMacro(REGION_BYTES)
+      && regionLines == null && regionBytes == null) {
+      failureCollector.addFailure(
+        String.format("The %s region needs a size.", region.name().toLowerCase()),
+        "Set the number of region lines, region bytes or both.")
+        .withConfigProperty(REGION_LINES).withConfigProperty(REGION_BYTES);
+      return;
+    }
+    if (containsMacro(PATTERN_REGIONS) || containsMacro(FILE_CONTENTS_REGEX) || containsMacro(REGION_LINES)
+      || containsMacro(REGION_BYTES) || patternRegions == null) {
+      return;
+    }
+    try {
+      getRegions();
+    } catch (IllegalArgumentException e) {
+      failureCollector.addFailure(e.getMessage(), "Give one region for each contents regular expression.")
+        .withConfigProperty(PATTERN_REGIONS);
+    }
+  }
+
+  /**
+   * How lines are read from the files.
+   */
+  public enum ScanMode {
+    READER, BYTES
+  }
+
+  /**
+   * The part of a file that the contents patterns must be found in.
+   */
+  public enum ContentsRegion {
+    FILE, HEADER, FOOTER
+  }
+
+  /**
+   * What to do with a line that is longer than the maximum line length.
+   */
+  public enum LongLinePolicy {
+    FAIL, TRUNCATE, WINDOW
+  }
+
+  /**
+   * How the contents patterns are written.
+   */
+  public enum PatternSyntax {
+    REGEX, FIXED
+  }
+
+  /**
+   * The digest computed over the bytes of each file when statistics are published.
+   */
+  public enum DigestAlgorithm {
+    NONE, CRC32C, MD5, SHA256
+  }
+
   /**
    * Builder for FileContentsConfig
    */
@@ -161,6 +1044,36 @@ public class FileContentsConfig extends PluginConfig {
     private String fileRegex;
     private String fileContentsRegex;
     private Boolean failOnEmptyFile;
+    private Integer concurrency;
+    private String scanMode;
+    private String contentsRegion;
+    private Integer regionLines;
+    private Long regionBytes;
+    private Long splitSize;
+    private Boolean streamListing;
+    private Boolean recursive;
+    private Integer maxDepth;
+    private String cachePath;
+    private Integer cacheMaxEntries;
+    private Integer maxLineLength;
+    private String longLinePolicy;
+    private Integer multilineLines;
+    private Integer multilineBytes;
+    private String patternSyntax;
+    private Boolean incremental;
+    private Integer readAheadSize;
+    private Integer readAheadDepth;
+    private Boolean publishStatistics;
+    private String digestAlgorithm;
+    private Integer sampleCount;
+    private Double samplePercent;
+    private Double sampleRangePercent;
+    private Long sampleSeed;
+    private String charset;
+    private Boolean detectBom;
+    private Boolean reportFailures;
+    private Integer failureBudget;
+    private String patternRegions;
 
     private Builder() {
     }
@@ -185,6 +1098,156 @@ public class FileContentsConfig extends PluginConfig {
       return this;
     }
 
+    public Builder setConcurrency(Integer concurrency) {
+      this.concurrency = concurrency;
+      return this;
+    }
+
+    public Builder setScanMode(String scanMode) {
+      this.scanMode = scanMode;
+      return this;
+    }
+
+    public Builder setContentsRegion(String contentsRegion) {
+      this.contentsRegion = contentsRegion;
+      return this;
+    }
+
+    public Builder setRegionLines(Integer regionLines) {
+      this.regionLines = regionLines;
+      return this;
+    }
+
+    public Builder setRegionBytes(Long regionBytes) {
+      this.regionBytes = regionBytes;
+      return this;
+    }
+
+    public Builder setSplitSize(Long splitSize) {
+      this.splitSize = splitSize;
+      return this;
+    }
+
+    public Builder setStreamListing(Boolean streamListing) {
+      this.streamListing = streamListing;
+      return this;
+    }
+
+    public Builder setRecursive(Boolean recursive) {
+      this.recursive = recursive;
+      return this;
+    }
+
+    public Builder setMaxDepth(Integer maxDepth) {
+      this.maxDepth = maxDepth;
+      return this;
+    }
+
+    public Builder setCachePath(String cachePath) {
+      this.cachePath = cachePath;
+      return this;
+    }
+
+    public Builder setCacheMaxEntries(Integer cacheMaxEntries) {
+      this.cacheMaxEntries = cacheMaxEntries;
+      return this;
+    }
+
+    public Builder setMaxLineLength(Integer maxLineLength) {
+      this.maxLineLength = maxLineLength;
+      return this;
+    }
+
+    public Builder setLongLinePolicy(String longLinePolicy) {
+      this.longLinePolicy = longLinePolicy;
+      return this;
+    }
+
+    public Builder setMultilineLines(Integer multilineLines) {
+      this.multilineLines = multilineLines;
+      return this;
+    }
+
+    public Builder setMultilineBytes(Integer multilineBytes) {
+      this.multilineBytes = multilineBytes;
+      return this;
+    }
+
+    public Builder setPatternSyntax(String patternSyntax) {
+      this.patternSyntax = patternSyntax;
+      return this;
+    }
+
+    public Builder setIncremental(Boolean incremental) {
+      this.incremental = incremental;
+      return this;
+    }
+
+    public Builder setReadAheadSize(Integer readAheadSize) {
+      this.readAheadSize = readAheadSize;
+      return this;
+    }
+
+    public Builder setReadAheadDepth(Integer readAheadDepth) {
+      this.readAheadDepth = readAheadDepth;
+      return this;
+    }
+
+    public Builder setPublishStatistics(Boolean publishStatistics) {
+      this.publishStatistics = publishStatistics;
+      return this;
+    }
+
+    public Builder setDigestAlgorithm(String digestAlgorithm) {
+      this.digestAlgorithm = digestAlgorithm;
+      return this;
+    }
+
+    public Builder setSampleCount(Integer sampleCount) {
+      this.sampleCount = sampleCount;
+      return this;
+    }
+
+    public Builder setSamplePercent(Double samplePercent) {
+      this.samplePercent = samplePercent;
+      return this;
+    }
+
+    public Builder setSampleRangePercent(Double sampleRangePercent) {
+      this.sampleRangePercent = sampleRangePercent;
+      return this;
+    }
+
+    public Builder setSampleSeed(Long sampleSeed) {
+      this.sampleSeed = sampleSeed;
+      return this;
+    }
+
+    public Builder setCharset(String charset) {
+      this.charset = charset;
+      return this;
+    }
+
+    public Builder setDetectBom(Boolean detectBom) {
+      this.detectBom = detectBom;
+      return this;
+    }
+
+    public Builder setReportFailures(Boolean reportFailures) {
+      this.reportFailures = reportFailures;
+      return this;
+    }
+
+    public Builder setFailureBudget(Integer failureBudget) {
+      this.failureBudget = failureBudget;
+      return this;
+    }
+
+    public Builder setPatternRegions(String patternRegions) {
+      this.patternRegions = patternRegions;
+      return this;
+    }
+
     public FileContentsConfig build() {
       return new FileContentsConfig(this);
     }
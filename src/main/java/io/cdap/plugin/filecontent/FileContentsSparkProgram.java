@@ -0,0 +1,180 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import io.cdap.cdap.api.annotation.Description;
+import io.cdap.cdap.api.annotation.Name;
+import io.cdap.cdap.api.annotation.Plugin;
+import io.cdap.cdap.api.spark.JavaSparkExecutionContext;
+import io.cdap.cdap.api.spark.JavaSparkMain;
+import io.cdap.cdap.etl.api.FailureCollector;
+import io.cdap.cdap.etl.api.PipelineConfigurable;
+import io.cdap.cdap.etl.api.PipelineConfigurer;
+import io.cdap.cdap.etl.api.validation.ValidationException;
+import io.cdap.cdap.etl.api.validation.ValidationFailure;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.spark.SerializableWritable;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.broadcast.Broadcast;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.regex.Pattern;
+
+/**
+ * File Contents Spark Program Plugin - Checks files like the File Contents action, spread across the executors
+ */
+@Plugin(type = FileContentsSparkProgram.PLUGIN_TYPE)
+@Name(FileContentsSparkProgram.PLUGIN_NAME)
+@Description("Checks if files are empty and the contents of the files if needed, spread across the Spark executors, " +
+  "and fails with the list of all the files that failed the checks.")
+public class FileContentsSparkProgram implements JavaSparkMain, PipelineConfigurable {
+  private static final Logger LOG = LoggerFactory.getLogger(FileContentsSparkProgram.class);
+
+  public static final String PLUGIN_TYPE = "sparkprogram";
+  public static final String PLUGIN_NAME = "FileContentsSpark";
+
+  private final FileContentsConfig config;
+
+  public FileContentsSparkProgram(FileContentsConfig config) {
+    this.config = config;
+  }
+
+  @Override
+  public void configurePipeline(PipelineConfigurer pipelineConfigurer) throws IllegalArgumentException {
+    FailureCollector failureCollector = pipelineConfigurer.getStageConfigurer().getFailureCollector();
+    config.validate(failureCollector);
+    config.validateDistributed(failureCollector);
+  }
+
+  @Override
+  public void run(JavaSparkExecutionContext sec) throws Exception {
+    JavaSparkContext jsc = new JavaSparkContext();
+    FailureCollector failureCollector = new RunFailureCollector();
+    config.validate(failureCollector, jsc.hadoopConfiguration());
+    config.validateDistributed(failureCollector);
+    failureCollector.getOrThrowException();
+
+    SortedMap<String, String> failures = check(jsc, config);
+    if (!failures.isEmpty()) {
+      throw new FailedFilesException(new ArrayList<>(failures.values()));
+    }
+  }
+
+  /**
+   * Checks the files of the source on the executors of the given context.
+   *
+   * @return the message for each file that failed the checks, by path
+   */
+  static SortedMap<String, String> check(JavaSparkContext jsc, FileContentsConfig config) throws IOException {
+    Configuration configuration = jsc.hadoopConfiguration();
+    Path source = new Path(config.getSourceFilePath());
+    List<Pattern> patterns = config.getContentsPatterns();
+    ScanMetrics metrics = new ScanMetrics(patterns);
+    FileSystem fileSystem = source.getFileSystem(configuration);
+    FileStatus sourceStatus = SourceListing.getStatus(fileSystem, source);
+    // the scanner on the driver only plans the units, and checks the empty compressed files that are merged
+    try (FileScanner scanner = new FileScanner(config, fileSystem, MultiPatternMatcher.of(config, patterns, metrics),
+                                               new CompressionCodecFactory(configuration), metrics, null)) {
+      DistributedCheck check = new DistributedCheck(config, scanner);
+      int planned;
+      if (sourceStatus != null && sourceStatus.isFile()) {
+        planned = check.plan(FileListing.iterate(new FileStatus[] { sourceStatus }));
+      } else {
+        planned = new SourceListing(config, fileSystem, metrics).list(source, sourceStatus, check::plan);
+      }
+      List<DistributedCheck.Unit> units = check.getUnits();
+      if (planned == 0) {
+        LOG.warn("Not checking any files from source {} matching regular expression {}",
+                 source, config.getFileRegex());
+      }
+      List<DistributedCheck.UnitResult> results = new ArrayList<>();
+      if (!units.isEmpty()) {
+        // the executors read the files with the settings of the driver, such as its file system credentials
+        Broadcast<SerializableWritable<Configuration>> shipped =
+          jsc.broadcast(new SerializableWritable<>(configuration));
+        // one partition per unit up to the parallelism, so that large ranges are not queued behind each other
+        int slices = Math.min(units.size(), jsc.defaultParallelism());
+        // glom rather than mapPartitions, whose function returns an Iterable in Spark 1 and an Iterator in Spark 2
+        for (List<DistributedCheck.UnitResult> checked : jsc.parallelize(units, slices).glom()
+          .map(partition -> DistributedCheck.checkPartition(config, shipped.value().value(), partition.iterator()))
+          .collect()) {
+          results.addAll(checked);
+        }
+      }
+      SortedMap<String, String> failures = check.merge(results);
+      LOG.info("Checked {} files of {} in {} units, {} failed. {}", planned, source, units.size(), failures.size(),
+               metrics.getSummary());
+      return failures;
+    }
+  }
+
+  /**
+   * Collects the failures of validating the config at runtime, where the program has no collector of its own.
+   */
+  private static final class RunFailureCollector implements FailureCollector {
+    private final List<ValidationFailure> failures = new ArrayList<>();
+
+    @Override
+    public ValidationFailure addFailure(String message, String correctiveAction) {
+      ValidationFailure failure = new ValidationFailure(message, correctiveAction);
+      failures.add(failure);
+      return failure;
+    }
+
+    @Override
+    public ValidationException getOrThrowException() throws ValidationException {
+      ValidationException exception = new ValidationException(failures);
+      if (failures.isEmpty()) {
+        return exception;
+      }
+      throw exception;
+    }
+
+    @Override
+    public List<ValidationFailure> getValidationFailures() {
+      return failures;
+    }
+  }
+
+  /**
+   * An exception for the files that failed the checks, which lists all of them.
+   */
+  public static class FailedFilesException extends RuntimeException {
+    private final List<String> failedFiles;
+
+    public FailedFilesException(List<String> failedFiles) {
+      super(String.format("%d files failed the checks:\n%s", failedFiles.size(), String.join("\n", failedFiles)));
+      this.failedFiles = failedFiles;
+    }
+
+    /**
+     * Returns the message for each file that failed, ordered by path.
+     */
+    public List<String> getFailedFiles() {
+      return failedFiles;
+    }
+  }
+}
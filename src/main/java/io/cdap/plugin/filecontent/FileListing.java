@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.fs.RemoteIterator;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import javax.annotation.Nullable;
+
+/**
+ * Iterates over the files of a listing, skipping directories and files that are not accepted by a filter. The
+ * listing is consumed lazily, so a listing that is fetched in pages is never held in memory as a whole.
+ */
+final class FileListing implements RemoteIterator<FileStatus> {
+  private final RemoteIterator<? extends FileStatus> statuses;
+  private final PathFilter filter;
+  @Nullable
+  private FileStatus next;
+
+  FileListing(RemoteIterator<? extends FileStatus> statuses, PathFilter filter) {
+    this.statuses = statuses;
+    this.filter = filter;
+  }
+
+  /**
+   * Creates a listing over statuses that have already been fetched.
+   */
+  static FileListing of(FileStatus[] statuses, PathFilter filter) {
+    return new FileListing(iterate(statuses), filter);
+  }
+
+  /**
+   * Returns a remote iterator over statuses that have already been fetched.
+   */
+  static RemoteIterator<FileStatus> iterate(FileStatus[] statuses) {
+    Iterator<FileStatus> iterator = Arrays.asList(statuses).iterator();
+    return new RemoteIterator<FileStatus>() {
+      @Override
+      public boolean hasNext() {
+        return iterator.hasNext();
+      }
+
+      @Override
+      public FileStatus next() {
+        return iterator.next();
+      }
+    };
+  }
+
+  @Override
+  public boolean hasNext() throws IOException {
+    while (next == null && statuses.hasNext()) {
+      FileStatus status = statuses.next();
+      if (!status.isDirectory() && filter.accept(status.getPath())) {
+        next = status;
+      }
+    }
+    return next != null;
+  }
+
+  @Override
+  public FileStatus next() throws IOException {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    FileStatus status = next;
+    next = null;
+    return status;
+  }
+}
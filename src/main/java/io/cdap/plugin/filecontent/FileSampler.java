@@ -0,0 +1,193 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import com.google.common.hash.Hashing;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import javax.annotation.Nullable;
+
+/**
+ * Chooses the files whose contents are checked, and the ranges of split files that are scanned, when only a sample
+ * of them is. Each file and range is chosen by a hash of its path, its offset for a range, and the seed, so that
+ * runs with the same seed choose the same ones whatever the order of the listing, and a file stays chosen as other
+ * files come and go.
+ *
+ * With a percentage, each file is chosen on its own as it is listed. With a count, the files with the lowest
+ * hashes are chosen, which are only known once the whole listing has been seen, holding no more than that many
+ * statuses at a time.
+ */
+final class FileSampler {
+  private final long seed;
+  @Nullable
+  private final Integer count;
+  @Nullable
+  private final Double percent;
+  @Nullable
+  private final Double rangePercent;
+
+  FileSampler(long seed, @Nullable Integer count, @Nullable Double percent, @Nullable Double rangePercent) {
+    this.seed = seed;
+    this.count = count;
+    this.percent = percent;
+    this.rangePercent = rangePercent;
+  }
+
+  static FileSampler of(FileContentsConfig config) {
+    return new FileSampler(config.getSampleSeed(), config.getSampleCount(), config.getSamplePercent(),
+                           config.getSampleRangePercent());
+  }
+
+  boolean isSamplingFiles() {
+    return count != null || percent != null;
+  }
+
+  boolean isSamplingRanges() {
+    return rangePercent != null;
+  }
+
+  /**
+   * Returns the files of the listing that are chosen, passing the others to the given check as they are listed.
+   * Only used when files are sampled.
+   *
+   * @param skipped the check of the files that are not chosen, which is run on the calling thread
+   */
+  RemoteIterator<FileStatus> sample(RemoteIterator<FileStatus> files,
+                                    ParallelFileChecker.Check<FileStatus> skipped) throws IOException {
+    if (count != null) {
+      return sampleCount(files, count, skipped);
+    }
+    double fraction = percent / 100;
+    return new RemoteIterator<FileStatus>() {
+      @Nullable
+      private FileStatus next;
+
+      @Override
+      public boolean hasNext() throws IOException {
+        while (next == null && files.hasNext()) {
+          FileStatus file = files.next();
+          if (toFraction(hash(file.getPath(), 0)) < fraction) {
+            next = file;
+          } else {
+            skipped.check(file);
+          }
+        }
+        return next != null;
+      }
+
+      @Override
+      public FileStatus next() throws IOException {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        FileStatus file = next;
+        next = null;
+        return file;
+      }
+    };
+  }
+
+  private RemoteIterator<FileStatus> sampleCount(RemoteIterator<FileStatus> files, int count,
+                                                 ParallelFileChecker.Check<FileStatus> skipped) throws IOException {
+    // the chosen files so far, with the highest hash first so that it is the one to drop
+    PriorityQueue<Candidate> chosen = new PriorityQueue<>(Math.min(count, 1024), (a, b) -> {
+      int byHash = Long.compareUnsigned(b.hash, a.hash);
+      return byHash != 0 ? byHash : b.file.getPath().compareTo(a.file.getPath());
+    });
+    while (files.hasNext()) {
+      Candidate candidate = new Candidate(files.next());
+      chosen.add(candidate);
+      if (chosen.size() > count) {
+        skipped.check(chosen.poll().file);
+      }
+    }
+    List<FileStatus> sample = new ArrayList<>(chosen.size());
+    for (Candidate candidate : chosen) {
+      sample.add(candidate.file);
+    }
+    // checked in the order of their paths, like a listing
+    sample.sort(Comparator.comparing(FileStatus::getPath, Path::compareTo));
+    return FileListing.iterate(sample.toArray(new FileStatus[0]));
+  }
+
+  /**
+   * Returns the ranges of the file that are scanned, which are at least one of them.
+   */
+  List<SplitScanner.Range> sampleRanges(Path path, List<SplitScanner.Range> ranges) {
+    if (rangePercent == null) {
+      return ranges;
+    }
+    double fraction = rangePercent / 100;
+    List<SplitScanner.Range> sample = new ArrayList<>();
+    SplitScanner.Range lowest = null;
+    long lowestHash = Long.MAX_VALUE;
+    for (SplitScanner.Range range : ranges) {
+      long hash = hash(path, range.start);
+      if (toFraction(hash) < fraction) {
+        sample.add(range);
+      }
+      if (lowest == null || Long.compareUnsigned(hash, lowestHash) < 0) {
+        lowest = range;
+        lowestHash = hash;
+      }
+    }
+    if (sample.isEmpty() && lowest != null) {
+      sample.add(lowest);
+    }
+    return sample;
+  }
+
+  /**
+   * Hashes the path, without its scheme and authority so that the same files are chosen wherever they are mounted.
+   */
+  private long hash(Path path, long offset) {
+    return Hashing.murmur3_128().newHasher()
+      .putLong(seed)
+      .putLong(offset)
+      .putString(path.toUri().getPath(), StandardCharsets.UTF_8)
+      .hash().asLong();
+  }
+
+  /**
+   * Maps a hash uniformly to a fraction in [0, 1).
+   */
+  private static double toFraction(long hash) {
+    return (hash >>> 11) * 0x1.0p-53;
+  }
+
+  /**
+   * A listed file with its hash.
+   */
+  private final class Candidate {
+    private final FileStatus file;
+    private final long hash;
+
+    private Candidate(FileStatus file) {
+      this.file = file;
+      this.hash = hash(file.getPath(), 0);
+    }
+  }
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.SplittableCompressionCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import javax.annotation.Nullable;
+
+/**
+ * Scans the contents of single files for the configured patterns, choosing how each file is read from its size and
+ * compression codec. Compressed files are recognized by their extension and are scanned as they are decompressed.
+ * The time spent opening and reading files, and the amount read, are recorded in the {@link ScanMetrics}. If a
+ * read ahead size is set, files are read ahead of the matching through a {@link ReadAheadFileSystem}, whose tasks
+ * run until the scanner is closed. If statistics are published, every file is read to its end and its statistics
+ * are added to the {@link RunStatistics}. Files are decoded with the configured {@link TextEncoding}, and if the
+ * patterns can be matched on bytes, the lines of UTF-8 files are not decoded at all.
+ *
+ * Every scan holds one of as many permits as the configured concurrency, and a split file borrows the permits that
+ * are free to scan more of its ranges at once, so that the files and ranges scanned at the same time, and the
+ * buffers that they read into, never exceed the concurrency.
+ */
+final class FileScanner implements Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(FileScanner.class);
+
+  private final FileContentsConfig config;
+  @Nullable
+  private final ExecutorService readAheadExecutor;
+  private final FileSystem fileSystem;
+  private final MultiPatternMatcher matcher;
+  private final TextEncoding encoding;
+  private final CompressionCodecFactory codecs;
+  private final ScanMetrics metrics;
+  @Nullable
+  private final RunStatistics statistics;
+  private final Semaphore scanPermits;
+
+  /**
+   * @param statistics where to add the statistics of the files scanned, or null if they are not published
+   */
+  FileScanner(FileContentsConfig config, FileSystem fileSystem, MultiPatternMatcher matcher,
+              CompressionCodecFactory codecs, ScanMetrics metrics, @Nullable RunStatistics statistics) {
+    this.config = config;
+    FileSystem source = fileSystem;
+    Integer readAheadSize = config.getReadAheadSize();
+    if (readAheadSize == null) {
+      this.readAheadExecutor = null;
+    } else {
+      int depth = config.getReadAheadDepth();
+      // each file read at the same time holds the queued chunks, the one being filled and the one being matched
+      BufferPool pool = new BufferPool(readAheadSize, (depth + 2) * config.getConcurrency());
+      this.readAheadExecutor = Executors.newCachedThreadPool(
+        new ThreadFactoryBuilder().setNameFormat("file-contents-read-ahead-%d").setDaemon(true).build());
+      source = new ReadAheadFileSystem(fileSystem, pool, depth, readAheadExecutor);
+    }
+    // reads are timed as the matching sees them, so only the time spent waiting for a chunk that is not ready counts
+    this.fileSystem = new TimedFileSystem(source, metrics);
+    this.matcher = matcher;
+    TextEncoding configured = TextEncoding.of(config);
+    this.encoding = matcher.hasUtf8Matcher() ? configured.withUtf8Bytes() : configured;
+    this.codecs = codecs;
+    this.metrics = metrics;
+    this.statistics = statistics;
+    this.scanPermits = new Semaphore(config.getConcurrency());
+  }
+
+  int getPatternCount() {
+    return matcher.size();
+  }
+
+  /**
+   * Returns the codec that the file is compressed with, or null if it is not compressed.
+   */
+  @Nullable
+  CompressionCodec getCodec(FileStatus file) {
+    return codecs.getCodec(file.getPath());
+  }
+
+  /**
+   * Returns true if the file has no contents. For a compressed file, this means that it decompresses to nothing.
+   */
+  boolean isEmpty(FileStatus file) throws IOException {
+    CompressionCodec codec = getCodec(file);
+    if (file.getLen() == 0 || codec == null) {
+      return file.getLen() == 0;
+    }
+    try (InputStream in = LineReaders.openDecompressed(fileSystem, file.getPath(), codec)) {
+      return in.read() < 0;
+    } catch (IOException e) {
+      throw new IOException(String.format("Failed treading file %s", file.getPath()), e);
+    }
+  }
+
+  /**
+   * Returns true if the contents of the file have to be scanned to check it, rather than only its size.
+   */
+  boolean isScanned(FileStatus file) {
+    return (getPatternCount() > 0 || statistics != null) && !(config.getFailOnEmptyFile() && file.getLen() == 0);
+  }
+
+  /**
+   * Returns true if the file is scanned in ranges by a {@link SplitScanner}. Files are not split when statistics
+   * are published, as the digest covers the bytes in order, nor in multiline mode, as runs of lines can cross the
+   * boundaries of the ranges, nor in a charset in which lines cannot be found in the bytes.
+   */
+  boolean isSplit(FileStatus file) {
+    Long splitSize = config.getSplitSize();
+    CompressionCodec codec = getCodec(file);
+    return splitSize != null && statistics == null && !config.isMultiline()
+      && TextEncoding.isAsciiCompatible(encoding.getCharset())
+      && config.isWholeFile() && file.getLen() > splitSize
+      && (codec == null || codec instanceof SplittableCompressionCodec);
+  }
+
+  /**
+   * Returns a scanner over the ranges of a file that is split.
+   */
+  SplitScanner newSplitScanner(FileStatus file) {
+    FileSampler sampler = FileSampler.of(config);
+    return new SplitScanner(matcher, config.getSplitSize(), config.getConcurrency(), scanPermits, getLineLimit(),
+                            getCodec(file), sampler.isSamplingRanges() ? sampler : null, encoding);
+  }
+
+  /**
+   * Returns the outcome of checking the file, given the result of scanning it for the patterns, if it was.
+   */
+  ResultCache.Outcome check(FileStatus file, @Nullable ScanResult result) throws IOException {
+    if (config.getFailOnEmptyFile() && file.getLen() == 0) {
+      return ResultCache.Outcome.EMPTY;
+    }
+    // a compressed file is only empty if it decompresses to nothing
+    boolean checkDecompressed = config.getFailOnEmptyFile() && getCodec(file) != null;
+    if (result != null) {
+      // ranges that were sampled out can hold all the data of a file, such as every block start of a bzip2 file
+      if (checkDecompressed && result.getBytesRead() == 0 && (result.isStartScanned() || isEmpty(file))) {
+        return ResultCache.Outcome.EMPTY;
+      }
+      if (!result.allFound()) {
+        return ResultCache.Outcome.MISSING_CONTENTS;
+      }
+    } else if (checkDecompressed && isEmpty(file)) {
+      return ResultCache.Outcome.EMPTY;
+    }
+    return ResultCache.Outcome.PASSED;
+  }
+
+  /**
+   * Returns true if the file is scanned incrementally, from where its last scan ended, when it has grown. The
+   * lines that the last scan ended with are found in the bytes, so the charset has to encode ASCII as single bytes.
+   * A file whose byte order mark overrides the charset with one that does not is scanned whole by the
+   * {@link AppendScanner}.
+   */
+  boolean isIncremental(FileStatus file) {
+    return config.isIncremental() && getCodec(file) == null
+      && TextEncoding.isAsciiCompatible(encoding.getCharset())
+      && config.isWholeFile() && !config.isMultiline();
+  }
+
+  /**
+   * Scans a file that is only appended to, resuming from the given progress if it still applies.
+   */
+  ScanResult scanAppended(FileStatus file, @Nullable ScanProgress previous) throws IOException {
+    acquirePermit();
+    try {
+      ScanResult result;
+      try {
+        result = new AppendScanner(matcher, config.getScanMode(), getLineLimit(), encoding)
+          .scan(fileSystem, file, previous);
+      } catch (IOException e) {
+        throw new IOException(String.format("Failed treading file %s", file.getPath()), e);
+      }
+      metrics.addScan(result);
+      return result;
+    } finally {
+      scanPermits.release();
+    }
+  }
+
+  /**
+   * Scans the file for the patterns.
+   */
+  ScanResult scan(FileStatus file) throws IOException {
+    acquirePermit();
+    try {
+      Path source = file.getPath();
+      CompressionCodec codec = getCodec(file);
+      ScanResult result;
+      LineLimit lineLimit = getLineLimit();
+      try {
+        if (statistics != null) {
+          result = new StatisticsScanner(matcher, config.getScanMode(), lineLimit, codec, config.getDigestAlgorithm(),
+                                         encoding).scan(fileSystem, file);
+          statistics.add(source.toString(), result.getStatistics());
+        } else if (isSplit(file)) {
+          result = newSplitScanner(file).scan(fileSystem, file);
+        } else {
+          result = new RegionScanner(matcher, config.getRegions(), config.getScanMode(), lineLimit, codec,
+                                     RegionScanner.DEFAULT_FOOTER_WINDOW, encoding).scan(fileSystem, file);
+        }
+      } catch (IOException e) {
+        throw new IOException(String.format("Failed treading file %s", source.toString()), e);
+      }
+      metrics.addScan(result);
+      if (result.isEarlyExit()) {
+        LOG.debug("Stopped scanning file {} after {} lines, skipped {} bytes (about {} lines)",
+                  source, result.getLinesScanned(), result.getBytesSkipped(), result.getEstimatedLinesSkipped());
+      }
+      return result;
+    } finally {
+      scanPermits.release();
+    }
+  }
+
+  /**
+   * Scans some of the ranges of a file that is split, for the rest of them to be scanned elsewhere.
+   */
+  ScanResult scanRanges(FileStatus file, List<SplitScanner.Range> ranges) throws IOException {
+    acquirePermit();
+    try {
+      ScanResult result;
+      try {
+        result = newSplitScanner(file).scan(fileSystem, file, ranges);
+      } catch (IOException e) {
+        throw new IOException(String.format("Failed treading file %s", file.getPath()), e);
+      }
+      metrics.addScan(result);
+      return result;
+    } finally {
+      scanPermits.release();
+    }
+  }
+
+  /**
+   * Waits for a permit to scan a file, which a split file may have borrowed to scan more of its ranges.
+   */
+  private void acquirePermit() throws InterruptedIOException {
+    try {
+      scanPermits.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting to scan a file");
+    }
+  }
+
+  FileSystem getFileSystem() {
+    return fileSystem;
+  }
+
+  private LineLimit getLineLimit() {
+    return LineLimit.of(config.getMaxLineLength(), config.getLongLinePolicy());
+  }
+
+  /**
+   * Stops the tasks that read files ahead, if any.
+   */
+  @Override
+  public void close() {
+    if (readAheadExecutor != null) {
+      readAheadExecutor.shutdownNow();
+    }
+  }
+}
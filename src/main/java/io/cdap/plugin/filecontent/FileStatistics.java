@@ -0,0 +1,52 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import javax.annotation.Nullable;
+
+/**
+ * The line count, byte count and digest of a file, gathered while it was checked. Lines are those of the contents of
+ * the file, after decompression, while the bytes and the digest are those of the file as it is stored.
+ */
+final class FileStatistics {
+  private final long lines;
+  private final long bytes;
+  @Nullable
+  private final String digest;
+
+  FileStatistics(long lines, long bytes, @Nullable String digest) {
+    this.lines = lines;
+    this.bytes = bytes;
+    this.digest = digest;
+  }
+
+  long getLines() {
+    return lines;
+  }
+
+  long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * Returns the digest as a lowercase hexadecimal string, or null if no digest was computed.
+   */
+  @Nullable
+  String getDigest() {
+    return digest;
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import javax.annotation.Nullable;
+
+/**
+ * The maximum length of a line and what to do with longer lines. The length is counted in the units that the
+ * reader works in, which are characters for a {@link TextLineReader} and bytes for a {@link ByteLineReader}.
+ */
+final class LineLimit {
+  static final LineLimit NONE = new LineLimit(Integer.MAX_VALUE, FileContentsConfig.LongLinePolicy.FAIL);
+
+  final int maxLength;
+  final FileContentsConfig.LongLinePolicy policy;
+
+  LineLimit(int maxLength, FileContentsConfig.LongLinePolicy policy) {
+    this.maxLength = maxLength;
+    this.policy = policy;
+  }
+
+  static LineLimit of(@Nullable Integer maxLength, FileContentsConfig.LongLinePolicy policy) {
+    return maxLength == null ? NONE : new LineLimit(maxLength, policy);
+  }
+
+  boolean isUnlimited() {
+    return maxLength == Integer.MAX_VALUE;
+  }
+
+  /**
+   * Returns how far each window moves along a long line, so that consecutive windows overlap by half of their
+   * length and anything up to that long is entirely within at least one window.
+   */
+  int getWindowStep() {
+    return maxLength - maxLength / 2;
+  }
+
+  LineTooLongException tooLong(String unit) {
+    return new LineTooLongException(String.format("Found a line longer than the maximum line length of %d %s",
+                                                  maxLength, unit));
+  }
+}
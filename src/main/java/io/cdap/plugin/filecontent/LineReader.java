@@ -0,0 +1,55 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import java.io.Closeable;
+import java.io.IOException;
+import javax.annotation.Nullable;
+
+/**
+ * Reads the lines of a file for the {@link ContentsScanner}. Lines are terminated by {@code \n}, {@code \r} or
+ * {@code \r\n}, like {@link java.io.BufferedReader#readLine()}.
+ */
+interface LineReader extends Closeable {
+
+  /**
+   * Returns the next line without its terminator, or null at the end of the input. The returned sequence may be
+   * reused by the reader and is only valid until the next call.
+   */
+  @Nullable
+  CharSequence readLine() throws IOException;
+
+  /**
+   * Discards the input up to and including the next line terminator, however far away it is, without keeping it in
+   * memory. On a new reader this skips the first line, and after a line that was only returned in part, the rest
+   * of that line.
+   */
+  void skipLine() throws IOException;
+
+  /**
+   * Returns the number of bytes read from the underlying input so far.
+   */
+  long getBytesRead();
+
+  /**
+   * Returns true if the lines are the bytes of their UTF-8 encoding, one character per byte, rather than their
+   * decoded characters.
+   */
+  default boolean isUtf8Bytes() {
+    return false;
+  }
+}
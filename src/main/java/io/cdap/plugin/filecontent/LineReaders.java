@@ -0,0 +1,326 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.ByteStreams;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.Decompressor;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import javax.annotation.Nullable;
+
+/**
+ * Opens {@link LineReader LineReaders} over files. Lines are found in the bytes by a {@link ByteLineReader} in the
+ * bytes scan mode, unless the charset of the file does not encode ASCII as single bytes, in which case they are
+ * decoded by a {@link TextLineReader} as in the reader scan mode. The charset of a file is the one of its byte order
+ * mark, if it starts with one and they are detected, or else the configured one.
+ */
+final class LineReaders {
+  // size of the reads issued against the file system in the bytes scan mode
+  static final int BUFFER_SIZE = 1024 * 1024;
+
+  private LineReaders() {
+  }
+
+  /**
+   * Opens a reader over at most {@code limit} bytes of the given file, starting at the given offset, that decodes
+   * the file with the given encoding. A byte order mark is skipped when reading from the start of the file. In a
+   * charset with code units of several bytes, the offset is moved back to the start of its code unit.
+   */
+  static LineReader open(FileSystem fileSystem, FileStatus file, @Nullable CompressionCodec codec,
+                         FileContentsConfig.ScanMode scanMode, LineLimit lineLimit, long offset, long limit,
+                         TextEncoding encoding) throws IOException {
+    Path path = file.getPath();
+    if (codec != null) {
+      Preconditions.checkArgument(offset == 0, "Compressed file %s cannot be read from offset %s", path, offset);
+      return open(openDecompressed(fileSystem, path, codec), scanMode, lineLimit, limit, encoding);
+    }
+    byte[] head = encoding.isDetectBom() ? new byte[TextEncoding.Bom.MAX_LENGTH] : null;
+    if (scanMode == FileContentsConfig.ScanMode.READER) {
+      FSDataInputStream in = fileSystem.open(path);
+      try {
+        TextEncoding.Bom bom = head == null ? null : TextEncoding.Bom.find(head, readHead(in, head));
+        Charset charset = encoding.getCharset(bom);
+        long start = align(offset, charset);
+        if (start > 0) {
+          in.seek(start);
+        }
+        return newTextReader(in, lineLimit, extend(limit, offset - start), charset, start == 0 && bom != null);
+      } catch (IOException | RuntimeException e) {
+        in.close();
+        throw e;
+      }
+    }
+    // the head is read before the channel is positioned, and does not move it
+    ReadableByteChannel channel = openChannel(fileSystem, path, offset, head);
+    TextEncoding.Bom bom = head == null ? null : TextEncoding.Bom.find(head, head.length);
+    Charset charset = encoding.getCharset(bom);
+    if (TextEncoding.isAsciiCompatible(charset)) {
+      return new ByteLineReader(channel, BUFFER_SIZE, limit, lineLimit, charset, offset == 0 && bom != null ?
+        bom.length() : 0, encoding.isUtf8Bytes(charset));
+    }
+    channel.close();
+    // lines have to be decoded to be found
+    return open(fileSystem, file, null, FileContentsConfig.ScanMode.READER, lineLimit, offset, limit, encoding);
+  }
+
+  /**
+   * Returns a reader over the whole of the given stream for the given scan mode, that decodes it with the given
+   * encoding. A byte order mark at the start of the stream is skipped.
+   */
+  static LineReader open(InputStream in, FileContentsConfig.ScanMode scanMode, LineLimit lineLimit,
+                         TextEncoding encoding) throws IOException {
+    return open(in, scanMode, lineLimit, Long.MAX_VALUE, encoding);
+  }
+
+  /**
+   * Opens a {@link ByteLineReader} over the given file, starting at the given offset, that decodes lines with the
+   * given charset, which must encode ASCII as single bytes.
+   *
+   * @param skip the number of bytes to skip at the offset, such as a byte order mark
+   * @param utf8Bytes whether lines in UTF-8 are returned as their bytes
+   */
+  static ByteLineReader openBytes(FileSystem fileSystem, FileStatus file, long offset, int bufferSize,
+                                  LineLimit lineLimit, Charset charset, int skip,
+                                  boolean utf8Bytes) throws IOException {
+    return new ByteLineReader(openChannel(fileSystem, file.getPath(), offset, null), bufferSize, Long.MAX_VALUE,
+                              lineLimit, charset, skip, utf8Bytes);
+  }
+
+  /**
+   * Returns the byte order mark that the file starts with, or null if it does not start with one.
+   */
+  @Nullable
+  static TextEncoding.Bom readBom(FileSystem fileSystem, FileStatus file) throws IOException {
+    try (FSDataInputStream in = fileSystem.open(file.getPath())) {
+      return readBom(in);
+    }
+  }
+
+  /**
+   * Returns the byte order mark that the file of the stream starts with, or null if it does not start with one,
+   * without moving the stream.
+   */
+  @Nullable
+  static TextEncoding.Bom readBom(FSDataInputStream in) throws IOException {
+    byte[] head = new byte[TextEncoding.Bom.MAX_LENGTH];
+    return TextEncoding.Bom.find(head, readHead(in, head));
+  }
+
+  /**
+   * Returns the byte order mark that the stream starts with, or null if it does not start with one, leaving the
+   * stream where it was.
+   */
+  @Nullable
+  static TextEncoding.Bom peekBom(PushbackInputStream in) throws IOException {
+    byte[] head = new byte[TextEncoding.Bom.MAX_LENGTH];
+    int length = ByteStreams.read(in, head, 0, head.length);
+    in.unread(head, 0, length);
+    return TextEncoding.Bom.find(head, length);
+  }
+
+  private static LineReader open(InputStream in, FileContentsConfig.ScanMode scanMode, LineLimit lineLimit,
+                                 long limit, TextEncoding encoding) throws IOException {
+    TextEncoding.Bom bom = null;
+    InputStream contents = in;
+    if (encoding.isDetectBom()) {
+      PushbackInputStream pushback = new PushbackInputStream(in, TextEncoding.Bom.MAX_LENGTH);
+      try {
+        bom = peekBom(pushback);
+      } catch (IOException e) {
+        in.close();
+        throw e;
+      }
+      contents = pushback;
+    }
+    Charset charset = encoding.getCharset(bom);
+    if (scanMode == FileContentsConfig.ScanMode.READER || !TextEncoding.isAsciiCompatible(charset)) {
+      return newTextReader(contents, lineLimit, limit, charset, bom != null);
+    }
+    return new ByteLineReader(Channels.newChannel(contents), BUFFER_SIZE, limit, lineLimit, charset,
+                              bom == null ? 0 : bom.length(), encoding.isUtf8Bytes(charset));
+  }
+
+  private static TextLineReader newTextReader(InputStream in, LineLimit lineLimit, long limit, Charset charset,
+                                              boolean skipBom) {
+    return new TextLineReader(limit == Long.MAX_VALUE ? in : ByteStreams.limit(in, limit), lineLimit, charset,
+                              skipBom);
+  }
+
+  /**
+   * Returns the offset moved back to the start of the code unit that it is in.
+   */
+  private static long align(long offset, Charset charset) {
+    return offset - offset % TextEncoding.getCodeUnitSize(charset);
+  }
+
+  /**
+   * Returns the limit grown by the given number of bytes, unless there is none.
+   */
+  private static long extend(long limit, long bytes) {
+    return limit == Long.MAX_VALUE ? limit : limit + bytes;
+  }
+
+  /**
+   * Reads the first bytes of the stream into the head, without moving the stream, and returns how many were read.
+   */
+  private static int readHead(FSDataInputStream in, byte[] head) throws IOException {
+    int length = 0;
+    int read;
+    while (length < head.length && (read = in.read(length, head, length, head.length - length)) > 0) {
+      length += read;
+    }
+    return length;
+  }
+
+  /**
+   * Reads the first bytes of the channel into the head, without moving the channel. Bytes past the end of the
+   * channel are left at zero, which no byte order mark starts with.
+   */
+  private static void readHead(FileChannel channel, byte[] head) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(head);
+    while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0) {
+      // keep reading until the head is full or the end is reached
+    }
+  }
+
+  /**
+   * Opens a stream that decompresses the given file with a decompressor from the {@link CodecPool}, which is
+   * returned to the pool when the stream is closed.
+   */
+  static InputStream openDecompressed(FileSystem fileSystem, Path path, CompressionCodec codec) throws IOException {
+    FSDataInputStream in = fileSystem.open(path, BUFFER_SIZE);
+    try {
+      return decompress(in, codec);
+    } catch (IOException | RuntimeException e) {
+      in.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns a stream that decompresses the given stream with a decompressor from the {@link CodecPool}, which is
+   * returned to the pool when the stream is closed.
+   */
+  static InputStream decompress(InputStream in, CompressionCodec codec) throws IOException {
+    Decompressor decompressor = CodecPool.getDecompressor(codec);
+    try {
+      return new FilterInputStream(codec.createInputStream(in, decompressor)) {
+        private boolean closed;
+
+        @Override
+        public void close() throws IOException {
+          if (closed) {
+            return;
+          }
+          closed = true;
+          try {
+            super.close();
+          } finally {
+            CodecPool.returnDecompressor(decompressor);
+          }
+        }
+      };
+    } catch (IOException | RuntimeException e) {
+      CodecPool.returnDecompressor(decompressor);
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the number of bytes that the characters take up in UTF-8.
+   */
+  static long utf8Length(CharSequence s) {
+    long length = 0;
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c < 0x80) {
+        length++;
+      } else if (c < 0x800) {
+        length += 2;
+      } else if (Character.isSurrogate(c)) {
+        // each half of a surrogate pair accounts for half of its four bytes
+        length += 2;
+      } else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+
+  /**
+   * Opens a channel over the file, positioned at the given offset. Local files are read through a
+   * {@link FileChannel} directly, which skips the copies and checksum verification of the Hadoop local file
+   * system. Other file systems are read in large chunks through their input stream.
+   *
+   * @param head where to read the first bytes of the file, or null if they are not needed
+   */
+  private static ReadableByteChannel openChannel(FileSystem fileSystem, Path path, long offset,
+                                                 @Nullable byte[] head) throws IOException {
+    if (fileSystem instanceof TimedFileSystem) {
+      // local channels bypass the streams of the file system, so they are timed here instead
+      TimedFileSystem timed = (TimedFileSystem) fileSystem;
+      long start = System.nanoTime();
+      ReadableByteChannel channel = openChannel(timed.getRawFileSystem(), path, offset, head);
+      return timed.timeChannel(channel, System.nanoTime() - start);
+    }
+    // reading ahead happens in the streams of the file system, even for local files
+    if ("file".equals(fileSystem.getUri().getScheme()) && !(fileSystem instanceof ReadAheadFileSystem)) {
+      FileChannel channel = FileChannel.open(Paths.get(path.toUri().getPath()));
+      try {
+        if (head != null) {
+          readHead(channel, head);
+        }
+        if (offset > 0) {
+          channel.position(offset);
+        }
+      } catch (IOException | RuntimeException e) {
+        channel.close();
+        throw e;
+      }
+      return channel;
+    }
+    FSDataInputStream in = fileSystem.open(path, BUFFER_SIZE);
+    try {
+      if (head != null) {
+        readHead(in, head);
+      }
+      if (offset > 0) {
+        in.seek(offset);
+      }
+    } catch (IOException | RuntimeException e) {
+      in.close();
+      throw e;
+    }
+    return Channels.newChannel(in);
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * The last lines of a scan, joined by {@code \n}, for matching patterns against runs of consecutive lines. The
+ * window holds at most a number of lines and a number of bytes, counting one byte for each line terminator, except
+ * that the newest line is always kept, however long it is.
+ */
+final class LineWindow {
+  private final int maxLines;
+  private final long maxBytes;
+  // the lines in the window start at 'start', and older lines before it are removed from time to time
+  private final StringBuilder text = new StringBuilder();
+  private int start;
+  private final Deque<Integer> lengths = new ArrayDeque<>();
+  private final Deque<Long> sizes = new ArrayDeque<>();
+  private long bytes;
+
+  LineWindow(int maxLines, long maxBytes) {
+    this.maxLines = maxLines;
+    this.maxBytes = maxBytes;
+  }
+
+  boolean isEmpty() {
+    return lengths.isEmpty();
+  }
+
+  /**
+   * Returns the size in bytes that the line counts for, including its terminator.
+   */
+  long sizeOf(CharSequence line) {
+    return maxBytes == Long.MAX_VALUE ? 0 : LineReaders.utf8Length(line) + 1;
+  }
+
+  /**
+   * Returns true if a line of the given size can be added without removing the oldest line.
+   */
+  boolean fits(long size) {
+    return lengths.size() < maxLines && bytes + size <= maxBytes;
+  }
+
+  void add(CharSequence line, long size) {
+    if (!lengths.isEmpty()) {
+      text.append('\n');
+    }
+    text.append(line);
+    lengths.addLast(line.length());
+    sizes.addLast(size);
+    bytes += size;
+  }
+
+  void removeOldest() {
+    int length = lengths.removeFirst();
+    bytes -= sizes.removeFirst();
+    if (lengths.isEmpty()) {
+      text.setLength(0);
+      start = 0;
+      return;
+    }
+    start += length + 1;
+    // drop the removed lines once they take up more than half of the text, which keeps removal cheap
+    if (start > text.length() - start) {
+      text.delete(0, start);
+      start = 0;
+    }
+  }
+
+  /**
+   * Returns the text of the window, which starts at {@link #getStart()} and ends at the end of the newest line.
+   */
+  CharSequence getText() {
+    return text;
+  }
+
+  /**
+   * Returns the offset in the text at which the oldest line in the window starts.
+   */
+  int getStart() {
+    return start;
+  }
+}
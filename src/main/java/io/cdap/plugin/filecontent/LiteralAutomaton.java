@@ -0,0 +1,157 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeSet;
+
+/**
+ * An Aho-Corasick automaton that finds every occurrence of a set of literal strings in a single pass over the
+ * input. The goto and failure functions are folded into a dense transition table over the characters that
+ * appear in the literals, so each input character costs one table lookup.
+ */
+final class LiteralAutomaton {
+  private static final int[] NO_OUTPUT = new int[0];
+
+  // character class of each ASCII character, 0 for characters that do not appear in any literal
+  private final int[] asciiClasses = new int[128];
+  // non-ASCII characters that appear in a literal, sorted, with their classes in the same order
+  private final char[] nonAsciiChars;
+  private final int[] nonAsciiClasses;
+  private final int alphabetSize;
+  private final int[] transitions;
+  private final int[][] outputs;
+
+  /**
+   * Creates an automaton for the given literals. The id reported for a literal is its index in the list.
+   */
+  LiteralAutomaton(List<String> literals) {
+    TreeSet<Character> chars = new TreeSet<>();
+    for (String literal : literals) {
+      for (int i = 0; i < literal.length(); i++) {
+        chars.add(literal.charAt(i));
+      }
+    }
+    int nextClass = 1;
+    List<Character> nonAscii = new ArrayList<>();
+    for (char c : chars) {
+      if (c < 128) {
+        asciiClasses[c] = nextClass++;
+      } else {
+        nonAscii.add(c);
+      }
+    }
+    nonAsciiChars = new char[nonAscii.size()];
+    nonAsciiClasses = new int[nonAscii.size()];
+    for (int i = 0; i < nonAscii.size(); i++) {
+      nonAsciiChars[i] = nonAscii.get(i);
+      nonAsciiClasses[i] = nextClass++;
+    }
+    alphabetSize = nextClass;
+
+    // build the trie
+    List<Map<Integer, Integer>> children = new ArrayList<>();
+    List<List<Integer>> trieOutputs = new ArrayList<>();
+    children.add(new HashMap<>());
+    trieOutputs.add(new ArrayList<>());
+    for (int id = 0; id < literals.size(); id++) {
+      String literal = literals.get(id);
+      int state = 0;
+      for (int i = 0; i < literal.length(); i++) {
+        int cls = classOf(literal.charAt(i));
+        Integer child = children.get(state).get(cls);
+        if (child == null) {
+          child = children.size();
+          children.add(new HashMap<>());
+          trieOutputs.add(new ArrayList<>());
+          children.get(state).put(cls, child);
+        }
+        state = child;
+      }
+      trieOutputs.get(state).add(id);
+    }
+
+    // breadth first traversal to compute failure links and the complete transition table
+    int numStates = children.size();
+    transitions = new int[numStates * alphabetSize];
+    int[] failure = new int[numStates];
+    Queue<Integer> queue = new ArrayDeque<>();
+    for (int cls = 0; cls < alphabetSize; cls++) {
+      Integer child = children.get(0).get(cls);
+      if (child != null) {
+        transitions[cls] = child;
+        queue.add(child);
+      }
+    }
+    while (!queue.isEmpty()) {
+      int state = queue.poll();
+      trieOutputs.get(state).addAll(trieOutputs.get(failure[state]));
+      for (int cls = 0; cls < alphabetSize; cls++) {
+        Integer child = children.get(state).get(cls);
+        int fallback = transitions[failure[state] * alphabetSize + cls];
+        if (child == null) {
+          transitions[state * alphabetSize + cls] = fallback;
+        } else {
+          transitions[state * alphabetSize + cls] = child;
+          failure[child] = fallback;
+          queue.add(child);
+        }
+      }
+    }
+
+    outputs = new int[numStates][];
+    for (int state = 0; state < numStates; state++) {
+      List<Integer> ids = trieOutputs.get(state);
+      outputs[state] = ids.isEmpty() ? NO_OUTPUT : ids.stream().distinct().mapToInt(Integer::intValue).toArray();
+    }
+  }
+
+  /**
+   * Returns the start state of the automaton.
+   */
+  int start() {
+    return 0;
+  }
+
+  /**
+   * Returns the state reached from the given state on the given character.
+   */
+  int next(int state, char c) {
+    return transitions[state * alphabetSize + classOf(c)];
+  }
+
+  /**
+   * Returns the ids of the literals that end at the given state. The returned array must not be modified.
+   */
+  int[] outputs(int state) {
+    return outputs[state];
+  }
+
+  private int classOf(char c) {
+    if (c < 128) {
+      return asciiClasses[c];
+    }
+    int index = Arrays.binarySearch(nonAsciiChars, c);
+    return index < 0 ? 0 : nonAsciiClasses[index];
+  }
+}
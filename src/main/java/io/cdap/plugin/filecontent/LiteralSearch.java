@@ -0,0 +1,296 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+/**
+ * Searches lines for a literal with the Boyer-Moore-Horspool algorithm, which skips ahead by up to the length of the
+ * literal after each mismatch. Characters share the slots of the skip table by their low byte, which only shortens
+ * some skips. Lines are read through {@link CharSequence#charAt(int)}, so lines that are views over a byte buffer
+ * are searched without being copied.
+ *
+ * Also extracts the literal that every match of a regular expression has to contain, so that the lines without it
+ * are rejected before they reach the regex engine.
+ */
+final class LiteralSearch {
+  // flags under which the characters of a pattern may match something other than themselves
+  private static final int UNSAFE_FLAGS = Pattern.CASE_INSENSITIVE | Pattern.COMMENTS | Pattern.LITERAL
+    | Pattern.CANON_EQ;
+
+  private final String text;
+  private final int[] skips = new int[256];
+
+  LiteralSearch(String text) {
+    if (text.isEmpty()) {
+      throw new IllegalArgumentException("Cannot search for an empty literal.");
+    }
+    this.text = text;
+    int last = text.length() - 1;
+    for (int i = 0; i < skips.length; i++) {
+      skips[i] = text.length();
+    }
+    for (int i = 0; i < last; i++) {
+      skips[text.charAt(i) & 0xFF] = last - i;
+    }
+  }
+
+  String getText() {
+    return text;
+  }
+
+  /**
+   * Returns the index of the first occurrence of the literal in the line, or -1 if there is none.
+   */
+  int indexOf(CharSequence line) {
+    int last = text.length() - 1;
+    char lastChar = text.charAt(last);
+    int end = line.length() - last;
+    int i = 0;
+    while (i < end) {
+      char c = line.charAt(i + last);
+      if (c == lastChar && matchesAt(line, i)) {
+        return i;
+      }
+      i += skips[c & 0xFF];
+    }
+    return -1;
+  }
+
+  boolean isIn(CharSequence line) {
+    return indexOf(line) >= 0;
+  }
+
+  private boolean matchesAt(CharSequence line, int offset) {
+    for (int i = text.length() - 2; i >= 0; i--) {
+      if (line.charAt(offset + i) != text.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the longest literal that every line matched by the pattern contains, or null if none was found. The
+   * pattern is read as a sequence of atoms. Runs of literal characters are kept, and everything else, such as
+   * character classes, groups and escapes like {@code \d}, ends a run. A quantifier that makes a character optional
+   * removes it from its run. Patterns with a top level alternation or flags that change how characters match have
+   * no required literal.
+   */
+  @Nullable
+  static String required(Pattern pattern) {
+    if ((pattern.flags() & UNSAFE_FLAGS) != 0) {
+      return null;
+    }
+    String regex = pattern.pattern();
+    String longest = "";
+    StringBuilder run = new StringBuilder();
+    int i = 0;
+    while (i < regex.length()) {
+      char c = regex.charAt(i);
+      int next;
+      boolean literal = false;
+      if (c == '\\') {
+        if (i + 1 >= regex.length()) {
+          return null;
+        }
+        char escaped = regex.charAt(i + 1);
+        if (escaped == 'Q') {
+          int quoteEnd = regex.indexOf("\\E", i + 2);
+          int textEnd = quoteEnd < 0 ? regex.length() : quoteEnd;
+          if (textEnd > i + 2 && !hasSurrogate(regex, i + 2, textEnd)) {
+            // only the last quoted character can be made optional by a quantifier
+            run.append(regex, i + 2, textEnd - 1);
+            c = regex.charAt(textEnd - 1);
+            literal = true;
+          }
+          next = quoteEnd < 0 ? regex.length() : quoteEnd + 2;
+        } else if (Character.isLetterOrDigit(escaped)) {
+          next = skipEscape(regex, i + 1);
+        } else {
+          c = escaped;
+          literal = true;
+          next = i + 2;
+        }
+      } else if (c == '[') {
+        next = skipClass(regex, i);
+      } else if (c == '(') {
+        if (regex.startsWith("(?", i) && i + 2 < regex.length() && "idmsuxU-".indexOf(regex.charAt(i + 2)) >= 0) {
+          // inline flags may change how the rest of the pattern matches
+          return null;
+        }
+        next = skipGroup(regex, i);
+      } else if (c == '|') {
+        return null;
+      } else if (".^$)".indexOf(c) >= 0) {
+        next = i + 1;
+      } else {
+        // a quantifier after a surrogate pair applies to both of its characters
+        literal = !Character.isSurrogate(c);
+        next = i + 1;
+      }
+      if (next < 0) {
+        return null;
+      }
+
+      boolean optional = false;
+      boolean quantified = false;
+      if (next < regex.length() && "*?+{".indexOf(regex.charAt(next)) >= 0) {
+        char quantifier = regex.charAt(next);
+        quantified = true;
+        optional = quantifier == '*' || quantifier == '?' || regex.startsWith("{0", next);
+        if (quantifier == '{') {
+          next = regex.indexOf('}', next);
+          if (next < 0) {
+            return null;
+          }
+        }
+        next++;
+        // lazy and possessive quantifiers
+        if (next < regex.length() && (regex.charAt(next) == '?' || regex.charAt(next) == '+')) {
+          next++;
+        }
+      }
+      if (literal && !optional) {
+        run.append(c);
+      }
+      if (!literal || quantified) {
+        if (run.length() > longest.length()) {
+          longest = run.toString();
+        }
+        run.setLength(0);
+      }
+      i = next;
+    }
+    if (run.length() > longest.length()) {
+      longest = run.toString();
+    }
+    return longest.isEmpty() ? null : longest;
+  }
+
+  /**
+   * Returns the index after an escape that starts with a letter or digit at the given index, such as {@code \d},
+   * {@code \p{L}}, {@code \x41} or {@code \k<name>}. Where the length of an escape is not fixed, such as for octal
+   * escapes and back references, all the digits that follow are skipped, which may skip literal characters but never
+   * keeps part of an escape.
+   */
+  private static int skipEscape(String regex, int i) {
+    char escaped = regex.charAt(i);
+    int next = i + 1;
+    if (next < regex.length() && regex.charAt(next) == '{' && "pPxN".indexOf(escaped) >= 0) {
+      int close = regex.indexOf('}', next);
+      return close < 0 ? -1 : close + 1;
+    }
+    switch (escaped) {
+      case 'c':
+      case 'p':
+      case 'P':
+        next++;
+        break;
+      case 'x':
+        next += 2;
+        break;
+      case 'u':
+        next += 4;
+        break;
+      case 'k':
+        int close = regex.indexOf('>', next);
+        return close < 0 ? -1 : close + 1;
+      default:
+        if (Character.isDigit(escaped)) {
+          while (next < regex.length() && Character.isDigit(regex.charAt(next))) {
+            next++;
+          }
+        }
+    }
+    return Math.min(next, regex.length());
+  }
+
+  private static boolean hasSurrogate(String regex, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (Character.isSurrogate(regex.charAt(i))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the index after the character class that starts at the given index, or -1 if it does not end.
+   */
+  private static int skipClass(String regex, int i) {
+    int depth = 0;
+    while (i < regex.length()) {
+      char c = regex.charAt(i);
+      if (c == '\\') {
+        i += 2;
+        continue;
+      }
+      if (c == '[') {
+        depth++;
+        // a ']' right after the opening bracket, or after a '^', is a literal
+        if (regex.startsWith("^", i + 1)) {
+          i++;
+        }
+        if (regex.startsWith("]", i + 1)) {
+          i++;
+        }
+      } else if (c == ']' && --depth == 0) {
+        return i + 1;
+      }
+      i++;
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the index after the group that starts at the given index, or -1 if it does not end.
+   */
+  private static int skipGroup(String regex, int i) {
+    int depth = 0;
+    while (i < regex.length()) {
+      char c = regex.charAt(i);
+      if (c == '\\') {
+        if (regex.startsWith("Q", i + 1)) {
+          int quoteEnd = regex.indexOf("\\E", i + 2);
+          if (quoteEnd < 0) {
+            return -1;
+          }
+          i = quoteEnd + 2;
+        } else {
+          i += 2;
+        }
+        continue;
+      }
+      if (c == '[') {
+        i = skipClass(regex, i);
+        if (i < 0) {
+          return -1;
+        }
+        continue;
+      }
+      if (c == '(') {
+        depth++;
+      } else if (c == ')' && --depth == 0) {
+        return i + 1;
+      }
+      i++;
+    }
+    return -1;
+  }
+}
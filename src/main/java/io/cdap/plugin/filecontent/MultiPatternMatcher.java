@@ -0,0 +1,620 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+/**
+ * Matches lines against all of the contents patterns at once. Each pattern must match an entire line, as with
+ * {@link Matcher#matches()}.
+ *
+ * Patterns that are really literals, such as {@code .*TRAILER.*}, {@code HDR\|.*} or {@code END}, are not run
+ * through the regex engine. The "contains" literals are found together in a single pass over the line by a
+ * {@link LiteralAutomaton}, and the prefix, suffix and exact literals are compared directly. All other patterns
+ * fall back to a reused {@link Matcher}, but only on the lines that contain the literal that every match of the
+ * pattern needs, if it has one, which is looked for with a {@link LiteralSearch} first.
+ *
+ * Instances are immutable and may be shared between threads. Per scan state is kept in a {@link State}. If
+ * {@link ScanMetrics} are given, the time taken to match a sample of the lines is added to them, in total and per
+ * pattern. The time of the single pass for the "contains" literals is shared evenly by the patterns it looks for.
+ *
+ * In multiline mode, a pattern is also found if it matches a whole run of consecutive lines joined by {@code \n},
+ * within a {@link LineWindow} of the last lines. Each line is tested once as the start of a run, when it is about to
+ * leave the window and the longest runs that start with it have been read, by matching the pattern at its start up
+ * to the end of any line in the window. The lines still in the window are tested when the found flags are read.
+ *
+ * If every pattern is a literal, outside of multiline mode, the matcher has a twin that matches the UTF-8 bytes of
+ * the literals against lines given as their UTF-8 bytes, one character per byte, so that a {@link ByteLineReader}
+ * never has to decode them. The states of readers that return such lines are states of the twin.
+ */
+final class MultiPatternMatcher {
+  private final List<Pattern> patterns;
+  private final Literal[] literals;
+  // the literal that a line must contain to match each pattern that is not itself a literal, if there is one
+  private final LiteralSearch[] prefilters;
+  // index in 'patterns' of each literal given to the automaton
+  private final int[] automatonPatterns;
+  @Nullable
+  private final LiteralAutomaton automaton;
+  @Nullable
+  private final ScanMetrics metrics;
+  private final int windowLines;
+  private final long windowBytes;
+  // the patterns matched against runs of lines, or null for the patterns that cannot span lines
+  private final Pattern[] runPatterns;
+  // whether lines are the bytes of their UTF-8 encoding, one character per byte
+  private final boolean utf8Bytes;
+  // the matcher for lines given as their UTF-8 bytes, or null if the patterns cannot be matched on bytes
+  @Nullable
+  private final MultiPatternMatcher utf8Matcher;
+
+  /**
+   * Creates the matcher for the contents patterns of the config, in multiline mode if it is enabled.
+   */
+  static MultiPatternMatcher of(FileContentsConfig config, List<Pattern> patterns, @Nullable ScanMetrics metrics) {
+    if (!config.isMultiline()) {
+      return new MultiPatternMatcher(patterns, metrics);
+    }
+    Integer windowLines = config.getMultilineLines();
+    Integer windowBytes = config.getMultilineBytes();
+    return new MultiPatternMatcher(patterns, metrics, windowLines == null ? Integer.MAX_VALUE : windowLines,
+                                   windowBytes == null ? Long.MAX_VALUE : windowBytes);
+  }
+
+  MultiPatternMatcher(List<Pattern> patterns) {
+    this(patterns, null);
+  }
+
+  MultiPatternMatcher(List<Pattern> patterns, @Nullable ScanMetrics metrics) {
+    this(patterns, metrics, 1, Long.MAX_VALUE);
+  }
+
+  /**
+   * Creates a matcher that also matches the patterns against runs of lines, within a window of at most the given
+   * number of lines and bytes.
+   */
+  MultiPatternMatcher(List<Pattern> patterns, @Nullable ScanMetrics metrics, int windowLines, long windowBytes) {
+    this(patterns, metrics, windowLines, windowBytes, false);
+  }
+
+  private MultiPatternMatcher(List<Pattern> patterns, @Nullable ScanMetrics metrics, int windowLines,
+                              long windowBytes, boolean utf8Bytes) {
+    this.patterns = patterns;
+    this.utf8Bytes = utf8Bytes;
+    this.metrics = metrics;
+    this.windowLines = windowLines;
+    this.windowBytes = windowBytes;
+    this.literals = new Literal[patterns.size()];
+    this.prefilters = new LiteralSearch[patterns.size()];
+    List<String> containsLiterals = new ArrayList<>();
+    List<Integer> containsPatterns = new ArrayList<>();
+    for (int i = 0; i < patterns.size(); i++) {
+      literals[i] = Literal.parse(patterns.get(i));
+      if (literals[i] != null && literals[i].kind == Literal.Kind.CONTAINS) {
+        containsLiterals.add(literals[i].text);
+        containsPatterns.add(i);
+      } else if (literals[i] == null) {
+        String required = LiteralSearch.required(patterns.get(i));
+        prefilters[i] = required == null ? null : new LiteralSearch(required);
+      }
+    }
+    this.automatonPatterns = containsPatterns.stream().mapToInt(Integer::intValue).toArray();
+    this.automaton = containsLiterals.isEmpty() ? null : new LiteralAutomaton(containsLiterals);
+    this.runPatterns = new Pattern[patterns.size()];
+    for (int i = 0; i < patterns.size(); i++) {
+      // a literal cannot match more than one line unless it has a line break in it
+      if (isMultiline() && (literals[i] == null || literals[i].text.indexOf('\n') >= 0)) {
+        Pattern pattern = patterns.get(i);
+        // the match has to end where a line ends
+        runPatterns[i] = Pattern.compile("(?:" + pattern.pattern() + ")(?=\n|\\z)", pattern.flags());
+      }
+    }
+    List<Pattern> utf8Patterns = utf8Bytes || isMultiline() ? null : toUtf8Bytes(literals);
+    this.utf8Matcher = utf8Patterns == null ? null :
+      new MultiPatternMatcher(utf8Patterns, metrics, windowLines, windowBytes, true);
+  }
+
+  /**
+   * Returns the patterns that match the UTF-8 bytes of the lines that the literals match, or null if a literal is
+   * missing or has a line terminator in it.
+   */
+  @Nullable
+  private static List<Pattern> toUtf8Bytes(Literal[] literals) {
+    List<Pattern> utf8Patterns = new ArrayList<>();
+    for (Literal literal : literals) {
+      if (literal == null || hasLineTerminator(literal.text)) {
+        return null;
+      }
+      String bytes = new String(literal.text.getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
+      boolean leading = literal.kind == Literal.Kind.ENDS_WITH || literal.kind == Literal.Kind.CONTAINS;
+      boolean trailing = literal.kind == Literal.Kind.STARTS_WITH || literal.kind == Literal.Kind.CONTAINS;
+      utf8Patterns.add(Pattern.compile((leading ? ".*" : "") + Pattern.quote(bytes) + (trailing ? ".*" : ""),
+                                       literal.dotAll ? Pattern.DOTALL : 0));
+    }
+    return utf8Patterns;
+  }
+
+  boolean isMultiline() {
+    return windowLines != 1 || windowBytes != Long.MAX_VALUE;
+  }
+
+  int size() {
+    return patterns.size();
+  }
+
+  List<Pattern> getPatterns() {
+    return patterns;
+  }
+
+  /**
+   * Creates the state for a new scan, in which no pattern has been found yet.
+   */
+  State newState() {
+    return new State();
+  }
+
+  /**
+   * Creates the state for a new scan of the lines from the given reader, which matches them as their UTF-8 bytes
+   * if the reader returns them that way.
+   */
+  State newState(LineReader reader) {
+    return reader.isUtf8Bytes() ? utf8Matcher.newState() : newState();
+  }
+
+  /**
+   * Returns true if the patterns can be matched against lines given as their UTF-8 bytes.
+   */
+  boolean hasUtf8Matcher() {
+    return utf8Matcher != null;
+  }
+
+  /**
+   * Returns true if the sequence contains a character that {@code .} does not match without
+   * {@link Pattern#DOTALL}. Literal shortcuts for patterns with a {@code .*} are only valid without these.
+   */
+  private static boolean isLineTerminator(char c) {
+    return c < 128 ? c == '\n' || c == '\r' : c == '\u0085' || c == '\u2028' || c == '\u2029';
+  }
+
+  private static boolean hasLineTerminator(CharSequence line) {
+    for (int i = 0; i < line.length(); i++) {
+      if (isLineTerminator(line.charAt(i))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns true if the UTF-8 bytes, one character per byte, encode a line terminator. The terminators other than
+   * {@code \n} and {@code \r} are the byte sequences {@code C2 85}, {@code E2 80 A8} and {@code E2 80 A9}.
+   */
+  private static boolean hasUtf8LineTerminator(CharSequence line) {
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (c == '\n' || c == '\r') {
+        return true;
+      }
+      if (c == 0x85 && i >= 1 && line.charAt(i - 1) == 0xc2) {
+        return true;
+      }
+      if ((c == 0xa8 || c == 0xa9) && i >= 2 && line.charAt(i - 1) == 0x80 && line.charAt(i - 2) == 0xe2) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Which patterns have been found so far in a scan. Not thread safe.
+   */
+  final class State {
+    private final boolean[] found = new boolean[patterns.size()];
+    private final Matcher[] matchers = new Matcher[patterns.size()];
+    // indexes of the patterns that are not handled by the automaton and have not been found yet
+    private final int[] pending = new int[patterns.size()];
+    private int pendingCount;
+    private int automatonRemaining;
+    private int remaining;
+    // patterns reported by the automaton for the current line
+    private final int[] hits = new int[automatonPatterns.length];
+    private final long[] hitLine = new long[automatonPatterns.length];
+    private long lineNumber;
+    @Nullable
+    private final LineWindow window = isMultiline() ? new LineWindow(windowLines, windowBytes) : null;
+    private final Matcher[] runMatchers = new Matcher[patterns.size()];
+
+    private State() {
+      for (int i = 0; i < literals.length; i++) {
+        if (literals[i] == null || literals[i].kind != Literal.Kind.CONTAINS) {
+          pending[pendingCount++] = i;
+        }
+      }
+      automatonRemaining = automatonPatterns.length;
+      remaining = patterns.size();
+    }
+
+    /**
+     * Matches a line against every pattern that has not been found yet.
+     *
+     * @return true if every pattern has now been found
+     */
+    boolean match(CharSequence line) {
+      lineNumber++;
+      if (metrics != null && ScanMetrics.isSampled(lineNumber)) {
+        return timedMatch(line);
+      }
+      doMatch(line, null);
+      if (window != null && remaining > 0) {
+        slide(line, null);
+      }
+      return remaining == 0;
+    }
+
+    private boolean timedMatch(CharSequence line) {
+      long start = System.nanoTime();
+      doMatch(line, metrics);
+      if (window != null && remaining > 0) {
+        slide(line, metrics);
+      }
+      metrics.addSampledMatchTime(System.nanoTime() - start);
+      return remaining == 0;
+    }
+
+    /**
+     * Adds a line to the window, first testing the runs that start with the lines that it pushes out.
+     */
+    private void slide(CharSequence line, @Nullable ScanMetrics timings) {
+      long size = window.sizeOf(line);
+      while (!window.isEmpty() && !window.fits(size)) {
+        matchRuns(timings);
+        window.removeOldest();
+      }
+      window.add(line, size);
+    }
+
+    /**
+     * Matches the patterns that have not been found yet against the runs of lines that start with the oldest line
+     * in the window.
+     */
+    private void matchRuns(@Nullable ScanMetrics timings) {
+      for (int i = 0; i < runPatterns.length && remaining > 0; i++) {
+        if (found[i] || runPatterns[i] == null) {
+          continue;
+        }
+        long patternStart = timings == null ? 0 : System.nanoTime();
+        Matcher matcher = runMatchers[i];
+        if (matcher == null) {
+          matcher = runPatterns[i].matcher(window.getText());
+          runMatchers[i] = matcher;
+        } else {
+          matcher.reset();
+        }
+        matcher.region(window.getStart(), window.getText().length());
+        if (matcher.lookingAt()) {
+          markFound(i);
+        }
+        if (timings != null) {
+          timings.addSampledPatternTime(i, System.nanoTime() - patternStart);
+        }
+      }
+    }
+
+    /**
+     * Tests the runs that start with the lines that are still in the window, once there are no more lines.
+     */
+    private void finish() {
+      if (window == null) {
+        return;
+      }
+      while (!window.isEmpty() && remaining > 0) {
+        matchRuns(null);
+        window.removeOldest();
+      }
+    }
+
+    /**
+     * Matches a line, adding the time taken by each pattern to the given metrics if they are not null.
+     */
+    private boolean doMatch(CharSequence line, @Nullable ScanMetrics timings) {
+      boolean terminator = false;
+      boolean terminatorKnown = false;
+      if (automatonRemaining > 0) {
+        long automatonStart = timings == null ? 0 : System.nanoTime();
+        int hitCount = 0;
+        int state = automaton.start();
+        for (int i = 0; i < line.length(); i++) {
+          char c = line.charAt(i);
+          if (!utf8Bytes) {
+            terminator |= isLineTerminator(c);
+          }
+          state = automaton.next(state, c);
+          for (int id : automaton.outputs(state)) {
+            if (!found[automatonPatterns[id]] && hitLine[id] != lineNumber) {
+              hitLine[id] = lineNumber;
+              hits[hitCount++] = id;
+            }
+          }
+        }
+        if (utf8Bytes && hitCount > 0) {
+          terminator = hasUtf8LineTerminator(line);
+        }
+        terminatorKnown = !utf8Bytes || hitCount > 0;
+        if (timings != null) {
+          long share = (System.nanoTime() - automatonStart) / automatonRemaining;
+          for (int index : automatonPatterns) {
+            if (!found[index]) {
+              timings.addSampledPatternTime(index, share);
+            }
+          }
+        }
+        for (int h = 0; h < hitCount; h++) {
+          int index = automatonPatterns[hits[h]];
+          if (!terminator || literals[index].dotAll || terminatorMatches(index, line)) {
+            found[index] = true;
+            automatonRemaining--;
+            remaining--;
+          }
+        }
+      }
+
+      int j = 0;
+      while (j < pendingCount) {
+        int index = pending[j];
+        Literal literal = literals[index];
+        long patternStart = timings == null ? 0 : System.nanoTime();
+        boolean matches;
+        if (literal == null) {
+          LiteralSearch prefilter = prefilters[index];
+          matches = (prefilter == null || prefilter.isIn(line)) && regexMatches(index, line);
+        } else if (literal.kind == Literal.Kind.EQUALS || literal.dotAll) {
+          matches = literal.matches(line);
+        } else {
+          if (!terminatorKnown) {
+            terminator = utf8Bytes ? hasUtf8LineTerminator(line) : hasLineTerminator(line);
+            terminatorKnown = true;
+          }
+          matches = terminator ? terminatorMatches(index, line) : literal.matches(line);
+        }
+        if (timings != null) {
+          timings.addSampledPatternTime(index, System.nanoTime() - patternStart);
+        }
+        if (matches) {
+          found[index] = true;
+          pending[j] = pending[--pendingCount];
+          remaining--;
+        } else {
+          j++;
+        }
+      }
+      return remaining == 0;
+    }
+
+    boolean allFound() {
+      return remaining == 0;
+    }
+
+    boolean isFound(int index) {
+      return found[index];
+    }
+
+    /**
+     * Marks a pattern as found without matching it, for example because it was found in another part of the file.
+     */
+    void markFound(int index) {
+      if (found[index]) {
+        return;
+      }
+      found[index] = true;
+      remaining--;
+      for (int j = 0; j < pendingCount; j++) {
+        if (pending[j] == index) {
+          pending[j] = pending[--pendingCount];
+          return;
+        }
+      }
+      automatonRemaining--;
+    }
+
+    /**
+     * Returns a copy of the found flags, indexed like the patterns. This ends the scan in multiline mode, as the
+     * runs of the lines still in the window are tested first.
+     */
+    boolean[] getFound() {
+      finish();
+      return found.clone();
+    }
+
+    /**
+     * Matches a line with a line terminator in it against a literal that is not {@link Literal#dotAll}. Such a
+     * literal cannot match the bytes of the line, as it has no terminator in it itself.
+     */
+    private boolean terminatorMatches(int index, CharSequence line) {
+      return !utf8Bytes && regexMatches(index, line);
+    }
+
+    private boolean regexMatches(int index, CharSequence line) {
+      Matcher matcher = matchers[index];
+      if (matcher == null) {
+        matcher = patterns.get(index).matcher(line);
+        matchers[index] = matcher;
+      } else {
+        matcher.reset(line);
+      }
+      return matcher.matches();
+    }
+  }
+
+  /**
+   * A pattern that is equivalent to comparing a line against a literal string.
+   */
+  static final class Literal {
+
+    /**
+     * How the literal is compared against a line.
+     */
+    enum Kind {
+      EQUALS, STARTS_WITH, ENDS_WITH, CONTAINS
+    }
+
+    final Kind kind;
+    final String text;
+    // whether the wildcards also match line terminators, so that the literal stands for the pattern on any line
+    final boolean dotAll;
+    @Nullable
+    private final LiteralSearch search;
+
+    Literal(Kind kind, String text) {
+      this(kind, text, false);
+    }
+
+    Literal(Kind kind, String text, boolean dotAll) {
+      this.kind = kind;
+      this.text = text;
+      this.dotAll = dotAll;
+      this.search = kind == Kind.CONTAINS ? new LiteralSearch(text) : null;
+    }
+
+    boolean equalsLine(CharSequence line) {
+      return line.length() == text.length() && regionMatches(line, 0);
+    }
+
+    /**
+     * Compares against a line that is known not to contain line terminators, unless the literal is {@link #dotAll}.
+     */
+    boolean matches(CharSequence line) {
+      switch (kind) {
+        case EQUALS:
+          return equalsLine(line);
+        case STARTS_WITH:
+          return line.length() >= text.length() && regionMatches(line, 0);
+        case ENDS_WITH:
+          return line.length() >= text.length() && regionMatches(line, line.length() - text.length());
+        default:
+          return search.isIn(line);
+      }
+    }
+
+    private boolean regionMatches(CharSequence line, int offset) {
+      for (int i = 0; i < text.length(); i++) {
+        if (line.charAt(offset + i) != text.charAt(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Returns the literal that the pattern is equivalent to, or null if it is not equivalent to a literal.
+     * Recognized forms are an optional {@code ^}, an optional leading {@code .*}, a literal, an optional
+     * trailing {@code .*} and an optional {@code $}, where the literal may use backslash escapes of
+     * non-alphanumeric characters and {@code \Q...\E} quoting. The only flag allowed is {@link Pattern#DOTALL}, as
+     * used for fixed strings.
+     */
+    @Nullable
+    static Literal parse(Pattern pattern) {
+      if (pattern.flags() != 0 && pattern.flags() != Pattern.DOTALL) {
+        return null;
+      }
+      String regex = pattern.pattern();
+      int start = 0;
+      int end = regex.length();
+      if (regex.startsWith("^")) {
+        start++;
+      }
+      boolean leadingWildcard = regex.startsWith(".*", start);
+      if (leadingWildcard) {
+        start += 2;
+      }
+      if (end > start && regex.charAt(end - 1) == '$' && !isEscaped(regex, end - 1)) {
+        end--;
+      }
+      boolean trailingWildcard = end - start >= 2 && regex.startsWith(".*", end - 2) && !isEscaped(regex, end - 2);
+      if (trailingWildcard) {
+        end -= 2;
+      }
+      String text = unescape(regex, start, end);
+      if (text == null || text.isEmpty()) {
+        return null;
+      }
+      Kind kind;
+      if (leadingWildcard && trailingWildcard) {
+        kind = Kind.CONTAINS;
+      } else if (leadingWildcard) {
+        kind = Kind.ENDS_WITH;
+      } else if (trailingWildcard) {
+        kind = Kind.STARTS_WITH;
+      } else {
+        kind = Kind.EQUALS;
+      }
+      return new Literal(kind, text, pattern.flags() == Pattern.DOTALL);
+    }
+
+    private static boolean isEscaped(String regex, int index) {
+      int backslashes = 0;
+      for (int i = index - 1; i >= 0 && regex.charAt(i) == '\\'; i--) {
+        backslashes++;
+      }
+      return backslashes % 2 == 1;
+    }
+
+    /**
+     * Returns the literal text of the given region of a regex, or null if it contains anything other than
+     * literal characters.
+     */
+    @Nullable
+    private static String unescape(String regex, int start, int end) {
+      StringBuilder text = new StringBuilder();
+      int i = start;
+      while (i < end) {
+        char c = regex.charAt(i);
+        if (c == '\\') {
+          if (i + 1 >= end) {
+            return null;
+          }
+          char escaped = regex.charAt(i + 1);
+          if (escaped == 'Q') {
+            int quoteEnd = regex.indexOf("\\E", i + 2);
+            if (quoteEnd < 0 || quoteEnd + 2 > end) {
+              return null;
+            }
+            text.append(regex, i + 2, quoteEnd);
+            i = quoteEnd + 2;
+            continue;
+          }
+          if (Character.isLetterOrDigit(escaped)) {
+            return null;
+          }
+          text.append(escaped);
+          i += 2;
+          continue;
+        }
+        if ("^$.|?*+()[]{}".indexOf(c) >= 0) {
+          return null;
+        }
+        text.append(c);
+        i++;
+      }
+      return text.toString();
+    }
+  }
+}
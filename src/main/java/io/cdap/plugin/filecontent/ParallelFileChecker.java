@@ -0,0 +1,185 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a check against a sequence of files, or of parts of a file, with a bounded number of checks in flight. With
+ * a concurrency of 1, the checks run one after the other on the calling thread, without creating any threads.
+ * The first check to fail cancels all outstanding checks, and once they have stopped, its exception is rethrown to
+ * the caller.
+ */
+final class ParallelFileChecker {
+  private static final Logger LOG = LoggerFactory.getLogger(ParallelFileChecker.class);
+  // how long to wait for cancelled checks to stop, which they do at their next read or within a few lines
+  private static final long CANCEL_TIMEOUT_SECONDS = 30;
+
+  private final int concurrency;
+
+  ParallelFileChecker(int concurrency) {
+    this.concurrency = concurrency;
+  }
+
+  /**
+   * Runs the check against every item, returning once all checks have passed. Items are only taken from the
+   * iterator when there is room for another check, so the iterator can stop early by returning false from
+   * {@link Iterator#hasNext()}.
+   *
+   * @return the number of items checked
+   * @throws IOException if a check failed with an {@link IOException} or the calling thread was interrupted
+   * @throws RuntimeException if a check failed with a {@link RuntimeException}
+   */
+  <T> int checkAll(Iterator<T> items, Check<? super T> check) throws IOException {
+    return checkAll(new RemoteIterator<T>() {
+      @Override
+      public boolean hasNext() {
+        return items.hasNext();
+      }
+
+      @Override
+      public T next() {
+        return items.next();
+      }
+    }, check);
+  }
+
+  /**
+   * Runs the check against every item of a remote iterator, such as a directory listing that is fetched in pages.
+   * Items are taken from the iterator as checks complete, so checks start before the iteration is done and only
+   * a bounded number of items is held at any time.
+   *
+   * @return the number of items checked
+   * @throws IOException if a check failed with an {@link IOException}, the iterator failed or the calling thread
+   *   was interrupted
+   * @throws RuntimeException if a check failed with a {@link RuntimeException}
+   */
+  <T> int checkAll(RemoteIterator<T> items, Check<? super T> check) throws IOException {
+    if (concurrency == 1) {
+      int count = 0;
+      while (items.hasNext()) {
+        check.check(items.next());
+        count++;
+      }
+      return count;
+    }
+    ExecutorService executor = newExecutor(concurrency);
+    CompletionService<Void> completionService = new ExecutorCompletionService<>(executor);
+    int inFlight = 0;
+    int count = 0;
+    try {
+      while (items.hasNext()) {
+        if (inFlight == concurrency) {
+          awaitOne(completionService);
+          inFlight--;
+        }
+        T item = items.next();
+        completionService.submit(() -> {
+          check.check(item);
+          return null;
+        });
+        inFlight++;
+        count++;
+      }
+      while (inFlight > 0) {
+        awaitOne(completionService);
+        inFlight--;
+      }
+    } finally {
+      // interrupts the checks that are still running if one of them failed, and waits for them to stop, so that
+      // the caller does not close what they are still reading through, such as the scanner
+      executor.shutdownNow();
+      awaitTermination(executor);
+    }
+    return count;
+  }
+
+  private static void awaitTermination(ExecutorService executor) {
+    try {
+      if (!executor.awaitTermination(CANCEL_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        LOG.warn("Cancelled checks were still running after {} seconds", CANCEL_TIMEOUT_SECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void awaitOne(CompletionService<Void> completionService) throws IOException {
+    try {
+      Future<Void> future = completionService.take();
+      future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for files to be checked");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  /**
+   * Creates an executor that runs each task in a virtual thread if the JVM supports them, or a fixed pool of
+   * daemon threads otherwise. The number of tasks in flight is bounded by the caller either way.
+   */
+  static ExecutorService newExecutor(int threads) {
+    try {
+      Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) method.invoke(null);
+    } catch (NoSuchMethodException e) {
+      // virtual threads are not available in this JVM
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      LOG.debug("Virtual threads are not usable, falling back to platform threads", e);
+    }
+    return Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+      .setDaemon(true)
+      .setNameFormat("file-contents-check-%d")
+      .build());
+  }
+
+  /**
+   * A check against a single item.
+   *
+   * @param <T> the type of item checked
+   */
+  interface Check<T> {
+    void check(T item) throws IOException;
+  }
+}
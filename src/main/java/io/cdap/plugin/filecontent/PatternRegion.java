@@ -0,0 +1,125 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import com.google.common.base.Strings;
+
+import java.util.Objects;
+import javax.annotation.Nullable;
+
+/**
+ * The part of a file that a contents pattern must be found in: the whole file, or a number of lines or bytes at its
+ * start or end. Written as {@code file}, or as {@code header} or {@code footer} followed by {@code :<lines>} and
+ * optionally {@code :<bytes>}, such as {@code header:1}, {@code footer::4096} or {@code footer:2:4096}.
+ */
+final class PatternRegion {
+  static final PatternRegion FILE = new PatternRegion(FileContentsConfig.ContentsRegion.FILE, null, null);
+
+  private final FileContentsConfig.ContentsRegion region;
+  @Nullable
+  private final Integer lines;
+  @Nullable
+  private final Long bytes;
+
+  PatternRegion(FileContentsConfig.ContentsRegion region, @Nullable Integer lines, @Nullable Long bytes) {
+    this.region = region;
+    this.lines = lines;
+    this.bytes = bytes;
+  }
+
+  /**
+   * Parses a region, taking the size of a header or footer that is written without one from the given default.
+   *
+   * @throws IllegalArgumentException if the region is not valid
+   */
+  static PatternRegion parse(String text, PatternRegion defaultRegion) {
+    String[] parts = text.trim().split(":", -1);
+    FileContentsConfig.ContentsRegion region;
+    Integer lines;
+    Long bytes;
+    try {
+      if (parts.length > 3) {
+        throw new IllegalArgumentException("Too many parts");
+      }
+      region = FileContentsConfig.ContentsRegion.valueOf(parts[0].toUpperCase());
+      lines = parts.length > 1 && !parts[1].isEmpty() ? Integer.valueOf(parts[1]) : null;
+      bytes = parts.length > 2 && !parts[2].isEmpty() ? Long.valueOf(parts[2]) : null;
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException(
+        String.format("Invalid pattern region '%s'. Use 'file', 'header:<lines>:<bytes>' or " +
+                        "'footer:<lines>:<bytes>'.", text), e);
+    }
+    if (region == FileContentsConfig.ContentsRegion.FILE) {
+      if (parts.length > 1) {
+        throw new IllegalArgumentException(String.format("The file region '%s' cannot have a size.", text));
+      }
+      return FILE;
+    }
+    if (lines == null && bytes == null) {
+      lines = defaultRegion.lines;
+      bytes = defaultRegion.bytes;
+    }
+    if ((lines == null && bytes == null) || (lines != null && lines < 1) || (bytes != null && bytes < 1)) {
+      throw new IllegalArgumentException(
+        String.format("The %s region '%s' needs a number of lines or bytes of at least 1.",
+                      region.name().toLowerCase(), text));
+    }
+    return new PatternRegion(region, lines, bytes);
+  }
+
+  /**
+   * Parses a region, or returns the default one if the text is empty.
+   */
+  static PatternRegion parseOrDefault(@Nullable String text, PatternRegion defaultRegion) {
+    return Strings.isNullOrEmpty(text) || text.trim().isEmpty() ? defaultRegion : parse(text, defaultRegion);
+  }
+
+  FileContentsConfig.ContentsRegion getRegion() {
+    return region;
+  }
+
+  @Nullable
+  Integer getLines() {
+    return lines;
+  }
+
+  @Nullable
+  Long getBytes() {
+    return bytes;
+  }
+
+  boolean isWholeFile() {
+    return region == FileContentsConfig.ContentsRegion.FILE;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    PatternRegion that = (PatternRegion) o;
+    return region == that.region && Objects.equals(lines, that.lines) && Objects.equals(bytes, that.bytes);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(region, lines, bytes);
+  }
+}
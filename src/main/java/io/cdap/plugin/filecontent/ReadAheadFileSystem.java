@@ -0,0 +1,301 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FilterFileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * A file system whose streams read ahead of their reader, so that waiting for the next chunk of a file overlaps
+ * with matching the current one. Once a stream is first read, a task fills chunks from a {@link BufferPool} with
+ * the bytes that follow, and queues up to a given depth of them, while the reader takes them from the queue in
+ * turn. On file systems where each read waits for a round trip, such as object stores, this keeps a read in flight
+ * at all times.
+ *
+ * Seeking to another position, and positional reads, stop the task and discard the chunks that were read ahead.
+ * The task is started again by the next read. All other operations are passed through.
+ */
+final class ReadAheadFileSystem extends FilterFileSystem {
+  // marks the end of the stream in the queue of chunks
+  private static final ByteBuffer END = ByteBuffer.allocate(0);
+  private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+  private final BufferPool pool;
+  private final int depth;
+  private final Executor executor;
+
+  /**
+   * @param depth the number of chunks that may be queued, read ahead, for the reader
+   * @param executor the executor that runs a task for each stream that is reading ahead
+   */
+  ReadAheadFileSystem(FileSystem fileSystem, BufferPool pool, int depth, Executor executor) {
+    super(fileSystem);
+    this.pool = pool;
+    this.depth = depth;
+    this.executor = executor;
+  }
+
+  @Override
+  public FSDataInputStream open(Path path, int bufferSize) throws IOException {
+    return new FSDataInputStream(new ReadAheadInputStream(fs.open(path, bufferSize)));
+  }
+
+  /**
+   * Reads a stream of the underlying file system ahead of its reader.
+   */
+  private final class ReadAheadInputStream extends FSInputStream {
+    private final FSDataInputStream in;
+    // the queue, and the state of the task that fills it, while the stream is reading ahead
+    @Nullable
+    private BlockingQueue<ByteBuffer> chunks;
+    private volatile boolean stopping;
+    @Nullable
+    private volatile IOException failure;
+    private CountDownLatch stopped;
+    @Nullable
+    private ByteBuffer current;
+    private boolean eof;
+    private long position;
+
+    private ReadAheadInputStream(FSDataInputStream in) throws IOException {
+      this.in = in;
+      this.position = in.getPos();
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (!nextChunk()) {
+        return -1;
+      }
+      position++;
+      return current.get() & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      if (!nextChunk()) {
+        return -1;
+      }
+      int n = Math.min(len, current.remaining());
+      current.get(b, off, n);
+      position += n;
+      return n;
+    }
+
+    /**
+     * Makes sure that the current chunk has bytes left, taking the next one from the queue if needed.
+     *
+     * @return false if the end of the stream was reached
+     */
+    private boolean nextChunk() throws IOException {
+      while (current == null || !current.hasRemaining()) {
+        if (eof) {
+          return false;
+        }
+        if (current != null) {
+          pool.release(current);
+          current = null;
+        }
+        if (chunks == null) {
+          start();
+        }
+        ByteBuffer next;
+        try {
+          next = chunks.take();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while waiting for the next chunk");
+        }
+        if (next == END) {
+          eof = true;
+          IOException error = failure;
+          if (error != null) {
+            throw error;
+          }
+          return false;
+        }
+        current = next;
+      }
+      return true;
+    }
+
+    private void start() {
+      BlockingQueue<ByteBuffer> queue = new ArrayBlockingQueue<>(depth);
+      CountDownLatch done = new CountDownLatch(1);
+      chunks = queue;
+      stopped = done;
+      stopping = false;
+      failure = null;
+      executor.execute(() -> {
+        try {
+          prefetch(queue);
+        } finally {
+          done.countDown();
+        }
+      });
+    }
+
+    /**
+     * Fills chunks from the underlying stream and queues them, until the end of the stream or until stopped.
+     */
+    private void prefetch(BlockingQueue<ByteBuffer> queue) {
+      try {
+        boolean end = false;
+        while (!end && !stopping) {
+          ByteBuffer buffer = pool.acquire();
+          end = fill(buffer);
+          buffer.flip();
+          if (!buffer.hasRemaining() || !offer(queue, buffer)) {
+            pool.release(buffer);
+          }
+        }
+      } catch (IOException e) {
+        if (!stopping) {
+          failure = e;
+        }
+      }
+      offer(queue, END);
+    }
+
+    /**
+     * Reads from the underlying stream until the buffer is full.
+     *
+     * @return true if the end of the stream was reached
+     */
+    private boolean fill(ByteBuffer buffer) throws IOException {
+      while (buffer.hasRemaining()) {
+        int n = in.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        if (n < 0) {
+          return true;
+        }
+        buffer.position(buffer.position() + n);
+      }
+      return false;
+    }
+
+    /**
+     * Waits for room in the queue, unless the stream is being stopped.
+     */
+    private boolean offer(BlockingQueue<ByteBuffer> queue, ByteBuffer buffer) {
+      try {
+        while (!stopping) {
+          if (queue.offer(buffer, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+            return true;
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return false;
+    }
+
+    /**
+     * Stops reading ahead and discards the chunks that were read ahead, leaving the underlying stream at the
+     * position of the reader.
+     */
+    private void stop() throws IOException {
+      if (current != null) {
+        pool.release(current);
+        current = null;
+      }
+      eof = false;
+      if (chunks == null) {
+        return;
+      }
+      stopping = true;
+      Uninterruptibles.awaitUninterruptibly(stopped);
+      discardChunks();
+      in.seek(position);
+    }
+
+    private void discardChunks() {
+      ByteBuffer chunk;
+      while ((chunk = chunks.poll()) != null) {
+        if (chunk != END) {
+          pool.release(chunk);
+        }
+      }
+      chunks = null;
+    }
+
+    @Override
+    public void seek(long pos) throws IOException {
+      if (pos == position) {
+        return;
+      }
+      stop();
+      in.seek(pos);
+      position = pos;
+    }
+
+    @Override
+    public long getPos() {
+      return position;
+    }
+
+    @Override
+    public boolean seekToNewSource(long targetPos) {
+      return false;
+    }
+
+    @Override
+    public int read(long pos, byte[] buffer, int offset, int length) throws IOException {
+      stop();
+      return in.read(pos, buffer, offset, length);
+    }
+
+    @Override
+    public int available() {
+      return current == null ? 0 : current.remaining();
+    }
+
+    @Override
+    public void close() throws IOException {
+      stopping = true;
+      try {
+        // closing the stream first ends a read that the task may be waiting on
+        in.close();
+      } finally {
+        if (chunks != null) {
+          Uninterruptibles.awaitUninterruptibly(stopped);
+          discardChunks();
+        }
+        if (current != null) {
+          pool.release(current);
+          current = null;
+        }
+      }
+    }
+  }
+}
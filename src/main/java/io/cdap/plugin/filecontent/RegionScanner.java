@@ -0,0 +1,236 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.io.compress.CompressionCodec;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Scans the region of a file that each pattern must be found in: all of it, or only its header or footer. The header
+ * is read from the start of the file and the footer is read by seeking close to the end, so only the regions that
+ * are checked are read. Compressed files cannot be read from an arbitrary position, so their footer is found by
+ * decompressing the whole file, keeping only its last lines. Patterns in different regions are matched in a
+ * separate read of each region, within the same check of the file.
+ */
+final class RegionScanner {
+  // size of the tail that is read first when looking for the last lines of a file without a byte limit
+  static final long DEFAULT_FOOTER_WINDOW = 64 * 1024;
+
+  private final MultiPatternMatcher matcher;
+  private final List<PatternRegion> regions;
+  private final FileContentsConfig.ScanMode scanMode;
+  private final LineLimit lineLimit;
+  @Nullable
+  private final CompressionCodec codec;
+  private final long initialFooterWindow;
+  private final TextEncoding encoding;
+
+  /**
+   * Creates a scanner for files compressed with the given codec, or uncompressed files if it is null.
+   *
+   * @param regions the region of each pattern, indexed like the patterns of the matcher
+   * @param initialFooterWindow the size of the tail that is read first when looking for the last lines of a file
+   */
+  RegionScanner(MultiPatternMatcher matcher, List<PatternRegion> regions, FileContentsConfig.ScanMode scanMode,
+                LineLimit lineLimit, @Nullable CompressionCodec codec, long initialFooterWindow,
+                TextEncoding encoding) {
+    this.matcher = matcher;
+    this.regions = regions;
+    this.scanMode = scanMode;
+    this.lineLimit = lineLimit;
+    this.codec = codec;
+    this.initialFooterWindow = initialFooterWindow;
+    this.encoding = encoding;
+  }
+
+  ScanResult scan(FileSystem fileSystem, FileStatus file) throws IOException {
+    // the patterns that are not in each region, for the regions in the order that they first appear
+    Map<PatternRegion, boolean[]> skipped = new LinkedHashMap<>();
+    for (int i = 0; i < regions.size(); i++) {
+      skipped.computeIfAbsent(regions.get(i), region -> {
+        boolean[] all = new boolean[regions.size()];
+        Arrays.fill(all, true);
+        return all;
+      })[i] = false;
+    }
+    if (skipped.size() <= 1) {
+      return scan(fileSystem, file, regions.isEmpty() ? PatternRegion.FILE : regions.get(0), null);
+    }
+    boolean[] found = new boolean[regions.size()];
+    long bytesRead = 0;
+    long linesScanned = 0;
+    boolean earlyExit = true;
+    for (Map.Entry<PatternRegion, boolean[]> entry : skipped.entrySet()) {
+      ScanResult result = scan(fileSystem, file, entry.getKey(), entry.getValue());
+      for (int i = 0; i < found.length; i++) {
+        if (!entry.getValue()[i]) {
+          found[i] = result.isFound(i);
+        }
+      }
+      bytesRead += result.getBytesRead();
+      linesScanned += result.getLinesScanned();
+      earlyExit &= result.isEarlyExit();
+    }
+    return new ScanResult(found, bytesRead, linesScanned, codec == null ? file.getLen() : -1, earlyExit);
+  }
+
+  /**
+   * Scans a single region of the file for the patterns that are not skipped.
+   *
+   * @param skipped the patterns that are not in the region, which are reported as found, or null if every pattern is
+   */
+  private ScanResult scan(FileSystem fileSystem, FileStatus file, PatternRegion region,
+                          @Nullable boolean[] skipped) throws IOException {
+    // the decompressed length of a compressed file is not known up front
+    long length = codec == null ? file.getLen() : -1;
+    switch (region.getRegion()) {
+      case HEADER:
+        return scanHeader(fileSystem, file, length, region, skipped);
+      case FOOTER:
+        return codec == null ?
+          scanFooter(fileSystem, file, region, skipped) : scanCompressedFooter(fileSystem, file, region, skipped);
+      default:
+        return new ContentsScanner(matcher).scan(
+          LineReaders.open(fileSystem, file, codec, scanMode, lineLimit, 0, Long.MAX_VALUE, encoding), length,
+          Long.MAX_VALUE, skipped);
+    }
+  }
+
+  /**
+   * Scans the first lines or bytes of the file, whichever limit is reached first.
+   */
+  private ScanResult scanHeader(FileSystem fileSystem, FileStatus file, long length, PatternRegion region,
+                                @Nullable boolean[] skipped) throws IOException {
+    long limit = region.getBytes() == null ? Long.MAX_VALUE : region.getBytes();
+    long maxLines = region.getLines() == null ? Long.MAX_VALUE : region.getLines();
+    return new ContentsScanner(matcher).scan(
+      LineReaders.open(fileSystem, file, codec, scanMode, lineLimit, 0, limit, encoding), length, maxLines,
+      skipped);
+  }
+
+  /**
+   * Scans the last lines or bytes of the file. The tail of the file is read from a position near the end, and the
+   * first, possibly partial, line in it is dropped unless the tail starts at the beginning of the file. When only
+   * a number of lines is given, the tail grows until it holds that many lines.
+   */
+  private ScanResult scanFooter(FileSystem fileSystem, FileStatus file, PatternRegion region,
+                                @Nullable boolean[] skipped) throws IOException {
+    Integer lines = region.getLines();
+    Long bytes = region.getBytes();
+    long length = file.getLen();
+    long window = bytes == null ? initialFooterWindow : bytes;
+    long totalBytesRead = 0;
+    while (true) {
+      long offset = Math.max(0, length - window);
+      // start one byte early, so that the first line read is only complete if that byte ends a line
+      long readFrom = offset == 0 ? 0 : offset - 1;
+      Deque<String> tail = new ArrayDeque<>();
+      long linesRead = 0;
+      MultiPatternMatcher.State state;
+      try (LineReader reader = LineReaders.open(fileSystem, file, null, scanMode, lineLimit, readFrom,
+                                                Long.MAX_VALUE, encoding)) {
+        state = newState(reader, skipped);
+        if (offset > 0) {
+          reader.skipLine();
+        }
+        CharSequence line;
+        while ((line = reader.readLine()) != null) {
+          linesRead++;
+          if (lines == null) {
+            state.match(line);
+          } else {
+            // the line may be a reused view, so it has to be copied to be kept
+            tail.addLast(line.toString());
+            if (tail.size() > lines) {
+              tail.removeFirst();
+            }
+          }
+        }
+        totalBytesRead += reader.getBytesRead();
+      }
+      if (lines != null && tail.size() < lines && offset > 0 && bytes == null) {
+        window *= 4;
+        continue;
+      }
+      for (String line : tail) {
+        state.match(line);
+      }
+      return new ScanResult(state.getFound(), totalBytesRead, linesRead, length, offset > 0);
+    }
+  }
+
+  /**
+   * Scans the last lines or bytes of a compressed file by decompressing all of it and keeping the lines that are
+   * within the region. Like for uncompressed files, a footer of a number of bytes holds the lines that start
+   * within that many bytes of the end.
+   */
+  private ScanResult scanCompressedFooter(FileSystem fileSystem, FileStatus file, PatternRegion region,
+                                          @Nullable boolean[] skipped) throws IOException {
+    Integer lines = region.getLines();
+    Long bytes = region.getBytes();
+    Deque<String> tail = new ArrayDeque<>();
+    Deque<Long> tailSizes = new ArrayDeque<>();
+    long tailBytes = 0;
+    long linesRead = 0;
+    long bytesRead;
+    MultiPatternMatcher.State state;
+    try (LineReader reader = LineReaders.open(fileSystem, file, codec, scanMode, lineLimit, 0, Long.MAX_VALUE,
+                                              encoding)) {
+      state = newState(reader, skipped);
+      CharSequence line;
+      while ((line = reader.readLine()) != null) {
+        linesRead++;
+        // the line may be a reused view, so it has to be copied to be kept
+        String copy = line.toString();
+        // counts a single byte for the line terminator
+        long size = (reader.isUtf8Bytes() ? copy.length() : LineReaders.utf8Length(copy)) + 1;
+        tail.addLast(copy);
+        tailSizes.addLast(size);
+        tailBytes += size;
+        while ((lines != null && tail.size() > lines) || (bytes != null && tailBytes > bytes)) {
+          tail.removeFirst();
+          tailBytes -= tailSizes.removeFirst();
+        }
+      }
+      bytesRead = reader.getBytesRead();
+    }
+    for (String line : tail) {
+      state.match(line);
+    }
+    return new ScanResult(state.getFound(), bytesRead, linesRead, -1, false);
+  }
+
+  private MultiPatternMatcher.State newState(LineReader reader, @Nullable boolean[] skipped) {
+    MultiPatternMatcher.State state = matcher.newState(reader);
+    for (int i = 0; skipped != null && i < skipped.length; i++) {
+      if (skipped[i]) {
+        state.markFound(i);
+      }
+    }
+    return state;
+  }
+}
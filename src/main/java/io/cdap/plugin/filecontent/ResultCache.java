@@ -0,0 +1,349 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import com.google.common.hash.Hashing;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/**
+ * Remembers the outcome of checking a file across runs, so that files that have not changed since they were last
+ * checked are not read again. A file is considered unchanged if its path, length and modification time are the
+ * same, and it is only looked up with the fingerprint of the settings that it was checked with, so a cache can be
+ * shared by stages that check different patterns.
+ *
+ * In incremental mode, an entry also holds the {@link ScanProgress} of the file, so that a file that has grown since
+ * it was last checked is only scanned from where that check ended. The progress is not used once the file has
+ * shrunk, or has changed without growing.
+ *
+ * The cache is kept in a single file that is read when the cache is opened and replaced when it is saved. Once the
+ * cache holds more than the maximum number of entries, the entries that were used least recently are evicted.
+ * Stages and runs that share a cache file each save to a temporary file of their own, and merge the entries that
+ * the others have saved in the meantime. Two saves that run at the very same moment can still miss each other's new
+ * entries, which only means that those files are checked again.
+ */
+final class ResultCache {
+  private static final Logger LOG = LoggerFactory.getLogger(ResultCache.class);
+  private static final int MAGIC = 0x46434331;
+
+  private final FileSystem fileSystem;
+  private final Path path;
+  private final long fingerprint;
+  private final int maxEntries;
+  private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong resumes = new AtomicLong();
+  // the temporary file that the entries were recovered from, which the next save replaces
+  private Path recovered;
+
+  private ResultCache(FileSystem fileSystem, Path path, long fingerprint, int maxEntries) {
+    this.fileSystem = fileSystem;
+    this.path = path;
+    this.fingerprint = fingerprint;
+    this.maxEntries = maxEntries;
+  }
+
+  /**
+   * Opens the cache stored in the given file, which does not have to exist yet. A cache file that cannot be read
+   * is ignored, so that the cache never fails a check.
+   *
+   * @param settings the settings that affect the outcome of a check, which the entries are looked up with
+   */
+  static ResultCache open(FileSystem fileSystem, Path path, String settings, int maxEntries) {
+    long fingerprint = Hashing.sha256().hashString(settings, StandardCharsets.UTF_8).asLong();
+    ResultCache cache = new ResultCache(fileSystem, path, fingerprint, maxEntries);
+    try {
+      if (!read(fileSystem, path, cache.entries)) {
+        cache.recover();
+      }
+    } catch (IOException | RuntimeException e) {
+      LOG.warn("Ignoring result cache {} because it cannot be read", path, e);
+      cache.entries.clear();
+    }
+    return cache;
+  }
+
+  /**
+   * Reads the entries of a cache file into the given map.
+   *
+   * @return false if the file does not exist
+   */
+  private static boolean read(FileSystem fileSystem, Path file, Map<Key, Entry> entries) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(fileSystem.open(file)))) {
+      if (in.readInt() != MAGIC) {
+        throw new IOException("Not a result cache file");
+      }
+      int size = in.readInt();
+      for (int i = 0; i < size; i++) {
+        Key key = new Key(in.readUTF(), in.readLong());
+        long length = in.readLong();
+        long modificationTime = in.readLong();
+        Outcome outcome = Outcome.values()[in.readByte()];
+        long lastUsed = in.readLong();
+        ScanProgress progress = in.readBoolean() ? readProgress(in) : null;
+        entries.put(key, new Entry(length, modificationTime, outcome, lastUsed, progress));
+      }
+      return true;
+    } catch (FileNotFoundException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Reads the entries of the newest complete temporary file left behind by a save that failed after the cache file
+   * was removed, if there is one.
+   */
+  private void recover() {
+    FileStatus[] temps;
+    try {
+      temps = fileSystem.globStatus(new Path(path.getParent(), "." + path.getName() + ".*.tmp"));
+    } catch (IOException e) {
+      LOG.debug("Failed to look for temporary files of result cache {}", path, e);
+      return;
+    }
+    if (temps == null || temps.length == 0) {
+      LOG.debug("Result cache {} does not exist yet", path);
+      return;
+    }
+    Arrays.sort(temps, Comparator.comparingLong(FileStatus::getModificationTime).reversed());
+    for (FileStatus temp : temps) {
+      try {
+        // a temporary file may also belong to a save that is still being written
+        if (read(fileSystem, temp.getPath(), entries)) {
+          LOG.info("Recovered result cache {} from {}", path, temp.getPath());
+          recovered = temp.getPath();
+          return;
+        }
+      } catch (IOException | RuntimeException e) {
+        LOG.debug("Ignoring temporary file {} of result cache {}", temp.getPath(), path, e);
+      }
+      entries.clear();
+    }
+  }
+
+  /**
+   * Returns the outcome of the last check of the file, or null if it has changed or was not checked before.
+   */
+  @Nullable
+  Outcome get(FileStatus file) {
+    Key key = new Key(file.getPath().toString(), fingerprint);
+    Entry entry = entries.get(key);
+    if (entry == null || entry.length != file.getLen() || entry.modificationTime != file.getModificationTime()) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    entries.put(key, new Entry(entry.length, entry.modificationTime, entry.outcome, System.currentTimeMillis(),
+                               entry.progress));
+    return entry.outcome;
+  }
+
+  /**
+   * Returns the progress of the last scan of the file, if the file may only have been appended to since then, or
+   * null otherwise.
+   */
+  @Nullable
+  ScanProgress getProgress(FileStatus file) {
+    Entry entry = entries.get(new Key(file.getPath().toString(), fingerprint));
+    if (entry == null || entry.progress == null || file.getLen() < entry.length
+      || (file.getLen() == entry.length && file.getModificationTime() != entry.modificationTime)) {
+      return null;
+    }
+    resumes.incrementAndGet();
+    return entry.progress;
+  }
+
+  void put(FileStatus file, Outcome outcome) {
+    put(file, outcome, null);
+  }
+
+  void put(FileStatus file, Outcome outcome, @Nullable ScanProgress progress) {
+    entries.put(new Key(file.getPath().toString(), fingerprint),
+                new Entry(file.getLen(), file.getModificationTime(), outcome, System.currentTimeMillis(), progress));
+  }
+
+  long getHits() {
+    return hits.get();
+  }
+
+  long getMisses() {
+    return misses.get();
+  }
+
+  long getResumes() {
+    return resumes.get();
+  }
+
+  /**
+   * Merges the entries in the cache file, which another stage or run may have saved since this cache was opened,
+   * evicts the least recently used entries beyond the maximum and replaces the cache file. The new contents are
+   * written to a temporary file of this save first, so that a failed save leaves the previous cache intact.
+   */
+  void save() throws IOException {
+    Map<Key, Entry> merged = new HashMap<>();
+    try {
+      read(fileSystem, path, merged);
+    } catch (IOException | RuntimeException e) {
+      LOG.warn("Replacing result cache {} because it cannot be read", path, e);
+      merged.clear();
+    }
+    // of two entries for the same file and settings, the one used last is kept
+    entries.forEach((key, entry) -> merged.merge(key, entry, (a, b) -> a.lastUsed >= b.lastUsed ? a : b));
+
+    List<Map.Entry<Key, Entry>> sorted = new ArrayList<>(merged.entrySet());
+    sorted.sort(Comparator.comparingLong((Map.Entry<Key, Entry> e) -> e.getValue().lastUsed).reversed());
+    int evicted = Math.max(0, sorted.size() - maxEntries);
+    List<Map.Entry<Key, Entry>> kept = sorted.subList(0, sorted.size() - evicted);
+
+    Path temp = new Path(path.getParent(), "." + path.getName() + "." + UUID.randomUUID() + ".tmp");
+    try {
+      try (FSDataOutputStream stream = fileSystem.create(temp, false);
+           DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+        out.writeInt(MAGIC);
+        out.writeInt(kept.size());
+        for (Map.Entry<Key, Entry> e : kept) {
+          out.writeUTF(e.getKey().path);
+          out.writeLong(e.getKey().fingerprint);
+          out.writeLong(e.getValue().length);
+          out.writeLong(e.getValue().modificationTime);
+          out.writeByte(e.getValue().outcome.ordinal());
+          out.writeLong(e.getValue().lastUsed);
+          ScanProgress progress = e.getValue().progress;
+          out.writeBoolean(progress != null);
+          if (progress != null) {
+            writeProgress(out, progress);
+          }
+        }
+      }
+      // rename does not replace an existing file on every file system, in which case the cache file is removed
+      // first, and the next open recovers the temporary file if the save fails in between
+      if (!fileSystem.rename(temp, path) && !(fileSystem.delete(path, false) && fileSystem.rename(temp, path))) {
+        throw new IOException(String.format("Failed to move %s to %s", temp, path));
+      }
+    } catch (IOException e) {
+      fileSystem.delete(temp, false);
+      throw e;
+    }
+    if (recovered != null) {
+      fileSystem.delete(recovered, false);
+      recovered = null;
+    }
+    LOG.info("Result cache {}: {} hits, {} misses, {} resumed, {} entries, {} evicted",
+             path, hits.get(), misses.get(), resumes.get(), kept.size(), evicted);
+  }
+
+  private static ScanProgress readProgress(DataInputStream in) throws IOException {
+    long offset = in.readLong();
+    long checksum = in.readLong();
+    boolean[] found = new boolean[in.readInt()];
+    for (int i = 0; i < found.length; i++) {
+      found[i] = in.readBoolean();
+    }
+    return new ScanProgress(offset, found, checksum);
+  }
+
+  private static void writeProgress(DataOutputStream out, ScanProgress progress) throws IOException {
+    out.writeLong(progress.getOffset());
+    out.writeLong(progress.getChecksum());
+    out.writeInt(progress.getFound().length);
+    for (boolean found : progress.getFound()) {
+      out.writeBoolean(found);
+    }
+  }
+
+  /**
+   * The outcome of checking a file.
+   */
+  enum Outcome {
+    PASSED,
+    EMPTY,
+    MISSING_CONTENTS
+  }
+
+  /**
+   * A file checked with a set of settings.
+   */
+  private static final class Key {
+    private final String path;
+    private final long fingerprint;
+
+    Key(String path, long fingerprint) {
+      this.path = path;
+      this.fingerprint = fingerprint;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key that = (Key) o;
+      return fingerprint == that.fingerprint && path.equals(that.path);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * path.hashCode() + Long.hashCode(fingerprint);
+    }
+  }
+
+  /**
+   * The outcome of the last check of a file, with the version of the file that it applies to.
+   */
+  private static final class Entry {
+    private final long length;
+    private final long modificationTime;
+    private final Outcome outcome;
+    private final long lastUsed;
+    @Nullable
+    private final ScanProgress progress;
+
+    Entry(long length, long modificationTime, Outcome outcome, long lastUsed, @Nullable ScanProgress progress) {
+      this.length = length;
+      this.modificationTime = modificationTime;
+      this.outcome = outcome;
+      this.lastUsed = lastUsed;
+      this.progress = progress;
+    }
+  }
+}
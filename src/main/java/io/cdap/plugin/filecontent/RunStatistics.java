@@ -0,0 +1,59 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import io.cdap.cdap.etl.api.action.SettableArguments;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The {@link FileStatistics} of the files checked in a run, gathered from all the threads that scan files, and
+ * published as arguments for the stages that run after the action.
+ *
+ * Each file gets the arguments {@code <prefix><path>.lines}, {@code <prefix><path>.bytes} and, if a digest was
+ * computed, {@code <prefix><path>.digest}. The totals over all the files are {@code <prefix>files},
+ * {@code <prefix>lines} and {@code <prefix>bytes}.
+ */
+final class RunStatistics {
+  // sorted by path, so that the arguments are set in the same order on every run
+  private final ConcurrentMap<String, FileStatistics> files = new ConcurrentSkipListMap<>();
+
+  void add(String path, FileStatistics statistics) {
+    files.put(path, statistics);
+  }
+
+  void publish(SettableArguments arguments, String prefix) {
+    long lines = 0;
+    long bytes = 0;
+    for (Map.Entry<String, FileStatistics> entry : files.entrySet()) {
+      String name = prefix + entry.getKey();
+      FileStatistics statistics = entry.getValue();
+      arguments.set(name + ".lines", String.valueOf(statistics.getLines()));
+      arguments.set(name + ".bytes", String.valueOf(statistics.getBytes()));
+      if (statistics.getDigest() != null) {
+        arguments.set(name + ".digest", statistics.getDigest());
+      }
+      lines += statistics.getLines();
+      bytes += statistics.getBytes();
+    }
+    arguments.set(prefix + "files", String.valueOf(files.size()));
+    arguments.set(prefix + "lines", String.valueOf(lines));
+    arguments.set(prefix + "bytes", String.valueOf(bytes));
+  }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import io.cdap.cdap.etl.api.StageMetrics;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.RemoteIterator;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Counters and timers for a run of the action, shared by all the threads that list and scan files.
+ *
+ * The time spent listing, opening and reading files is measured on every call, as those calls each cover many
+ * lines. Matching is measured on one line in every {@link #SAMPLE_INTERVAL} only, and the match times are
+ * estimates scaled up from those samples, so that the timer does not slow down the scan of short lines.
+ */
+final class ScanMetrics {
+  static final int SAMPLE_INTERVAL = 64;
+
+  private final List<Pattern> patterns;
+  private final LongAdder filesListed = new LongAdder();
+  private final LongAdder filesScanned = new LongAdder();
+  private final LongAdder bytesRead = new LongAdder();
+  private final LongAdder linesScanned = new LongAdder();
+  private final LongAdder earlyExits = new LongAdder();
+  private final LongAdder listNanos = new LongAdder();
+  private final LongAdder openNanos = new LongAdder();
+  private final LongAdder readNanos = new LongAdder();
+  private final LongAdder matchNanos = new LongAdder();
+  private final LongAdder[] patternNanos;
+
+  ScanMetrics(List<Pattern> patterns) {
+    this.patterns = patterns;
+    this.patternNanos = new LongAdder[patterns.size()];
+    for (int i = 0; i < patternNanos.length; i++) {
+      patternNanos[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Returns true if the match time of the given line, numbered from 1, should be measured.
+   */
+  static boolean isSampled(long lineNumber) {
+    return lineNumber % SAMPLE_INTERVAL == 0;
+  }
+
+  void addListTime(long nanos) {
+    listNanos.add(nanos);
+  }
+
+  void addOpenTime(long nanos) {
+    openNanos.add(nanos);
+  }
+
+  void addReadTime(long nanos) {
+    readNanos.add(nanos);
+  }
+
+  /**
+   * Adds the time taken to match a sampled line against all of the patterns.
+   */
+  void addSampledMatchTime(long nanos) {
+    matchNanos.add(nanos * SAMPLE_INTERVAL);
+  }
+
+  /**
+   * Adds the time taken to match a sampled line against the pattern at the given index.
+   */
+  void addSampledPatternTime(int index, long nanos) {
+    patternNanos[index].add(nanos * SAMPLE_INTERVAL);
+  }
+
+  void addScan(ScanResult result) {
+    filesScanned.increment();
+    bytesRead.add(result.getBytesRead());
+    linesScanned.add(result.getLinesScanned());
+    if (result.isEarlyExit()) {
+      earlyExits.increment();
+    }
+  }
+
+  /**
+   * Returns an iterator over the given listing that counts the files and the time spent waiting for them.
+   */
+  RemoteIterator<FileStatus> timeListing(RemoteIterator<FileStatus> files) {
+    return new RemoteIterator<FileStatus>() {
+      @Override
+      public boolean hasNext() throws IOException {
+        long start = System.nanoTime();
+        try {
+          return files.hasNext();
+        } finally {
+          listNanos.add(System.nanoTime() - start);
+        }
+      }
+
+      @Override
+      public FileStatus next() throws IOException {
+        long start = System.nanoTime();
+        try {
+          FileStatus file = files.next();
+          filesListed.increment();
+          return file;
+        } finally {
+          listNanos.add(System.nanoTime() - start);
+        }
+      }
+    };
+  }
+
+  long getFilesListed() {
+    return filesListed.sum();
+  }
+
+  long getFilesScanned() {
+    return filesScanned.sum();
+  }
+
+  long getBytesRead() {
+    return bytesRead.sum();
+  }
+
+  long getLinesScanned() {
+    return linesScanned.sum();
+  }
+
+  long getEarlyExits() {
+    return earlyExits.sum();
+  }
+
+  long getListNanos() {
+    return listNanos.sum();
+  }
+
+  long getOpenNanos() {
+    return openNanos.sum();
+  }
+
+  long getReadNanos() {
+    return readNanos.sum();
+  }
+
+  long getMatchNanos() {
+    return matchNanos.sum();
+  }
+
+  long getPatternNanos(int index) {
+    return patternNanos[index].sum();
+  }
+
+  /**
+   * Publishes the metrics of the run. Counts are published as counters and totals that may not fit in an int, such
+   * as bytes, lines and times, as gauges.
+   */
+  void publish(StageMetrics metrics) {
+    metrics.count("files.listed", toInt(getFilesListed()));
+    metrics.count("files.scanned", toInt(getFilesScanned()));
+    metrics.count("files.early.exits", toInt(getEarlyExits()));
+    metrics.gauge("bytes.read", getBytesRead());
+    metrics.gauge("lines.scanned", getLinesScanned());
+    metrics.gauge("time.list.ms", toMillis(getListNanos()));
+    metrics.gauge("time.open.ms", toMillis(getOpenNanos()));
+    metrics.gauge("time.read.ms", toMillis(getReadNanos()));
+    metrics.gauge("time.match.ms", toMillis(getMatchNanos()));
+    for (int i = 0; i < patternNanos.length; i++) {
+      metrics.gauge("time.match.pattern." + i + ".ms", toMillis(getPatternNanos(i)));
+    }
+  }
+
+  /**
+   * Returns a one line summary of the run, with the pattern that took the longest to match, if any.
+   */
+  String getSummary() {
+    StringBuilder summary = new StringBuilder();
+    summary.append(String.format("Listed %d files and scanned %d, reading %d bytes and %d lines, %d stopped early. "
+                                   + "Time spent listing %d ms, opening %d ms, reading %d ms, matching about %d ms",
+                                 getFilesListed(), getFilesScanned(), getBytesRead(), getLinesScanned(),
+                                 getEarlyExits(), toMillis(getListNanos()), toMillis(getOpenNanos()),
+                                 toMillis(getReadNanos()), toMillis(getMatchNanos())));
+    int slowest = -1;
+    for (int i = 0; i < patternNanos.length; i++) {
+      if (slowest < 0 || getPatternNanos(i) > getPatternNanos(slowest)) {
+        slowest = i;
+      }
+    }
+    if (slowest >= 0 && getPatternNanos(slowest) > 0) {
+      summary.append(String.format(", of which about %d ms on pattern %s", toMillis(getPatternNanos(slowest)),
+                                   patterns.get(slowest).pattern()));
+    }
+    return summary.toString();
+  }
+
+  private static long toMillis(long nanos) {
+    return TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+
+  private static int toInt(long count) {
+    return (int) Math.min(Integer.MAX_VALUE, count);
+  }
+}
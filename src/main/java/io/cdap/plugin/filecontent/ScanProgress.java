@@ -0,0 +1,49 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+/**
+ * How far a file that is only appended to has been scanned, so that the next scan can resume where this one ended.
+ * The offset is the end of the last complete line that was scanned, and the checksum covers the bytes just before
+ * it, to tell whether the file was appended to or rewritten in the meantime.
+ */
+final class ScanProgress {
+  private final long offset;
+  private final boolean[] found;
+  private final long checksum;
+
+  ScanProgress(long offset, boolean[] found, long checksum) {
+    this.offset = offset;
+    this.found = found;
+    this.checksum = checksum;
+  }
+
+  long getOffset() {
+    return offset;
+  }
+
+  /**
+   * Returns the found flags of the patterns in the lines before the offset, indexed like the patterns.
+   */
+  boolean[] getFound() {
+    return found;
+  }
+
+  long getChecksum() {
+    return checksum;
+  }
+}
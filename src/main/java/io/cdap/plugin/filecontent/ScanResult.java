@@ -0,0 +1,149 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import javax.annotation.Nullable;
+
+/**
+ * The outcome of scanning a single file for the contents patterns.
+ */
+final class ScanResult {
+  private final boolean[] found;
+  private final long bytesRead;
+  private final long linesScanned;
+  private final long length;
+  private final boolean earlyExit;
+  private final boolean startScanned;
+  @Nullable
+  private final ScanProgress progress;
+  @Nullable
+  private final FileStatistics statistics;
+
+  ScanResult(boolean[] found, long bytesRead, long linesScanned, long length, boolean earlyExit) {
+    this(found, bytesRead, linesScanned, length, earlyExit, null);
+  }
+
+  ScanResult(boolean[] found, long bytesRead, long linesScanned, long length, boolean earlyExit,
+             @Nullable ScanProgress progress) {
+    this(found, bytesRead, linesScanned, length, earlyExit, progress, null);
+  }
+
+  ScanResult(boolean[] found, long bytesRead, long linesScanned, long length, boolean earlyExit,
+             @Nullable ScanProgress progress, @Nullable FileStatistics statistics) {
+    this(found, bytesRead, linesScanned, length, earlyExit, progress, statistics, true);
+  }
+
+  /**
+   * @param startScanned whether the scan covered the start of the file, which is not the case when only some of its
+   *   ranges were scanned
+   */
+  ScanResult(boolean[] found, long bytesRead, long linesScanned, long length, boolean earlyExit,
+             @Nullable ScanProgress progress, @Nullable FileStatistics statistics, boolean startScanned) {
+    this.found = found;
+    this.bytesRead = bytesRead;
+    this.linesScanned = linesScanned;
+    this.length = length;
+    this.earlyExit = earlyExit;
+    this.progress = progress;
+    this.statistics = statistics;
+    this.startScanned = startScanned;
+  }
+
+  /**
+   * Returns whether the pattern at the given index was found.
+   */
+  boolean isFound(int index) {
+    return found[index];
+  }
+
+  /**
+   * Returns a copy of the found flags, indexed like the patterns.
+   */
+  boolean[] getFound() {
+    return found.clone();
+  }
+
+  /**
+   * Returns true if every pattern was found.
+   */
+  boolean allFound() {
+    for (boolean f : found) {
+      if (!f) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns true if the scan stopped before reaching the end of the file, because all patterns had matched or
+   * only part of the file had to be checked.
+   */
+  boolean isEarlyExit() {
+    return earlyExit;
+  }
+
+  /**
+   * Returns true if the scan covered the start of the file, so that reading no bytes means that the file is empty.
+   */
+  boolean isStartScanned() {
+    return startScanned;
+  }
+
+  /**
+   * Returns how far the file was scanned, for resuming the scan once it has grown, or null if the scan cannot be
+   * resumed.
+   */
+  @Nullable
+  ScanProgress getProgress() {
+    return progress;
+  }
+
+  /**
+   * Returns the statistics of the file gathered during the scan, or null if they were not.
+   */
+  @Nullable
+  FileStatistics getStatistics() {
+    return statistics;
+  }
+
+  long getBytesRead() {
+    return bytesRead;
+  }
+
+  long getLinesScanned() {
+    return linesScanned;
+  }
+
+  /**
+   * Returns the number of bytes of the file that were never read, or 0 if the length of the file is unknown.
+   */
+  long getBytesSkipped() {
+    return length < 0 ? 0 : Math.max(0, length - bytesRead);
+  }
+
+  /**
+   * Returns an estimate of the number of lines that were never read, based on the average length of the lines
+   * that were. The exact number cannot be known without reading the rest of the file.
+   */
+  long getEstimatedLinesSkipped() {
+    if (linesScanned == 0 || bytesRead == 0) {
+      return 0;
+    }
+    return (long) ((double) getBytesSkipped() * linesScanned / bytesRead);
+  }
+}
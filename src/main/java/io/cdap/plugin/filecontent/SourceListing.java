@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.fs.RemoteIterator;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+/**
+ * Lists the files in a source directory or glob that match the file regex, recursively or in pages if configured
+ * to, and hands the listing to a {@link Check}. The time spent listing is added to the {@link ScanMetrics}.
+ */
+final class SourceListing {
+  private final FileContentsConfig config;
+  private final FileSystem fileSystem;
+  private final ScanMetrics metrics;
+
+  SourceListing(FileContentsConfig config, FileSystem fileSystem, ScanMetrics metrics) {
+    this.config = config;
+    this.fileSystem = fileSystem;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Checks the files of a listing.
+   */
+  interface Check {
+
+    /**
+     * @return the number of files checked
+     */
+    int checkAll(RemoteIterator<FileStatus> files) throws IOException;
+  }
+
+  /**
+   * Lists the files in the source, which is a directory if its status is known, and a glob or a directory
+   * otherwise, and checks them.
+   *
+   * @return the number of files checked
+   */
+  int list(Path source, @Nullable FileStatus sourceStatus, Check check) throws IOException {
+    PathFilter filter = new PathFilter() {
+      private final Pattern pattern =
+        Pattern.compile(config.getFileRegex() == null ? ".*" : config.getFileRegex());
+
+      @Override
+      public boolean accept(Path path) {
+        return pattern.matcher(path.getName()).matches();
+      }
+    };
+    if (sourceStatus != null && config.getRecursive()) {
+      int maxDepth = config.getMaxDepth() == null ? Integer.MAX_VALUE : config.getMaxDepth();
+      try (DirectoryWalker walker = new DirectoryWalker(fileSystem, filter, maxDepth, config.getStreamListing(),
+                                                        config.getConcurrency())) {
+        return check.checkAll(metrics.timeListing(walker.walk(source)));
+      }
+    }
+    if (sourceStatus != null && config.getStreamListing()) {
+      // the listing is fetched page by page as the files are checked
+      long start = System.nanoTime();
+      FileListing listing = new FileListing(fileSystem.listLocatedStatus(source), filter);
+      metrics.addListTime(System.nanoTime() - start);
+      return check.checkAll(metrics.timeListing(listing));
+    }
+    long start = System.nanoTime();
+    FileStatus[] listFiles;
+    if (sourceStatus != null) {
+      // the source is known to be a directory, so there is nothing to glob
+      listFiles = fileSystem.listStatus(source, filter);
+    } else {
+      listFiles = fileSystem.globStatus(source, filter);
+      if (listFiles == null || listFiles.length == 0 || (listFiles.length == 1 && listFiles[0].isDirectory())) {
+        // try again without globbing action
+        listFiles = fileSystem.listStatus(source, filter);
+      }
+    }
+    metrics.addListTime(System.nanoTime() - start);
+    // the listing has already been filtered
+    return check.checkAll(metrics.timeListing(FileListing.of(listFiles, path -> true)));
+  }
+
+  /**
+   * Returns the status of the path, or null if it does not exist.
+   */
+  @Nullable
+  static FileStatus getStatus(FileSystem fileSystem, Path path) throws IOException {
+    try {
+      return fileSystem.getFileStatus(path);
+    } catch (FileNotFoundException e) {
+      return null;
+    }
+  }
+}
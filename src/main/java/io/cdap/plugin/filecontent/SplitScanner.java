@@ -0,0 +1,369 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import com.google.common.base.Preconditions;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.Decompressor;
+import org.apache.hadoop.io.compress.SplitCompressionInputStream;
+import org.apache.hadoop.io.compress.SplittableCompressionCodec;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PushbackInputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/**
+ * Scans a single large file by splitting it into byte ranges that are scanned concurrently. Ranges follow the
+ * block boundaries of the file and are no larger than the split size.
+ *
+ * A line belongs to the range that its first byte is in, as with Hadoop's {@code LineRecordReader}: every range
+ * except the first starts reading one byte early and drops its first line, and every range reads past its end to
+ * finish its last line. Patterns found in one range are shared with the others, and the remaining ranges are
+ * cancelled once every pattern has been found.
+ *
+ * Files compressed with a splittable codec such as bzip2 are split the same way, except that each range starts
+ * decompressing at the first compressed block at or after its start. A line then belongs to the range whose end
+ * has not been passed by the position of the block it starts in, which is how Hadoop's {@code LineRecordReader}
+ * splits them.
+ *
+ * If a {@link FileSampler} samples ranges, only the ranges that it chooses are scanned.
+ *
+ * If the scan shares permits with other scans, such as those of the other files being checked, the calling thread
+ * scans ranges itself and only borrows the permits that are free for more threads, so that the files and ranges
+ * scanned at once never exceed the permits. Otherwise up to the given concurrency of ranges are scanned at once.
+ *
+ * Lines can only be found in the bytes of files in a charset that encodes ASCII as single bytes. An uncompressed
+ * file whose byte order mark is of another charset, such as UTF-16, is scanned whole instead, by the scan that
+ * includes its first range. The byte order mark of a compressed file is only skipped, and only if it is UTF-8.
+ */
+final class SplitScanner {
+  // how often, in lines, a range publishes its matches and picks up the matches of other ranges
+  private static final long SYNC_MASK = 0xff;
+
+  private final MultiPatternMatcher matcher;
+  private final long splitSize;
+  private final int concurrency;
+  @Nullable
+  private final Semaphore permits;
+  private final LineLimit lineLimit;
+  @Nullable
+  private final SplittableCompressionCodec codec;
+  @Nullable
+  private final FileSampler sampler;
+  private final TextEncoding encoding;
+
+  /**
+   * Creates a scanner for files compressed with the given codec, or uncompressed files if it is null, that decodes
+   * them with the given encoding, whose charset must encode ASCII as single bytes.
+   *
+   * @param concurrency the most ranges scanned at once
+   * @param permits the permits shared with other scans that threads for more ranges are borrowed from, or null if
+   *   the ranges are always scanned by up to the given concurrency of threads
+   * @param sampler the sampler that chooses the ranges that are scanned, or null if all ranges are
+   */
+  SplitScanner(MultiPatternMatcher matcher, long splitSize, int concurrency, @Nullable Semaphore permits,
+               LineLimit lineLimit, @Nullable CompressionCodec codec, @Nullable FileSampler sampler,
+               TextEncoding encoding) {
+    Preconditions.checkArgument(codec == null || codec instanceof SplittableCompressionCodec,
+                                "Codec %s is not splittable", codec);
+    this.matcher = matcher;
+    this.splitSize = splitSize;
+    this.concurrency = concurrency;
+    this.permits = permits;
+    this.lineLimit = lineLimit;
+    this.codec = (SplittableCompressionCodec) codec;
+    this.sampler = sampler;
+    this.encoding = encoding;
+  }
+
+  ScanResult scan(FileSystem fileSystem, FileStatus file) throws IOException {
+    List<Range> ranges = split(fileSystem, file);
+    TextEncoding.Bom bom = readBom(fileSystem, file);
+    if (!TextEncoding.isAsciiCompatible(encoding.getCharset(bom))) {
+      // sampling ranges does not apply to a file that cannot be split
+      return scanWhole(fileSystem, file);
+    }
+    List<Range> scanned = sampler == null ? ranges : sampler.sampleRanges(file.getPath(), ranges);
+    ScanResult result = scan(fileSystem, file, scanned, bom);
+    if (scanned.size() == ranges.size()) {
+      return result;
+    }
+    return new ScanResult(result.getFound(), result.getBytesRead(), result.getLinesScanned(),
+                          codec == null ? file.getLen() : -1, true, null, null, result.isStartScanned());
+  }
+
+  /**
+   * Scans the given ranges of the file only, as returned by {@link #split}.
+   */
+  ScanResult scan(FileSystem fileSystem, FileStatus file, List<Range> scanned) throws IOException {
+    return scan(fileSystem, file, scanned, readBom(fileSystem, file));
+  }
+
+  private ScanResult scan(FileSystem fileSystem, FileStatus file, List<Range> scanned,
+                          @Nullable TextEncoding.Bom bom) throws IOException {
+    if (!TextEncoding.isAsciiCompatible(encoding.getCharset(bom))) {
+      if (scanned.stream().anyMatch(range -> range.start == 0)) {
+        return scanWhole(fileSystem, file);
+      }
+      return new ScanResult(new boolean[matcher.size()], 0, 0, file.getLen(), true, null, null, false);
+    }
+    SharedState shared = new SharedState(matcher.size());
+    Iterator<Range> pending = scanned.iterator();
+    // stop handing out ranges once all patterns have been found
+    Iterator<Range> untilFound = new Iterator<Range>() {
+      @Override
+      public boolean hasNext() {
+        return !shared.allFound() && pending.hasNext();
+      }
+
+      @Override
+      public Range next() {
+        return pending.next();
+      }
+    };
+    int threads = borrowThreads(scanned.size());
+    try {
+      new ParallelFileChecker(threads).checkAll(untilFound,
+                                                range -> scanRange(fileSystem, file, range, bom, shared));
+    } finally {
+      if (permits != null) {
+        permits.release(threads - 1);
+      }
+    }
+    boolean[] found = new boolean[matcher.size()];
+    for (int i = 0; i < found.length; i++) {
+      found[i] = shared.found.get(i) != 0;
+    }
+    boolean earlyExit = shared.stoppedEarly.get() || pending.hasNext();
+    // the bytes read from a compressed file are decompressed bytes, which cannot be compared to its length
+    long length = codec == null ? file.getLen() : -1;
+    // a compressed file that decompresses to nothing only reads no bytes if the first range was scanned
+    boolean startScanned = scanned.stream().anyMatch(range -> range.start == 0);
+    return new ScanResult(found, shared.bytesRead.get(), shared.lines.get(), length, earlyExit, null, null,
+                          startScanned);
+  }
+
+  /**
+   * Returns the number of threads to scan the given number of ranges with. With shared permits, these are the
+   * calling thread and one more for each permit that is free, which are released once the ranges are scanned.
+   */
+  private int borrowThreads(int ranges) {
+    int wanted = Math.max(1, Math.min(concurrency, ranges));
+    if (permits == null) {
+      return wanted;
+    }
+    int threads = 1;
+    while (threads < wanted && permits.tryAcquire()) {
+      threads++;
+    }
+    return threads;
+  }
+
+  /**
+   * Splits the file along its block boundaries, and splits blocks that are larger than the split size.
+   */
+  List<Range> split(FileSystem fileSystem, FileStatus file) throws IOException {
+    List<Range> ranges = new ArrayList<>();
+    // a status from a located listing already has the block locations
+    BlockLocation[] blocks = file instanceof LocatedFileStatus ?
+      ((LocatedFileStatus) file).getBlockLocations() : fileSystem.getFileBlockLocations(file, 0, file.getLen());
+    if (blocks == null || blocks.length == 0) {
+      addRanges(ranges, 0, file.getLen());
+    } else {
+      for (BlockLocation block : blocks) {
+        addRanges(ranges, block.getOffset(), block.getOffset() + block.getLength());
+      }
+    }
+    return ranges;
+  }
+
+  private void addRanges(List<Range> ranges, long start, long end) {
+    for (long offset = start; offset < end; offset += splitSize) {
+      ranges.add(new Range(offset, Math.min(end, offset + splitSize)));
+    }
+  }
+
+  /**
+   * Returns the byte order mark of an uncompressed file, or null if it has none or they are not detected.
+   */
+  @Nullable
+  private TextEncoding.Bom readBom(FileSystem fileSystem, FileStatus file) throws IOException {
+    return codec == null && encoding.isDetectBom() ? LineReaders.readBom(fileSystem, file) : null;
+  }
+
+  private ScanResult scanWhole(FileSystem fileSystem, FileStatus file) throws IOException {
+    return new ContentsScanner(matcher).scan(
+      LineReaders.open(fileSystem, file, null, FileContentsConfig.ScanMode.BYTES, lineLimit, 0, Long.MAX_VALUE,
+                       encoding), file.getLen());
+  }
+
+  private void scanRange(FileSystem fileSystem, FileStatus file, Range range, @Nullable TextEncoding.Bom bom,
+                         SharedState shared) throws IOException {
+    if (shared.allFound()) {
+      return;
+    }
+    Charset charset = encoding.getCharset(bom);
+    boolean utf8Bytes = encoding.isUtf8Bytes(charset);
+    try {
+      if (codec == null) {
+        long readFrom = range.start == 0 ? 0 : range.start - 1;
+        // don't read far beyond the end of small ranges
+        int bufferSize = (int) Math.min(LineReaders.BUFFER_SIZE, range.end - readFrom + 1);
+        int skip = range.start == 0 && bom != null ? bom.length() : 0;
+        try (ByteLineReader reader = LineReaders.openBytes(fileSystem, file, readFrom, bufferSize, lineLimit,
+                                                           charset, skip, utf8Bytes)) {
+          // lines are read while they start before the end of the range
+          scanLines(reader, range, () -> readFrom + reader.getPosition() < range.end, shared);
+        }
+      } else {
+        Decompressor decompressor = CodecPool.getDecompressor(codec);
+        try (SplitCompressionInputStream in = codec.createInputStream(
+               fileSystem.open(file.getPath(), LineReaders.BUFFER_SIZE), decompressor, range.start, range.end,
+               SplittableCompressionCodec.READ_MODE.BYBLOCK);
+             PushbackInputStream contents = new PushbackInputStream(in, TextEncoding.Bom.MAX_LENGTH);
+             // the stream returns at most one block per read, so the reader does not read ahead across blocks
+             ByteLineReader reader = new ByteLineReader(Channels.newChannel(contents), LineReaders.BUFFER_SIZE,
+                                                        Long.MAX_VALUE, lineLimit, charset,
+                                                        skipUtf8Bom(range, contents), utf8Bytes)) {
+          // the position only moves to a block once its first byte has been read
+          scanLines(reader, range, () -> in.getPos() <= range.end, shared);
+        } finally {
+          CodecPool.returnDecompressor(decompressor);
+        }
+      }
+    } catch (IOException e) {
+      throw new IOException(String.format("Failed reading bytes %d to %d of file %s",
+                                          range.start, range.end, file.getPath()), e);
+    }
+  }
+
+  /**
+   * Returns the length of the UTF-8 byte order mark at the start of the first range of a compressed file, or 0 if
+   * the range is not the first one or there is none.
+   */
+  private int skipUtf8Bom(Range range, PushbackInputStream contents) throws IOException {
+    if (range.start > 0 || !encoding.isDetectBom()) {
+      return 0;
+    }
+    TextEncoding.Bom bom = LineReaders.peekBom(contents);
+    return bom == TextEncoding.Bom.UTF_8 ? bom.length() : 0;
+  }
+
+  private void scanLines(ByteLineReader reader, Range range, InRange inRange, SharedState shared) throws IOException {
+    MultiPatternMatcher.State state = matcher.newState(reader);
+    long lines = 0;
+    if (range.start > 0) {
+      // the first line belongs to the previous range
+      reader.skipLine();
+    }
+    // the windows of a long line all belong to the range that the line starts in
+    while (reader.isInLongLine() || inRange.get()) {
+      CharSequence line = reader.readLine();
+      if (line == null) {
+        break;
+      }
+      lines++;
+      state.match(line);
+      if ((lines & SYNC_MASK) == 0) {
+        if (Thread.currentThread().isInterrupted()) {
+          throw new InterruptedIOException("Interrupted while scanning");
+        }
+        if (shared.sync(state)) {
+          shared.stoppedEarly.set(true);
+          break;
+        }
+      }
+    }
+    shared.sync(state);
+    shared.bytesRead.addAndGet(reader.getBytesRead());
+    shared.lines.addAndGet(lines);
+  }
+
+  /**
+   * Tells whether the next line starts within the range being scanned.
+   */
+  private interface InRange {
+    boolean get() throws IOException;
+  }
+
+  /**
+   * A range of bytes in a file.
+   */
+  static final class Range {
+    final long start;
+    final long end;
+
+    Range(long start, long end) {
+      this.start = start;
+      this.end = end;
+    }
+  }
+
+  /**
+   * The patterns found by all ranges so far.
+   */
+  private static final class SharedState {
+    private final AtomicIntegerArray found;
+    private final AtomicInteger remaining;
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong lines = new AtomicLong();
+    private final AtomicBoolean stoppedEarly = new AtomicBoolean();
+
+    SharedState(int size) {
+      found = new AtomicIntegerArray(size);
+      remaining = new AtomicInteger(size);
+    }
+
+    boolean allFound() {
+      return remaining.get() == 0;
+    }
+
+    /**
+     * Publishes the patterns found by a range and marks the patterns found by other ranges in its state.
+     *
+     * @return true if every pattern has been found
+     */
+    boolean sync(MultiPatternMatcher.State state) {
+      for (int i = 0; i < found.length(); i++) {
+        if (state.isFound(i)) {
+          if (found.compareAndSet(i, 0, 1)) {
+            remaining.decrementAndGet();
+          }
+        } else if (found.get(i) != 0) {
+          state.markFound(i);
+        }
+      }
+      return allFound();
+    }
+  }
+}
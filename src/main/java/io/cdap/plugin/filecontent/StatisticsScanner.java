@@ -0,0 +1,236 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.io.compress.CompressionCodec;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.Charset;
+import javax.annotation.Nullable;
+
+/**
+ * Scans a whole file for the patterns and gathers its {@link FileStatistics} in the same pass, so that later stages
+ * do not have to read the file again to count its lines or compute its digest. Unlike the other scans, it reads to
+ * the end of the file even once every pattern has been found.
+ *
+ * Lines are counted from the terminators in the contents, so the count does not depend on how long lines are
+ * handled. The digest is updated with the bytes of the file as they are read, before any decompression. A file whose
+ * byte order mark is of a charset that does not encode ASCII as single bytes fails the scan, as its lines cannot be
+ * counted in the bytes.
+ */
+final class StatisticsScanner {
+  private final MultiPatternMatcher matcher;
+  private final FileContentsConfig.ScanMode scanMode;
+  private final LineLimit lineLimit;
+  @Nullable
+  private final CompressionCodec codec;
+  private final FileContentsConfig.DigestAlgorithm digestAlgorithm;
+  private final TextEncoding encoding;
+
+  /**
+   * Creates a scanner for files compressed with the given codec, or uncompressed files if it is null, that decodes
+   * them with the given encoding, which must encode ASCII as single bytes for the lines to be counted in the bytes.
+   */
+  StatisticsScanner(MultiPatternMatcher matcher, FileContentsConfig.ScanMode scanMode, LineLimit lineLimit,
+                    @Nullable CompressionCodec codec, FileContentsConfig.DigestAlgorithm digestAlgorithm,
+                    TextEncoding encoding) {
+    this.matcher = matcher;
+    this.scanMode = scanMode;
+    this.lineLimit = lineLimit;
+    this.codec = codec;
+    this.digestAlgorithm = digestAlgorithm;
+    this.encoding = encoding;
+  }
+
+  ScanResult scan(FileSystem fileSystem, FileStatus file) throws IOException {
+    HashFunction hashFunction = getHashFunction(digestAlgorithm);
+    Hasher hasher = hashFunction == null ? null : hashFunction.newHasher();
+    try (FSDataInputStream in = fileSystem.open(file.getPath(), LineReaders.BUFFER_SIZE)) {
+      StoredStream stored = new StoredStream(in, hasher);
+      LineCountingStream counted =
+        new LineCountingStream(codec == null ? stored : LineReaders.decompress(stored, codec));
+      PushbackInputStream contents = new PushbackInputStream(counted, TextEncoding.Bom.MAX_LENGTH);
+      Charset fileCharset = encoding.getCharset(encoding.isDetectBom() ? LineReaders.peekBom(contents) : null);
+      if (!TextEncoding.isAsciiCompatible(fileCharset)) {
+        throw new IOException(String.format("The lines of file %s cannot be counted for the statistics, as its byte "
+                                              + "order mark is of charset %s, which does not encode ASCII as single "
+                                              + "bytes", file.getPath(), fileCharset.name()));
+      }
+      ScanResult result = new ContentsScanner(matcher, true)
+        .scan(LineReaders.open(contents, scanMode, lineLimit, encoding), codec == null ? file.getLen() : -1);
+      // a decompressor may stop before the end of the file, which the digest still has to cover
+      ByteStreams.copy(stored, ByteStreams.nullOutputStream());
+      FileStatistics statistics = new FileStatistics(counted.getLines(), stored.getBytes(),
+                                                     hasher == null ? null : toString(hasher.hash()));
+      return new ScanResult(result.getFound(), result.getBytesRead(), result.getLinesScanned(),
+                            codec == null ? file.getLen() : -1, false, null, statistics);
+    }
+  }
+
+  @Nullable
+  private static HashFunction getHashFunction(FileContentsConfig.DigestAlgorithm digestAlgorithm) {
+    switch (digestAlgorithm) {
+      case CRC32C:
+        return Hashing.crc32c();
+      case MD5:
+        return Hashing.md5();
+      case SHA256:
+        return Hashing.sha256();
+      default:
+        return null;
+    }
+  }
+
+  private String toString(HashCode hash) {
+    // a checksum is shown as the number it is, while the bytes of a 32 bit hash code are in little endian order
+    return digestAlgorithm == FileContentsConfig.DigestAlgorithm.CRC32C ?
+      String.format("%08x", hash.asInt()) : hash.toString();
+  }
+
+  /**
+   * Passes the bytes of the file through to the reader or the decompressor, counting them and updating the digest.
+   * Closing it leaves the file open, so that whatever the decompressor did not read can still be added.
+   */
+  private static final class StoredStream extends FilterInputStream {
+    @Nullable
+    private final Hasher hasher;
+    private long bytes;
+
+    private StoredStream(InputStream in, @Nullable Hasher hasher) {
+      super(in);
+      this.hasher = hasher;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = in.read();
+      if (b >= 0) {
+        bytes++;
+        if (hasher != null) {
+          hasher.putByte((byte) b);
+        }
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = in.read(b, off, len);
+      if (n > 0) {
+        bytes += n;
+        if (hasher != null) {
+          hasher.putBytes(b, off, n);
+        }
+      }
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      // skipped bytes still have to be counted and digested
+      return n <= 0 ? 0 : Math.max(0, read(new byte[(int) Math.min(n, LineReaders.BUFFER_SIZE)]));
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+
+    @Override
+    public void close() {
+      // the file is closed once the scan is done with it
+    }
+
+    long getBytes() {
+      return bytes;
+    }
+  }
+
+  /**
+   * Counts the lines in the contents that pass through it, the way a {@link LineReader} splits them: at each
+   * {@code \n}, {@code \r} or {@code \r\n}, and after a last line without a terminator.
+   */
+  private static final class LineCountingStream extends FilterInputStream {
+    private long terminators;
+    private boolean afterCarriageReturn;
+    private boolean partialLine;
+
+    private LineCountingStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = in.read();
+      if (b >= 0) {
+        count((byte) b);
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = in.read(b, off, len);
+      for (int i = off; i < off + n; i++) {
+        count(b[i]);
+      }
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      return n <= 0 ? 0 : Math.max(0, read(new byte[(int) Math.min(n, LineReaders.BUFFER_SIZE)]));
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+
+    private void count(byte b) {
+      if (b == '\n') {
+        if (!afterCarriageReturn) {
+          terminators++;
+        }
+        afterCarriageReturn = false;
+        partialLine = false;
+      } else if (b == '\r') {
+        terminators++;
+        afterCarriageReturn = true;
+        partialLine = false;
+      } else {
+        afterCarriageReturn = false;
+        partialLine = true;
+      }
+    }
+
+    long getLines() {
+      return terminators + (partialLine ? 1 : 0);
+    }
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import javax.annotation.Nullable;
+
+/**
+ * How the bytes of files are decoded into lines: the charset of the files, and whether a byte order mark at the start
+ * of a file overrides it. Lines can only be found in the bytes, without decoding them, in a charset that encodes
+ * ASCII as single bytes, like UTF-8 and ISO-8859-1 but unlike UTF-16.
+ *
+ * If the lines of UTF-8 files may be returned as their bytes, one character per byte, a {@link ByteLineReader}
+ * never decodes them, for a {@link MultiPatternMatcher} that matches the bytes of its patterns.
+ */
+final class TextEncoding {
+  static final TextEncoding DEFAULT = new TextEncoding(StandardCharsets.UTF_8, true, false);
+
+  // every ASCII character, to test whether a charset encodes them as the same single bytes
+  private static final String ASCII;
+
+  static {
+    StringBuilder ascii = new StringBuilder();
+    for (char c = 0; c < 0x80; c++) {
+      ascii.append(c);
+    }
+    ASCII = ascii.toString();
+  }
+
+  private final Charset charset;
+  private final boolean detectBom;
+  private final boolean utf8Bytes;
+
+  TextEncoding(Charset charset, boolean detectBom, boolean utf8Bytes) {
+    this.charset = charset;
+    this.detectBom = detectBom;
+    this.utf8Bytes = utf8Bytes;
+  }
+
+  static TextEncoding of(FileContentsConfig config) {
+    return new TextEncoding(config.getCharset(), config.isDetectBom(), false);
+  }
+
+  /**
+   * Returns this encoding, but with the lines of UTF-8 files returned as their bytes where they are found in the
+   * bytes.
+   */
+  TextEncoding withUtf8Bytes() {
+    return new TextEncoding(charset, detectBom, true);
+  }
+
+  /**
+   * Returns the encoding of a file that starts with the given byte order mark, for reading it from past its start,
+   * where a byte order mark is no longer looked for.
+   */
+  TextEncoding withoutBom(@Nullable Bom bom) {
+    return new TextEncoding(getCharset(bom), false, utf8Bytes);
+  }
+
+  Charset getCharset() {
+    return charset;
+  }
+
+  boolean isDetectBom() {
+    return detectBom;
+  }
+
+  /**
+   * Returns the charset of a file that starts with the given bytes, which is the charset of its byte order mark if
+   * there is one and they are detected.
+   */
+  Charset getCharset(@Nullable Bom bom) {
+    return detectBom && bom != null ? bom.charset : charset;
+  }
+
+  /**
+   * Returns true if the lines of a file in the given charset are returned as their bytes.
+   */
+  boolean isUtf8Bytes(Charset fileCharset) {
+    return utf8Bytes && fileCharset.equals(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Returns true if the charset encodes every ASCII character as the same single byte, so that line terminators
+   * can be found in the bytes.
+   */
+  static boolean isAsciiCompatible(Charset charset) {
+    return charset.canEncode() && Arrays.equals(ASCII.getBytes(StandardCharsets.US_ASCII), ASCII.getBytes(charset));
+  }
+
+  /**
+   * Returns true if every byte of the charset decodes to the character with the same value, so that lines never
+   * have to be decoded.
+   */
+  static boolean isSingleByte(Charset charset) {
+    return charset.equals(StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * Returns the number of bytes that every character in the charset is made of a multiple of, which is where a
+   * file can be read from without decoding a character from its middle.
+   */
+  static int getCodeUnitSize(Charset charset) {
+    String name = charset.name();
+    if (name.startsWith("UTF-16")) {
+      return 2;
+    }
+    return name.startsWith("UTF-32") ? 4 : 1;
+  }
+
+  /**
+   * A byte order mark, and the charset it stands for.
+   */
+  enum Bom {
+    UTF_8(StandardCharsets.UTF_8, 0xef, 0xbb, 0xbf),
+    UTF_16BE(StandardCharsets.UTF_16BE, 0xfe, 0xff),
+    UTF_16LE(StandardCharsets.UTF_16LE, 0xff, 0xfe);
+
+    static final int MAX_LENGTH = 3;
+
+    private final Charset charset;
+    private final byte[] bytes;
+
+    Bom(Charset charset, int... bytes) {
+      this.charset = charset;
+      this.bytes = new byte[bytes.length];
+      for (int i = 0; i < bytes.length; i++) {
+        this.bytes[i] = (byte) bytes[i];
+      }
+    }
+
+    int length() {
+      return bytes.length;
+    }
+
+    /**
+     * Returns the byte order mark that the given bytes start with, or null if they do not start with one.
+     */
+    @Nullable
+    static Bom find(byte[] head, int length) {
+      for (Bom bom : values()) {
+        if (length >= bom.bytes.length && bom.startsWith(head)) {
+          return bom;
+        }
+      }
+      return null;
+    }
+
+    private boolean startsWith(byte[] head) {
+      for (int i = 0; i < bytes.length; i++) {
+        if (head[i] != bytes[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
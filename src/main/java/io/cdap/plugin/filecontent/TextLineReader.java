@@ -0,0 +1,182 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import com.google.common.io.CountingInputStream;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link LineReader} on top of a {@link BufferedReader}, decoding with a given charset, UTF-8 by default.
+ * Every line is a new {@link String}.
+ *
+ * Without a {@link LineLimit}, lines are read with {@link BufferedReader#readLine()}, which holds a whole line in
+ * memory however long it is. With one, lines are collected a chunk of characters at a time, and longer lines are
+ * failed, truncated or returned as overlapping windows as soon as they exceed the limit.
+ */
+final class TextLineReader implements LineReader {
+  private static final int CHUNK_SIZE = 8192;
+
+  private final CountingInputStream counting;
+  private final BufferedReader reader;
+  private final LineLimit lineLimit;
+  private final StringBuilder line = new StringBuilder();
+  private char[] chunk;
+  // unread characters are chunk[position, count)
+  private int position;
+  private int count;
+  // whether the previous line ended with \r, in which case a following \n is part of its terminator
+  private boolean skipLineFeed;
+  // whether 'line' holds the end of the last window, which the next window starts with
+  private boolean inLongLine;
+  // whether a byte order mark at the start of the input is still to be skipped
+  private boolean skipBom;
+
+  TextLineReader(InputStream in) {
+    this(in, LineLimit.NONE);
+  }
+
+  TextLineReader(InputStream in, LineLimit lineLimit) {
+    this(in, lineLimit, StandardCharsets.UTF_8, false);
+  }
+
+  /**
+   * @param skipBom whether to skip a byte order mark that the input starts with
+   */
+  TextLineReader(InputStream in, LineLimit lineLimit, Charset charset, boolean skipBom) {
+    this.counting = new CountingInputStream(in);
+    this.reader = new BufferedReader(new InputStreamReader(counting, charset));
+    this.lineLimit = lineLimit;
+    this.skipBom = skipBom;
+  }
+
+  @Nullable
+  @Override
+  public CharSequence readLine() throws IOException {
+    skipByteOrderMark();
+    if (lineLimit.isUnlimited()) {
+      return reader.readLine();
+    }
+    boolean empty = !inLongLine;
+    if (!inLongLine) {
+      line.setLength(0);
+    }
+    inLongLine = false;
+    while (position < count || fill()) {
+      char c = chunk[position++];
+      if (skipLineFeed) {
+        skipLineFeed = false;
+        if (c == '\n') {
+          continue;
+        }
+      }
+      if (c == '\n' || c == '\r') {
+        skipLineFeed = c == '\r';
+        return line.toString();
+      }
+      empty = false;
+      if (line.length() == lineLimit.maxLength) {
+        return longLine(c);
+      }
+      line.append(c);
+    }
+    return empty ? null : line.toString();
+  }
+
+  @Override
+  public void skipLine() throws IOException {
+    skipByteOrderMark();
+    if (lineLimit.isUnlimited()) {
+      reader.readLine();
+      return;
+    }
+    inLongLine = false;
+    discardRestOfLine();
+  }
+
+  private void skipByteOrderMark() throws IOException {
+    if (!skipBom) {
+      return;
+    }
+    skipBom = false;
+    reader.mark(1);
+    if (reader.read() != '\uFEFF') {
+      reader.reset();
+    }
+  }
+
+  /**
+   * Handles a line that already has the maximum number of characters, and continues with the given character.
+   */
+  private String longLine(char next) throws IOException {
+    String result = line.toString();
+    switch (lineLimit.policy) {
+      case TRUNCATE:
+        discardRestOfLine();
+        return result;
+      case WINDOW:
+        line.delete(0, lineLimit.getWindowStep());
+        line.append(next);
+        inLongLine = true;
+        return result;
+      default:
+        throw lineLimit.tooLong("characters");
+    }
+  }
+
+  private void discardRestOfLine() throws IOException {
+    while (position < count || fill()) {
+      char c = chunk[position++];
+      if (skipLineFeed) {
+        skipLineFeed = false;
+        if (c == '\n') {
+          continue;
+        }
+      }
+      if (c == '\n' || c == '\r') {
+        skipLineFeed = c == '\r';
+        return;
+      }
+    }
+  }
+
+  private boolean fill() throws IOException {
+    if (chunk == null) {
+      chunk = new char[CHUNK_SIZE];
+    }
+    int n = reader.read(chunk, 0, chunk.length);
+    position = 0;
+    count = Math.max(n, 0);
+    return n > 0;
+  }
+
+  @Override
+  public long getBytesRead() {
+    return counting.getCount();
+  }
+
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FilterFileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * A file system that records the time spent opening files and reading from them in the {@link ScanMetrics}.
+ * Reads are timed per call on the underlying stream, which the line readers always read from in large chunks.
+ * All other operations are passed through untimed.
+ */
+final class TimedFileSystem extends FilterFileSystem {
+  private final ScanMetrics metrics;
+
+  TimedFileSystem(FileSystem fileSystem, ScanMetrics metrics) {
+    super(fileSystem);
+    this.metrics = metrics;
+  }
+
+  @Override
+  public FSDataInputStream open(Path path, int bufferSize) throws IOException {
+    long start = System.nanoTime();
+    FSDataInputStream in = fs.open(path, bufferSize);
+    metrics.addOpenTime(System.nanoTime() - start);
+    return new FSDataInputStream(new TimedInputStream(in));
+  }
+
+  /**
+   * Returns a channel that times its reads, for channels that are opened without going through this file system.
+   *
+   * @param openNanos the time it took to open the channel
+   */
+  ReadableByteChannel timeChannel(ReadableByteChannel channel, long openNanos) {
+    metrics.addOpenTime(openNanos);
+    return new ReadableByteChannel() {
+      @Override
+      public int read(ByteBuffer dst) throws IOException {
+        long start = System.nanoTime();
+        try {
+          return channel.read(dst);
+        } finally {
+          metrics.addReadTime(System.nanoTime() - start);
+        }
+      }
+
+      @Override
+      public boolean isOpen() {
+        return channel.isOpen();
+      }
+
+      @Override
+      public void close() throws IOException {
+        channel.close();
+      }
+    };
+  }
+
+  /**
+   * Times the reads from a stream of the underlying file system.
+   */
+  private final class TimedInputStream extends FSInputStream {
+    private final FSDataInputStream in;
+
+    private TimedInputStream(FSDataInputStream in) {
+      this.in = in;
+    }
+
+    @Override
+    public int read() throws IOException {
+      long start = System.nanoTime();
+      try {
+        return in.read();
+      } finally {
+        metrics.addReadTime(System.nanoTime() - start);
+      }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      long start = System.nanoTime();
+      try {
+        return in.read(b, off, len);
+      } finally {
+        metrics.addReadTime(System.nanoTime() - start);
+      }
+    }
+
+    @Override
+    public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+      long start = System.nanoTime();
+      try {
+        return in.read(position, buffer, offset, length);
+      } finally {
+        metrics.addReadTime(System.nanoTime() - start);
+      }
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      return in.skip(n);
+    }
+
+    @Override
+    public void seek(long pos) throws IOException {
+      in.seek(pos);
+    }
+
+    @Override
+    public long getPos() throws IOException {
+      return in.getPos();
+    }
+
+    @Override
+    public boolean seekToNewSource(long targetPos) throws IOException {
+      return in.seekToNewSource(targetPos);
+    }
+
+    @Override
+    public int available() throws IOException {
+      return in.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+}
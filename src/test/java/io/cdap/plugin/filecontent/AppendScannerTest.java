@@ -0,0 +1,170 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+/**
+ * Unit tests for {@link AppendScanner}.
+ */
+public class AppendScannerTest {
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private FileSystem fileSystem;
+  private File local;
+  private MultiPatternMatcher matcher;
+
+  @Before
+  public void setUp() throws IOException {
+    fileSystem = FileSystem.getLocal(new Configuration());
+    local = temporaryFolder.newFile("app.log");
+    matcher = new MultiPatternMatcher(Arrays.asList(Pattern.compile("START .*"), Pattern.compile(".*ERROR.*")));
+  }
+
+  @Test
+  public void testResumesAfterAppend() throws IOException {
+    for (FileContentsConfig.ScanMode scanMode : FileContentsConfig.ScanMode.values()) {
+      AppendScanner scanner = new AppendScanner(matcher, scanMode, LineLimit.NONE, TextEncoding.DEFAULT);
+      write("START 1\nline\n", false);
+      ScanResult first = scanner.scan(fileSystem, status(), null);
+      Assert.assertTrue(first.isFound(0));
+      Assert.assertFalse(first.isFound(1));
+      Assert.assertEquals(local.length(), first.getProgress().getOffset());
+
+      write("more\nan ERROR\n", true);
+      ScanResult second = scanner.scan(fileSystem, status(), first.getProgress());
+      Assert.assertTrue(second.allFound());
+      Assert.assertEquals(2, second.getLinesScanned());
+      Assert.assertEquals("more\nan ERROR\n".length(), second.getBytesRead());
+      Assert.assertTrue(second.isEarlyExit());
+    }
+  }
+
+  @Test
+  public void testPartialLastLineScannedAgain() throws IOException {
+    AppendScanner scanner = new AppendScanner(matcher, FileContentsConfig.ScanMode.BYTES, LineLimit.NONE,
+                                              TextEncoding.DEFAULT);
+    write("START 1\nERR", false);
+    ScanResult first = scanner.scan(fileSystem, status(), null);
+    Assert.assertFalse(first.isFound(1));
+    Assert.assertEquals("START 1\n".length(), first.getProgress().getOffset());
+
+    write("OR\n", true);
+    Assert.assertTrue(scanner.scan(fileSystem, status(), first.getProgress()).allFound());
+
+    // a partial line is checked, but what it matches is not kept in the progress
+    write("START 1\nline ERROR", false);
+    ScanResult partial = scanner.scan(fileSystem, status(), null);
+    Assert.assertTrue(partial.allFound());
+    Assert.assertFalse(partial.getProgress().getFound()[1]);
+  }
+
+  @Test
+  public void testRewrittenFileScannedAgain() throws IOException {
+    AppendScanner scanner = new AppendScanner(matcher, FileContentsConfig.ScanMode.BYTES, LineLimit.NONE,
+                                              TextEncoding.DEFAULT);
+    write("START 1\nan ERROR\n", false);
+    ScanResult first = scanner.scan(fileSystem, status(), null);
+    Assert.assertTrue(first.allFound());
+
+    // longer, but not an append of the old contents
+    write("begin 2\nno errors at all\n", false);
+    ScanResult second = scanner.scan(fileSystem, status(), first.getProgress());
+    Assert.assertFalse(second.isFound(0));
+    Assert.assertFalse(second.isFound(1));
+    Assert.assertEquals(local.length(), second.getBytesRead());
+  }
+
+  @Test
+  public void testCarriageReturnsEndLines() throws IOException {
+    AppendScanner scanner = new AppendScanner(matcher, FileContentsConfig.ScanMode.BYTES, LineLimit.NONE,
+                                              TextEncoding.DEFAULT);
+    // the last carriage return may still be followed by a line feed, so it does not end a line yet
+    write("START 1\rline\r", false);
+    ScanResult first = scanner.scan(fileSystem, status(), null);
+    Assert.assertEquals("START 1\r".length(), first.getProgress().getOffset());
+
+    write("\nan ERROR\r\nmore\r", true);
+    ScanResult second = scanner.scan(fileSystem, status(), first.getProgress());
+    Assert.assertTrue(second.allFound());
+    Assert.assertEquals(local.length() - "more\r".length(), second.getProgress().getOffset());
+    // resumed after the first line
+    Assert.assertTrue(second.getBytesRead() <= local.length() - "START 1\r".length());
+  }
+
+  @Test
+  public void testFileOpenedOncePerRead() throws IOException {
+    AppendScanner scanner = new AppendScanner(matcher, FileContentsConfig.ScanMode.BYTES, LineLimit.NONE,
+                                              TextEncoding.DEFAULT);
+    Path path = new Path(CountingFileSystem.SCHEME + "://" + local.getAbsolutePath());
+    FileSystem counting = path.getFileSystem(new Configuration());
+    write("START 1\nline\n", false);
+    CountingFileSystem.reset();
+    ScanResult first = scanner.scan(counting, counting.getFileStatus(path), null);
+    // one open for the byte order mark, the checksum and the last line end, and one for the lines
+    Assert.assertEquals(2, CountingFileSystem.getOpenCalls(local.getAbsolutePath()));
+
+    // a last line without a line end is scanned from the bytes read to find the last line end
+    write("an ERR", true);
+    CountingFileSystem.reset();
+    ScanResult second = scanner.scan(counting, counting.getFileStatus(path), first.getProgress());
+    Assert.assertFalse(second.isFound(1));
+    Assert.assertEquals(first.getProgress().getOffset(), second.getProgress().getOffset());
+    Assert.assertEquals(1, CountingFileSystem.getOpenCalls(local.getAbsolutePath()));
+  }
+
+  @Test
+  public void testUtf16ByteOrderMarkScannedWhole() throws IOException {
+    AppendScanner scanner = new AppendScanner(matcher, FileContentsConfig.ScanMode.BYTES, LineLimit.NONE,
+                                              TextEncoding.DEFAULT);
+    Files.write(local.toPath(), "\ufeffSTART 1\nan ERROR\n".getBytes(StandardCharsets.UTF_16LE));
+    ScanResult result = scanner.scan(fileSystem, status(), null);
+    Assert.assertTrue(result.allFound());
+    // the line feeds are not single bytes, so there is no progress to resume from
+    Assert.assertNull(result.getProgress());
+  }
+
+  private void write(String contents, boolean append) throws IOException {
+    byte[] bytes = contents.getBytes(StandardCharsets.UTF_8);
+    if (append) {
+      Files.write(local.toPath(), bytes, StandardOpenOption.APPEND);
+    } else {
+      Files.write(local.toPath(), bytes);
+    }
+  }
+
+  private FileStatus status() throws IOException {
+    return fileSystem.getFileStatus(new Path(local.getAbsolutePath()));
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for {@link ByteLineReader}.
+ */
+public class ByteLineReaderTest {
+  private static final String TEXT =
+    "first\nsecond\r\nthird\r\rafter empty\n\ncafé crème\r\n" +
+    "a line that is longer than the buffer used in the tests\nlast without newline";
+
+  @Test
+  public void testSplitsLikeBufferedReader() throws IOException {
+    List<String> expected = new ArrayList<>();
+    try (BufferedReader reader = new BufferedReader(new StringReader(TEXT))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        expected.add(line);
+      }
+    }
+    for (int bufferSize : new int[] { 1, 2, 3, 7, 16, 1024 }) {
+      Assert.assertEquals("Buffer size " + bufferSize, expected, readAll(TEXT, bufferSize));
+    }
+  }
+
+  @Test
+  public void testTrailingCarriageReturn() throws IOException {
+    List<String> lines = readAll("a\r", 4);
+    Assert.assertEquals(1, lines.size());
+    Assert.assertEquals("a", lines.get(0));
+  }
+
+  @Test
+  public void testAsciiLinesReuseView() throws IOException {
+    byte[] bytes = "one\ntwo\n".getBytes(StandardCharsets.UTF_8);
+    try (ByteLineReader reader = new ByteLineReader(Channels.newChannel(new ByteArrayInputStream(bytes)), 64)) {
+      CharSequence first = reader.readLine();
+      Assert.assertEquals("one", first.toString());
+      CharSequence second = reader.readLine();
+      Assert.assertSame(first, second);
+      Assert.assertEquals("two", second.toString());
+      Assert.assertNull(reader.readLine());
+      Assert.assertEquals(bytes.length, reader.getBytesRead());
+    }
+  }
+
+  @Test
+  public void testSingleByteCharsetIsNotDecoded() throws IOException {
+    byte[] bytes = "café\ncrème\n".getBytes(StandardCharsets.ISO_8859_1);
+    try (ByteLineReader reader = new ByteLineReader(Channels.newChannel(new ByteArrayInputStream(bytes)), 64,
+                                                    Long.MAX_VALUE, LineLimit.NONE, StandardCharsets.ISO_8859_1, 0,
+                                                    false)) {
+      CharSequence first = reader.readLine();
+      Assert.assertEquals("café", first.toString());
+      CharSequence second = reader.readLine();
+      Assert.assertSame(first, second);
+      Assert.assertEquals("crème", second.toString());
+      Assert.assertFalse(reader.isUtf8Bytes());
+    }
+  }
+
+  @Test
+  public void testUtf8BytesAndSkippedStart() throws IOException {
+    byte[] text = "café\nlast".getBytes(StandardCharsets.UTF_8);
+    byte[] bytes = new byte[text.length + 3];
+    bytes[0] = (byte) 0xef;
+    bytes[1] = (byte) 0xbb;
+    bytes[2] = (byte) 0xbf;
+    System.arraycopy(text, 0, bytes, 3, text.length);
+    for (int bufferSize : new int[] { 1, 2, 4, 64 }) {
+      try (ByteLineReader reader = new ByteLineReader(Channels.newChannel(new ByteArrayInputStream(bytes)),
+                                                      bufferSize, Long.MAX_VALUE, LineLimit.NONE,
+                                                      StandardCharsets.UTF_8, 3, true)) {
+        Assert.assertTrue(reader.isUtf8Bytes());
+        Assert.assertEquals(new String("café".getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1),
+                            reader.readLine().toString());
+        Assert.assertEquals("last", reader.readLine().toString());
+        Assert.assertNull(reader.readLine());
+        Assert.assertEquals(bytes.length, reader.getBytesRead());
+      }
+    }
+  }
+
+  private static List<String> readAll(String text, int bufferSize) throws IOException {
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    List<String> lines = new ArrayList<>();
+    try (ByteLineReader reader =
+           new ByteLineReader(Channels.newChannel(new ByteArrayInputStream(bytes)), bufferSize)) {
+      CharSequence line;
+      while ((line = reader.readLine()) != null) {
+        lines.add(line.toString());
+      }
+    }
+    return lines;
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Unit tests for {@link ContentsScanner}.
+ */
+public class ContentsScannerTest {
+  private static final long LENGTH = 64 * 1024 * 1024;
+
+  @Test
+  public void testStopsReadingOnceAllPatternsFound() throws IOException {
+    GeneratedInputStream in = new GeneratedInputStream("HDR|2019\nsecond line\n", LENGTH);
+    ScanResult result = scanner("HDR\\|.*", ".*second.*").scan(in, LENGTH);
+
+    Assert.assertTrue(result.allFound());
+    Assert.assertTrue(result.isEarlyExit());
+    Assert.assertTrue(in.isClosed());
+    Assert.assertEquals(2, result.getLinesScanned());
+    // only the first buffer fill should have been read
+    Assert.assertTrue(in.getServed() < 1024 * 1024);
+    Assert.assertEquals(in.getServed(), result.getBytesRead());
+    Assert.assertEquals(LENGTH - in.getServed(), result.getBytesSkipped());
+    Assert.assertTrue(result.getEstimatedLinesSkipped() > 0);
+  }
+
+  @Test
+  public void testReadsToEndWhenPatternMissing() throws IOException {
+    long length = 1024 * 1024;
+    GeneratedInputStream in = new GeneratedInputStream("HDR|2019\n", length);
+    ScanResult result = scanner("HDR\\|.*", ".*TRAILER.*").scan(in, length);
+
+    Assert.assertFalse(result.allFound());
+    Assert.assertTrue(result.isFound(0));
+    Assert.assertFalse(result.isFound(1));
+    Assert.assertFalse(result.isEarlyExit());
+    Assert.assertTrue(in.isClosed());
+    Assert.assertEquals(length, in.getServed());
+    Assert.assertEquals(0, result.getBytesSkipped());
+  }
+
+  @Test
+  public void testPatternsMatchedOnDifferentLines() throws IOException {
+    long length = 1024 * 1024;
+    GeneratedInputStream in = new GeneratedInputStream("a\nb\nc\n", length);
+    ScanResult result = scanner("c", "a", "b").scan(in, length);
+
+    Assert.assertTrue(result.allFound());
+    Assert.assertEquals(3, result.getLinesScanned());
+  }
+
+  private static ContentsScanner scanner(String... regexes) {
+    List<Pattern> patterns = Arrays.stream(regexes).map(Pattern::compile).collect(Collectors.toList());
+    return new ContentsScanner(new MultiPatternMatcher(patterns));
+  }
+
+  /**
+   * An input stream that returns the given prefix followed by filler lines, up to the given length,
+   * and keeps track of how many bytes were handed out.
+   */
+  static final class GeneratedInputStream extends InputStream {
+    private static final byte[] FILLER = "filler line that matches nothing\n".getBytes(StandardCharsets.UTF_8);
+
+    private final byte[] prefix;
+    private final long length;
+    private long served;
+    private boolean closed;
+
+    GeneratedInputStream(String prefix, long length) {
+      this.prefix = prefix.getBytes(StandardCharsets.UTF_8);
+      this.length = length;
+    }
+
+    long getServed() {
+      return served;
+    }
+
+    boolean isClosed() {
+      return closed;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (served >= length) {
+        return -1;
+      }
+      byte b = served < prefix.length ? prefix[(int) served] : FILLER[(int) ((served - prefix.length) % FILLER.length)];
+      served++;
+      return b & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (served >= length) {
+        return -1;
+      }
+      int n = (int) Math.min(len, length - served);
+      for (int i = 0; i < n; i++) {
+        b[off + i] = (byte) read();
+      }
+      return n;
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+}
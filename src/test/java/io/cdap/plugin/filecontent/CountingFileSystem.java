@@ -0,0 +1,117 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RawLocalFileSystem;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A local file system under the {@code counting} scheme that counts the metadata calls made against each path, as
+ * a stand-in for a remote file system where each of them is a round trip. Lookups made by the local implementation
+ * itself are not counted: a listing counts as a single call, like it is on a remote store, and opening a file does
+ * not count as a lookup.
+ */
+public class CountingFileSystem extends RawLocalFileSystem {
+  static final String SCHEME = "counting";
+  private static final URI NAME = URI.create(SCHEME + ":///");
+  private static final Map<String, AtomicInteger> STATUS_CALLS = new ConcurrentHashMap<>();
+  private static final Map<String, AtomicInteger> LIST_CALLS = new ConcurrentHashMap<>();
+  private static final Map<String, AtomicInteger> OPEN_CALLS = new ConcurrentHashMap<>();
+  private static final ThreadLocal<Boolean> INTERNAL = new ThreadLocal<>();
+
+  static void reset() {
+    STATUS_CALLS.clear();
+    LIST_CALLS.clear();
+    OPEN_CALLS.clear();
+  }
+
+  /**
+   * Returns the number of status lookups made against the path, including calls to exists.
+   */
+  static int getStatusCalls(String path) {
+    AtomicInteger count = STATUS_CALLS.get(path);
+    return count == null ? 0 : count.get();
+  }
+
+  static int getListCalls(String path) {
+    AtomicInteger count = LIST_CALLS.get(path);
+    return count == null ? 0 : count.get();
+  }
+
+  static int getOpenCalls(String path) {
+    AtomicInteger count = OPEN_CALLS.get(path);
+    return count == null ? 0 : count.get();
+  }
+
+  @Override
+  public URI getUri() {
+    return NAME;
+  }
+
+  @Override
+  public String getScheme() {
+    return SCHEME;
+  }
+
+  @Override
+  public FileStatus getFileStatus(Path f) throws IOException {
+    count(STATUS_CALLS, f);
+    return super.getFileStatus(f);
+  }
+
+  @Override
+  public boolean exists(Path f) throws IOException {
+    count(STATUS_CALLS, f);
+    return super.exists(f);
+  }
+
+  @Override
+  public FileStatus[] listStatus(Path f) throws IOException {
+    count(LIST_CALLS, f);
+    INTERNAL.set(true);
+    try {
+      return super.listStatus(f);
+    } finally {
+      INTERNAL.remove();
+    }
+  }
+
+  @Override
+  public FSDataInputStream open(Path f, int bufferSize) throws IOException {
+    count(OPEN_CALLS, f);
+    INTERNAL.set(true);
+    try {
+      return super.open(f, bufferSize);
+    } finally {
+      INTERNAL.remove();
+    }
+  }
+
+  private static void count(Map<String, AtomicInteger> calls, Path path) {
+    if (INTERNAL.get() == null) {
+      calls.computeIfAbsent(path.toUri().getPath(), p -> new AtomicInteger()).incrementAndGet();
+    }
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Unit tests for {@link DirectoryWalker}.
+ */
+public class DirectoryWalkerTest {
+  private static final int PARTITIONS = 3;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File root;
+
+  @Before
+  public void createTree() throws IOException {
+    // root/{top.dat,dt=N/{day.dat,hour=M/{hour.dat,hour.txt}}}
+    root = temporaryFolder.newFolder();
+    Files.createFile(new File(root, "top.dat").toPath());
+    for (int day = 0; day < PARTITIONS; day++) {
+      File dayFolder = new File(root, "dt=" + day);
+      Files.createDirectories(dayFolder.toPath());
+      Files.createFile(new File(dayFolder, "day.dat").toPath());
+      for (int hour = 0; hour < PARTITIONS; hour++) {
+        File hourFolder = new File(dayFolder, "hour=" + hour);
+        Files.createDirectories(hourFolder.toPath());
+        Files.createFile(new File(hourFolder, "hour.dat").toPath());
+        Files.createFile(new File(hourFolder, "hour.txt").toPath());
+      }
+    }
+  }
+
+  @Test
+  public void testMaxDepth() throws IOException {
+    Assert.assertEquals(1, walk(0, false).size());
+    Assert.assertEquals(1 + PARTITIONS, walk(1, false).size());
+    Assert.assertEquals(1 + PARTITIONS + PARTITIONS * PARTITIONS, walk(2, false).size());
+    Assert.assertEquals(walk(2, false), walk(Integer.MAX_VALUE, false));
+  }
+
+  @Test
+  public void testFilterAppliedAtEveryLevel() throws IOException {
+    for (String file : walk(Integer.MAX_VALUE, true)) {
+      Assert.assertTrue(file, file.endsWith(".dat"));
+    }
+    Assert.assertEquals(walk(Integer.MAX_VALUE, false), walk(Integer.MAX_VALUE, true));
+  }
+
+  @Test(expected = IOException.class)
+  public void testListingFailure() throws IOException {
+    FileSystem fileSystem = FileSystem.getLocal(new Configuration());
+    try (DirectoryWalker walker = new DirectoryWalker(fileSystem, path -> true, 1, false, 2)) {
+      RemoteIterator<FileStatus> files = walker.walk(new Path(root.getAbsolutePath(), "missing"));
+      while (files.hasNext()) {
+        files.next();
+      }
+    }
+  }
+
+  private Set<String> walk(int maxDepth, boolean streamListing) throws IOException {
+    FileSystem fileSystem = FileSystem.getLocal(new Configuration());
+    Set<String> files = new TreeSet<>();
+    try (DirectoryWalker walker = new DirectoryWalker(fileSystem, path -> path.getName().endsWith(".dat"),
+                                                      maxDepth, streamListing, 4)) {
+      RemoteIterator<FileStatus> iterator = walker.walk(new Path(root.getAbsolutePath()));
+      while (iterator.hasNext()) {
+        Assert.assertTrue(files.add(iterator.next().getPath().toUri().getPath()));
+      }
+    }
+    return files;
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+
+/**
+ * Unit tests for {@link DistributedCheck}, with the units checked in partitions in the same process.
+ */
+public class DistributedCheckTest {
+  private static final int NUM_PARTITIONS = 3;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testSplitFileMergesRanges() throws Exception {
+    File folder = temporaryFolder.newFolder();
+    StringBuilder contents = new StringBuilder();
+    for (int i = 0; i < 500; i++) {
+      contents.append("line ").append(i).append(" of the file\n");
+    }
+    Files.write(new File(folder, "large.dat").toPath(), contents.toString().getBytes(StandardCharsets.UTF_8));
+    FileContentsConfig.Builder builder = FileContentsConfig.builder()
+      .setSourceFilePath(new File(folder, "large.dat").getAbsolutePath())
+      .setFailOnEmptyFile(true)
+      .setSplitSize(100L);
+
+    // the first and last lines are in different ranges, which are checked in different partitions
+    FileContentsConfig config = builder.setFileContentsRegex("line 0 of the file~line 499 of the file").build();
+    List<DistributedCheck.Unit> units = new ArrayList<>();
+    Assert.assertTrue(check(config, units).isEmpty());
+    Assert.assertTrue(units.size() > NUM_PARTITIONS);
+    for (DistributedCheck.Unit unit : units) {
+      Assert.assertTrue(unit.isRange());
+    }
+
+    config = builder.setFileContentsRegex("line 0 of the file~line 500 of the file").build();
+    SortedMap<String, String> failures = check(config, new ArrayList<>());
+    Assert.assertEquals(1, failures.size());
+    Assert.assertTrue(failures.firstKey().endsWith("large.dat"));
+  }
+
+  @Test
+  public void testAllFailuresListed() throws Exception {
+    File folder = temporaryFolder.newFolder();
+    for (int i = 0; i < 10; i++) {
+      Files.write(new File(folder, "file-" + i + ".dat").toPath(), "HDR|2019\nbody\n".getBytes(StandardCharsets.UTF_8));
+    }
+    Files.write(new File(folder, "file-bad.dat").toPath(), "body\n".getBytes(StandardCharsets.UTF_8));
+    Files.write(new File(folder, "file-empty.dat").toPath(), new byte[0]);
+    FileContentsConfig config = FileContentsConfig.builder()
+      .setSourceFilePath(folder.getAbsolutePath())
+      .setFileContentsRegex("HDR\\|.*")
+      .setFailOnEmptyFile(true)
+      .build();
+    List<DistributedCheck.Unit> units = new ArrayList<>();
+    SortedMap<String, String> failures = check(config, units);
+    Assert.assertEquals(12, units.size());
+    Assert.assertEquals(2, failures.size());
+    List<String> messages = new ArrayList<>(failures.values());
+    Assert.assertEquals(String.format("The pattern HDR\\|.* was not found in file %s", failures.firstKey()),
+                        messages.get(0));
+    Assert.assertEquals(String.format("Empty file %s", failures.lastKey()), messages.get(1));
+  }
+
+  @Test
+  public void testEmptyFilesOutsideTheSample() throws Exception {
+    File folder = temporaryFolder.newFolder();
+    for (int i = 0; i < 20; i++) {
+      Files.write(new File(folder, "file-" + i + ".dat").toPath(), new byte[0]);
+    }
+    FileContentsConfig config = FileContentsConfig.builder()
+      .setSourceFilePath(folder.getAbsolutePath())
+      .setFailOnEmptyFile(true)
+      .setSampleCount(5)
+      .build();
+    List<DistributedCheck.Unit> units = new ArrayList<>();
+    SortedMap<String, String> failures = check(config, units);
+    // the files in the sample are checked on the executors, the others on the driver
+    Assert.assertEquals(5, units.size());
+    Assert.assertEquals(20, failures.size());
+  }
+
+  /**
+   * Plans the units of the config, checks them in partitions after passing them through serialization as Spark
+   * would, and merges the results.
+   */
+  private static SortedMap<String, String> check(FileContentsConfig config,
+                                                 List<DistributedCheck.Unit> units) throws Exception {
+    Configuration configuration = new Configuration();
+    FileSystem fileSystem = FileSystem.getLocal(configuration);
+    Path source = new Path(config.getSourceFilePath());
+    ScanMetrics metrics = new ScanMetrics(config.getContentsPatterns());
+    try (FileScanner scanner = new FileScanner(config, fileSystem,
+                                               MultiPatternMatcher.of(config, config.getContentsPatterns(), metrics),
+                                               new CompressionCodecFactory(configuration), metrics, null)) {
+      DistributedCheck check = new DistributedCheck(config, scanner);
+      FileStatus status = fileSystem.getFileStatus(source);
+      if (status.isFile()) {
+        check.plan(FileListing.iterate(new FileStatus[] { status }));
+      } else {
+        new SourceListing(config, fileSystem, metrics).list(source, status, check::plan);
+      }
+      units.addAll(check.getUnits());
+      List<DistributedCheck.UnitResult> results = new ArrayList<>();
+      for (int i = 0; i < NUM_PARTITIONS; i++) {
+        List<DistributedCheck.Unit> partition = new ArrayList<>();
+        for (int j = i; j < units.size(); j += NUM_PARTITIONS) {
+          partition.add(roundTrip(units.get(j)));
+        }
+        for (DistributedCheck.UnitResult result : DistributedCheck.checkPartition(roundTrip(config), configuration,
+                                                                                  partition.iterator())) {
+          results.add(roundTrip(result));
+        }
+      }
+      return check.merge(results);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T roundTrip(T object) throws IOException, ClassNotFoundException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(object);
+    }
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      return (T) in.readObject();
+    }
+  }
+}
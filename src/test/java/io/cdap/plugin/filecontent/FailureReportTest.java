@@ -0,0 +1,138 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import io.cdap.cdap.etl.api.action.SettableArguments;
+import io.cdap.cdap.etl.mock.action.MockActionContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for {@link FailureReport}.
+ */
+public class FailureReportTest {
+
+  @Test
+  public void testReportsFilesInPathOrder() {
+    FailureReport report = new FailureReport(null);
+    Assert.assertTrue(report.isEmpty());
+    report.addMissing("/data/c.dat", Arrays.asList("HDR", "TRL"));
+    report.addEmpty("/data/b.dat");
+    report.addMissing("/data/a.dat", Collections.singletonList("TRL"));
+
+    Assert.assertFalse(report.isEmpty());
+    Assert.assertFalse(report.isBudgetReached());
+    Assert.assertEquals(Arrays.asList("The pattern TRL was not found in file /data/a.dat",
+                                      "Empty file /data/b.dat",
+                                      "The patterns HDR~TRL were not found in file /data/c.dat"),
+                        report.getMessages());
+    Assert.assertEquals("3 files failed the checks:\n" +
+                          "The pattern TRL was not found in file /data/a.dat\n" +
+                          "Empty file /data/b.dat\n" +
+                          "The patterns HDR~TRL were not found in file /data/c.dat", report.getMessage());
+  }
+
+  @Test
+  public void testPublish() {
+    FailureReport report = new FailureReport(null);
+    report.addEmpty("/data/b.dat");
+    report.addMissing("/data/a.dat", Arrays.asList("HDR", "TRL"));
+    SettableArguments arguments = new MockActionContext().getArguments();
+    report.publish(arguments, "stage.");
+
+    Assert.assertEquals("true", arguments.get("stage./data/b.dat.empty"));
+    Assert.assertNull(arguments.get("stage./data/b.dat.missing"));
+    Assert.assertEquals("HDR~TRL", arguments.get("stage./data/a.dat.missing"));
+    Assert.assertEquals("2", arguments.get("stage.failures"));
+    Assert.assertEquals("false", arguments.get("stage.budgetReached"));
+    Assert.assertEquals(report.getMessage(), arguments.get("stage.report"));
+  }
+
+  @Test
+  public void testBudget() {
+    FailureReport report = new FailureReport(2);
+    report.addEmpty("/data/a.dat");
+    try {
+      report.addEmpty("/data/b.dat");
+      Assert.fail("Expected the budget to be reached");
+    } catch (FailureReport.BudgetReachedException e) {
+      // expected
+    }
+    Assert.assertTrue(report.isBudgetReached());
+    Assert.assertEquals(2, report.getMessages().size());
+    Assert.assertTrue(report.getMessage(),
+                      report.getMessage().startsWith("2 files failed the checks, after which the remaining checks " +
+                                                       "were cancelled as the failure budget is 2:"));
+  }
+
+  @Test
+  public void testConcurrentFailuresStopAtBudget() throws Exception {
+    FailureReport report = new FailureReport(10);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    CountDownLatch start = new CountDownLatch(1);
+    AtomicInteger rejected = new AtomicInteger();
+    List<Future<?>> checks = new ArrayList<>();
+    try {
+      for (int i = 0; i < 8; i++) {
+        int thread = i;
+        checks.add(executor.submit(() -> {
+          start.await();
+          for (int j = 0; j < 50; j++) {
+            try {
+              report.addEmpty(String.format("/data/%d-%02d.dat", thread, j));
+            } catch (FailureReport.BudgetReachedException e) {
+              rejected.incrementAndGet();
+            }
+          }
+          return null;
+        }));
+      }
+      start.countDown();
+      for (Future<?> check : checks) {
+        check.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    report.seal();
+    report.addEmpty("/data/late.dat");
+
+    // exactly the budget is recorded, and every other failure is rejected
+    Assert.assertEquals(8 * 50 - 9, rejected.get());
+    Assert.assertEquals(10, report.getMessages().size());
+    SettableArguments arguments = new MockActionContext().getArguments();
+    report.publish(arguments, "stage.");
+    Assert.assertEquals("10", arguments.get("stage.failures"));
+    Assert.assertEquals("true", arguments.get("stage.budgetReached"));
+    Assert.assertEquals(report.getMessage(), arguments.get("stage.report"));
+    Assert.assertTrue(report.getMessage(), report.getMessage().startsWith("10 files failed the checks"));
+    for (String message : report.getMessages()) {
+      Assert.assertTrue(report.getMessage(), report.getMessage().contains(message));
+      Assert.assertEquals("true", arguments.get("stage." + message.substring("Empty file ".length()) + ".empty"));
+    }
+  }
+}
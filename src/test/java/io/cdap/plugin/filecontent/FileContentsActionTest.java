@@ -16,14 +16,29 @@
 
 package io.cdap.plugin.filecontent;
 
+import com.google.common.hash.Hashing;
+import io.cdap.cdap.etl.api.StageMetrics;
 import io.cdap.cdap.etl.mock.action.MockActionContext;
 import io.cdap.cdap.etl.mock.common.MockPipelineConfigurer;
+import io.cdap.cdap.etl.mock.common.MockStageMetrics;
+import org.apache.hadoop.fs.Path;
+import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.io.FileFilter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Unit tests for {@link FileContentsAction}
@@ -32,6 +47,9 @@ public class FileContentsActionTest {
   private static final String EMPTY_FILE = "empty.txt";
   private static final String FILE_WITH_CONTENT_TO_MATCH = "to_match.txt";
 
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   private FileFilter filter = new FileFilter() {
     private final Pattern pattern = Pattern.compile("[^\\.].*\\.utf8");
 
@@ -116,4 +134,684 @@ public class FileContentsActionTest {
     MockActionContext context = new MockActionContext();
     new FileContentsAction(config).run(context);
   }
+
+  @Test
+  public void testFolderConcurrent() throws Exception {
+    File folder = createFolder(20, "HDR|2019\nbody\n");
+    FileContentsConfig config = FileContentsConfig.builder()
+      .setSourceFilePath(folder.getAbsolutePath())
+      .setFileContentsRegex("HDR\\|.*~body")
+      .setFailOnEmptyFile(true)
+      .setConcurrency(4)
+      .build();
+    new FileContentsAction(config).run(new MockActionContext());
+  }
+
+  @Test(expected = FileContentsAction.MissingContentsException.class)
+  public void testFolderConcurrentFail() throws Exception {
+    File folder = createFolder(20, "HDR|2019\nbody\n");
+    Files.write(new File(folder, "file-bad.dat").toPath(), "body\n".getBytes(StandardCharsets.UTF_8));
+    FileContentsConfig config = FileContentsConfig.builder()
+      .setSourceFilePath(folder.getAbsolutePath())
+      .setFileContentsRegex("HDR\\|.*~body")
+      .setFailOnEmptyFile(true)
+      .setConcurrency(4)
+      .build();
+    new FileContentsAction(config).run(new MockActionContext());
+  }
+
+  @Test(expected = FileContentsAction.EmptyFileException.class)
+  public void testFolderConcurrentEmpty() throws Exception {
+    File folder = createFolder(20, "HDR|2019\nbody\n");
+    Files.write(new File(folder, "file-empty.dat").toPath(), new byte[0]);
+    FileContentsConfig config = FileContentsConfig.builder()
+      .setSourceFilePath(folder.getAbsolutePath())
+      .setFileContentsRegex("HDR\\|.*")
+      .setFailOnEmptyFile(true)
+      .setConcurrency(4)
+      .build();
+    new FileContentsAction(config).run(new MockActionContext());
+  }
+
+  @Test
+  public void testFolderBytesScanMode() throws Exception {
+    File folder = createFolder(3, "HDR|2019\ncafé\r\nbody");
+    FileContentsConfig config = FileContentsConfig.builder()
+      .setSourceFilePath(folder.getAbsolutePath())
+      .setFileContentsRegex("HDR\\|.*~caf.~body")
+      .setFailOnEmptyFile(true)
+      .setScanMode("bytes")
+      .build();
+    new FileContentsAction(config).run(new MockActionContext());
+  }
+
+  @Test(expected = FileContentsAction.MissingContentsException.class)
+  public void testSingleFileBytesScanModeFailure() throws Exception {
+    ClassLoader classLoader = getClass().getClassLoader();
+    URL file = classLoader.getResource(FILE_WITH_CONTENT_TO_MATCH);
+    FileContentsConfig config = FileContentsConfig.builder()
+      .setSourceFilePath(file.getFile())
+      .setFileContentsRegex("not[0-9]there")
+      .setFailOnEmptyFile(true)
+      .setScanMode("bytes")
+      .build();
+    new FileContentsAction(config).run(new MockActionContext());
+  }
+
+  @Test
+  public void testFolderStreamListing() throws Exception {
+    File folder = createFolder(20, "HDR|2019\nbody\n");
+    new File(folder, "sub").mkdir();
+    FileContentsConfig config = FileContentsConfig.builder()
+      .setSourceFilePath(folder.getAbsolutePath())
+      .setFileRegex("file-.*")
+      .setFileContentsRegex("HDR\\|.*~body")
+      .setFailOnEmptyFile(true)
+      .setConcurrency(4)
+      .setStreamListing(true)
+      .build();
+    new FileContentsAction(config).run(new MockActionContext());
+  }
+
+  @Test(expected = FileContentsAction.MissingContentsException.class)
+  public void testFolderStreamListingFail() throws Exception {
+    File folder = createFolder(20, "HDR|2019\nbody\n");
+    Files.write(new File(folder, "file-bad.dat").toPath(), "body\n".getBytes(StandardCharsets.UTF_8));
+    FileContentsConfig config = FileContentsConfig.builder()
+      .setSourceFilePath(folder.getAbsolutePath())
+      .setFileContentsRegex("HDR\\|.*~body")
+      .setFailOnEmptyFile(true)
+      .setStreamListing(true)
+      .build();
+    new FileContentsAction(config).run(new MockActionContext());
+  }
+
+  @Test
+  public void testFolderRecursive() throws Exception {
+    File folder = createFolder(2, "HDR|2019\n");
+    File partition = new File(folder, "dt=2019-01-01/hour=00");
+    Files.createDirectories(partition.toPath());
+    Files.write(new File(partition, "file-0.dat").toPath(), "no header\n".getBytes(StandardCharsets.UTF_8));
+    FileContentsConfig config = FileContentsConfig.builder()
+      .setSourceFilePath(folder.getAbsolutePath())
+      .setFileRegex("file-.*")
+      .setFileContentsRegex("HDR\\|.*")
+      .setFailOnEmptyFile(true)
+      .setConcurrency(4)
+      .setRecursive(true)
+      .setMaxDepth(1)
+      .build();
+    // the file without a header is too deep to be checked
+    new FileContentsAction(config).run(new MockActionContext());
+
+    try {
+      new FileContentsAction(FileContentsConfig.builder(config).setMaxDepth(null).build())
+        .run(new MockActionContext());
+      Assert.fail("The file without a header was not checked");
+    } catch (FileContentsAction.MissingContentsException e) {
+      Assert.assertTrue(e.getMessage(), e.getMessage().contains("dt=2019-01-01/hour=00/file-0.dat"));
+    }
+  }
+
+  @Test
+  public void testResultCacheSkipsUnchangedFiles() throws Exception {
+    File folder = createFolder(5, "HDR|2019\n");
+    File cacheFile = new File(temporaryFolder.getRoot(), "cache");
+    FileContentsConfig config = FileContentsConfig.builder()
+      .setSourceFilePath(CountingFileSystem.SCHEME + "://" + folder.getAbsolutePath())
+      .setFileContentsRegex("HDR\\|.*")
+      .setFailOnEmptyFile(true)
+      .setCachePath(cacheFile.getAbsolutePath())
+      .build();
+    String file = new File(folder, "file-0.dat").getAbsolutePath();
+    CountingFileSystem.reset();
+    new FileContentsAction(config).run(new MockActionContext());
+    Assert.assertEquals(1, CountingFileSystem.getOpenCalls(file));
+    Assert.assertTrue(cacheFile.exists());
+
+    CountingFileSystem.reset();
+    new FileContentsAction(config).run(new MockActionContext());
+    Assert.assertEquals(0, CountingFileSystem.getOpenCalls(file));
+
+    // a changed file is read again, and fails the check
+    Files.write(new File(file).toPath(), "no header\n".getBytes(StandardCharsets.UTF_8));
+    CountingFileSystem.reset();
+    try {
+      new FileContentsAction(config).run(new MockActionContext());
+      Assert.fail("The changed file was not checked");
+    } catch (FileContentsAction.MissingContentsException e) {
+      // expected
+    }
+    Assert.assertEquals(1, CountingFileSystem.getOpenCalls(file));
+
+    // the failure is cached too
+    CountingFileSystem.reset();
+    try {
+      new FileContentsAction(config).run(new MockActionContext());
+      Assert.fail("The cached failure was not reported");
+    } catch (FileContentsAction.MissingContentsException e) {
+      // expected
+    }
+    Assert.assertEquals(0, CountingFileSystem.getOpenCalls(file));
+  }
+
+  @Test
+  public void testIncrementalResumesGrowingFile() throws Exception {
+    File log = temporaryFolder.newFile("app.log");
+    Files.write(log.toPath(), "START 1\nline\n".getBytes(StandardCharsets.UTF_8));
+    FileContentsConfig config = FileContentsConfig.builder()
+      .setSourceFilePath(log.getAbsolutePath())
+      .setFileContentsRegex("START .*~.*DONE.*")
+      .setFailOnEmptyFile(true)
+      .setCachePath(new File(temporaryFolder.getRoot(), "cache").getAbsolutePath())
+      .setIncremental(true)
+      .build();
+    try {
+      new FileContentsAction(config).run(new MockActionContext());
+      Assert.fail("The file is not done yet");
+    } catch (FileContentsAction.MissingContentsException e) {
+      // expected
+    }
+
+    // the start is only in the lines that are not read again
+    Files.write(log.toPath(), "more\nDONE\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    MockStageMetrics stageMetrics = new MockStageMetrics("incrementalAction");
+    new FileContentsAction(config).run(new MockActionContext() {
+      @Override
+      public StageMetrics getMetrics() {
+        return stageMetrics;
+      }
+    });
+    Assert.assertEquals("more\nDONE\n".length(), stageMetrics.getGauge("bytes.read"));
+
+    // rewritten with more bytes than before, but without the start
+    Files.write(log.toPath(), "no start here\nDONE\n".getBytes(StandardCharsets.UTF_8));
+    try {
+      new FileContentsAction(config).run(new MockActionContext());
+      Assert.fail("The rewritten file was not checked again");
+    } catch (FileContentsAction.MissingContentsException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testPublishesStatistics() throws Exception {
+    File folder = temporaryFolder.newFolder();
+    byte[] contents = "HDR\nbody\nbody\n".getBytes(StandardCharsets.UTF_8);
+    Files.write(new File(folder, "a.dat").toPath(), contents);
+    writeGzip(new File(folder, "b.dat.gz"), "HDR\r\nbody");
+    FileContentsConfig config = FileContentsConfig.builder()
+      .setSourceFilePath(folder.getAbsolutePath())
+      .setFileContentsRegex("HDR")
+      .setFailOnEmptyFile(true)
+      .setSplitSize(4L)
+      .setPublishStatistics(true)
+      .setDigestAlgorithm("md5")
+      .build();
+    MockActionContext context = new MockActionContext();
+    new FileContentsAction(config).run(context);
+
+    String prefix = context.getStageName() + ".";
+    String a = prefix + new Path(new File(folder, "a.dat").toURI());
+    Assert.assertEquals("3", context.getArguments().get(a + ".lines"));
+    Assert.assertEquals("14", context.getArguments().get(a + ".bytes"));
+    Assert.assertEquals(Hashing.md5().hashBytes(contents).toString(), context.getArguments().get(a + ".digest"));
+    String b = prefix + new Path(new File(folder, "b.dat.gz").toURI());
+    Assert.assertEquals("2", context.getArguments().get(b + ".lines"));
+    Assert.assertEquals("2", context.getArguments().get(prefix + "files"));
+    Assert.assertEquals("5", context.getArguments().get(prefix + "lines"));
+  }
+
+  @Test
+  public void testSampling() throws Exception {
+    File folder = createFolder(200, "HDR\nbody\n");
+    FileContentsConfig.Builder builder = FileContentsConfig.builder()
+      .setSourceFilePath(folder.getAbsolutePath())
+      .setFileContentsRegex("HDR")
+      .setFailOnEmptyFile(true)
+      .setSampleCount(20)
+      .setSampleSeed(42L);
+    MockStageMetrics stageMetrics = new MockStageMetrics("samplingAction");
+    MockActionContext context = new MockActionContext() {
+      @Override
+      public StageMetrics getMetrics() {
+        return stageMetrics;
+      }
+    };
+    new FileContentsAction(builder.build()).run(context);
+    Assert.assertEquals(200, stageMetrics.getCount("files.listed"));
+    Assert.assertEquals(20, stageMetrics.getCount("files.scanned"));
+
+    // an empty file fails the run whether or not it is in the sample
+    Files.write(new File(folder, "empty.txt").toPath(), new byte[0]);
+    for (int seed = 0; seed < 5; seed++) {
+      try {
+        new FileContentsAction(builder.setSampleCount(null).setSamplePercent(1.0).setSampleSeed((long) seed).build())
+          .run(new MockActionContext());
+        Assert.fail("Expected the empty file to fail the run");
+      } catch (FileContentsAction.EmptyFileException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testSamplingRanges() throws Exception {
+    File file = temporaryFolder.newFile("ranges.dat");
+    StringBuilder contents = new StringBuilder();
+    for (int i = 0; i < 20000; i++) {
+      contents.append("record ").append(i).append('\n');
+    }
+    Files.write(file.toPath(), contents.toString().getBytes(StandardCharsets.UTF_8));
+    FileContentsConfig.Builder builder = FileContentsConfig.builder()
+      .setSourceFilePath(file.getAbsolutePath())
+      .setFileContentsRegex("record [0-9]+~not there")
+      .setFailOnEmptyFile(true)
+      .setSplitSize(1000L)
+      .setSampleRangePercent(10.0);
+    MockStageMetrics stageMetrics = new MockStageMetrics("rangeSamplingAction");
+    try {
+      new FileContentsAction(builder.build()).run(new MockActionContext() {
+        @Override
+        public StageMetrics getMetrics() {
+          return stageMetrics;
+        }
+      });
+      Assert.fail("Expected the pattern to be missing");
+    } catch (FileContentsAction.MissingContentsException e) {
+      // expected
+    }
+    // only the sampled ranges are read, even though a pattern is never found
+    Assert.assertTrue(stageMetrics.getGauge("bytes.read") < file.length() / 2);
+  }
+
+  @Test
+  public void testReadAhead() throws Exception {
+    File folder = temporaryFolder.newFolder();
+    StringBuilder contents = new StringBuilder("HDR|2019\n");
+    for (int i = 0; i < 5000; i++) {
+      contents.append("body line ").append(i).append('\n');
+    }
+    contents.append("TRL|5000\n");
+    Files.write(new File(folder, "plain.dat").toPath(), contents.toString().getBytes(StandardCharsets.UTF_8));
+    writeGzip(new File(folder, "compressed.dat.gz"), contents.toString());
+    FileContentsConfig.Builder builder = FileContentsConfig.builder()
+      .setSourceFilePath(folder.getAbsolutePath())
+      .setFileContentsRegex("HDR\\|.*~TRL\\|5000")
+      .setFailOnEmptyFile(true)
+      .setConcurrency(2)
+      .setReadAheadSize(1000)
+      .setReadAheadDepth(3);
+    for (String scanMode : new String[] { "reader", "bytes" }) {
+      new FileContentsAction(builder.setScanMode(scanMode).build()).run(new MockActionContext());
+      new FileContentsAction(builder.setSplitSize(4096L).build()).run(new MockActionContext());
+      new FileContentsAction(builder.setSplitSize(null).setContentsRegion("footer").setRegionLines(1)
+                               .setFileContentsRegex("TRL\\|5000").build()).run(new MockActionContext());
+      builder.setContentsRegion(null).setRegionLines(null).setFileContentsRegex("HDR\\|.*~TRL\\|5000");
+    }
+    try {
+      new FileContentsAction(builder.setFileContentsRegex("TRL\\|5001").build()).run(new MockActionContext());
+      Assert.fail("Expected the pattern to be missing");
+    } catch (FileContentsAction.MissingContentsException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testCompressedFolder() throws Exception {
+    File folder = temporaryFolder.newFolder();
+    writeGzip(new File(folder, "file-0.dat.gz"), "HDR|2019\nbody\n");
+    writeGzip(new File(folder, "file-1.dat.gz"), "HDR|2019\nbody\n");
+    FileContentsConfig config = FileContentsConfig.builder()
+      .setSourceFilePath(folder.getAbsolutePath())
+      .setFileContentsRegex("HDR\\|.*~body")
+      .setFailOnEmptyFile(true)
+      .build();
+    new FileContentsAction(config).run(new MockActionContext());
+
+    writeGzip(new File(folder, "file-2.dat.gz"), "body\n");
+    try {
+      new FileContentsAction(config).run(new MockActionContext());
+      Assert.fail("The header is missing from file-2.dat.gz");
+    } catch (FileContentsAction.MissingContentsException e) {
+      Assert.assertTrue(e.getMessage(), e.getMessage().contains("file-2.dat.gz"));
+    }
+  }
+
+  @Test
+  public void testCompressedEmptyFile() throws Exception {
+    File file = new File(temporaryFolder.getRoot(), "empty.dat.gz");
+    writeGzip(file, "");
+    // the compressed file is not empty, but it has no contents
+    Assert.assertTrue(file.length() > 0);
+    for (String contentsRegex : new String[] { null, "HDR\\|.*" }) {
+      FileContentsConfig config = FileContentsConfig.builder()
+        .setSourceFilePath(file.getAbsolutePath())
+        .setFileContentsRegex(contentsRegex)
+        .setFailOnEmptyFile(true)
+        .build();
+      try {
+        new FileContentsAction(config).run(new MockActionContext());
+        Assert.fail("The empty compressed file was not detected with contents regex " + contentsRegex);
+      } catch (FileContentsAction.EmptyFileException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testSingleFileLooksUpStatusOnce() throws Exception {
+    File file = temporaryFolder.newFile("single.dat");
+    Files.write(file.toPath(), "HDR|2019\n".getBytes(StandardCharsets.UTF_8));
+    CountingFileSystem.reset();
+    FileContentsConfig config = FileContentsConfig.builder()
+      .setSourceFilePath(CountingFileSystem.SCHEME + "://" + file.getAbsolutePath())
+      .setFileContentsRegex("HDR\\|.*")
+      .setFailOnEmptyFile(true)
+      .build();
+    new FileContentsAction(config).run(new MockActionContext());
+    Assert.assertEquals(1, CountingFileSystem.getStatusCalls(file.getAbsolutePath()));
+    Assert.assertEquals(0, CountingFileSystem.getListCalls(file.getAbsolutePath()));
+  }
+
+  @Test
+  public void testFolderLooksUpStatusOnce() throws Exception {
+    File folder = createFolder(5, "HDR|2019\n");
+    CountingFileSystem.reset();
+    FileContentsConfig config = FileContentsConfig.builder()
+      .setSourceFilePath(CountingFileSystem.SCHEME + "://" + folder.getAbsolutePath())
+      .setFileContentsRegex("HDR\\|.*")
+      .setFailOnEmptyFile(true)
+      .build();
+    new FileContentsAction(config).run(new MockActionContext());
+    Assert.assertEquals(1, CountingFileSystem.getStatusCalls(folder.getAbsolutePath()));
+    Assert.assertEquals(1, CountingFileSystem.getListCalls(folder.getAbsolutePath()));
+    for (int i = 0; i < 5; i++) {
+      // the length of each file comes from the listing
+      Assert.assertEquals(0, CountingFileSystem.getStatusCalls(new File(folder, "file-" + i + ".dat").getPath()));
+    }
+  }
+
+  @Test
+  public void testPublishesMetrics() throws Exception {
+    File folder = createFolder(5, "HDR|2019\nbody\nTRL|1\n");
+    FileContentsConfig config = FileContentsConfig.builder()
+      .setSourceFilePath(folder.getAbsolutePath())
+      .setFileContentsRegex("TRL\\|.*")
+      .setFailOnEmptyFile(true)
+      .build();
+    MockStageMetrics metrics = new MockStageMetrics("metricsAction");
+    new FileContentsAction(config).run(new MockActionContext() {
+      @Override
+      public StageMetrics getMetrics() {
+        return metrics;
+      }
+    });
+    Assert.assertEquals(5, metrics.getCount("files.listed"));
+    Assert.assertEquals(5, metrics.getCount("files.scanned"));
+    Assert.assertEquals(15, metrics.getGauge("lines.scanned"));
+    Assert.assertEquals(5 * 20, metrics.getGauge("bytes.read"));
+  }
+
+  @Test
+  public void testMaxLineLength() throws Exception {
+    File file = temporaryFolder.newFile("blob.json");
+    StringBuilder blob = new StringBuilder("{\"records\": [");
+    for (int i = 0; i < 100000; i++) {
+      blob.append("{\"id\": ").append(i).append("},");
+    }
+    blob.append("{\"trailer\": true}]}");
+    Files.write(file.toPath(), blob.toString().getBytes(StandardCharsets.UTF_8));
+    for (String scanMode : new String[] { "reader", "bytes" }) {
+      FileContentsConfig.Builder builder = FileContentsConfig.builder()
+        .setSourceFilePath(file.getAbsolutePath())
+        .setFileContentsRegex(".*trailer.*")
+        .setFailOnEmptyFile(true)
+        .setScanMode(scanMode)
+        .setMaxLineLength(4096);
+      try {
+        new FileContentsAction(builder.build()).run(new MockActionContext());
+        Assert.fail("Expected the long line to fail the check");
+      } catch (IOException e) {
+        Assert.assertTrue(e.getCause() instanceof LineTooLongException);
+      }
+      new FileContentsAction(builder.setLongLinePolicy("window").build()).run(new MockActionContext());
+    }
+  }
+
+  @Test
+  public void testMultiline() throws Exception {
+    File file = temporaryFolder.newFile("records.dat");
+    StringBuilder contents = new StringBuilder("HDR|2019\n");
+    for (int i = 0; i < 1000; i++) {
+      contents.append("body line ").append(i).append('\n');
+    }
+    contents.append("TRL|1000\nEOF\n");
+    Files.write(file.toPath(), contents.toString().getBytes(StandardCharsets.UTF_8));
+    FileContentsConfig.Builder builder = FileContentsConfig.builder()
+      .setSourceFilePath(file.getAbsolutePath())
+      .setFileContentsRegex("HDR\\|.*\nbody line 0~TRL\\|[0-9]+\nEOF")
+      .setFailOnEmptyFile(true)
+      .setSplitSize(1024L)
+      .setMultilineLines(2);
+    for (String scanMode : new String[] { "reader", "bytes" }) {
+      new FileContentsAction(builder.setScanMode(scanMode).build()).run(new MockActionContext());
+    }
+    try {
+      new FileContentsAction(builder.setMultilineLines(null).build()).run(new MockActionContext());
+      Assert.fail("Expected the patterns to need more than one line");
+    } catch (FileContentsAction.MissingContentsException e) {
+      Assert.assertTrue(e.getMessage(), e.getMessage().contains("records.dat"));
+    }
+  }
+
+  @Test
+  public void testFixedStrings() throws Exception {
+    File file = temporaryFolder.newFile("prices.dat");
+    Files.write(file.toPath(), "id|price\n1|[9.99]\n2|(12.50)\n".getBytes(StandardCharsets.UTF_8));
+    FileContentsConfig.Builder builder = FileContentsConfig.builder()
+      .setSourceFilePath(file.getAbsolutePath())
+      .setFileContentsRegex("[9.99]~(12.5")
+      .setFailOnEmptyFile(true)
+      .setPatternSyntax("fixed");
+    new FileContentsAction(builder.build()).run(new MockActionContext());
+    try {
+      new FileContentsAction(builder.setFileContentsRegex("[9.99]~12.5)").build()).run(new MockActionContext());
+      Assert.fail("Expected the fixed string to be missing");
+    } catch (FileContentsAction.MissingContentsException e) {
+      Assert.assertTrue(e.getMessage(), e.getMessage().contains("prices.dat"));
+    }
+  }
+
+  @Test
+  public void testPatternRegions() throws Exception {
+    File file = temporaryFolder.newFile("regions.dat");
+    StringBuilder contents = new StringBuilder("HDR|2019\n");
+    // larger than the buffer that the header is read with
+    for (int i = 0; i < 200000; i++) {
+      contents.append("body line ").append(i).append('\n');
+    }
+    contents.append("TRL|200000\n");
+    Files.write(file.toPath(), contents.toString().getBytes(StandardCharsets.UTF_8));
+    FileContentsConfig.Builder builder = FileContentsConfig.builder()
+      .setSourceFilePath(file.getAbsolutePath())
+      .setFileContentsRegex("HDR\\|.*~TRL\\|200000")
+      .setPatternRegions("header:1~footer:1")
+      .setFailOnEmptyFile(true);
+    MockStageMetrics stageMetrics = new MockStageMetrics("patternRegionsAction");
+    new FileContentsAction(builder.build()).run(new MockActionContext() {
+      @Override
+      public StageMetrics getMetrics() {
+        return stageMetrics;
+      }
+    });
+    // the header and the footer are checked in the same run, reading only the start and the end of the file
+    Assert.assertTrue(stageMetrics.getGauge("bytes.read") < file.length() / 2);
+
+    try {
+      new FileContentsAction(builder.setPatternRegions("footer:1~header:1").build()).run(new MockActionContext());
+      Assert.fail("Expected the patterns to be missing from the swapped regions");
+    } catch (FileContentsAction.MissingContentsException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testCharsets() throws Exception {
+    String contents = "HDR|café\nbody crème\nTRL|2\n";
+    File folder = temporaryFolder.newFolder();
+    Files.write(new File(folder, "plain.dat").toPath(), contents.getBytes(StandardCharsets.UTF_8));
+    Files.write(new File(folder, "utf8.dat").toPath(), ("\uFEFF" + contents).getBytes(StandardCharsets.UTF_8));
+    Files.write(new File(folder, "utf16le.dat").toPath(),
+                ("\uFEFF" + contents).getBytes(StandardCharsets.UTF_16LE));
+    try (OutputStream out = new GZIPOutputStream(new FileOutputStream(new File(folder, "utf16be.dat.gz")))) {
+      out.write(("\uFEFF" + contents).getBytes(StandardCharsets.UTF_16BE));
+    }
+    FileContentsConfig.Builder builder = FileContentsConfig.builder()
+      .setSourceFilePath(folder.getAbsolutePath())
+      .setFileContentsRegex("HDR\\|café~TRL\\|2")
+      .setFailOnEmptyFile(true);
+    for (String scanMode : new String[] { "reader", "bytes" }) {
+      builder.setScanMode(scanMode);
+      new FileContentsAction(builder.build()).run(new MockActionContext());
+      new FileContentsAction(builder.setFileContentsRegex(".*crème~TRL.*").setSplitSize(10L).build())
+        .run(new MockActionContext());
+      builder.setFileContentsRegex("HDR\\|café~TRL\\|2").setSplitSize(null);
+      new FileContentsAction(builder.setContentsRegion("header").setRegionLines(1).setFileContentsRegex("HDR\\|café")
+                               .build()).run(new MockActionContext());
+      new FileContentsAction(builder.setContentsRegion("footer").setFileContentsRegex("TRL\\|2").build())
+        .run(new MockActionContext());
+      builder.setContentsRegion(null).setRegionLines(null).setFileContentsRegex("HDR\\|café~TRL\\|2");
+    }
+    try {
+      new FileContentsAction(builder.setSourceFilePath(new File(folder, "utf16le.dat").getAbsolutePath())
+                               .setDetectBom(false).build()).run(new MockActionContext());
+      Assert.fail("Expected the UTF-16 files to be read as UTF-8");
+    } catch (FileContentsAction.MissingContentsException e) {
+      Assert.assertTrue(e.getMessage(), e.getMessage().contains("utf16le.dat"));
+    }
+
+    File latin1 = temporaryFolder.newFile("latin1.dat");
+    Files.write(latin1.toPath(), contents.getBytes(StandardCharsets.ISO_8859_1));
+    builder = FileContentsConfig.builder()
+      .setSourceFilePath(latin1.getAbsolutePath())
+      .setFileContentsRegex("HDR\\|café~.*crème")
+      .setFailOnEmptyFile(true)
+      .setCharset("ISO-8859-1");
+    for (String scanMode : new String[] { "reader", "bytes" }) {
+      new FileContentsAction(builder.setScanMode(scanMode).build()).run(new MockActionContext());
+    }
+    try {
+      new FileContentsAction(builder.setCharset(null).build()).run(new MockActionContext());
+      Assert.fail("Expected the file to be read as UTF-8");
+    } catch (FileContentsAction.MissingContentsException e) {
+      Assert.assertTrue(e.getMessage(), e.getMessage().contains("latin1.dat"));
+    }
+  }
+
+  @Test
+  public void testReportFailures() throws Exception {
+    File folder = temporaryFolder.newFolder();
+    Files.write(new File(folder, "a.dat").toPath(), "HDR\nbody\nTRL\n".getBytes(StandardCharsets.UTF_8));
+    Files.write(new File(folder, "b.dat").toPath(), "HDR\nbody\n".getBytes(StandardCharsets.UTF_8));
+    Files.write(new File(folder, "c.dat").toPath(), "body\n".getBytes(StandardCharsets.UTF_8));
+    Files.write(new File(folder, "d.dat").toPath(), new byte[0]);
+    FileContentsConfig config = FileContentsConfig.builder()
+      .setSourceFilePath(folder.getAbsolutePath())
+      .setFileContentsRegex("HDR~TRL")
+      .setFailOnEmptyFile(true)
+      .setConcurrency(2)
+      .setReportFailures(true)
+      .build();
+    MockActionContext context = new MockActionContext();
+    try {
+      new FileContentsAction(config).run(context);
+      Assert.fail("Expected the files to fail the checks");
+    } catch (FileContentsAction.FailedChecksException e) {
+      List<String> failed = e.getFailedFiles();
+      Assert.assertEquals(3, failed.size());
+      Assert.assertTrue(failed.get(0), failed.get(0).startsWith("The pattern TRL was not found in file"));
+      Assert.assertTrue(failed.get(1), failed.get(1).startsWith("The patterns HDR~TRL were not found in file"));
+      Assert.assertTrue(failed.get(2), failed.get(2).startsWith("Empty file"));
+      Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("3 files failed the checks:"));
+    }
+
+    String prefix = context.getStageName() + ".";
+    Assert.assertEquals("3", context.getArguments().get(prefix + "failures"));
+    Assert.assertEquals("false", context.getArguments().get(prefix + "budgetReached"));
+    Assert.assertNull(context.getArguments().get(prefix + new Path(new File(folder, "a.dat").toURI()) + ".missing"));
+    Assert.assertEquals("TRL", context.getArguments().get(prefix + new Path(new File(folder, "b.dat").toURI())
+                                                            + ".missing"));
+    Assert.assertEquals("HDR~TRL", context.getArguments().get(prefix + new Path(new File(folder, "c.dat").toURI())
+                                                                + ".missing"));
+    Assert.assertEquals("true", context.getArguments().get(prefix + new Path(new File(folder, "d.dat").toURI())
+                                                             + ".empty"));
+
+    // with a cache, files that last failed for missing patterns are scanned again to report which ones
+    FileContentsConfig cached = FileContentsConfig.builder(config)
+      .setCachePath(new File(temporaryFolder.newFolder(), "cache").getAbsolutePath())
+      .build();
+    for (int run = 0; run < 2; run++) {
+      try {
+        new FileContentsAction(cached).run(new MockActionContext());
+        Assert.fail("Expected the files to fail the checks");
+      } catch (FileContentsAction.FailedChecksException e) {
+        Assert.assertEquals(3, e.getFailedFiles().size());
+        Assert.assertTrue(e.getFailedFiles().get(1), e.getFailedFiles().get(1).startsWith("The patterns HDR~TRL"));
+      }
+    }
+
+    // once every file passes, the report is published without failing the run
+    Files.write(new File(folder, "b.dat").toPath(), "HDR\nTRL\n".getBytes(StandardCharsets.UTF_8));
+    Files.write(new File(folder, "c.dat").toPath(), "HDR\nTRL\n".getBytes(StandardCharsets.UTF_8));
+    Files.write(new File(folder, "d.dat").toPath(), "HDR\nTRL\n".getBytes(StandardCharsets.UTF_8));
+    context = new MockActionContext();
+    new FileContentsAction(config).run(context);
+    Assert.assertEquals("0", context.getArguments().get(prefix + "failures"));
+  }
+
+  @Test
+  public void testFailureBudget() throws Exception {
+    File folder = createFolder(200, "HDR\nbody\n");
+    FileContentsConfig config = FileContentsConfig.builder()
+      .setSourceFilePath(folder.getAbsolutePath())
+      .setFileContentsRegex("TRL")
+      .setFailOnEmptyFile(true)
+      .setConcurrency(4)
+      .setReportFailures(true)
+      .setFailureBudget(3)
+      .build();
+    MockStageMetrics stageMetrics = new MockStageMetrics("failureBudgetAction");
+    MockActionContext context = new MockActionContext() {
+      @Override
+      public StageMetrics getMetrics() {
+        return stageMetrics;
+      }
+    };
+    try {
+      new FileContentsAction(config).run(context);
+      Assert.fail("Expected the files to fail the checks");
+    } catch (FileContentsAction.FailedChecksException e) {
+      // files that were already scanned when the budget was reached may still be reported
+      Assert.assertTrue(e.getFailedFiles().size() >= 3);
+      Assert.assertTrue(e.getMessage(), e.getMessage().contains("the failure budget is 3"));
+    }
+    // the outstanding checks are cancelled once the budget is reached
+    Assert.assertTrue(stageMetrics.getCount("files.scanned") < 200);
+    Assert.assertEquals("true", context.getArguments().get(context.getStageName() + ".budgetReached"));
+  }
+
+  private static void writeGzip(File file, String contents) throws IOException {
+    try (OutputStream out = new GZIPOutputStream(new FileOutputStream(file))) {
+      out.write(contents.getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  private File createFolder(int numFiles, String contents) throws IOException {
+    File folder = temporaryFolder.newFolder();
+    for (int i = 0; i < numFiles; i++) {
+      Files.write(new File(folder, "file-" + i + ".dat").toPath(), contents.getBytes(StandardCharsets.UTF_8));
+    }
+    return folder;
+  }
 }
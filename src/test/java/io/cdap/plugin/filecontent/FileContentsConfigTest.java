@@ -22,6 +22,7 @@ import io.cdap.cdap.etl.mock.validation.MockFailureCollector;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -84,6 +85,329 @@ public class FileContentsConfigTest {
     Assert.assertTrue(failureCollector.getValidationFailures().isEmpty());
   }
 
+  @Test
+  public void testValidateConcurrency() {
+    MockFailureCollector failureCollector = new MockFailureCollector(MOCK_STAGE);
+    FileContentsConfig config = FileContentsConfig.builder(VALID_CONFIG)
+      .setConcurrency(0)
+      .build();
+    List<List<String>> paramNames = Collections.singletonList(
+      Collections.singletonList(FileContentsConfig.CONCURRENCY)
+    );
+
+    config.validate(failureCollector);
+    assertValidationFailed(failureCollector, paramNames);
+  }
+
+  @Test
+  public void testValidateScanMode() {
+    MockFailureCollector failureCollector = new MockFailureCollector(MOCK_STAGE);
+    FileContentsConfig config = FileContentsConfig.builder(VALID_CONFIG)
+      .setScanMode("mmap")
+      .build();
+    List<List<String>> paramNames = Collections.singletonList(
+      Collections.singletonList(FileContentsConfig.SCAN_MODE)
+    );
+
+    config.validate(failureCollector);
+    assertValidationFailed(failureCollector, paramNames);
+  }
+
+  @Test
+  public void testValidateMaxDepth() {
+    MockFailureCollector failureCollector = new MockFailureCollector(MOCK_STAGE);
+    FileContentsConfig config = FileContentsConfig.builder(VALID_CONFIG)
+      .setRecursive(true)
+      .setMaxDepth(0)
+      .build();
+    List<List<String>> paramNames = Collections.singletonList(
+      Collections.singletonList(FileContentsConfig.MAX_DEPTH)
+    );
+
+    config.validate(failureCollector);
+    assertValidationFailed(failureCollector, paramNames);
+  }
+
+  @Test
+  public void testValidateLineLimit() {
+    MockFailureCollector failureCollector = new MockFailureCollector(MOCK_STAGE);
+    FileContentsConfig config = FileContentsConfig.builder(VALID_CONFIG)
+      .setMaxLineLength(0)
+      .setLongLinePolicy("split")
+      .build();
+    List<List<String>> paramNames = Arrays.asList(
+      Collections.singletonList(FileContentsConfig.MAX_LINE_LENGTH),
+      Collections.singletonList(FileContentsConfig.LONG_LINE_POLICY)
+    );
+
+    config.validate(failureCollector);
+    assertValidationFailed(failureCollector, paramNames);
+  }
+
+  @Test
+  public void testValidateMultiline() {
+    MockFailureCollector failureCollector = new MockFailureCollector(MOCK_STAGE);
+    FileContentsConfig config = FileContentsConfig.builder(VALID_CONFIG)
+      .setMultilineLines(0)
+      .setMultilineBytes(0)
+      .build();
+    List<List<String>> paramNames = Arrays.asList(
+      Collections.singletonList(FileContentsConfig.MULTILINE_LINES),
+      Collections.singletonList(FileContentsConfig.MULTILINE_BYTES)
+    );
+
+    config.validate(failureCollector);
+    assertValidationFailed(failureCollector, paramNames);
+  }
+
+  @Test
+  public void testValidatePatternSyntax() {
+    MockFailureCollector failureCollector = new MockFailureCollector(MOCK_STAGE);
+    FileContentsConfig config = FileContentsConfig.builder(VALID_CONFIG)
+      .setPatternSyntax("glob")
+      .build();
+    List<List<String>> paramNames = Collections.singletonList(
+      Collections.singletonList(FileContentsConfig.PATTERN_SYNTAX)
+    );
+
+    config.validate(failureCollector);
+    assertValidationFailed(failureCollector, paramNames);
+
+    // fixed strings are not regular expressions, so they are not compiled
+    failureCollector = new MockFailureCollector(MOCK_STAGE);
+    FileContentsConfig.builder(VALID_CONFIG)
+      .setFileContentsRegex("[unclosed~(")
+      .setFailOnEmptyFile(false)
+      .setPatternSyntax("fixed")
+      .build()
+      .validate(failureCollector);
+    Assert.assertEquals(0, failureCollector.getValidationFailures().size());
+  }
+
+  @Test
+  public void testValidateIncrementalNeedsCache() {
+    MockFailureCollector failureCollector = new MockFailureCollector(MOCK_STAGE);
+    FileContentsConfig config = FileContentsConfig.builder(VALID_CONFIG)
+      .setIncremental(true)
+      .build();
+    List<List<String>> paramNames = Collections.singletonList(
+      Arrays.asList(FileContentsConfig.INCREMENTAL, FileContentsConfig.CACHE_PATH)
+    );
+
+    config.validate(failureCollector);
+    assertValidationFailed(failureCollector, paramNames);
+  }
+
+  @Test
+  public void testValidateStatistics() {
+    MockFailureCollector failureCollector = new MockFailureCollector(MOCK_STAGE);
+    FileContentsConfig config = FileContentsConfig.builder(VALID_CONFIG)
+      .setPublishStatistics(true)
+      .setDigestAlgorithm("sha1")
+      .setCachePath("/tmp/cache")
+      .setContentsRegion("header")
+      .setRegionLines(1)
+      .build();
+    List<List<String>> paramNames = Arrays.asList(
+      Collections.singletonList(FileContentsConfig.DIGEST_ALGORITHM),
+      Arrays.asList(FileContentsConfig.PUBLISH_STATISTICS, FileContentsConfig.CACHE_PATH),
+      Arrays.asList(FileContentsConfig.PUBLISH_STATISTICS, FileContentsConfig.CONTENTS_REGION)
+    );
+
+    config.validate(failureCollector);
+    assertValidationFailed(failureCollector, paramNames);
+  }
+
+  @Test
+  public void testValidateSampling() {
+    MockFailureCollector failureCollector = new MockFailureCollector(MOCK_STAGE);
+    FileContentsConfig config = FileContentsConfig.builder(VALID_CONFIG)
+      .setSampleCount(0)
+      .setSamplePercent(150.0)
+      .setSampleRangePercent(0.0)
+      .build();
+    List<List<String>> paramNames = Arrays.asList(
+      Collections.singletonList(FileContentsConfig.SAMPLE_COUNT),
+      Collections.singletonList(FileContentsConfig.SAMPLE_PERCENT),
+      Arrays.asList(FileContentsConfig.SAMPLE_COUNT, FileContentsConfig.SAMPLE_PERCENT),
+      Collections.singletonList(FileContentsConfig.SAMPLE_RANGE_PERCENT),
+      Arrays.asList(FileContentsConfig.SAMPLE_RANGE_PERCENT, FileContentsConfig.SPLIT_SIZE)
+    );
+
+    config.validate(failureCollector);
+    assertValidationFailed(failureCollector, paramNames);
+  }
+
+  @Test
+  public void testValidateSamplingWithStatistics() {
+    MockFailureCollector failureCollector = new MockFailureCollector(MOCK_STAGE);
+    FileContentsConfig config = FileContentsConfig.builder(VALID_CONFIG)
+      .setSampleCount(3)
+      .setPublishStatistics(true)
+      .build();
+    config.validate(failureCollector);
+    assertValidationFailed(failureCollector, Collections.singletonList(
+      Arrays.asList(FileContentsConfig.SAMPLE_COUNT, FileContentsConfig.PUBLISH_STATISTICS)));
+
+    failureCollector = new MockFailureCollector(MOCK_STAGE);
+    config = FileContentsConfig.builder(VALID_CONFIG)
+      .setSamplePercent(10.0)
+      .setPublishStatistics(true)
+      .build();
+    config.validate(failureCollector);
+    assertValidationFailed(failureCollector, Collections.singletonList(
+      Arrays.asList(FileContentsConfig.SAMPLE_PERCENT, FileContentsConfig.PUBLISH_STATISTICS)));
+  }
+
+  @Test
+  public void testValidateDistributed() {
+    MockFailureCollector failureCollector = new MockFailureCollector(MOCK_STAGE);
+    FileContentsConfig config = FileContentsConfig.builder(VALID_CONFIG)
+      .setCachePath("/tmp/cache")
+      .setPublishStatistics(true)
+      .setReportFailures(true)
+      .setFailureBudget(3)
+      .build();
+    List<List<String>> paramNames = Arrays.asList(
+      Collections.singletonList(FileContentsConfig.CACHE_PATH),
+      Collections.singletonList(FileContentsConfig.PUBLISH_STATISTICS),
+      Collections.singletonList(FileContentsConfig.FAILURE_BUDGET)
+    );
+
+    config.validateDistributed(failureCollector);
+    assertValidationFailed(failureCollector, paramNames);
+  }
+
+  @Test
+  public void testValidateCharset() {
+    MockFailureCollector failureCollector = new MockFailureCollector(MOCK_STAGE);
+    FileContentsConfig.builder(VALID_CONFIG).setCharset("no-such-charset").build().validate(failureCollector);
+    assertValidationFailed(failureCollector, Collections.singletonList(
+      Collections.singletonList(FileContentsConfig.CHARSET)));
+
+    failureCollector = new MockFailureCollector(MOCK_STAGE);
+    FileContentsConfig config = FileContentsConfig.builder(VALID_CONFIG)
+      .setCharset("UTF-16")
+      .setSplitSize(1024L)
+      .setPublishStatistics(true)
+      .build();
+    List<List<String>> paramNames = Arrays.asList(
+      Arrays.asList(FileContentsConfig.CHARSET, FileContentsConfig.SPLIT_SIZE),
+      Arrays.asList(FileContentsConfig.CHARSET, FileContentsConfig.PUBLISH_STATISTICS)
+    );
+
+    config.validate(failureCollector);
+    assertValidationFailed(failureCollector, paramNames);
+
+    failureCollector = new MockFailureCollector(MOCK_STAGE);
+    FileContentsConfig.builder(VALID_CONFIG).setCharset("ISO-8859-1").setSplitSize(1024L).build()
+      .validate(failureCollector);
+    Assert.assertTrue(failureCollector.getValidationFailures().isEmpty());
+  }
+
+  @Test
+  public void testValidateReport() {
+    MockFailureCollector failureCollector = new MockFailureCollector(MOCK_STAGE);
+    FileContentsConfig.builder(VALID_CONFIG).setReportFailures(true).setFailureBudget(0).build()
+      .validate(failureCollector);
+    assertValidationFailed(failureCollector, Collections.singletonList(
+      Collections.singletonList(FileContentsConfig.FAILURE_BUDGET)));
+
+    failureCollector = new MockFailureCollector(MOCK_STAGE);
+    FileContentsConfig.builder(VALID_CONFIG).setFailureBudget(3).build().validate(failureCollector);
+    assertValidationFailed(failureCollector, Collections.singletonList(
+      Arrays.asList(FileContentsConfig.FAILURE_BUDGET, FileContentsConfig.REPORT_FAILURES)));
+
+    failureCollector = new MockFailureCollector(MOCK_STAGE);
+    FileContentsConfig.builder(VALID_CONFIG).setReportFailures(true).setFailureBudget(3).build()
+      .validate(failureCollector);
+    Assert.assertTrue(failureCollector.getValidationFailures().isEmpty());
+  }
+
+  @Test
+  public void testValidateReadAhead() {
+    MockFailureCollector failureCollector = new MockFailureCollector(MOCK_STAGE);
+    FileContentsConfig config = FileContentsConfig.builder(VALID_CONFIG)
+      .setReadAheadSize(0)
+      .setReadAheadDepth(0)
+      .build();
+    List<List<String>> paramNames = Arrays.asList(
+      Collections.singletonList(FileContentsConfig.READ_AHEAD_SIZE),
+      Collections.singletonList(FileContentsConfig.READ_AHEAD_DEPTH)
+    );
+
+    config.validate(failureCollector);
+    assertValidationFailed(failureCollector, paramNames);
+  }
+
+  @Test
+  public void testValidateRegionNeedsSize() {
+    MockFailureCollector failureCollector = new MockFailureCollector(MOCK_STAGE);
+    FileContentsConfig config = FileContentsConfig.builder(VALID_CONFIG)
+      .setContentsRegion("footer")
+      .build();
+    List<List<String>> paramNames = Collections.singletonList(
+      Arrays.asList(FileContentsConfig.REGION_LINES, FileContentsConfig.REGION_BYTES)
+    );
+
+    config.validate(failureCollector);
+    assertValidationFailed(failureCollector, paramNames);
+
+    failureCollector = new MockFailureCollector(MOCK_STAGE);
+    FileContentsConfig.builder(config).setRegionLines(1).build().validate(failureCollector);
+    Assert.assertTrue(failureCollector.getValidationFailures().isEmpty());
+  }
+
+  @Test
+  public void testValidatePatternRegions() {
+    FileContentsConfig config = FileContentsConfig.builder(VALID_CONFIG)
+      .setFileContentsRegex("HDR.*~TRL.*~.*body.*")
+      .setPatternRegions("header:1~footer::4096~")
+      .setRegionLines(5)
+      .build();
+    MockFailureCollector failureCollector = new MockFailureCollector(MOCK_STAGE);
+    config.validate(failureCollector);
+    Assert.assertTrue(failureCollector.getValidationFailures().isEmpty());
+    Assert.assertEquals(Arrays.asList(new PatternRegion(FileContentsConfig.ContentsRegion.HEADER, 1, null),
+                                      new PatternRegion(FileContentsConfig.ContentsRegion.FOOTER, null, 4096L),
+                                      PatternRegion.FILE), config.getRegions());
+    Assert.assertFalse(config.isWholeFile());
+
+    for (String patternRegions : new String[] { "header:1~footer:1", "header:0~footer:1~file", "top:1~file~file" }) {
+      failureCollector = new MockFailureCollector(MOCK_STAGE);
+      FileContentsConfig.builder(config).setPatternRegions(patternRegions).build().validate(failureCollector);
+      assertValidationFailed(failureCollector, Collections.singletonList(
+        Collections.singletonList(FileContentsConfig.PATTERN_REGIONS)));
+    }
+
+    // statistics cover whole files, whichever property makes a region partial
+    failureCollector = new MockFailureCollector(MOCK_STAGE);
+    FileContentsConfig.builder(config).setPublishStatistics(true).build().validate(failureCollector);
+    Assert.assertEquals(1, failureCollector.getValidationFailures().size());
+  }
+
+  @Test
+  public void testCheckSettingsIncludeEncoding() {
+    String settings = VALID_CONFIG.getCheckSettings();
+    // the defaults give the same settings whether they are set or not
+    Assert.assertEquals(settings, FileContentsConfig.builder(VALID_CONFIG)
+      .setCharset("UTF-8").setDetectBom(true).build().getCheckSettings());
+    Assert.assertNotEquals(settings, FileContentsConfig.builder(VALID_CONFIG)
+      .setCharset("ISO-8859-1").build().getCheckSettings());
+    Assert.assertNotEquals(settings, FileContentsConfig.builder(VALID_CONFIG)
+      .setDetectBom(false).build().getCheckSettings());
+  }
+
+  @Test
+  public void testCheckSettingsAtFixedPositions() {
+    String settings = VALID_CONFIG.getCheckSettings();
+    String sampled = FileContentsConfig.builder(VALID_CONFIG)
+      .setPatternRegions("header:1").setSplitSize(1000L).setSampleRangePercent(10.0).build().getCheckSettings();
+    Assert.assertNotEquals(settings, sampled);
+    // unset settings still take their place, so that no setting can be mistaken for another
+    Assert.assertEquals(settings.split("\n", -1).length, sampled.split("\n", -1).length);
+  }
+
   private void assertValidationFailed(MockFailureCollector failureCollector, List<List<String>> paramNames) {
     List<ValidationFailure> failureList = failureCollector.getValidationFailures();
     Assert.assertEquals(paramNames.size(), failureList.size());
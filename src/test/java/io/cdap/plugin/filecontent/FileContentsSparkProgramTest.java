@@ -0,0 +1,111 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import org.apache.spark.SparkConf;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.SortedMap;
+
+/**
+ * Unit tests for {@link FileContentsSparkProgram}, run in Spark local mode.
+ */
+public class FileContentsSparkProgramTest {
+
+  @ClassRule
+  public static TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private static JavaSparkContext jsc;
+
+  @BeforeClass
+  public static void setUp() {
+    jsc = new JavaSparkContext(new SparkConf().setMaster("local[2]").setAppName("FileContentsSparkProgramTest"));
+  }
+
+  @AfterClass
+  public static void tearDown() {
+    jsc.stop();
+  }
+
+  @Test
+  public void testFolder() throws Exception {
+    File folder = createFolder(20, "HDR|2019\nbody\n");
+    FileContentsConfig config = FileContentsConfig.builder()
+      .setSourceFilePath(folder.getAbsolutePath())
+      .setFileContentsRegex("HDR\\|.*~body")
+      .setFailOnEmptyFile(true)
+      .build();
+    Assert.assertTrue(FileContentsSparkProgram.check(jsc, config).isEmpty());
+  }
+
+  @Test
+  public void testFailuresListed() throws Exception {
+    File folder = createFolder(20, "HDR|2019\nbody\n");
+    Files.write(new File(folder, "file-bad.dat").toPath(), "body\n".getBytes(StandardCharsets.UTF_8));
+    Files.write(new File(folder, "file-empty.dat").toPath(), new byte[0]);
+    StringBuilder contents = new StringBuilder("HDR|2019\n");
+    for (int i = 0; i < 1000; i++) {
+      contents.append("line ").append(i).append('\n');
+    }
+    Files.write(new File(folder, "file-large.dat").toPath(), contents.toString().getBytes(StandardCharsets.UTF_8));
+    FileContentsConfig config = FileContentsConfig.builder()
+      .setSourceFilePath(folder.getAbsolutePath())
+      .setFileContentsRegex("HDR\\|.*~body")
+      .setFailOnEmptyFile(true)
+      .setSplitSize(500L)
+      .build();
+    SortedMap<String, String> failures = FileContentsSparkProgram.check(jsc, config);
+    Assert.assertEquals(3, failures.size());
+    Assert.assertTrue(failures.firstKey().endsWith("file-bad.dat"));
+    Assert.assertTrue(failures.lastKey().endsWith("file-large.dat"));
+  }
+
+  @Test
+  public void testSplitFile() throws Exception {
+    StringBuilder contents = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      contents.append("line ").append(i).append('\n');
+    }
+    File file = temporaryFolder.newFile("large.dat");
+    Files.write(file.toPath(), contents.toString().getBytes(StandardCharsets.UTF_8));
+    FileContentsConfig config = FileContentsConfig.builder()
+      .setSourceFilePath(file.getAbsolutePath())
+      .setFileContentsRegex("line 0~line 999")
+      .setFailOnEmptyFile(true)
+      .setSplitSize(500L)
+      .build();
+    Assert.assertTrue(FileContentsSparkProgram.check(jsc, config).isEmpty());
+  }
+
+  private static File createFolder(int numFiles, String contents) throws IOException {
+    File folder = temporaryFolder.newFolder();
+    for (int i = 0; i < numFiles; i++) {
+      Files.write(new File(folder, "file-" + i + ".dat").toPath(), contents.getBytes(StandardCharsets.UTF_8));
+    }
+    return folder;
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for {@link FileListing}.
+ */
+public class FileListingTest {
+
+  @Test
+  public void testSkipsDirectoriesAndFilteredFiles() throws IOException {
+    FileStatus[] statuses = {
+      status("a.dat", false),
+      status("sub", true),
+      status("b.txt", false),
+      status("c.dat", false)
+    };
+    FileListing listing = FileListing.of(statuses, path -> path.getName().endsWith(".dat"));
+    List<String> names = new ArrayList<>();
+    while (listing.hasNext()) {
+      names.add(listing.next().getPath().getName());
+    }
+    Assert.assertEquals("[a.dat, c.dat]", names.toString());
+  }
+
+  @Test
+  public void testChecksWhileListing() throws IOException {
+    int numFiles = 1000;
+    AtomicInteger listed = new AtomicInteger();
+    RemoteIterator<FileStatus> statuses = new RemoteIterator<FileStatus>() {
+      @Override
+      public boolean hasNext() {
+        return listed.get() < numFiles;
+      }
+
+      @Override
+      public FileStatus next() {
+        return status("file-" + listed.getAndIncrement(), false);
+      }
+    };
+    AtomicInteger maxAhead = new AtomicInteger();
+    AtomicInteger checked = new AtomicInteger();
+    int count = new ParallelFileChecker(4).checkAll(new FileListing(statuses, path -> true), file -> {
+      // the listing never gets further ahead of the checks than the number of checks in flight
+      maxAhead.accumulateAndGet(listed.get() - checked.get(), Math::max);
+      checked.incrementAndGet();
+    });
+    Assert.assertEquals(numFiles, count);
+    Assert.assertTrue("Listing was " + maxAhead.get() + " files ahead", maxAhead.get() <= 5);
+  }
+
+  private static FileStatus status(String name, boolean directory) {
+    return new FileStatus(0, directory, 1, 0, 0, new Path("/data", name));
+  }
+}
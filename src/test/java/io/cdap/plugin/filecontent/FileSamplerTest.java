@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Unit tests for {@link FileSampler}.
+ */
+public class FileSamplerTest {
+  private static final int NUM_FILES = 2000;
+
+  @Test
+  public void testPercentIsReproducible() throws IOException {
+    List<FileStatus> files = createFiles();
+    List<Path> skipped = new ArrayList<>();
+    Set<Path> sample = sample(new FileSampler(7, null, 10.0, null), files, skipped);
+    // about a tenth of the files, within a margin that the hash is all but certain to stay in
+    Assert.assertTrue(String.valueOf(sample.size()), sample.size() > 120 && sample.size() < 280);
+    Assert.assertEquals(NUM_FILES, sample.size() + skipped.size());
+
+    // the same files are chosen in any order, and other files are chosen with another seed
+    Collections.shuffle(files, new Random(1));
+    Assert.assertEquals(sample, sample(new FileSampler(7, null, 10.0, null), files, new ArrayList<>()));
+    Assert.assertNotEquals(sample, sample(new FileSampler(8, null, 10.0, null), files, new ArrayList<>()));
+    Assert.assertEquals(NUM_FILES, sample(new FileSampler(7, null, 100.0, null), files, new ArrayList<>()).size());
+  }
+
+  @Test
+  public void testCountIsReproducible() throws IOException {
+    List<FileStatus> files = createFiles();
+    List<Path> skipped = new ArrayList<>();
+    Set<Path> sample = sample(new FileSampler(7, 25, null, null), files, skipped);
+    Assert.assertEquals(25, sample.size());
+    Assert.assertEquals(NUM_FILES - 25, skipped.size());
+
+    Collections.shuffle(files, new Random(1));
+    Assert.assertEquals(sample, sample(new FileSampler(7, 25, null, null), files, new ArrayList<>()));
+    Assert.assertNotEquals(sample, sample(new FileSampler(8, 25, null, null), files, new ArrayList<>()));
+    // a larger sample holds the smaller one
+    Assert.assertTrue(sample(new FileSampler(7, 100, null, null), files, new ArrayList<>()).containsAll(sample));
+    Assert.assertEquals(NUM_FILES, sample(new FileSampler(7, NUM_FILES * 2, null, null), files, skipped).size());
+  }
+
+  @Test
+  public void testRanges() {
+    List<SplitScanner.Range> ranges = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      ranges.add(new SplitScanner.Range(i * 100L, (i + 1) * 100L));
+    }
+    Path path = new Path("/data/file.dat");
+    List<SplitScanner.Range> sample = new FileSampler(7, null, null, 20.0).sampleRanges(path, ranges);
+    Assert.assertTrue(String.valueOf(sample.size()), sample.size() > 120 && sample.size() < 280);
+    Assert.assertEquals(starts(sample), starts(new FileSampler(7, null, null, 20.0).sampleRanges(path, ranges)));
+    Assert.assertNotEquals(starts(sample), starts(new FileSampler(7, null, null, 20.0)
+                                                    .sampleRanges(new Path("/data/other.dat"), ranges)));
+    // every file keeps at least one range
+    List<SplitScanner.Range> single = Collections.singletonList(ranges.get(0));
+    for (int seed = 0; seed < 20; seed++) {
+      Assert.assertEquals(1, new FileSampler(seed, null, null, 0.01).sampleRanges(path, single).size());
+    }
+  }
+
+  private static Set<Path> sample(FileSampler sampler, List<FileStatus> files, List<Path> skipped) throws IOException {
+    RemoteIterator<FileStatus> sample = sampler.sample(FileListing.iterate(files.toArray(new FileStatus[0])),
+                                                       file -> skipped.add(file.getPath()));
+    Set<Path> paths = new HashSet<>();
+    while (sample.hasNext()) {
+      paths.add(sample.next().getPath());
+    }
+    return paths;
+  }
+
+  private static List<Long> starts(List<SplitScanner.Range> ranges) {
+    List<Long> starts = new ArrayList<>();
+    for (SplitScanner.Range range : ranges) {
+      starts.add(range.start);
+    }
+    return starts;
+  }
+
+  private static List<FileStatus> createFiles() {
+    List<FileStatus> files = new ArrayList<>();
+    for (int i = 0; i < NUM_FILES; i++) {
+      files.add(new FileStatus(10, false, 1, 1, 0, new Path("/data/part-" + i)));
+    }
+    return files;
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit tests for how the {@link LineReader LineReaders} apply a {@link LineLimit}.
+ */
+public class LineLimitTest {
+  private static final String TEXT = "short\r\nabcdefghijklmnopqrstuvwxyz01\r\n0123456789\nlast";
+
+  @Test
+  public void testTruncate() throws IOException {
+    LineLimit limit = new LineLimit(10, FileContentsConfig.LongLinePolicy.TRUNCATE);
+    List<String> expected = Arrays.asList("short", "abcdefghij", "0123456789", "last");
+    Assert.assertEquals(expected, readText(TEXT, limit));
+    for (int bufferSize : new int[] { 1, 3, 7, 64 }) {
+      Assert.assertEquals("Buffer size " + bufferSize, expected, readBytes(TEXT, bufferSize, limit));
+    }
+  }
+
+  @Test
+  public void testWindow() throws IOException {
+    LineLimit limit = new LineLimit(10, FileContentsConfig.LongLinePolicy.WINDOW);
+    List<String> expected = Arrays.asList("short", "abcdefghij", "fghijklmno", "klmnopqrst", "pqrstuvwxy",
+                                          "uvwxyz01", "0123456789", "last");
+    Assert.assertEquals(expected, readText(TEXT, limit));
+    for (int bufferSize : new int[] { 1, 3, 7, 64 }) {
+      Assert.assertEquals("Buffer size " + bufferSize, expected, readBytes(TEXT, bufferSize, limit));
+    }
+  }
+
+  @Test
+  public void testFail() throws IOException {
+    LineLimit limit = new LineLimit(10, FileContentsConfig.LongLinePolicy.FAIL);
+    // a line of exactly the maximum length is fine
+    Assert.assertEquals(Arrays.asList("0123456789", "last"), readText("0123456789\nlast", limit));
+    try {
+      readText(TEXT, limit);
+      Assert.fail("Expected the long line to fail");
+    } catch (LineTooLongException e) {
+      // expected
+    }
+    try {
+      readBytes(TEXT, 64, limit);
+      Assert.fail("Expected the long line to fail");
+    } catch (LineTooLongException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testSkipLongLine() throws IOException {
+    LineLimit limit = new LineLimit(4, FileContentsConfig.LongLinePolicy.WINDOW);
+    String text = "a partial first line\nsecond\r\nthird";
+    try (LineReader reader = new TextLineReader(stream(text), limit)) {
+      reader.skipLine();
+      Assert.assertEquals("seco", reader.readLine().toString());
+      reader.skipLine();
+      Assert.assertEquals("thir", reader.readLine().toString());
+    }
+    try (ByteLineReader reader = new ByteLineReader(Channels.newChannel(stream(text)), 3, Long.MAX_VALUE, limit)) {
+      reader.skipLine();
+      Assert.assertEquals("seco", reader.readLine().toString());
+      Assert.assertTrue(reader.isInLongLine());
+      reader.skipLine();
+      Assert.assertFalse(reader.isInLongLine());
+      Assert.assertEquals("thir", reader.readLine().toString());
+    }
+  }
+
+  @Test
+  public void testBytesCutAtCharacterStart() throws IOException {
+    LineLimit limit = new LineLimit(5, FileContentsConfig.LongLinePolicy.TRUNCATE);
+    // every character is two bytes long, so five bytes hold two whole characters
+    Assert.assertEquals(Arrays.asList("éé", "x"), readBytes("éééééé\nx", 16, limit));
+  }
+
+  private static List<String> readText(String text, LineLimit limit) throws IOException {
+    try (LineReader reader = new TextLineReader(stream(text), limit)) {
+      return readAll(reader);
+    }
+  }
+
+  private static List<String> readBytes(String text, int bufferSize, LineLimit limit) throws IOException {
+    try (LineReader reader = new ByteLineReader(Channels.newChannel(stream(text)), bufferSize, Long.MAX_VALUE,
+                                                limit)) {
+      return readAll(reader);
+    }
+  }
+
+  private static List<String> readAll(LineReader reader) throws IOException {
+    List<String> lines = new ArrayList<>();
+    CharSequence line;
+    while ((line = reader.readLine()) != null) {
+      lines.add(line.toString());
+    }
+    return lines;
+  }
+
+  private static ByteArrayInputStream stream(String text) {
+    return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link LineWindow}.
+ */
+public class LineWindowTest {
+
+  @Test
+  public void testLineLimit() {
+    LineWindow window = new LineWindow(2, Long.MAX_VALUE);
+    Assert.assertTrue(window.isEmpty());
+    add(window, "one");
+    add(window, "two");
+    Assert.assertEquals("one\ntwo", text(window));
+    Assert.assertFalse(window.fits(window.sizeOf("three")));
+    window.removeOldest();
+    add(window, "three");
+    Assert.assertEquals("two\nthree", text(window));
+  }
+
+  @Test
+  public void testByteLimit() {
+    // each line counts its UTF-8 bytes and its terminator
+    LineWindow window = new LineWindow(Integer.MAX_VALUE, 10);
+    Assert.assertEquals(6, window.sizeOf("café"));
+    add(window, "café");
+    Assert.assertTrue(window.fits(window.sizeOf("abc")));
+    Assert.assertFalse(window.fits(window.sizeOf("abcd")));
+    add(window, "abc");
+    window.removeOldest();
+    Assert.assertEquals("abc", text(window));
+    // the newest line is kept even if it is too long on its own
+    window.removeOldest();
+    add(window, "a line longer than the window");
+    Assert.assertEquals("a line longer than the window", text(window));
+  }
+
+  @Test
+  public void testRemovedLinesAreDropped() {
+    LineWindow window = new LineWindow(3, Long.MAX_VALUE);
+    for (int i = 0; i < 1000; i++) {
+      if (!window.fits(0)) {
+        window.removeOldest();
+      }
+      add(window, "line " + i);
+    }
+    Assert.assertEquals("line 997\nline 998\nline 999", text(window));
+    Assert.assertTrue(window.getText().length() < 2 * "line 997\nline 998\nline 999".length());
+  }
+
+  private static void add(LineWindow window, String line) {
+    window.add(line, window.sizeOf(line));
+  }
+
+  private static String text(LineWindow window) {
+    return window.getText().subSequence(window.getStart(), window.getText().length()).toString();
+  }
+}
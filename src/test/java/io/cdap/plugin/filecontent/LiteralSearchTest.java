@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * Unit tests for {@link LiteralSearch}.
+ */
+public class LiteralSearchTest {
+
+  @Test
+  public void testIndexOfLikeString() {
+    Random random = new Random(42);
+    // a small alphabet makes partial matches common, and the high characters share skip table slots with 'a'-'c'
+    char[] alphabet = { 'a', 'b', 'c', 'š', 'ɢ' };
+    for (int n = 0; n < 2000; n++) {
+      String line = randomString(random, alphabet, random.nextInt(40));
+      String text = randomString(random, alphabet, 1 + random.nextInt(4));
+      Assert.assertEquals(text + " in " + line, line.indexOf(text), new LiteralSearch(text).indexOf(line));
+    }
+    Assert.assertEquals(4, new LiteralSearch("TRAILER").indexOf(new StringBuilder("xxx TRAILER")));
+  }
+
+  @Test
+  public void testRequired() {
+    assertRequired("HDR|", "HDR\\|[0-9]{4}");
+    assertRequired("TRAILER ", ".*TRAILER [0-9]+.*");
+    assertRequired("ERROR", "\\bERROR\\b.*");
+    assertRequired(" au lait", "[a-z]+ au lait");
+    assertRequired(" lait", "ca?fé? au? lait");
+    assertRequired("a.", "x\\d+\\Qa.b\\E?");
+    assertRequired("count=", "\\p{Alpha}count=\\x41+");
+    assertRequired("abc", "(?:x|y)abc(z)*");
+    assertRequired(null, "a|b");
+    assertRequired(null, "(?i)trailer");
+    assertRequired(null, "[abc]+\\d*.?");
+    Assert.assertNull(LiteralSearch.required(Pattern.compile("TRAILER", Pattern.CASE_INSENSITIVE)));
+  }
+
+  @Test
+  public void testRequiredIsInEveryMatch() {
+    List<String> regexes = Arrays.asList("ab+c", "a{0,2}bc", "x*yz?", "[a-c]]b", "(a|b)c\\0[]]", "\\x61b\\u0063",
+                                         "\\cAbc", "a\\Qb*\\E*c", "\\Qab\\Ec+?d", "a\\1?b", "\\k<x>?");
+    Random random = new Random(7);
+    char[] alphabet = { 'a', 'b', 'c', 'x', 'y', 'z', ']', '*', '\u0001' };
+    for (String regex : regexes) {
+      Pattern pattern;
+      try {
+        pattern = Pattern.compile(regex);
+      } catch (RuntimeException e) {
+        continue;
+      }
+      String required = LiteralSearch.required(pattern);
+      if (required == null) {
+        continue;
+      }
+      for (int n = 0; n < 5000; n++) {
+        String line = randomString(random, alphabet, random.nextInt(8));
+        if (pattern.matcher(line).matches()) {
+          Assert.assertTrue(regex + " on " + line, line.contains(required));
+        }
+      }
+    }
+  }
+
+  private static void assertRequired(String expected, String regex) {
+    Assert.assertEquals(regex, expected, LiteralSearch.required(Pattern.compile(regex)));
+  }
+
+  private static String randomString(Random random, char[] alphabet, int length) {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < length; i++) {
+      text.append(alphabet[random.nextInt(alphabet.length)]);
+    }
+    return text.toString();
+  }
+}
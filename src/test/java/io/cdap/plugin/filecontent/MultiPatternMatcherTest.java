@@ -0,0 +1,208 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Unit tests for {@link MultiPatternMatcher}.
+ */
+public class MultiPatternMatcherTest {
+  private static final List<String> REGEXES = Arrays.asList(
+    ".*TRAILER.*", "HDR\\|.*", "^.*END$", "exact", ".*a.*", ".*ab.*", ".*bab.*", "\\Q.*\\E.*", ".*café.*",
+    "[0-9]+", ".*\\..*", ".*", "(?i).*trailer.*", "a\\.b", ".*x\\.*", "HDR\\|[0-9]{4}", "x+\\.\\.\\.",
+    "[a-z]+ au lait", ".*(ab)+", "ca?fé.*", "(?s).*TRAILER.*", "\\bTRAILER\\b.*"
+  );
+
+  private static final List<String> LINES = Arrays.asList(
+    "", "TRAILER", "xxTRAILERxx", "HDR|2019", "HDR", "theEND", "END", "exact", "exactly", "a", "bab", "abab",
+    ".*foo", "café au lait", "12345", "1.2", "trailer", "a.b", "axb", "x...", "x", "TRAILER x",
+    "HDR|\u0085", "b ab"
+  );
+
+  @Test
+  public void testMatchesLikeRegex() {
+    List<Pattern> patterns = REGEXES.stream().map(Pattern::compile).collect(Collectors.toList());
+    MultiPatternMatcher matcher = new MultiPatternMatcher(patterns);
+    for (String line : LINES) {
+      MultiPatternMatcher.State state = matcher.newState();
+      state.match(line);
+      boolean[] found = state.getFound();
+      for (int i = 0; i < patterns.size(); i++) {
+        Assert.assertEquals(String.format("Pattern '%s' on line '%s'", REGEXES.get(i), line),
+                            patterns.get(i).matcher(line).matches(), found[i]);
+      }
+    }
+  }
+
+  @Test
+  public void testSampledMatchTimes() {
+    List<Pattern> patterns = Arrays.asList(Pattern.compile("[0-9]+x"), Pattern.compile(".*NEVER.*"));
+    ScanMetrics metrics = new ScanMetrics(patterns);
+    MultiPatternMatcher.State state = new MultiPatternMatcher(patterns, metrics).newState();
+    for (int i = 0; i < ScanMetrics.SAMPLE_INTERVAL * 100; i++) {
+      state.match("a line that matches neither pattern");
+    }
+    Assert.assertTrue(metrics.getPatternNanos(0) > 0);
+    Assert.assertTrue(metrics.getPatternNanos(1) > 0);
+    Assert.assertTrue(metrics.getMatchNanos() >= metrics.getPatternNanos(0) + metrics.getPatternNanos(1));
+  }
+
+  @Test
+  public void testFoundAcrossLines() {
+    List<Pattern> patterns = REGEXES.stream().map(Pattern::compile).collect(Collectors.toList());
+    MultiPatternMatcher.State state = new MultiPatternMatcher(patterns).newState();
+    boolean[] expected = new boolean[patterns.size()];
+    for (String line : LINES) {
+      boolean all = state.match(line);
+      boolean expectAll = true;
+      for (int i = 0; i < patterns.size(); i++) {
+        expected[i] |= patterns.get(i).matcher(line).matches();
+        expectAll &= expected[i];
+      }
+      Assert.assertEquals(Arrays.toString(expected), Arrays.toString(state.getFound()));
+      Assert.assertEquals(expectAll, all);
+    }
+  }
+
+  @Test
+  public void testMultilineMatchesLikeRegexOverRuns() {
+    List<String> regexes = new ArrayList<>(REGEXES);
+    regexes.addAll(Arrays.asList("HDR\\|.*\n.*TRAILER.*", "(?s)a.*b", "[a-z]+\nbab\n.*", "x\\.\\.\\.\nx",
+                                 "TRAILER\nxxTRAILERxx", "(?m)^a$\n^bab$", "café.*\n[0-9]+\n1\\.2"));
+    List<Pattern> patterns = regexes.stream().map(Pattern::compile).collect(Collectors.toList());
+    int[][] windows = { { 1, Integer.MAX_VALUE }, { 2, Integer.MAX_VALUE }, { 3, Integer.MAX_VALUE },
+      { Integer.MAX_VALUE, 12 }, { 3, 20 }, { Integer.MAX_VALUE, 1 } };
+    for (int[] window : windows) {
+      MultiPatternMatcher.State state = new MultiPatternMatcher(patterns, null, window[0], window[1]).newState();
+      for (String line : LINES) {
+        state.match(line);
+      }
+      boolean[] found = state.getFound();
+      for (int i = 0; i < patterns.size(); i++) {
+        Assert.assertEquals(Arrays.toString(window) + " " + patterns.get(i),
+                            matchesRun(patterns.get(i), window[0], window[1]), found[i]);
+      }
+    }
+  }
+
+  @Test
+  public void testMultilineStopsOnceAllFound() {
+    List<Pattern> patterns = Collections.singletonList(Pattern.compile("HDR\\|.*\nbody"));
+    MultiPatternMatcher.State state = new MultiPatternMatcher(patterns, null, 2, Long.MAX_VALUE).newState();
+    Assert.assertFalse(state.match("HDR|2019"));
+    Assert.assertFalse(state.match("body"));
+    // the run is matched once its first line leaves the window
+    Assert.assertTrue(state.match("trailer"));
+  }
+
+  /**
+   * Returns true if the pattern matches a run of consecutive lines that fits in the window, or a single line.
+   */
+  private static boolean matchesRun(Pattern pattern, int maxLines, int maxBytes) {
+    for (int start = 0; start < LINES.size(); start++) {
+      long bytes = 0;
+      for (int end = start; end < LINES.size() && end - start < maxLines; end++) {
+        bytes += LINES.get(end).getBytes(StandardCharsets.UTF_8).length + 1;
+        if (end > start && bytes > maxBytes) {
+          break;
+        }
+        if (pattern.matcher(String.join("\n", LINES.subList(start, end + 1))).matches()) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  @Test
+  public void testLiteralParsing() {
+    assertLiteral(".*TRAILER.*", MultiPatternMatcher.Literal.Kind.CONTAINS, "TRAILER");
+    assertLiteral("^HDR\\|.*", MultiPatternMatcher.Literal.Kind.STARTS_WITH, "HDR|");
+    assertLiteral(".*END$", MultiPatternMatcher.Literal.Kind.ENDS_WITH, "END");
+    assertLiteral("\\Qa.b\\E", MultiPatternMatcher.Literal.Kind.EQUALS, "a.b");
+    Assert.assertNull(MultiPatternMatcher.Literal.parse(Pattern.compile("a\\d")));
+    Assert.assertNull(MultiPatternMatcher.Literal.parse(Pattern.compile(".*")));
+    Assert.assertNull(MultiPatternMatcher.Literal.parse(Pattern.compile("a|b")));
+    Assert.assertNull(MultiPatternMatcher.Literal.parse(Pattern.compile("abc", Pattern.CASE_INSENSITIVE)));
+    Assert.assertTrue(MultiPatternMatcher.Literal.parse(Pattern.compile(".*a.*", Pattern.DOTALL)).dotAll);
+  }
+
+  @Test
+  public void testFixedStrings() {
+    List<String> strings = Arrays.asList("TRAILER", "a.b", "\\E[", "au lait");
+    List<Pattern> patterns = strings.stream()
+      .map(text -> Pattern.compile(".*" + Pattern.quote(text) + ".*", Pattern.DOTALL))
+      .collect(Collectors.toList());
+    for (Pattern pattern : patterns) {
+      Assert.assertNotNull(pattern.pattern(), MultiPatternMatcher.Literal.parse(pattern));
+    }
+    MultiPatternMatcher matcher = new MultiPatternMatcher(patterns);
+    for (String line : Arrays.asList("xTRAILER\r\n", "a.b", "axb", "\\E[\u2028", "café au lait", "")) {
+      MultiPatternMatcher.State state = matcher.newState();
+      state.match(line);
+      boolean[] found = state.getFound();
+      for (int i = 0; i < strings.size(); i++) {
+        Assert.assertEquals(strings.get(i) + " in " + line, line.contains(strings.get(i)), found[i]);
+      }
+    }
+  }
+
+  @Test
+  public void testUtf8BytesMatchLikeDecoded() throws IOException {
+    List<String> regexes = Arrays.asList(".*TRAILER.*", "HDR\\|.*", "^.*END$", "exact", ".*café.*", "crème.*",
+                                         ".*Å", ".*x\\.", "\\Qé\\E");
+    List<Pattern> patterns = regexes.stream().map(Pattern::compile).collect(Collectors.toList());
+    patterns.add(Pattern.compile(".*" + Pattern.quote("à la") + ".*", Pattern.DOTALL));
+    MultiPatternMatcher matcher = new MultiPatternMatcher(patterns);
+    Assert.assertTrue(matcher.hasUtf8Matcher());
+    List<String> lines = new ArrayList<>(LINES);
+    lines.addAll(Arrays.asList("crème brûlée", "HDR|Å", "xÅ", "é", "x.\u2028", "à la\u2029carte", "xxTRAILER\u0085",
+                               "TRAILER\u00e2\u0080\u00a8", "café\u2028", "theEND\r"));
+    ByteLineReader bytesReader = new ByteLineReader(Channels.newChannel(new ByteArrayInputStream(new byte[0])), 16,
+                                                    Long.MAX_VALUE, LineLimit.NONE, StandardCharsets.UTF_8, 0, true);
+    for (String line : lines) {
+      MultiPatternMatcher.State decoded = matcher.newState();
+      decoded.match(line);
+      MultiPatternMatcher.State bytes = matcher.newState(bytesReader);
+      bytes.match(new String(line.getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1));
+      Assert.assertEquals(line, Arrays.toString(decoded.getFound()), Arrays.toString(bytes.getFound()));
+    }
+
+    // only literals can be matched on bytes
+    Assert.assertFalse(new MultiPatternMatcher(Collections.singletonList(Pattern.compile("[0-9]+"))).hasUtf8Matcher());
+  }
+
+  private static void assertLiteral(String regex, MultiPatternMatcher.Literal.Kind kind, String text) {
+    MultiPatternMatcher.Literal literal = MultiPatternMatcher.Literal.parse(Pattern.compile(regex));
+    Assert.assertNotNull(literal);
+    Assert.assertEquals(kind, literal.kind);
+    Assert.assertEquals(text, literal.text);
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for {@link ParallelFileChecker}.
+ */
+public class ParallelFileCheckerTest {
+
+  @Test
+  public void testFailureWaitsForCancelledChecks() throws IOException {
+    CountDownLatch started = new CountDownLatch(3);
+    AtomicInteger stopped = new AtomicInteger();
+    try {
+      new ParallelFileChecker(4).checkAll(Arrays.asList(0, 1, 2, 3, 4, 5).iterator(), item -> {
+        if (item == 0) {
+          Uninterruptibles.awaitUninterruptibly(started);
+          throw new IllegalStateException("failed " + item);
+        }
+        started.countDown();
+        while (!Thread.currentThread().isInterrupted()) {
+          Thread.yield();
+        }
+        // a cancelled check still finishes what it was doing before it stops
+        Uninterruptibles.sleepUninterruptibly(100, TimeUnit.MILLISECONDS);
+        stopped.incrementAndGet();
+      });
+      Assert.fail("Expected the first check to fail");
+    } catch (IllegalStateException e) {
+      Assert.assertEquals("failed 0", e.getMessage());
+    }
+    // the failure is only rethrown once the checks that were running have stopped
+    Assert.assertEquals(3, stopped.get());
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link PatternRegion}.
+ */
+public class PatternRegionTest {
+  private static final PatternRegion DEFAULT =
+    new PatternRegion(FileContentsConfig.ContentsRegion.HEADER, 10, null);
+
+  @Test
+  public void testParse() {
+    Assert.assertSame(PatternRegion.FILE, PatternRegion.parse("file", DEFAULT));
+    Assert.assertEquals(new PatternRegion(FileContentsConfig.ContentsRegion.HEADER, 1, null),
+                        PatternRegion.parse("header:1", DEFAULT));
+    Assert.assertEquals(new PatternRegion(FileContentsConfig.ContentsRegion.FOOTER, null, 4096L),
+                        PatternRegion.parse(" Footer::4096 ", DEFAULT));
+    Assert.assertEquals(new PatternRegion(FileContentsConfig.ContentsRegion.FOOTER, 2, 4096L),
+                        PatternRegion.parse("footer:2:4096", DEFAULT));
+    // a header or footer without a size takes the size of the default region
+    Assert.assertEquals(new PatternRegion(FileContentsConfig.ContentsRegion.FOOTER, 10, null),
+                        PatternRegion.parse("footer", DEFAULT));
+    Assert.assertSame(DEFAULT, PatternRegion.parseOrDefault(" ", DEFAULT));
+  }
+
+  @Test
+  public void testParseInvalid() {
+    for (String text : new String[] { "middle:1", "file:1", "header:x", "header:0", "footer::0", "footer:1:2:3" }) {
+      try {
+        PatternRegion.parse(text, DEFAULT);
+        Assert.fail("Expected '" + text + "' to be invalid");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+    try {
+      PatternRegion.parse("header", PatternRegion.FILE);
+      Assert.fail("Expected a header without a size to be invalid");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Unit tests for {@link ReadAheadFileSystem}.
+ */
+public class ReadAheadFileSystemTest {
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private ExecutorService executor;
+  private byte[] contents;
+  private Path path;
+
+  @Before
+  public void setUp() throws IOException {
+    executor = Executors.newCachedThreadPool();
+    contents = new byte[10000];
+    new Random(1).nextBytes(contents);
+    File file = temporaryFolder.newFile();
+    Files.write(file.toPath(), contents);
+    path = new Path(file.getAbsolutePath());
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testReadsWholeFile() throws IOException {
+    for (int chunkSize : new int[] { 1, 7, 4096, 20000 }) {
+      for (int depth : new int[] { 1, 2, 5 }) {
+        BufferPool pool = new BufferPool(chunkSize, depth + 2);
+        try (InputStream in = fileSystem(pool, depth).open(path)) {
+          Assert.assertArrayEquals("Chunk size " + chunkSize + ", depth " + depth, contents, readAll(in));
+        }
+        Assert.assertTrue(pool.getPooled() > 0);
+      }
+    }
+  }
+
+  @Test
+  public void testSeekAndPositionalReads() throws IOException {
+    try (FSDataInputStream in = fileSystem(new BufferPool(100, 3), 2).open(path)) {
+      Assert.assertEquals(contents[0] & 0xff, in.read());
+      byte[] buffer = new byte[50];
+      in.readFully(5000, buffer);
+      Assert.assertArrayEquals(Arrays.copyOfRange(contents, 5000, 5050), buffer);
+      // positional reads leave the position of the stream where it was
+      Assert.assertEquals(1, in.getPos());
+      Assert.assertEquals(contents[1] & 0xff, in.read());
+
+      in.seek(9000);
+      Assert.assertArrayEquals(Arrays.copyOfRange(contents, 9000, contents.length), readAll(in));
+      in.seek(10);
+      Assert.assertEquals(10, in.getPos());
+      Assert.assertArrayEquals(Arrays.copyOfRange(contents, 10, contents.length), readAll(in));
+    }
+  }
+
+  @Test
+  public void testCloseBeforeEnd() throws Exception {
+    BufferPool pool = new BufferPool(10, 10);
+    try (FSDataInputStream in = fileSystem(pool, 3).open(path)) {
+      Assert.assertEquals(contents[0] & 0xff, in.read());
+      // gives the task time to fill the queue, so that closing has to stop it while it waits for room
+      Thread.sleep(100);
+    }
+    // the chunk being read, and any read ahead, are returned to the pool
+    Assert.assertTrue(pool.getPooled() >= 1);
+  }
+
+  private FileSystem fileSystem(BufferPool pool, int depth) throws IOException {
+    return new ReadAheadFileSystem(FileSystem.getLocal(new Configuration()), pool, depth, executor);
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[333];
+    int n;
+    while ((n = in.read(buffer)) >= 0) {
+      out.write(buffer, 0, n);
+    }
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Unit tests for {@link RegionScanner}.
+ */
+public class RegionScannerTest {
+  private static final int BODY_LINES = 10000;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private FileSystem fileSystem;
+  private FileStatus file;
+  private FileStatus compressedFile;
+
+  @Before
+  public void setUp() throws IOException {
+    StringBuilder contents = new StringBuilder("HDR|2019\n");
+    for (int i = 0; i < BODY_LINES; i++) {
+      contents.append("body line ").append(i).append('\n');
+    }
+    contents.append("TRL|").append(BODY_LINES).append('\n');
+    File local = temporaryFolder.newFile("data.dat");
+    Files.write(local.toPath(), contents.toString().getBytes(StandardCharsets.UTF_8));
+    fileSystem = FileSystem.getLocal(new Configuration());
+    file = fileSystem.getFileStatus(new Path(local.getAbsolutePath()));
+
+    File compressed = temporaryFolder.newFile("data.dat.gz");
+    try (OutputStream out = new GZIPOutputStream(new FileOutputStream(compressed))) {
+      out.write(contents.toString().getBytes(StandardCharsets.UTF_8));
+    }
+    compressedFile = fileSystem.getFileStatus(new Path(compressed.getAbsolutePath()));
+  }
+
+  @Test
+  public void testHeaderLines() throws IOException {
+    for (FileContentsConfig.ScanMode scanMode : FileContentsConfig.ScanMode.values()) {
+      Assert.assertTrue(scan("HDR\\|.*", FileContentsConfig.ContentsRegion.HEADER, 1, null, scanMode).allFound());
+      Assert.assertTrue(scan("body line 1", FileContentsConfig.ContentsRegion.HEADER, 3, null, scanMode).allFound());
+      Assert.assertFalse(scan("body line 2", FileContentsConfig.ContentsRegion.HEADER, 3, null, scanMode).allFound());
+    }
+  }
+
+  @Test
+  public void testHeaderBytes() throws IOException {
+    for (FileContentsConfig.ScanMode scanMode : FileContentsConfig.ScanMode.values()) {
+      ScanResult result = scan("HDR\\|.*", FileContentsConfig.ContentsRegion.HEADER, null, 9L, scanMode);
+      Assert.assertTrue(result.allFound());
+      Assert.assertFalse(scan("body line 0", FileContentsConfig.ContentsRegion.HEADER, null, 9L, scanMode)
+                           .allFound());
+    }
+  }
+
+  @Test
+  public void testFooterLines() throws IOException {
+    for (FileContentsConfig.ScanMode scanMode : FileContentsConfig.ScanMode.values()) {
+      ScanResult result = scan("TRL\\|[0-9]+", FileContentsConfig.ContentsRegion.FOOTER, 1, null, scanMode);
+      Assert.assertTrue(result.allFound());
+      Assert.assertTrue(result.isEarlyExit());
+      Assert.assertTrue(result.getBytesRead() <= RegionScanner.DEFAULT_FOOTER_WINDOW + 1);
+      Assert.assertFalse(scan(".*line 9998", FileContentsConfig.ContentsRegion.FOOTER, 2, null, scanMode)
+                           .allFound());
+      Assert.assertTrue(scan(".*line 9998", FileContentsConfig.ContentsRegion.FOOTER, 3, null, scanMode)
+                          .allFound());
+      Assert.assertFalse(scan("HDR\\|.*", FileContentsConfig.ContentsRegion.FOOTER, 5, null, scanMode).allFound());
+    }
+  }
+
+  @Test
+  public void testFooterGrowsWindowForLines() throws IOException {
+    RegionScanner scanner = new RegionScanner(
+      matcher(".*line 9000"), Collections.singletonList(
+        new PatternRegion(FileContentsConfig.ContentsRegion.FOOTER, 1001, null)),
+      FileContentsConfig.ScanMode.BYTES, LineLimit.NONE, null, 16, TextEncoding.DEFAULT);
+    Assert.assertTrue(scanner.scan(fileSystem, file).allFound());
+  }
+
+  @Test
+  public void testFooterBytes() throws IOException {
+    for (FileContentsConfig.ScanMode scanMode : FileContentsConfig.ScanMode.values()) {
+      // the last line is 10 bytes long including its newline
+      Assert.assertTrue(scan("TRL\\|[0-9]+", FileContentsConfig.ContentsRegion.FOOTER, null, 10L, scanMode)
+                          .allFound());
+      // a partial last line is never checked
+      Assert.assertFalse(scan(".*\\|[0-9]+", FileContentsConfig.ContentsRegion.FOOTER, null, 9L, scanMode)
+                           .allFound());
+      Assert.assertFalse(scan(".*line 9999", FileContentsConfig.ContentsRegion.FOOTER, null, 10L, scanMode)
+                           .allFound());
+    }
+  }
+
+  @Test
+  public void testCompressedRegions() throws IOException {
+    CompressionCodec codec = new CompressionCodecFactory(new Configuration()).getCodec(compressedFile.getPath());
+    for (FileContentsConfig.ScanMode scanMode : FileContentsConfig.ScanMode.values()) {
+      FileContentsConfig.ContentsRegion header = FileContentsConfig.ContentsRegion.HEADER;
+      FileContentsConfig.ContentsRegion footer = FileContentsConfig.ContentsRegion.FOOTER;
+      Assert.assertTrue(scanCompressed("body line 1", header, 3, null, scanMode, codec).allFound());
+      Assert.assertFalse(scanCompressed("body line 2", header, 3, null, scanMode, codec).allFound());
+      Assert.assertTrue(scanCompressed("HDR\\|.*", header, null, 9L, scanMode, codec).allFound());
+      Assert.assertFalse(scanCompressed("body line 0", header, null, 9L, scanMode, codec).allFound());
+
+      Assert.assertTrue(scanCompressed(".*line 9998", footer, 3, null, scanMode, codec).allFound());
+      Assert.assertFalse(scanCompressed(".*line 9998", footer, 2, null, scanMode, codec).allFound());
+      Assert.assertTrue(scanCompressed("TRL\\|[0-9]+", footer, null, 10L, scanMode, codec).allFound());
+      Assert.assertFalse(scanCompressed(".*\\|[0-9]+", footer, null, 9L, scanMode, codec).allFound());
+
+      ScanResult result = scanCompressed("TRL\\|[0-9]+", FileContentsConfig.ContentsRegion.FILE, null, null,
+                                         scanMode, codec);
+      Assert.assertTrue(result.allFound());
+      Assert.assertEquals(file.getLen(), result.getBytesRead());
+    }
+  }
+
+  @Test
+  public void testRegionPerPattern() throws IOException {
+    MultiPatternMatcher matcher = new MultiPatternMatcher(Arrays.asList(
+      Pattern.compile("HDR\\|.*"), Pattern.compile("TRL\\|[0-9]+"), Pattern.compile(".*line 9998")));
+    PatternRegion header = new PatternRegion(FileContentsConfig.ContentsRegion.HEADER, 1, null);
+    PatternRegion footer = new PatternRegion(FileContentsConfig.ContentsRegion.FOOTER, 1, null);
+    for (FileContentsConfig.ScanMode scanMode : FileContentsConfig.ScanMode.values()) {
+      ScanResult result = new RegionScanner(matcher, Arrays.asList(header, footer, footer), scanMode, LineLimit.NONE,
+                                            null, RegionScanner.DEFAULT_FOOTER_WINDOW, TextEncoding.DEFAULT)
+        .scan(fileSystem, file);
+      Assert.assertTrue(result.isFound(0));
+      Assert.assertTrue(result.isFound(1));
+      // the line before the last one is not in the footer of one line
+      Assert.assertFalse(result.isFound(2));
+
+      // a pattern is only found in its own region, even if another region holds it
+      result = new RegionScanner(matcher, Arrays.asList(footer, header, PatternRegion.FILE), scanMode,
+                                 LineLimit.NONE, null, RegionScanner.DEFAULT_FOOTER_WINDOW, TextEncoding.DEFAULT)
+        .scan(fileSystem, file);
+      Assert.assertEquals("[false, false, true]", Arrays.toString(result.getFound()));
+    }
+  }
+
+  private ScanResult scanCompressed(String regex, FileContentsConfig.ContentsRegion region, Integer lines,
+                                    Long bytes, FileContentsConfig.ScanMode scanMode,
+                                    CompressionCodec codec) throws IOException {
+    return new RegionScanner(matcher(regex), Collections.singletonList(new PatternRegion(region, lines, bytes)),
+                             scanMode, LineLimit.NONE, codec, RegionScanner.DEFAULT_FOOTER_WINDOW,
+                             TextEncoding.DEFAULT).scan(fileSystem, compressedFile);
+  }
+
+  private ScanResult scan(String regex, FileContentsConfig.ContentsRegion region, Integer lines, Long bytes,
+                          FileContentsConfig.ScanMode scanMode) throws IOException {
+    return new RegionScanner(matcher(regex), Collections.singletonList(new PatternRegion(region, lines, bytes)),
+                             scanMode, LineLimit.NONE, null, RegionScanner.DEFAULT_FOOTER_WINDOW,
+                             TextEncoding.DEFAULT).scan(fileSystem, file);
+  }
+
+  private static MultiPatternMatcher matcher(String regex) {
+    return new MultiPatternMatcher(Collections.singletonList(Pattern.compile(regex)));
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Unit tests for {@link ResultCache}.
+ */
+public class ResultCacheTest {
+  private static final String SETTINGS = "HDR\\|.*\ntrue";
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private FileSystem fileSystem;
+  private Path cachePath;
+
+  @Before
+  public void setUp() throws IOException {
+    fileSystem = FileSystem.getLocal(new Configuration());
+    cachePath = new Path(temporaryFolder.getRoot().getAbsolutePath(), "cache");
+  }
+
+  @Test
+  public void testOutcomesSurviveSave() throws IOException {
+    ResultCache cache = ResultCache.open(fileSystem, cachePath, SETTINGS, 10);
+    Assert.assertNull(cache.get(status("a", 10, 1)));
+    cache.put(status("a", 10, 1), ResultCache.Outcome.PASSED);
+    cache.put(status("b", 0, 1), ResultCache.Outcome.EMPTY);
+    cache.save();
+    // saving again replaces the cache file
+    cache.save();
+
+    cache = ResultCache.open(fileSystem, cachePath, SETTINGS, 10);
+    Assert.assertEquals(ResultCache.Outcome.PASSED, cache.get(status("a", 10, 1)));
+    Assert.assertEquals(ResultCache.Outcome.EMPTY, cache.get(status("b", 0, 1)));
+    Assert.assertEquals(2, cache.getHits());
+    Assert.assertEquals(0, cache.getMisses());
+  }
+
+  @Test
+  public void testChangedFileOrSettingsMiss() throws IOException {
+    ResultCache cache = ResultCache.open(fileSystem, cachePath, SETTINGS, 10);
+    cache.put(status("a", 10, 1), ResultCache.Outcome.PASSED);
+    cache.save();
+
+    cache = ResultCache.open(fileSystem, cachePath, SETTINGS, 10);
+    Assert.assertNull(cache.get(status("a", 11, 1)));
+    Assert.assertNull(cache.get(status("a", 10, 2)));
+    Assert.assertEquals(2, cache.getMisses());
+
+    cache = ResultCache.open(fileSystem, cachePath, SETTINGS + "~body", 10);
+    Assert.assertNull(cache.get(status("a", 10, 1)));
+  }
+
+  @Test
+  public void testProgressOnlyForAppends() throws IOException {
+    ResultCache cache = ResultCache.open(fileSystem, cachePath, SETTINGS, 10);
+    cache.put(status("a", 10, 1), ResultCache.Outcome.MISSING_CONTENTS,
+              new ScanProgress(8, new boolean[] { true, false }, 42));
+    cache.put(status("b", 10, 1), ResultCache.Outcome.PASSED);
+    cache.save();
+
+    cache = ResultCache.open(fileSystem, cachePath, SETTINGS, 10);
+    ScanProgress progress = cache.getProgress(status("a", 20, 2));
+    Assert.assertNotNull(progress);
+    Assert.assertEquals(8, progress.getOffset());
+    Assert.assertEquals(42, progress.getChecksum());
+    Assert.assertEquals("[true, false]", Arrays.toString(progress.getFound()));
+    Assert.assertNotNull(cache.getProgress(status("a", 10, 1)));
+    // shrunk, or changed without growing
+    Assert.assertNull(cache.getProgress(status("a", 9, 2)));
+    Assert.assertNull(cache.getProgress(status("a", 10, 2)));
+    Assert.assertNull(cache.getProgress(status("b", 20, 2)));
+    Assert.assertEquals(2, cache.getResumes());
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() throws IOException, InterruptedException {
+    ResultCache cache = ResultCache.open(fileSystem, cachePath, SETTINGS, 2);
+    cache.put(status("a", 10, 1), ResultCache.Outcome.PASSED);
+    Thread.sleep(5);
+    cache.put(status("b", 10, 1), ResultCache.Outcome.PASSED);
+    Thread.sleep(5);
+    cache.put(status("c", 10, 1), ResultCache.Outcome.PASSED);
+    Thread.sleep(5);
+    // using an entry makes it the most recently used
+    Assert.assertNotNull(cache.get(status("a", 10, 1)));
+    cache.save();
+
+    cache = ResultCache.open(fileSystem, cachePath, SETTINGS, 2);
+    Assert.assertNotNull(cache.get(status("a", 10, 1)));
+    Assert.assertNull(cache.get(status("b", 10, 1)));
+    Assert.assertNotNull(cache.get(status("c", 10, 1)));
+  }
+
+  @Test
+  public void testUnreadableCacheIgnored() throws IOException {
+    Files.write(new File(cachePath.toUri().getPath()).toPath(), "garbage".getBytes(StandardCharsets.UTF_8));
+    ResultCache cache = ResultCache.open(fileSystem, cachePath, SETTINGS, 10);
+    Assert.assertNull(cache.get(status("a", 10, 1)));
+    cache.put(status("a", 10, 1), ResultCache.Outcome.PASSED);
+    cache.save();
+    Assert.assertNotNull(ResultCache.open(fileSystem, cachePath, SETTINGS, 10).get(status("a", 10, 1)));
+  }
+
+  @Test
+  public void testSavesOfSharedCacheMerge() throws IOException {
+    // two stages with different settings that were opened before either saved
+    ResultCache first = ResultCache.open(fileSystem, cachePath, SETTINGS, 10);
+    ResultCache second = ResultCache.open(fileSystem, cachePath, SETTINGS + "~body", 10);
+    first.put(status("a", 10, 1), ResultCache.Outcome.PASSED);
+    second.put(status("b", 10, 1), ResultCache.Outcome.EMPTY);
+    first.save();
+    second.save();
+
+    Assert.assertEquals(ResultCache.Outcome.PASSED,
+                        ResultCache.open(fileSystem, cachePath, SETTINGS, 10).get(status("a", 10, 1)));
+    Assert.assertEquals(ResultCache.Outcome.EMPTY,
+                        ResultCache.open(fileSystem, cachePath, SETTINGS + "~body", 10).get(status("b", 10, 1)));
+    Assert.assertEquals(0, temporaryFiles().length);
+  }
+
+  @Test
+  public void testRecoversFromTemporaryFile() throws IOException {
+    ResultCache cache = ResultCache.open(fileSystem, cachePath, SETTINGS, 10);
+    cache.put(status("a", 10, 1), ResultCache.Outcome.PASSED);
+    cache.save();
+    // a save that failed after removing the cache file, before moving its temporary file in place
+    Path temp = new Path(cachePath.getParent(), "." + cachePath.getName() + ".run.tmp");
+    Assert.assertTrue(fileSystem.rename(cachePath, temp));
+
+    cache = ResultCache.open(fileSystem, cachePath, SETTINGS, 10);
+    Assert.assertEquals(ResultCache.Outcome.PASSED, cache.get(status("a", 10, 1)));
+    cache.save();
+    Assert.assertTrue(fileSystem.exists(cachePath));
+    Assert.assertEquals(0, temporaryFiles().length);
+  }
+
+  private FileStatus[] temporaryFiles() throws IOException {
+    return fileSystem.globStatus(new Path(cachePath.getParent(), "." + cachePath.getName() + ".*.tmp"));
+  }
+
+  private static FileStatus status(String name, long length, long modificationTime) {
+    return new FileStatus(length, false, 1, 0, modificationTime, new Path("/data", name));
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import io.cdap.cdap.etl.mock.common.MockStageMetrics;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Unit tests for {@link ScanMetrics}.
+ */
+public class ScanMetricsTest {
+
+  @Test
+  public void testTimeListingCountsFiles() throws IOException {
+    ScanMetrics metrics = new ScanMetrics(Arrays.asList(Pattern.compile("a")));
+    FileStatus[] files = new FileStatus[3];
+    for (int i = 0; i < files.length; i++) {
+      files[i] = new FileStatus(10, false, 1, 10, 0, new Path("/tmp/file-" + i));
+    }
+    RemoteIterator<FileStatus> listing = metrics.timeListing(FileListing.iterate(files));
+    int count = 0;
+    while (listing.hasNext()) {
+      listing.next();
+      count++;
+    }
+    Assert.assertEquals(3, count);
+    Assert.assertEquals(3, metrics.getFilesListed());
+  }
+
+  @Test
+  public void testPublish() {
+    List<Pattern> patterns = Arrays.asList(Pattern.compile("fast"), Pattern.compile("slow.*"));
+    ScanMetrics metrics = new ScanMetrics(patterns);
+    metrics.addScan(new ScanResult(new boolean[] { true, true }, 100, 10, 1000, true));
+    metrics.addScan(new ScanResult(new boolean[] { true, false }, 1000, 50, 1000, false));
+    metrics.addSampledPatternTime(0, 1000);
+    metrics.addSampledPatternTime(1, 1000000);
+    metrics.addSampledMatchTime(1001000);
+
+    MockStageMetrics stageMetrics = new MockStageMetrics("scanMetrics");
+    metrics.publish(stageMetrics);
+    Assert.assertEquals(2, stageMetrics.getCount("files.scanned"));
+    Assert.assertEquals(1, stageMetrics.getCount("files.early.exits"));
+    Assert.assertEquals(1100, stageMetrics.getGauge("bytes.read"));
+    Assert.assertEquals(60, stageMetrics.getGauge("lines.scanned"));
+    // sampled times are scaled up by the sample interval
+    Assert.assertEquals(ScanMetrics.SAMPLE_INTERVAL, stageMetrics.getGauge("time.match.pattern.1.ms"));
+    Assert.assertEquals(0, stageMetrics.getGauge("time.match.pattern.0.ms"));
+
+    String summary = metrics.getSummary();
+    Assert.assertTrue(summary, summary.contains("scanned 2"));
+    Assert.assertTrue(summary, summary.endsWith("on pattern slow.*"));
+  }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.bzip2.CBZip2OutputStream;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Pattern;
+
+/**
+ * Unit tests for {@link SplitScanner}.
+ */
+public class SplitScannerTest {
+  private static final int NUM_LINES = 500;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testEveryLineFoundOnce() throws IOException {
+    for (String terminator : new String[] { "\n", "\r\n", "\r" }) {
+      FileStatus file = createFile(terminator);
+      FileSystem fileSystem = FileSystem.getLocal(new Configuration());
+      List<Pattern> patterns = new ArrayList<>();
+      for (int i = 0; i < NUM_LINES; i++) {
+        patterns.add(Pattern.compile("line " + i + " of the file"));
+      }
+      MultiPatternMatcher matcher = new MultiPatternMatcher(patterns);
+      for (long splitSize : new long[] { 1, 7, 19, 64, 1000 }) {
+        ScanResult result = new SplitScanner(matcher, splitSize, 4, null, LineLimit.NONE, null, null,
+                                             TextEncoding.DEFAULT).scan(fileSystem, file);
+        for (int i = 0; i < NUM_LINES; i++) {
+          Assert.assertTrue(String.format("Line %d with split size %d and terminator %s", i, splitSize,
+                                          terminator.replace("\r", "\\r").replace("\n", "\\n")),
+                            result.isFound(i));
+        }
+        Assert.assertEquals(NUM_LINES, result.getLinesScanned());
+      }
+    }
+  }
+
+  @Test
+  public void testSharedPermits() throws IOException {
+    FileStatus file = createFile("\n");
+    FileSystem fileSystem = FileSystem.getLocal(new Configuration());
+    List<Pattern> patterns = new ArrayList<>();
+    for (int i = 0; i < NUM_LINES; i++) {
+      patterns.add(Pattern.compile("line " + i + " of the file"));
+    }
+    MultiPatternMatcher matcher = new MultiPatternMatcher(patterns);
+    // without a free permit the ranges are scanned by the calling thread alone, and borrowed permits are returned
+    for (int free : new int[] { 0, 3 }) {
+      Semaphore permits = new Semaphore(free);
+      ScanResult result = new SplitScanner(matcher, 64, 4, permits, LineLimit.NONE, null, null, TextEncoding.DEFAULT)
+        .scan(fileSystem, file);
+      Assert.assertTrue(result.allFound());
+      Assert.assertEquals(NUM_LINES, result.getLinesScanned());
+      Assert.assertEquals(free, permits.availablePermits());
+    }
+  }
+
+  @Test
+  public void testMissingPattern() throws IOException {
+    FileStatus file = createFile("\n");
+    FileSystem fileSystem = FileSystem.getLocal(new Configuration());
+    List<Pattern> patterns = new ArrayList<>();
+    patterns.add(Pattern.compile("line 3 of the file"));
+    patterns.add(Pattern.compile("line 3 of the"));
+    ScanResult result = new SplitScanner(new MultiPatternMatcher(patterns), 64, 4, null, LineLimit.NONE, null, null,
+                                         TextEncoding.DEFAULT)
+      .scan(fileSystem, file);
+    Assert.assertTrue(result.isFound(0));
+    Assert.assertFalse(result.isFound(1));
+    Assert.assertFalse(result.isEarlyExit());
+  }
+
+  @Test
+  public void testStopsOnceAllFound() throws IOException {
+    FileStatus file = createFile("\n");
+    FileSystem fileSystem = FileSystem.getLocal(new Configuration());
+    List<Pattern> patterns = new ArrayList<>();
+    patterns.add(Pattern.compile("line 0 of the file"));
+    ScanResult result = new SplitScanner(new MultiPatternMatcher(patterns), 64, 1, null, LineLimit.NONE, null, null,
+                                         TextEncoding.DEFAULT)
+      .scan(fileSystem, file);
+    Assert.assertTrue(result.allFound());
+    Assert.assertTrue(result.isEarlyExit());
+    Assert.assertTrue(result.getBytesSkipped() > 0);
+  }
+
+  @Test
+  public void testByteOrderMarkReadOnce() throws IOException {
+    FileStatus local = createFile("\n");
+    Path path = new Path(CountingFileSystem.SCHEME + "://" + local.getPath().toUri().getPath());
+    FileSystem fileSystem = path.getFileSystem(new Configuration());
+    FileStatus file = fileSystem.getFileStatus(path);
+    List<Pattern> patterns = Collections.singletonList(Pattern.compile("missing"));
+    CountingFileSystem.reset();
+    new SplitScanner(new MultiPatternMatcher(patterns), file.getLen(), 1, null, LineLimit.NONE, null, null,
+                     TextEncoding.DEFAULT)
+      .scan(fileSystem, file);
+    // one open for the byte order mark and one for the only range
+    Assert.assertEquals(2, CountingFileSystem.getOpenCalls(local.getPath().toUri().getPath()));
+  }
+
+  @Test
+  public void testBzip2EveryLineFoundOnce() throws IOException {
+    // enough lines for several of the smallest, 100 KB, bzip2 blocks
+    int numLines = 40000;
+    File local = temporaryFolder.newFile("data.bz2");
+    try (OutputStream out = new FileOutputStream(local)) {
+      // the codec expects the stream header to be written separately
+      out.write("BZ".getBytes(StandardCharsets.US_ASCII));
+      try (OutputStream bzip2 = new CBZip2OutputStream(out, 1)) {
+        for (int i = 0; i < numLines; i++) {
+          bzip2.write(String.format("line %d of the file%s", i, i % 2 == 0 ? "\n" : "\r\n")
+                        .getBytes(StandardCharsets.UTF_8));
+        }
+      }
+    }
+    FileSystem fileSystem = FileSystem.getLocal(new Configuration());
+    FileStatus file = fileSystem.getFileStatus(new Path(local.getAbsolutePath()));
+    CompressionCodec codec = new CompressionCodecFactory(new Configuration()).getCodec(file.getPath());
+    List<Pattern> patterns = new ArrayList<>();
+    for (int i = 0; i < numLines; i += 997) {
+      patterns.add(Pattern.compile("line " + i + " of the file"));
+    }
+    patterns.add(Pattern.compile("line " + (numLines - 1) + " of the file"));
+    // a pattern that is not found makes every range scan all of its lines
+    patterns.add(Pattern.compile("not in the file"));
+    MultiPatternMatcher matcher = new MultiPatternMatcher(patterns);
+    for (long splitSize : new long[] { 1000, 7777, 50000, file.getLen() / 2 }) {
+      ScanResult result = new SplitScanner(matcher, splitSize, 4, null, LineLimit.NONE, codec, null,
+                                           TextEncoding.DEFAULT).scan(fileSystem, file);
+      for (int i = 0; i < patterns.size() - 1; i++) {
+        Assert.assertTrue("Split size " + splitSize + ", pattern " + patterns.get(i), result.isFound(i));
+      }
+      Assert.assertEquals("Split size " + splitSize, numLines, result.getLinesScanned());
+    }
+  }
+
+  @Test
+  public void testBzip2RangesWithoutBlockStart() throws IOException {
+    File local = temporaryFolder.newFile("small.bz2");
+    try (OutputStream out = new FileOutputStream(local)) {
+      out.write("BZ".getBytes(StandardCharsets.US_ASCII));
+      try (OutputStream bzip2 = new CBZip2OutputStream(out, 1)) {
+        for (int i = 0; i < 1000; i++) {
+          bzip2.write(String.format("line %d of the file\n", i).getBytes(StandardCharsets.UTF_8));
+        }
+      }
+    }
+    FileSystem fileSystem = FileSystem.getLocal(new Configuration());
+    FileStatus file = fileSystem.getFileStatus(new Path(local.getAbsolutePath()));
+    CompressionCodec codec = new CompressionCodecFactory(new Configuration()).getCodec(file.getPath());
+    SplitScanner scanner = new SplitScanner(new MultiPatternMatcher(Collections.singletonList(Pattern.compile("x"))),
+                                            100, 4, null, LineLimit.NONE, codec, null, TextEncoding.DEFAULT);
+    // the single block starts in the first range, so a range in the middle reads nothing from a file with data
+    long middle = file.getLen() / 2;
+    ScanResult result = scanner.scan(fileSystem, file,
+                                     Collections.singletonList(new SplitScanner.Range(middle, middle + 100)));
+    Assert.assertEquals(0, result.getBytesRead());
+    Assert.assertFalse(result.isStartScanned());
+
+    result = scanner.scan(fileSystem, file, Collections.singletonList(new SplitScanner.Range(0, 100)));
+    Assert.assertTrue(result.getBytesRead() > 0);
+    Assert.assertTrue(result.isStartScanned());
+  }
+
+  @Test
+  public void testWindowsOfLongLinesStayInTheirRange() throws IOException {
+    // long lines with a marker near their end, so that most markers are only in windows past the range end
+    StringBuilder contents = new StringBuilder();
+    List<Pattern> patterns = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      for (int j = 0; j < 250; j++) {
+        contents.append((char) ('a' + j % 26));
+      }
+      contents.append("MARKER_").append(i).append(" end\n");
+      patterns.add(Pattern.compile(".*MARKER_" + i + " .*"));
+    }
+    File local = temporaryFolder.newFile();
+    Files.write(local.toPath(), contents.toString().getBytes(StandardCharsets.UTF_8));
+    FileSystem fileSystem = FileSystem.getLocal(new Configuration());
+    FileStatus file = fileSystem.getFileStatus(new Path(local.getAbsolutePath()));
+    MultiPatternMatcher matcher = new MultiPatternMatcher(patterns);
+    LineLimit limit = new LineLimit(64, FileContentsConfig.LongLinePolicy.WINDOW);
+    for (long splitSize : new long[] { 50, 100, 1000 }) {
+      ScanResult result = new SplitScanner(matcher, splitSize, 4, null, limit, null, null, TextEncoding.DEFAULT)
+        .scan(fileSystem, file);
+      Assert.assertTrue("Split size " + splitSize, result.allFound());
+    }
+  }
+
+  private FileStatus createFile(String terminator) throws IOException {
+    StringBuilder contents = new StringBuilder();
+    for (int i = 0; i < NUM_LINES; i++) {
+      contents.append("line ").append(i).append(" of the file").append(terminator);
+    }
+    File local = temporaryFolder.newFile();
+    Files.write(local.toPath(), contents.toString().getBytes(StandardCharsets.UTF_8));
+    return FileSystem.getLocal(new Configuration()).getFileStatus(new Path(local.getAbsolutePath()));
+  }
+}
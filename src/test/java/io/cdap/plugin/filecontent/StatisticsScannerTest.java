@@ -0,0 +1,182 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Unit tests for {@link StatisticsScanner}.
+ */
+public class StatisticsScannerTest {
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testLineCounts() throws IOException {
+    String[] contents = { "", "a", "a\n", "\n", "a\nb", "a\r\nb\r\n", "a\rb\r", "\r\n\r\n", "a\n\nb\n\n", "\r\r\n" };
+    long[] lines = { 0, 1, 1, 1, 2, 2, 2, 2, 4, 2 };
+    for (int i = 0; i < contents.length; i++) {
+      FileStatus file = createFile(contents[i]);
+      for (FileContentsConfig.ScanMode scanMode : FileContentsConfig.ScanMode.values()) {
+        ScanResult result = scan(file, ".*", scanMode, LineLimit.NONE, null, FileContentsConfig.DigestAlgorithm.NONE);
+        String name = contents[i].replace("\r", "\\r").replace("\n", "\\n") + " " + scanMode;
+        Assert.assertEquals(name, lines[i], result.getStatistics().getLines());
+        Assert.assertEquals(name, contents[i].length(), result.getStatistics().getBytes());
+        Assert.assertNull(name, result.getStatistics().getDigest());
+      }
+    }
+  }
+
+  @Test
+  public void testReadsToTheEnd() throws IOException {
+    StringBuilder contents = new StringBuilder("HDR\n");
+    for (int i = 0; i < 10000; i++) {
+      contents.append("line ").append(i).append('\n');
+    }
+    FileStatus file = createFile(contents.toString());
+    for (FileContentsConfig.ScanMode scanMode : FileContentsConfig.ScanMode.values()) {
+      ScanResult result = scan(file, "HDR", scanMode, LineLimit.NONE, null, FileContentsConfig.DigestAlgorithm.NONE);
+      Assert.assertTrue(result.allFound());
+      Assert.assertFalse(result.isEarlyExit());
+      Assert.assertEquals(10001, result.getStatistics().getLines());
+      Assert.assertEquals(file.getLen(), result.getBytesRead());
+    }
+  }
+
+  @Test
+  public void testLongLinesCountOnce() throws IOException {
+    StringBuilder contents = new StringBuilder();
+    for (int i = 0; i < 5; i++) {
+      for (int j = 0; j < 1000; j++) {
+        contents.append('x');
+      }
+      contents.append('\n');
+    }
+    FileStatus file = createFile(contents.toString());
+    LineLimit limit = new LineLimit(100, FileContentsConfig.LongLinePolicy.WINDOW);
+    for (FileContentsConfig.ScanMode scanMode : FileContentsConfig.ScanMode.values()) {
+      ScanResult result = scan(file, "y", scanMode, limit, null, FileContentsConfig.DigestAlgorithm.NONE);
+      // each window of a long line is scanned as a line, but the line is only counted once
+      Assert.assertTrue(result.getLinesScanned() > 5);
+      Assert.assertEquals(5, result.getStatistics().getLines());
+    }
+  }
+
+  @Test
+  public void testDigests() throws Exception {
+    FileStatus file = createFile("123456789");
+    Assert.assertEquals("e3069283", scan(file, ".*", FileContentsConfig.ScanMode.BYTES, LineLimit.NONE, null,
+                                         FileContentsConfig.DigestAlgorithm.CRC32C).getStatistics().getDigest());
+
+    byte[] contents = new byte[3 * LineReaders.BUFFER_SIZE + 17];
+    for (int i = 0; i < contents.length; i++) {
+      contents[i] = (byte) (i % 61 == 0 ? '\n' : 'a' + i % 26);
+    }
+    File local = temporaryFolder.newFile();
+    Files.write(local.toPath(), contents);
+    file = status(local);
+    for (FileContentsConfig.ScanMode scanMode : FileContentsConfig.ScanMode.values()) {
+      Assert.assertEquals(hex("MD5", contents), scan(file, ".*", scanMode, LineLimit.NONE, null,
+                                                     FileContentsConfig.DigestAlgorithm.MD5).getStatistics()
+        .getDigest());
+      Assert.assertEquals(hex("SHA-256", contents), scan(file, ".*", scanMode, LineLimit.NONE, null,
+                                                         FileContentsConfig.DigestAlgorithm.SHA256).getStatistics()
+        .getDigest());
+    }
+  }
+
+  @Test
+  public void testCompressedFile() throws Exception {
+    StringBuilder contents = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      contents.append("line ").append(i).append("\r\n");
+    }
+    File local = temporaryFolder.newFile("data.txt.gz");
+    try (OutputStream out = new GZIPOutputStream(new FileOutputStream(local))) {
+      out.write(contents.toString().getBytes(StandardCharsets.UTF_8));
+    }
+    FileStatus file = status(local);
+    CompressionCodec codec = new CompressionCodecFactory(new Configuration()).getCodec(file.getPath());
+    for (FileContentsConfig.ScanMode scanMode : FileContentsConfig.ScanMode.values()) {
+      ScanResult result = scan(file, "line 0", scanMode, LineLimit.NONE, codec,
+                               FileContentsConfig.DigestAlgorithm.SHA256);
+      Assert.assertTrue(result.allFound());
+      // lines are those of the contents, while the bytes and the digest are those of the file as stored
+      Assert.assertEquals(1000, result.getStatistics().getLines());
+      Assert.assertEquals(contents.length(), result.getBytesRead());
+      Assert.assertEquals(local.length(), result.getStatistics().getBytes());
+      Assert.assertEquals(hex("SHA-256", Files.readAllBytes(local.toPath())), result.getStatistics().getDigest());
+    }
+  }
+
+  @Test
+  public void testUtf16ByteOrderMarkFails() throws Exception {
+    File local = temporaryFolder.newFile();
+    // UTF-16 encodes the line feed as two bytes, which the lines cannot be counted from
+    Files.write(local.toPath(), "\ufeffline 0\nline 1\n".getBytes(StandardCharsets.UTF_16LE));
+    try {
+      scan(status(local), "line 0", FileContentsConfig.ScanMode.READER, LineLimit.NONE, null,
+           FileContentsConfig.DigestAlgorithm.NONE);
+      Assert.fail("Expected the lines not to be counted");
+    } catch (IOException e) {
+      Assert.assertTrue(e.getMessage(), e.getMessage().contains("UTF-16LE"));
+    }
+  }
+
+  private ScanResult scan(FileStatus file, String regex, FileContentsConfig.ScanMode scanMode, LineLimit lineLimit,
+                          CompressionCodec codec, FileContentsConfig.DigestAlgorithm digest) throws IOException {
+    MultiPatternMatcher matcher = new MultiPatternMatcher(Collections.singletonList(Pattern.compile(regex)));
+    return new StatisticsScanner(matcher, scanMode, lineLimit, codec, digest, TextEncoding.DEFAULT)
+      .scan(FileSystem.getLocal(new Configuration()), file);
+  }
+
+  private FileStatus createFile(String contents) throws IOException {
+    File local = temporaryFolder.newFile();
+    Files.write(local.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+    return status(local);
+  }
+
+  private static FileStatus status(File local) throws IOException {
+    return FileSystem.getLocal(new Configuration()).getFileStatus(new Path(local.getAbsolutePath()));
+  }
+
+  private static String hex(String algorithm, byte[] bytes) throws Exception {
+    byte[] digest = MessageDigest.getInstance(algorithm).digest(bytes);
+    return String.format("%0" + digest.length * 2 + "x", new BigInteger(1, digest));
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.filecontent;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Unit tests for {@link TextEncoding}.
+ */
+public class TextEncodingTest {
+
+  @Test
+  public void testFindBom() {
+    Assert.assertEquals(TextEncoding.Bom.UTF_8, find(0xef, 0xbb, 0xbf));
+    Assert.assertEquals(TextEncoding.Bom.UTF_16BE, find(0xfe, 0xff, 'a'));
+    Assert.assertEquals(TextEncoding.Bom.UTF_16LE, find(0xff, 0xfe));
+    Assert.assertNull(find(0xef, 0xbb));
+    Assert.assertNull(find('a', 'b', 'c'));
+    Assert.assertNull(find());
+  }
+
+  @Test
+  public void testCharsetOfBom() {
+    TextEncoding encoding = new TextEncoding(StandardCharsets.ISO_8859_1, true, false);
+    Assert.assertEquals(StandardCharsets.UTF_16LE, encoding.getCharset(TextEncoding.Bom.UTF_16LE));
+    Assert.assertEquals(StandardCharsets.ISO_8859_1, encoding.getCharset(null));
+    TextEncoding undetected = new TextEncoding(StandardCharsets.ISO_8859_1, false, false);
+    Assert.assertEquals(StandardCharsets.ISO_8859_1, undetected.getCharset(TextEncoding.Bom.UTF_16LE));
+  }
+
+  @Test
+  public void testUtf8Bytes() {
+    Assert.assertFalse(TextEncoding.DEFAULT.isUtf8Bytes(StandardCharsets.UTF_8));
+    TextEncoding encoding = TextEncoding.DEFAULT.withUtf8Bytes();
+    Assert.assertTrue(encoding.isUtf8Bytes(StandardCharsets.UTF_8));
+    Assert.assertFalse(encoding.isUtf8Bytes(StandardCharsets.ISO_8859_1));
+  }
+
+  @Test
+  public void testAsciiCompatible() {
+    Assert.assertTrue(TextEncoding.isAsciiCompatible(StandardCharsets.UTF_8));
+    Assert.assertTrue(TextEncoding.isAsciiCompatible(StandardCharsets.ISO_8859_1));
+    Assert.assertTrue(TextEncoding.isAsciiCompatible(StandardCharsets.US_ASCII));
+    Assert.assertTrue(TextEncoding.isAsciiCompatible(Charset.forName("windows-1252")));
+    Assert.assertFalse(TextEncoding.isAsciiCompatible(StandardCharsets.UTF_16));
+    Assert.assertFalse(TextEncoding.isAsciiCompatible(StandardCharsets.UTF_16LE));
+    Assert.assertFalse(TextEncoding.isAsciiCompatible(Charset.forName("UTF-32")));
+  }
+
+  @Test
+  public void testCodeUnitSize() {
+    Assert.assertEquals(1, TextEncoding.getCodeUnitSize(StandardCharsets.UTF_8));
+    Assert.assertEquals(2, TextEncoding.getCodeUnitSize(StandardCharsets.UTF_16BE));
+    Assert.assertEquals(4, TextEncoding.getCodeUnitSize(Charset.forName("UTF-32LE")));
+  }
+
+  private static TextEncoding.Bom find(int... bytes) {
+    byte[] head = new byte[TextEncoding.Bom.MAX_LENGTH];
+    for (int i = 0; i < bytes.length; i++) {
+      head[i] = (byte) bytes[i];
+    }
+    return TextEncoding.Bom.find(head, bytes.length);
+  }
+}